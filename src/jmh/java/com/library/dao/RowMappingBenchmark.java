@@ -0,0 +1,136 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import com.library.model.CD;
+import com.library.model.Journal;
+import com.library.model.Media;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares mapping media rows by column name with mapping them by position.
+ * Rows come from an in-memory result set that resolves names the way the
+ * PostgreSQL driver does, so the difference is the per-row lookup cost.
+ * Run with: mvn -Pbench test-compile exec:exec
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    @Param({"10000", "100000"})
+    int rows;
+
+    private Object[][] data;
+
+    /**
+     * Builds the rows once per trial.
+     */
+    @Setup
+    public void setUp() {
+        String[] types = {"book", "cd", "journal"};
+        data = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = new Object[] {i + 1, types[i % 3], "Title " + i, "Author " + i, "ISBN-" + i, i % 2 == 0};
+        }
+    }
+
+    /**
+     * Maps every row with name-based getters, as the mappers did before.
+     *
+     * @param bh consumes the mapped rows
+     * @throws SQLException never, the result set is in memory
+     */
+    @Benchmark
+    public void byName(Blackhole bh) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            Media m = newMedia(rs.getString("type"));
+            m.setId(rs.getInt("media_id"));
+            m.setTitle(rs.getString("title"));
+            m.setAuthor(rs.getString("author"));
+            m.setIsbn(rs.getString("isbn"));
+            m.setAvailable(rs.getBoolean("available"));
+            bh.consume(m);
+        }
+    }
+
+    /**
+     * Maps every row with the position-based DAO mapper.
+     *
+     * @param bh consumes the mapped rows
+     * @throws SQLException never, the result set is in memory
+     */
+    @Benchmark
+    public void byIndex(Blackhole bh) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            bh.consume(MediaDAO.mapRow(rs));
+        }
+    }
+
+    /**
+     * Creates a forward-only result set over the prepared rows.
+     * Name lookups go through a lowercase map like the driver's findColumn.
+     *
+     * @return in-memory result set
+     */
+    private ResultSet resultSet() {
+        Map<String, Integer> positions = new HashMap<>();
+        String[] names = {"media_id", "type", "title", "author", "isbn", "available"};
+        for (int i = 0; i < names.length; i++) {
+            positions.put(names[i], i + 1);
+        }
+        int[] row = {-1};
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("next")) {
+                        return ++row[0] < data.length;
+                    }
+                    Object key = args[0];
+                    int col = key instanceof String
+                            ? positions.get(((String) key).toLowerCase(Locale.ROOT))
+                            : (Integer) key;
+                    return data[row[0]][col - 1];
+                });
+    }
+
+    /**
+     * Creates an empty media object of a type.
+     *
+     * @param type media type
+     * @return new media instance
+     */
+    private static Media newMedia(String type) {
+        switch (type) {
+            case "cd":
+                return new CD();
+            case "journal":
+                return new Journal();
+            default:
+                return new Book();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.library.service;
+
+import com.library.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures messages per second through the real SMTP send path, against the
+ * in-process SmtpSink instead of a mail provider, so it runs offline.
+ * sendDirect sends one message at a time as the synchronous path does;
+ * sendQueued sends a batch through a ReminderPipeline with one send worker
+ * per pooled connection, as the reminder run does. The connections the sink
+ * accepted are printed after each trial to show how well they were reused.
+ * Run with: mvn -Pbench test-compile exec:exec -Djmh.args=EmailSend
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailSendBenchmark {
+
+    private static final int BATCH = 500;
+
+    @Param({"1", "4"})
+    int poolSize;
+
+    @Param({"100"})
+    int maxMessages;
+
+    private SmtpSink sink;
+    private EmailService service;
+    private PrintStream out;
+    private int next;
+
+    /**
+     * Starts the sink and a service pointed at it. The per-message log line
+     * is silenced so console output does not dominate the measurement.
+     *
+     * @throws IOException if the sink cannot start
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sink = SmtpSink.start(false);
+        sink.setProperties();
+        service = new EmailService("library@example.com", "secret", poolSize, maxMessages);
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Closes the service and the sink and reports connection reuse.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        System.setOut(out);
+        System.out.printf("%nsink: %d messages over %d connections%n",
+                sink.getMessages(), sink.getConnections());
+        sink.close();
+        SmtpSink.clearProperties();
+    }
+
+    /**
+     * Sends one message and waits for the server to accept it.
+     */
+    @Benchmark
+    public void sendDirect() {
+        service.sendEmail(recipient(), "Overdue Reminder", "You have 1 overdue item(s).");
+    }
+
+    /**
+     * Sends a batch through the reminder pipeline and waits until it is drained.
+     *
+     * @throws InterruptedException if interrupted while queueing
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void sendQueued() throws InterruptedException {
+        try (ReminderPipeline pipeline = new ReminderPipeline(
+                new EmailNotifier(service::sendEmail), 1, poolSize, BATCH, 60)) {
+            for (int i = 0; i < BATCH; i++) {
+                User u = new User();
+                u.setUserId(i);
+                u.setEmail(recipient());
+                pipeline.submit(u, () -> "You have 1 overdue item(s).");
+            }
+        }
+    }
+
+    /**
+     * Picks the next recipient address.
+     *
+     * @return address
+     */
+    private String recipient() {
+        return "user" + (next++ % 10_000) + "@example.com";
+    }
+}
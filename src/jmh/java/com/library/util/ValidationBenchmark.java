@@ -0,0 +1,99 @@
+package com.library.util;
+
+import com.library.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares validating user records the way ValidationHelper used to, with
+ * String.matches and a role array, against the precompiled pattern and role
+ * set, and measures the bulk API over the same records. One record in ten
+ * is invalid, so the violation path is included.
+ * Run with: mvn -Pbench test-compile exec:exec -Djmh.args=Validation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final String[] ROLES = { "admin", "librarian", "user" };
+
+    @Param({"10000", "100000"})
+    int records;
+
+    private User[] users;
+
+    /**
+     * Builds the records once per trial.
+     */
+    @Setup
+    public void setUp() {
+        users = new User[records];
+        for (int i = 0; i < records; i++) {
+            User u = new User();
+            u.setUsername("user" + i);
+            u.setEmail(i % 10 == 0 ? "user" + i + "@example" : "user" + i + "@example.com");
+            u.setRole(i % 10 == 5 ? "guest" : ROLES[i % 3]);
+            users[i] = u;
+        }
+    }
+
+    /**
+     * Checks every record with a regex compiled per call and a role array scan.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void compiledPerCall(Blackhole bh) {
+        for (User u : users) {
+            bh.consume(u.getEmail().matches("^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$"));
+            boolean role = false;
+            for (String valid : ROLES) {
+                if (valid.equals(u.getRole())) {
+                    role = true;
+                    break;
+                }
+            }
+            bh.consume(role);
+        }
+    }
+
+    /**
+     * Checks every record with the precompiled pattern and the role set.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void precompiled(Blackhole bh) {
+        for (User u : users) {
+            bh.consume(ValidationHelper.isValidEmail(u.getEmail()));
+            bh.consume(ValidationHelper.isValidRole(u.getRole()));
+        }
+    }
+
+    /**
+     * Validates every record through the bulk API, duplicate check included.
+     *
+     * @param bh consumes the violations
+     */
+    @Benchmark
+    public void bulk(Blackhole bh) {
+        bh.consume(ValidationHelper.validateUsers(Arrays.stream(users)));
+    }
+}
@@ -6,6 +6,7 @@ import com.library.service.AdminService;
 import com.library.util.DisplayPrinter;
 import com.library.util.ValidationHelper;
 
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
 
@@ -13,6 +14,9 @@ import java.util.Scanner;
  * Provides the admin command-line menu and actions.
  */
 public class AdminCLI {
+    /** Number of rows shown per page in listings. */
+    private static final int PAGE_SIZE = 25;
+
     private final Scanner in;
     private final AdminService admin;
 
@@ -41,9 +45,12 @@ public class AdminCLI {
             System.out.println("5) List Users");
             System.out.println("6) Remove User");
             System.out.println("7) Send Overdue Reminders");
+            System.out.println("8) Import Media from CSV");
+            System.out.println("9) Export Media to CSV");
+            System.out.println("10) Export Users to CSV");
             System.out.println("0) Logout");
 
-            int choice = InputHelper.readInt(in, "Choose: ", 0, 7);
+            int choice = InputHelper.readInt(in, "Choose: ", 0, 10);
 
             try {
                 switch (choice) {
@@ -68,6 +75,15 @@ public class AdminCLI {
                     case 7:
                         sendRemindersFlow();
                         break;
+                    case 8:
+                        importMediaFlow();
+                        break;
+                    case 9:
+                        exportMediaFlow();
+                        break;
+                    case 10:
+                        exportUsersFlow();
+                        break;
                     case 0:
                         return;
                     default:
@@ -113,15 +129,22 @@ public class AdminCLI {
     }
 
     /**
-     * Shows all media filtered by type.
+     * Shows media filtered by type, one page at a time.
      *
      * @throws Exception if loading media fails
      */
     private void listMediaFlow() throws Exception {
         MenuPrinter.title("Media");
         String type = InputHelper.readNonEmpty(in, "Filter Type (book|cd|journal|media): ").toLowerCase();
-        List<Media> mediaList = admin.listAllMedia(type);
-        DisplayPrinter.printMediaList(mediaList);
+        int afterId = 0;
+        while (true) {
+            List<Media> page = admin.listMediaPage(type, afterId, PAGE_SIZE + 1);
+            boolean more = page.size() > PAGE_SIZE;
+            if (more) page = page.subList(0, PAGE_SIZE);
+            DisplayPrinter.printMediaList(page);
+            if (!more || !InputHelper.readNextPage(in)) break;
+            afterId = page.get(page.size() - 1).getId();
+        }
         InputHelper.pressEnterToContinue(in);
     }
 
@@ -165,20 +188,27 @@ public class AdminCLI {
     }
 
     /**
-     * Lists all users with basic details.
+     * Lists users with basic details, one page at a time.
      *
      * @throws Exception if loading users fails
      */
     private void listUsersFlow() throws Exception {
         MenuPrinter.title("Users");
-        List<User> users = admin.listUsers();
-        if (users == null || users.isEmpty()) {
-            System.out.println("(No users)");
-        } else {
+        int afterId = 0;
+        while (true) {
+            List<User> users = admin.listUsersPage(afterId, PAGE_SIZE + 1);
+            if (afterId == 0 && users.isEmpty()) {
+                System.out.println("(No users)");
+                break;
+            }
+            boolean more = users.size() > PAGE_SIZE;
+            if (more) users = users.subList(0, PAGE_SIZE);
             for (User u : users) {
                 System.out.printf("#%d  %s | %s | role=%s | balance=%.2f%n",
                         u.getUserId(), u.getUsername(), u.getEmail(), u.getRole(), u.getBalance());
             }
+            if (!more || !InputHelper.readNextPage(in)) break;
+            afterId = users.get(users.size() - 1).getUserId();
         }
         InputHelper.pressEnterToContinue(in);
     }
@@ -208,4 +238,52 @@ public class AdminCLI {
         InputHelper.pressEnterToContinue(in);
     }
 
+    /**
+     * Reads a CSV file path and imports the media in it.
+     *
+     * @throws Exception if the import fails
+     */
+    private void importMediaFlow() throws Exception {
+        MenuPrinter.title("Import Media");
+        System.out.println("Columns: type,title,author,isbn (first row is a header)");
+        String file = InputHelper.readNonEmpty(in, "CSV file: ");
+        MediaImportReport report = admin.importMedia(Paths.get(file));
+        System.out.printf("Read %d row(s), imported %d, rejected %d.%n",
+                report.getRowsRead(), report.getImported(), report.getRejectedCount());
+        for (MediaImportReport.Rejected r : report.getRejected()) {
+            System.out.println("  " + r);
+        }
+        if (report.getRejectedCount() > report.getRejected().size()) {
+            System.out.println("  ... " + (report.getRejectedCount() - report.getRejected().size()) + " more");
+        }
+        InputHelper.pressEnterToContinue(in);
+    }
+
+    /**
+     * Reads a filter and a CSV file path and exports the matching media.
+     *
+     * @throws Exception if the export fails
+     */
+    private void exportMediaFlow() throws Exception {
+        MenuPrinter.title("Export Media");
+        String type = InputHelper.readNonEmpty(in, "Filter Type (book|cd|journal|media): ").toLowerCase();
+        String keyword = InputHelper.readNonEmpty(in, "Keyword (* for all): ");
+        String file = InputHelper.readNonEmpty(in, "CSV file: ");
+        int count = admin.exportMedia(keyword.equals("*") ? null : keyword, type, Paths.get(file));
+        System.out.println("Exported " + count + " media item(s).");
+        InputHelper.pressEnterToContinue(in);
+    }
+
+    /**
+     * Reads a CSV file path and exports all users.
+     *
+     * @throws Exception if the export fails
+     */
+    private void exportUsersFlow() throws Exception {
+        MenuPrinter.title("Export Users");
+        String file = InputHelper.readNonEmpty(in, "CSV file: ");
+        int count = admin.exportUsers(Paths.get(file));
+        System.out.println("Exported " + count + " user(s).");
+        InputHelper.pressEnterToContinue(in);
+    }
 }
@@ -80,6 +80,49 @@ public final class InputHelper {
         try { in.nextLine(); } catch (Exception ignored) {}
     }
 
+    /**
+     * Asks whether to show the next page of a listing.
+     *
+     * @param in scanner for input
+     * @return true if the user pressed ENTER, false if they typed q or input ended
+     */
+    public static boolean readNextPage(Scanner in) {
+        System.out.print("Press ENTER for the next page, or q to stop: ");
+        try {
+            return !"q".equalsIgnoreCase(in.nextLine().trim());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Asks whether to move to the next or previous page of a listing.
+     * Only the moves that are possible are offered.
+     *
+     * @param in scanner for input
+     * @param previous whether there is a previous page
+     * @param next whether there is a next page
+     * @return 1 for the next page, -1 for the previous page, 0 to stop
+     */
+    public static int readPageMove(Scanner in, boolean previous, boolean next) {
+        if (!previous && !next) return 0;
+        String prompt = "Type " + (next ? "n for the next page, " : "")
+                + (previous ? "p for the previous page, " : "") + "or press ENTER to stop: ";
+        while (true) {
+            System.out.print(prompt);
+            String s;
+            try {
+                s = in.nextLine().trim();
+            } catch (Exception e) {
+                return 0;
+            }
+            if (s.isEmpty() || s.equalsIgnoreCase("q")) return 0;
+            if (next && s.equalsIgnoreCase("n")) return 1;
+            if (previous && s.equalsIgnoreCase("p")) return -1;
+            System.out.println("Invalid choice. Try again.");
+        }
+    }
+
     /**
      * Reads a double within the given range.
      * Keeps asking until the input is valid.
@@ -1,17 +1,25 @@
 package com.library.app;
 
+import com.library.dao.CacheInvalidationBus;
+import com.library.dao.QueryPlanAdvisor;
+import com.library.dao.SchemaMigrator;
 import com.library.model.User;
 import com.library.service.AdminService;
 import com.library.service.AuthService;
 import com.library.service.LibrarianService;
+import com.library.service.OutboxSender;
 import com.library.service.UserService;
+import com.library.util.ConnectionWarmer;
 import com.library.util.DatabaseConnection;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Scanner;
 
 /**
  * Main entry point of the program.
- * Connects to the database, logs in the user, and starts the menu for the user's role.
+ * Connects to the database, brings the schema up to date, logs in the user,
+ * and starts the menu for the user's role.
  */
 public class Main {
 
@@ -23,8 +31,21 @@ public class Main {
     public static void main(String[] args) {
         boolean running = true;
 
+        CacheInvalidationBus bus = null;
+        ConnectionWarmer warmer = null;
+        OutboxSender outbox = null;
+
         try {
-            DatabaseConnection.connect();
+            Connection conn = DatabaseConnection.connect();
+            SchemaMigrator.migrateIfEnabled(conn);
+            try {
+                QueryPlanAdvisor.checkIfEnabled(conn);
+            } catch (SQLException e) {
+                System.out.println("Query plan check skipped: " + e.getMessage());
+            }
+            warmer = ConnectionWarmer.startIfEnabled(conn);
+            bus = CacheInvalidationBus.startIfEnabled();
+            outbox = OutboxSender.startIfEnabled();
             Scanner in = new Scanner(System.in);
 
             while (running) {
@@ -75,6 +96,11 @@ public class Main {
             System.err.println("Fatal error: " + t.getMessage());
             t.printStackTrace();
         } finally {
+            try {
+                if (bus != null) bus.close();
+            } catch (Exception ignore) {}
+            if (warmer != null) warmer.close();
+            if (outbox != null) outbox.close();
             try {
                 DatabaseConnection.disconnect();
             } catch (Exception ignore) {}
@@ -1,12 +1,15 @@
 package com.library.app;
 
-import com.library.model.Borrowing;
+import com.library.model.BorrowedItem;
+import com.library.model.FacetedSearchResult;
 import com.library.model.Fine;
 import com.library.model.Media;
 import com.library.service.FineSummary;
 import com.library.service.UserService;
 import com.library.util.DisplayPrinter;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Scanner;
 
@@ -14,6 +17,9 @@ import java.util.Scanner;
  * Command-line menu for normal users.
  */
 public class UserCLI {
+    /** Number of search results shown per page. */
+    private static final int SEARCH_PAGE_SIZE = 20;
+
     private final Scanner in;
     private final UserService user;
 
@@ -73,7 +79,8 @@ public class UserCLI {
     }
 
     /**
-     * Reads search input and prints matching media.
+     * Reads search input and prints the counts and the best matches.
+     * When there are more matches, the user can page through all of them.
      *
      * @throws Exception if a service error happens
      */
@@ -81,11 +88,47 @@ public class UserCLI {
         MenuPrinter.title("Search Media");
         String type = InputHelper.readNonEmpty(in, "Media Type (book/cd/journal/media): ");
         String keyword = InputHelper.readNonEmpty(in, "Keyword: ");
-        List<Media> results = user.searchMedia(keyword, type);
-        DisplayPrinter.printMediaList(results);
+        FacetedSearchResult results = user.facetedSearch(keyword, type, SEARCH_PAGE_SIZE);
+        DisplayPrinter.printFacetedResult(results);
+        if (results.getPage().size() < results.getTotal()) {
+            browseMatches(keyword, type);
+        }
         InputHelper.pressEnterToContinue(in);
     }
 
+    /**
+     * Pages through all matches of a search in id order, forward and back.
+     * Pages are read with keyset pagination; the start of every page passed
+     * is kept so the previous page can be read again.
+     *
+     * @param keyword text to match
+     * @param type media type or "media" for all
+     * @throws Exception if a service error happens
+     */
+    private void browseMatches(String keyword, String type) throws Exception {
+        Deque<Integer> previous = new ArrayDeque<>();
+        List<Media> page = null;
+        int afterId = 0;
+        boolean more = true;
+        while (true) {
+            int move = InputHelper.readPageMove(in, !previous.isEmpty(), more);
+            if (move == 0) return;
+            if (move > 0) {
+                if (page != null) {
+                    previous.push(afterId);
+                    afterId = page.get(page.size() - 1).getId();
+                }
+            } else {
+                afterId = previous.pop();
+            }
+            page = user.searchMediaPage(keyword, type, afterId, SEARCH_PAGE_SIZE + 1);
+            more = page.size() > SEARCH_PAGE_SIZE;
+            if (more) page = page.subList(0, SEARCH_PAGE_SIZE);
+            System.out.println("All matches by id, page " + (previous.size() + 1) + ":");
+            DisplayPrinter.printMediaList(page);
+        }
+    }
+
     /**
      * Reads a media id and tries to borrow it for the user.
      *
@@ -106,8 +149,8 @@ public class UserCLI {
      */
     private void returnMediaFlow() throws Exception {
         MenuPrinter.title("Return Media ----\n---- Borrowed Media");
-        List<Borrowing> borrowings = user.findBorrowings(user.getLoggedUser().getUserId());
-        DisplayPrinter.printBorrowedMedia(user.getUserConnection(), borrowings);
+        List<BorrowedItem> items = user.findBorrowedItems(user.getLoggedUser().getUserId());
+        DisplayPrinter.printBorrowedMedia(items);
         int mediaId = InputHelper.readInt(in, "Media ID: ", 1, Integer.MAX_VALUE);
         boolean ok = user.returnMedia(mediaId);
         System.out.println(ok ? "Returned successfully." : "Could not return.");
@@ -1,10 +1,18 @@
 package com.library.dao;
 
+import com.library.model.Book;
+import com.library.model.BorrowedItem;
 import com.library.model.Borrowing;
-import com.library.model.Media;
+import com.library.model.CD;
+import com.library.model.Journal;
+import com.library.model.ReminderDigest;
+import com.library.model.User;
+import com.library.util.AppConfig;
+import com.library.util.RetryPolicy;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.time.LocalDate;
 
@@ -15,6 +23,110 @@ public class BorrowingDAO {
 
     private final MediaDAO mediaDAO = new MediaDAO();
 
+    /** Borrowings that are past due or already marked overdue. */
+    static final String OVERDUE_SQL = "SELECT * FROM borrowings " +
+            "WHERE (status = 'borrowed' AND due_date < CURRENT_DATE) " +
+            "OR (status = 'overdue')";
+
+    /** Users with overdue borrowings, their email address, and how many are overdue. */
+    static final String OVERDUE_RECIPIENTS_SQL = "SELECT u.user_id, u.username, u.email, COUNT(*) AS overdue " +
+            "FROM borrowings b JOIN users u ON u.user_id = b.user_id " +
+            "WHERE (b.status = 'borrowed' AND b.due_date < CURRENT_DATE) " +
+            "OR (b.status = 'overdue') " +
+            "GROUP BY u.user_id, u.username, u.email";
+
+    /**
+     * Users with overdue borrowings and, per user in due date order, the titles,
+     * due dates, and unpaid fines of those borrowings. Users who were sent a
+     * reminder through the outbox within the given number of hours are left out.
+     */
+    static final String OVERDUE_DIGESTS_SQL = "SELECT u.user_id, u.username, u.email, " +
+            "array_agg(m.title ORDER BY b.due_date, b.borrow_id) AS titles, " +
+            "array_agg(b.due_date ORDER BY b.due_date, b.borrow_id) AS due_dates, " +
+            "array_agg(COALESCE(f.amount, 0) ORDER BY b.due_date, b.borrow_id) AS fines " +
+            "FROM borrowings b JOIN users u ON u.user_id = b.user_id " +
+            "JOIN media m ON m.media_id = b.media_id " +
+            "LEFT JOIN fines f ON f.borrow_id = b.borrow_id AND NOT f.paid " +
+            "WHERE ((b.status = 'borrowed' AND b.due_date < CURRENT_DATE) OR (b.status = 'overdue')) " +
+            "AND NOT EXISTS (SELECT 1 FROM reminder_log r " +
+            "WHERE r.user_id = u.user_id AND r.subject = ? " +
+            "AND r.sent_at >= CURRENT_TIMESTAMP - make_interval(hours => ?)) " +
+            "GROUP BY u.user_id, u.username, u.email";
+
+    /** All borrowings of a user. */
+    static final String BY_USER_SQL = "SELECT * FROM borrowings WHERE user_id = ?";
+
+    /** Unreturned borrowings of a user with their media. */
+    static final String BORROWED_ITEMS_SQL = "SELECT b.borrow_id, b.media_id, b.due_date, b.status, m.title, m.type " +
+            "FROM borrowings b JOIN media m ON m.media_id = b.media_id " +
+            "WHERE b.user_id = ? AND b.status <> 'returned' " +
+            "ORDER BY b.due_date, b.borrow_id";
+
+    /** The active borrowing of one item by a user. */
+    static final String ACTIVE_BORROWING_SQL = "SELECT borrow_id, status, due_date FROM borrowings " +
+            "WHERE user_id = ? AND media_id = ? AND (status = 'borrowed' OR status = 'overdue')";
+
+    /** Whether a user has any overdue borrowing. */
+    static final String HAS_OVERDUE_SQL = "SELECT 1 FROM borrowings " +
+            "WHERE user_id = ? AND (" +
+            "    (status = 'borrowed' AND due_date < CURRENT_DATE) " +
+            "    OR status = 'overdue'" +
+            ") LIMIT 1";
+
+    /**
+     * Receives overdue borrowings one at a time.
+     */
+    public interface OverdueHandler {
+        /**
+         * @param b overdue borrowing
+         * @throws Exception if handling the borrowing fails
+         */
+        void handle(Borrowing b) throws Exception;
+    }
+
+    /**
+     * Receives users with overdue borrowings one at a time.
+     */
+    public interface RecipientHandler {
+        /**
+         * @param user user id, username, and email
+         * @param overdue number of overdue borrowings of the user
+         * @throws Exception if handling the user fails
+         */
+        void handle(User user, int overdue) throws Exception;
+    }
+
+    /**
+     * Receives reminder digests one at a time.
+     */
+    public interface DigestHandler {
+        /**
+         * @param digest overdue items of one user
+         * @throws Exception if handling the digest fails
+         */
+        void handle(ReminderDigest digest) throws Exception;
+    }
+
+    /** A user and the number of overdue borrowings, as read by the recipients query. */
+    private static final class Recipient {
+        final User user;
+        final int overdue;
+
+        Recipient(User user, int overdue) {
+            this.user = user;
+            this.overdue = overdue;
+        }
+    }
+
+    /** Carries a checked exception from a handler through the cursor loop. */
+    private static final class HandlerFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        HandlerFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
     /**
      * Returns all overdue borrowings.
      * A borrowing is overdue if the due date has passed or if its status is already marked overdue.
@@ -25,29 +137,193 @@ public class BorrowingDAO {
      */
     public List<Borrowing> findOverdueMedia(Connection conn) throws Exception {
         List<Borrowing> list = new ArrayList<>();
-        String sql = "SELECT * FROM borrowings " +
-                     "WHERE (status = 'borrowed' AND due_date < CURRENT_DATE) " +
-                     "OR (status = 'overdue')";
 
         try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(OVERDUE_SQL)) {
 
             while (rs.next()) {
-                Borrowing b = new Borrowing();
-                b.setBorrowId(rs.getInt("borrow_id"));
-                b.setUserId(rs.getInt("user_id"));
-                b.setMediaId(rs.getInt("media_id"));
-                b.setBorrowDate(rs.getDate("borrow_date").toLocalDate());
-                b.setDueDate(rs.getDate("due_date").toLocalDate());
-                Date ret = rs.getDate("return_date");
-                if (ret != null) b.setReturnDate(ret.toLocalDate());
-                b.setStatus(rs.getString("status"));
-                list.add(b);
+                list.add(mapBorrowing(rs));
             }
         }
         return list;
     }
 
+    /**
+     * Streams overdue borrowings to a handler through a server-side cursor,
+     * ordered by user so that all borrowings of a user arrive together.
+     * Rows are fetched in batches of overdue.fetch.size, so the first borrowing
+     * is handled before the whole backlog is read and memory stays bounded.
+     * If the connection is in auto-commit mode, the cursor and any writes made
+     * by the handler run in one transaction that is rolled back on failure.
+     *
+     * @param conn active database connection
+     * @param handler receives each overdue borrowing
+     * @return number of overdue borrowings streamed
+     * @throws Exception if a database problem occurs or the handler fails
+     */
+    public int streamOverdueMedia(Connection conn, OverdueHandler handler) throws Exception {
+        int fetchSize = AppConfig.getInt("overdue.fetch.size", CursorReader.DEFAULT_FETCH_SIZE);
+        try {
+            return CursorReader.stream(conn, OVERDUE_SQL + " ORDER BY user_id, borrow_id", fetchSize,
+                    ps -> { }, BorrowingDAO::mapBorrowing, b -> {
+                        try {
+                            handler.handle(b);
+                        } catch (RuntimeException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new HandlerFailure(e);
+                        }
+                    });
+        } catch (HandlerFailure e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Streams every user with overdue borrowings, with the email address and
+     * the number of overdue borrowings, ordered by user id.
+     * Grouping and the user lookup happen in the database, so a reminder run
+     * reads all recipients with one query instead of one lookup per user.
+     * Rows are fetched in batches of overdue.fetch.size.
+     *
+     * @param conn active database connection
+     * @param handler receives each recipient
+     * @return number of recipients streamed
+     * @throws Exception if a database problem occurs or the handler fails
+     */
+    public int streamOverdueRecipients(Connection conn, RecipientHandler handler) throws Exception {
+        int fetchSize = AppConfig.getInt("overdue.fetch.size", CursorReader.DEFAULT_FETCH_SIZE);
+        try {
+            return CursorReader.stream(conn, OVERDUE_RECIPIENTS_SQL + " ORDER BY u.user_id", fetchSize,
+                    ps -> { }, BorrowingDAO::mapRecipient, r -> {
+                        try {
+                            handler.handle(r.user, r.overdue);
+                        } catch (RuntimeException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new HandlerFailure(e);
+                        }
+                    });
+        } catch (HandlerFailure e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Streams a reminder digest for every user with overdue borrowings,
+     * ordered by user id. Titles, due dates, and unpaid fines come from the
+     * same grouped query, so building all digests is a single query.
+     *
+     * @param conn active database connection
+     * @param subject subject the reminders were recorded with
+     * @param windowHours users reminded within this many hours are skipped, 0 skips nobody
+     * @param handler receives each digest
+     * @return number of digests streamed
+     * @throws Exception if a database problem occurs or the handler fails
+     */
+    public int streamOverdueDigests(Connection conn, String subject, int windowHours, DigestHandler handler)
+            throws Exception {
+        int fetchSize = AppConfig.getInt("overdue.fetch.size", CursorReader.DEFAULT_FETCH_SIZE);
+        try {
+            return CursorReader.stream(conn, OVERDUE_DIGESTS_SQL + " ORDER BY u.user_id", fetchSize,
+                    ps -> {
+                        ps.setString(1, subject);
+                        ps.setInt(2, Math.max(0, windowHours));
+                    }, BorrowingDAO::mapDigest, d -> {
+                        try {
+                            handler.handle(d);
+                        } catch (RuntimeException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new HandlerFailure(e);
+                        }
+                    });
+        } catch (HandlerFailure e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Records that users were reminded, so digests within the reminder
+     * window skip them whether the reminder went out directly or through
+     * the outbox. One statement for all users.
+     *
+     * @param conn active database connection
+     * @param userIds users who were reminded
+     * @param subject subject of the reminder messages
+     * @throws Exception if a database problem occurs
+     */
+    public void recordReminders(Connection conn, Collection<Integer> userIds, String subject) throws Exception {
+        if (userIds == null || userIds.isEmpty()) return;
+        String sql = "INSERT INTO reminder_log (user_id, subject) SELECT unnest(?), ?";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            ps.setArray(1, conn.createArrayOf("integer", userIds.toArray()));
+            ps.setString(2, subject);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Maps the current row of the digests query.
+     *
+     * @param rs result set positioned on a row
+     * @return digest
+     * @throws SQLException if a read fails
+     */
+    private static ReminderDigest mapDigest(ResultSet rs) throws SQLException {
+        User u = new User();
+        u.setUserId(rs.getInt(1));
+        u.setUsername(rs.getString(2));
+        u.setEmail(rs.getString(3));
+        ReminderDigest digest = new ReminderDigest(u);
+
+        Object[] titles = (Object[]) rs.getArray(4).getArray();
+        Object[] dueDates = (Object[]) rs.getArray(5).getArray();
+        Object[] fines = (Object[]) rs.getArray(6).getArray();
+        for (int i = 0; i < titles.length; i++) {
+            Date due = (Date) dueDates[i];
+            Number fine = (Number) fines[i];
+            digest.getItems().add(new ReminderDigest.Item((String) titles[i],
+                    due == null ? null : due.toLocalDate(), fine == null ? 0 : fine.doubleValue()));
+        }
+        return digest;
+    }
+
+    /**
+     * Maps the current row of the recipients query.
+     *
+     * @param rs result set positioned on a row
+     * @return recipient
+     * @throws SQLException if a read fails
+     */
+    private static Recipient mapRecipient(ResultSet rs) throws SQLException {
+        User u = new User();
+        u.setUserId(rs.getInt(1));
+        u.setUsername(rs.getString(2));
+        u.setEmail(rs.getString(3));
+        return new Recipient(u, rs.getInt(4));
+    }
+
+    /**
+     * Maps the current row of a borrowings query.
+     *
+     * @param rs result set positioned on a row
+     * @return borrowing
+     * @throws SQLException if a read fails
+     */
+    private static Borrowing mapBorrowing(ResultSet rs) throws SQLException {
+        Borrowing b = new Borrowing();
+        b.setBorrowId(rs.getInt("borrow_id"));
+        b.setUserId(rs.getInt("user_id"));
+        b.setMediaId(rs.getInt("media_id"));
+        b.setBorrowDate(rs.getDate("borrow_date").toLocalDate());
+        b.setDueDate(rs.getDate("due_date").toLocalDate());
+        Date ret = rs.getDate("return_date");
+        if (ret != null) b.setReturnDate(ret.toLocalDate());
+        b.setStatus(rs.getString("status"));
+        return b;
+    }
+
     /**
      * Returns all borrowings for a specific user.
      *
@@ -58,9 +334,8 @@ public class BorrowingDAO {
      */
     public List<Borrowing> findBorrowings(Connection conn, int userId) throws Exception {
         List<Borrowing> list = new ArrayList<>();
-        String sql = "SELECT * FROM borrowings WHERE user_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, BY_USER_SQL)) {
             stmt.setInt(1, userId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -77,6 +352,39 @@ public class BorrowingDAO {
         return list;
     }
 
+    /**
+     * Returns the items a user has not returned yet, with their titles.
+     * Reads borrowings and media in one joined query, earliest due date first.
+     *
+     * @param conn active database connection
+     * @param userId user identifier
+     * @return list of borrowed items
+     * @throws Exception if a database problem occurs
+     */
+    public List<BorrowedItem> findBorrowedItems(Connection conn, int userId) throws Exception {
+        return RetryPolicy.read(conn, () -> {
+            List<BorrowedItem> list = new ArrayList<>();
+
+            try (PreparedStatement stmt = StatementCache.prepare(conn, BORROWED_ITEMS_SQL)) {
+                stmt.setInt(1, userId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        BorrowedItem item = new BorrowedItem();
+                        item.setBorrowId(rs.getInt("borrow_id"));
+                        item.setMediaId(rs.getInt("media_id"));
+                        Date due = rs.getDate("due_date");
+                        if (due != null) item.setDueDate(due.toLocalDate());
+                        item.setStatus(rs.getString("status"));
+                        item.setTitle(rs.getString("title"));
+                        item.setType(rs.getString("type"));
+                        list.add(item);
+                    }
+                }
+            }
+            return list;
+        });
+    }
+
     /**
      * Finds an active borrowing for the user and media.
      * Active means status borrowed or overdue.
@@ -88,10 +396,8 @@ public class BorrowingDAO {
      * @throws Exception if a database problem occurs
      */
     public Borrowing findActiveBorrowing(Connection conn, int userId, int mediaId) throws Exception {
-        String sql = "SELECT borrow_id, status, due_date FROM borrowings " +
-                     "WHERE user_id = ? AND media_id = ? AND (status = 'borrowed' OR status = 'overdue')";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, ACTIVE_BORROWING_SQL)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, mediaId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -120,6 +426,9 @@ public class BorrowingDAO {
      * @throws Exception if a database problem occurs
      */
     public boolean returnMedia(Connection conn, int userId, int mediaId) throws Exception {
+        if (ServerRoutines.enabled()) {
+            return returnWithRoutine(conn, userId, mediaId);
+        }
         conn.setAutoCommit(false);
         try {
             Borrowing borrowing = findActiveBorrowing(conn, userId, mediaId);
@@ -139,7 +448,7 @@ public class BorrowingDAO {
             }
 
             String updateSql = "UPDATE borrowings SET status = 'returned', return_date = CURRENT_DATE WHERE borrow_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+            try (PreparedStatement stmt = StatementCache.prepare(conn, updateSql)) {
                 stmt.setInt(1, borrowing.getBorrowId());
                 stmt.executeUpdate();
             }
@@ -152,7 +461,10 @@ public class BorrowingDAO {
             return true;
         } catch (Exception e) {
             conn.rollback();
+            mediaDAO.invalidate(conn, mediaId);
             throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
     }
 
@@ -166,19 +478,19 @@ public class BorrowingDAO {
      * @throws Exception if a database problem occurs
      */
     public boolean borrowMedia(Connection conn, int userId, int mediaId) throws Exception {
+        if (ServerRoutines.enabled()) {
+            return borrowWithRoutine(conn, userId, mediaId);
+        }
         conn.setAutoCommit(false);
         try {
-            Media media = mediaDAO.findById(conn, mediaId);
-            if (media == null) {
-                System.out.println("Media not found.");
-                return false;
-            }
-            if (!media.isAvailable()) {
-                System.out.println("Media is already borrowed.");
+            String type = claimMedia(conn, mediaId);
+            if (type == null) {
+                conn.rollback();
+                System.out.println(mediaExists(conn, mediaId) ? "Media is already borrowed." : "Media not found.");
                 return false;
             }
 
-            int borrowDays = media.getBorrowDurationDays();
+            int borrowDays = MediaDAO.newMedia(type).getBorrowDurationDays();
             
             LocalDate borrowDate = LocalDate.now();
             LocalDate dueDate = borrowDate.plusDays(borrowDays);
@@ -187,7 +499,7 @@ public class BorrowingDAO {
                     "INSERT INTO borrowings (user_id, media_id, borrow_date, due_date, status) " +
                     "VALUES (?, ?, ?, ?, 'borrowed')";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
                 stmt.setInt(1, userId);
                 stmt.setInt(2, mediaId);
                 stmt.setDate(3, Date.valueOf(borrowDate));
@@ -195,15 +507,122 @@ public class BorrowingDAO {
                 stmt.executeUpdate();
             }
 
-            if (!mediaDAO.setMediaStatus(conn, mediaId, false)) {
-                throw new SQLException("Failed to update media availability");
-            }
-
+            mediaDAO.statusChanged(conn, mediaId, false);
             conn.commit();
             return true;
         } catch (Exception e) {
             conn.rollback();
+            mediaDAO.invalidate(conn, mediaId);
             throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Marks media as borrowed if it is available, deciding on the row in the
+     * database rather than on any cached copy, so two sessions cannot both
+     * borrow the same item.
+     *
+     * @param conn active database connection, inside the borrow transaction
+     * @param mediaId media identifier
+     * @return media type if the item was claimed, null if it is missing or borrowed
+     * @throws SQLException if a database error occurs
+     */
+    private static String claimMedia(Connection conn, int mediaId) throws SQLException {
+        String sql = "UPDATE media SET available = FALSE WHERE media_id = ? AND available RETURNING type";
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
+            stmt.setInt(1, mediaId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Checks in the database whether a media item exists.
+     *
+     * @param conn active database connection
+     * @param mediaId media identifier
+     * @return true if the item exists
+     * @throws SQLException if a database error occurs
+     */
+    private static boolean mediaExists(Connection conn, int mediaId) throws SQLException {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, "SELECT 1 FROM media WHERE media_id = ?")) {
+            stmt.setInt(1, mediaId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Returns media with one call to library_return.
+     *
+     * @param conn active database connection
+     * @param userId user identifier
+     * @param mediaId media identifier
+     * @return true if returned, false otherwise
+     * @throws Exception if a database problem occurs
+     */
+    private boolean returnWithRoutine(Connection conn, int userId, int mediaId) throws Exception {
+        int status;
+        try {
+            status = ServerRoutines.call(conn, ServerRoutines.RETURN, 1, ps -> {
+                ps.setInt(1, userId);
+                ps.setInt(2, mediaId);
+            })[0];
+        } catch (SQLException e) {
+            mediaDAO.invalidate(conn, mediaId);
+            throw e;
+        }
+        switch (status) {
+            case ServerRoutines.OK:
+                mediaDAO.statusChanged(conn, mediaId, true);
+                return true;
+            case 1:
+                System.out.println("No active borrowing found for this media.");
+                return false;
+            default:
+                System.out.println("Media is overdue and fine is unpaid.");
+                return false;
+        }
+    }
+
+    /**
+     * Borrows media with one call to library_borrow.
+     * The loan periods are passed in, so they stay defined by the media classes.
+     *
+     * @param conn active database connection
+     * @param userId user identifier
+     * @param mediaId media identifier
+     * @return true if borrowed, false otherwise
+     * @throws Exception if a database problem occurs
+     */
+    private boolean borrowWithRoutine(Connection conn, int userId, int mediaId) throws Exception {
+        int status;
+        try {
+            status = ServerRoutines.call(conn, ServerRoutines.BORROW, 1, ps -> {
+                ps.setInt(1, userId);
+                ps.setInt(2, mediaId);
+                ps.setInt(3, new Book().getBorrowDurationDays());
+                ps.setInt(4, new CD().getBorrowDurationDays());
+                ps.setInt(5, new Journal().getBorrowDurationDays());
+            })[0];
+        } catch (SQLException e) {
+            mediaDAO.invalidate(conn, mediaId);
+            throw e;
+        }
+        switch (status) {
+            case ServerRoutines.OK:
+                mediaDAO.statusChanged(conn, mediaId, false);
+                return true;
+            case 1:
+                System.out.println("Media not found.");
+                return false;
+            default:
+                System.out.println("Media is already borrowed.");
+                return false;
         }
     }
 
@@ -222,7 +641,7 @@ public class BorrowingDAO {
                 "JOIN fines f ON b.borrow_id = f.borrow_id " +
                 "WHERE f.fine_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setInt(1, fineId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -257,7 +676,7 @@ public class BorrowingDAO {
     public void updateBorrowingStatus(Connection conn, int borrowingId, String newStatus) throws Exception {
         String sql = "UPDATE borrowings SET status = ? WHERE borrow_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setString(1, newStatus);
             stmt.setInt(2, borrowingId);
             stmt.executeUpdate();
@@ -273,14 +692,8 @@ public class BorrowingDAO {
      * @throws Exception if a database problem occurs
      */
     public boolean hasOverdueForUser(Connection conn, int userId) throws Exception {
-        String sql =
-            "SELECT 1 FROM borrowings " +
-            "WHERE user_id = ? AND (" +
-            "    (status = 'borrowed' AND due_date < CURRENT_DATE) " +
-            "    OR status = 'overdue'" +
-            ") LIMIT 1";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = StatementCache.prepare(conn, HAS_OVERDUE_SQL)) {
             ps.setInt(1, userId);
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next();
@@ -0,0 +1,287 @@
+package com.library.dao;
+
+import com.library.util.AppConfig;
+import com.library.util.DatabaseConnection;
+import com.library.util.RetryPolicy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Spreads cache invalidations between application instances with PostgreSQL LISTEN/NOTIFY.
+ * Writers publish an event on their own connection, so Postgres only delivers it
+ * if their transaction commits. A listener on a dedicated connection evicts the
+ * matching entries from the local caches and ignores events from this instance.
+ * If the listening connection fails, events may have been missed, so the local
+ * caches are cleared and the listener reconnects with growing pauses
+ * (cache.bus.reconnect.base.ms up to cache.bus.reconnect.max.ms), clearing
+ * them again once it listens again.
+ * Nothing is published unless cache.bus.enabled is true.
+ */
+public final class CacheInvalidationBus implements AutoCloseable {
+
+    /** Notification channel shared by all instances. */
+    static final String CHANNEL = "library_cache";
+
+    /** Event kind: the availability of one media item changed. */
+    static final String MEDIA = "media";
+
+    /** Event kind: a media item was added or removed. */
+    static final String CATALOG = "catalog";
+
+    /** Event kind: a user or the user's balance changed. */
+    static final String USER = "user";
+
+    /** Identifies this instance so its own events are skipped. */
+    static final String NODE_ID = UUID.randomUUID().toString();
+
+    private final RetryPolicy.SqlCall<Connection> reopen;
+    private final Object wake = new Object();
+    private final Thread thread;
+    private volatile Connection conn;
+    private volatile boolean running = true;
+    private volatile int reconnects;
+
+    /**
+     * Creates a listener on a connection that already runs LISTEN.
+     *
+     * @param conn dedicated connection
+     * @param reopen opens a new dedicated connection after a failure, or null to stop instead
+     */
+    private CacheInvalidationBus(Connection conn, RetryPolicy.SqlCall<Connection> reopen) {
+        this.conn = conn;
+        this.reopen = reopen;
+        this.thread = new Thread(this::run, "cache-invalidation-listener");
+        this.thread.setDaemon(true);
+    }
+
+    /** @return true if events are published and received */
+    static boolean isEnabled() {
+        return AppConfig.getBoolean("cache.bus.enabled", false);
+    }
+
+    /**
+     * Publishes a change event on the writer's connection.
+     *
+     * @param conn connection that made the change
+     * @param kind event kind
+     * @param id id of the changed row, 0 if unknown
+     * @param flag extra state, such as the new availability
+     * @throws SQLException if the notification fails
+     */
+    static void publish(Connection conn, String kind, int id, boolean flag) throws SQLException {
+        if (!isEnabled()) return;
+        try (PreparedStatement ps = StatementCache.prepare(conn, "SELECT pg_notify(?, ?)")) {
+            ps.setString(1, CHANNEL);
+            ps.setString(2, NODE_ID + "|" + kind + "|" + id + "|" + (flag ? 1 : 0));
+            ps.execute();
+        }
+    }
+
+    /**
+     * Applies one received event to the local caches.
+     *
+     * @param payload notification payload
+     * @return true if the event came from another instance and was applied
+     */
+    static boolean apply(String payload) {
+        String[] parts = payload == null ? new String[0] : payload.split("\\|");
+        if (parts.length != 4 || parts[0].equals(NODE_ID)) return false;
+
+        int id;
+        try {
+            id = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        boolean flag = parts[3].equals("1");
+
+        switch (parts[1]) {
+            case MEDIA:
+                MediaDAO.evictLocal(id, flag);
+                return true;
+            case CATALOG:
+                MediaDAO.evictLocalContent(id);
+                return true;
+            case USER:
+                UserDAO.evictLocal(id);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Starts a listener on a new dedicated connection if the bus is enabled.
+     *
+     * @return running listener, or null if the bus is disabled
+     * @throws Exception if the connection or LISTEN fails
+     */
+    public static CacheInvalidationBus startIfEnabled() throws Exception {
+        if (!isEnabled()) return null;
+        return start(DatabaseConnection.openDedicated(), DatabaseConnection::openDedicated);
+    }
+
+    /**
+     * Starts a listener on a dedicated connection that stops if the connection fails.
+     * The listener owns the connection and closes it in {@link #close()}.
+     *
+     * @param dedicated connection used only for listening
+     * @return running listener
+     * @throws SQLException if LISTEN fails
+     */
+    public static CacheInvalidationBus start(Connection dedicated) throws SQLException {
+        return start(dedicated, null);
+    }
+
+    /**
+     * Starts a listener on a dedicated connection.
+     * The listener owns the connection, and every connection it reopens,
+     * and closes the current one in {@link #close()}.
+     *
+     * @param dedicated connection used only for listening
+     * @param reopen opens a new dedicated connection after a failure, or null to stop instead
+     * @return running listener
+     * @throws SQLException if LISTEN fails
+     */
+    public static CacheInvalidationBus start(Connection dedicated, RetryPolicy.SqlCall<Connection> reopen)
+            throws SQLException {
+        listen(dedicated);
+        CacheInvalidationBus bus = new CacheInvalidationBus(dedicated, reopen);
+        bus.thread.start();
+        return bus;
+    }
+
+    /**
+     * Subscribes a connection to the channel.
+     *
+     * @param c dedicated connection
+     * @throws SQLException if LISTEN fails
+     */
+    private static void listen(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("LISTEN " + CHANNEL);
+        }
+    }
+
+    /**
+     * Waits for notifications and applies them until closed.
+     * If the connection fails, the local caches can no longer be trusted, so
+     * everything is evicted, and again after reconnecting, since events sent
+     * in between were lost. Without a way to reopen, the listener stops.
+     */
+    private void run() {
+        int pollMillis = AppConfig.getInt("cache.bus.poll.ms", 500);
+        while (running) {
+            try {
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notes = pg.getNotifications(pollMillis);
+                    if (notes == null) continue;
+                    for (PGNotification n : notes) {
+                        apply(n.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                System.out.println("Cache invalidation listener lost its connection: " + e.getMessage());
+                evictAll();
+                closeQuietly(conn);
+                if (reopen == null || !reconnect()) return;
+                evictAll();
+            }
+        }
+    }
+
+    /**
+     * Opens and subscribes a new connection, pausing longer after each failure.
+     *
+     * @return true once listening again, false if closed first
+     */
+    private boolean reconnect() {
+        long pause = Math.max(1, AppConfig.getLong("cache.bus.reconnect.base.ms", 500));
+        long maxPause = Math.max(pause, AppConfig.getLong("cache.bus.reconnect.max.ms", 30_000));
+        while (running) {
+            synchronized (wake) {
+                try {
+                    wake.wait(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (!running) return false;
+            Connection c = null;
+            try {
+                c = reopen.call();
+                listen(c);
+                conn = c;
+                reconnects++;
+                if (!running) closeQuietly(c);
+                return running;
+            } catch (Exception e) {
+                closeQuietly(c);
+                System.out.println("Cache invalidation listener could not reconnect: " + e.getMessage());
+                pause = Math.min(pause * 2, maxPause);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops all cached media and users of this instance.
+     */
+    private static void evictAll() {
+        MediaDAO.evictAllLocal();
+        UserDAO.evictAllLocal();
+    }
+
+    /**
+     * Closes a connection, ignoring failures.
+     *
+     * @param c connection, may be null
+     */
+    private static void closeQuietly(Connection c) {
+        if (c == null) return;
+        try {
+            DatabaseConnection.closeDedicated(c);
+        } catch (SQLException ignore) {
+            // the connection is already unusable
+        }
+    }
+
+    /** @return true while the listener thread is alive */
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    /** @return number of times the listener reconnected after a failure */
+    public int getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * Stops the listener and closes its connection.
+     *
+     * @throws SQLException if closing the connection fails
+     */
+    @Override
+    public void close() throws SQLException {
+        running = false;
+        synchronized (wake) {
+            wake.notifyAll();
+        }
+        try {
+            thread.join(AppConfig.getInt("cache.bus.poll.ms", 500) * 2L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            DatabaseConnection.closeDedicated(conn);
+        }
+    }
+}
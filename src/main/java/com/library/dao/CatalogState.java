@@ -0,0 +1,72 @@
+package com.library.dao;
+
+import com.library.model.Media;
+import com.library.util.AppConfig;
+import com.library.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory state about the media catalog for one connection.
+ * The version goes up on every catalog write, which makes older
+ * cached search results unreachable. The content version only goes up
+ * when items are added or removed.
+ */
+class CatalogState {
+
+    /** Catalog version, bumped by add, remove, and status changes. */
+    private final AtomicLong version = new AtomicLong();
+
+    /** Content version, bumped by add and remove only. */
+    private final AtomicLong contentVersion = new AtomicLong();
+
+    /** Search results keyed by version, type, and keyword. */
+    final LruCache<String, List<Media>> searches = new LruCache<>(
+            AppConfig.getInt("cache.search.size", 256),
+            AppConfig.getLong("cache.search.ttl.ms", 60_000));
+
+    /** Media items loaded by id, evicted on writes. */
+    final LruCache<Integer, Media> items = new LruCache<>(
+            AppConfig.getInt("cache.media.size", 1024));
+
+    /** Availability and type bitmaps keyed by media id. */
+    final MediaBitmapIndex bitmaps = new MediaBitmapIndex(
+            AppConfig.getLong("cache.bitmap.ttl.ms", 60_000));
+
+    /** @return current catalog version */
+    long version() {
+        return version.get();
+    }
+
+    /** @return current content version */
+    long contentVersion() {
+        return contentVersion.get();
+    }
+
+    /**
+     * Marks the catalog as changed.
+     */
+    void bump() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Marks the set of catalog items as changed.
+     */
+    void bumpContent() {
+        contentVersion.incrementAndGet();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Builds the search cache key for a normalized query.
+     *
+     * @param keyword normalized keyword
+     * @param type normalized type
+     * @return key that includes the current version
+     */
+    String searchKey(String keyword, String type) {
+        return version.get() + "|" + type + "|" + keyword;
+    }
+}
@@ -0,0 +1,52 @@
+package com.library.dao;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Explicit column list of a query.
+ * Queries select exactly these columns in this order, so a mapper can read
+ * each column by a position computed once instead of looking it up by name
+ * on every row.
+ */
+final class Columns {
+
+    private final List<String> names;
+
+    /**
+     * @param names column names in select order
+     */
+    Columns(String... names) {
+        this.names = Arrays.asList(names);
+    }
+
+    /**
+     * Returns the select list.
+     *
+     * @return comma separated column names
+     */
+    String list() {
+        return String.join(", ", names);
+    }
+
+    /**
+     * Returns the select list with a table alias on every column.
+     *
+     * @param alias table alias
+     * @return comma separated, qualified column names
+     */
+    String list(String alias) {
+        return names.stream().map(n -> alias + "." + n).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Returns the result set position of a column.
+     *
+     * @param name column name
+     * @return 1-based position, or 0 if the column is not selected
+     */
+    int index(String name) {
+        return names.indexOf(name) + 1;
+    }
+}
@@ -0,0 +1,88 @@
+package com.library.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Runs a query through a server-side cursor and hands each row to a consumer.
+ * The PostgreSQL driver only fetches rows in batches when auto-commit is off
+ * and a fetch size is set; otherwise it buffers the whole result first.
+ */
+final class CursorReader {
+
+    /** Default number of rows fetched per round trip. */
+    static final int DEFAULT_FETCH_SIZE = 500;
+
+    /**
+     * Sets the parameters of a statement.
+     */
+    interface Binder {
+        /**
+         * @param ps statement to bind
+         * @throws SQLException if binding fails
+         */
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /**
+     * Creates an object from the current row.
+     *
+     * @param <T> row type
+     */
+    interface Mapper<T> {
+        /**
+         * @param rs result set positioned on a row
+         * @return mapped object
+         * @throws SQLException if a read fails
+         */
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private CursorReader() {}
+
+    /**
+     * Streams the rows of a query to a consumer.
+     * If the connection is in auto-commit mode, a read transaction is opened
+     * for the cursor and closed afterwards; otherwise the caller's
+     * transaction is used and left open.
+     *
+     * @param conn active database connection
+     * @param sql query text
+     * @param fetchSize rows fetched per round trip
+     * @param binder sets the query parameters
+     * @param mapper maps a row to an object
+     * @param consumer receives each object in order
+     * @param <T> row type
+     * @return number of rows read
+     * @throws SQLException if a database error occurs
+     */
+    static <T> int stream(Connection conn, String sql, int fetchSize, Binder binder,
+                          Mapper<T> mapper, Consumer<? super T> consumer) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) conn.setAutoCommit(false);
+        int count = 0;
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(fetchSize);
+                binder.bind(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(mapper.map(rs));
+                        count++;
+                    }
+                }
+            }
+            if (autoCommit) conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) conn.rollback();
+            throw e;
+        } finally {
+            if (autoCommit) conn.setAutoCommit(true);
+        }
+        return count;
+    }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 
 import com.library.model.Borrowing;
 import com.library.model.Fine;
+import com.library.util.RetryPolicy;
 
 /**
  * Handles database operations for fines.
@@ -16,6 +17,15 @@ import com.library.model.Fine;
  */
 public class FineDAO {
 
+    /** Paid flag of the fine of a borrowing. */
+    static final String PAID_BY_BORROWING_SQL = "SELECT paid FROM fines WHERE borrow_id = ?";
+
+    /** All fines of a user. */
+    static final String BY_USER_SQL = "SELECT * FROM fines WHERE user_id = ?";
+
+    /** The fine of a borrowing. */
+    static final String BY_BORROWING_SQL = "SELECT * FROM fines WHERE borrow_id = ?";
+
     /**
      * Creates a new fine for a borrowing.
      *
@@ -28,11 +38,15 @@ public class FineDAO {
      */
     public boolean issueFine(Connection conn, int borrowId, int userId, double amount) throws Exception {
         String sql = "INSERT INTO fines (user_id, borrow_id, amount, paid) VALUES (?, ?, ?, FALSE)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, borrowId);
             stmt.setDouble(3, amount);
-            return stmt.executeUpdate() > 0;
+            boolean issued = stmt.executeUpdate() > 0;
+            if (issued) {
+                CacheInvalidationBus.publish(conn, CacheInvalidationBus.USER, userId, false);
+            }
+            return issued;
         }
     }
 
@@ -48,7 +62,12 @@ public class FineDAO {
      * @throws Exception if a database error occurs
      */
     public boolean payFine(Connection conn, int fineId, int userId, double amount) throws Exception {
+        if (ServerRoutines.enabled()) {
+            return payWithRoutine(conn, fineId, userId, amount);
+        }
         conn.setAutoCommit(false);
+        MediaDAO mediaDAO = new MediaDAO();
+        int returnedMediaId = -1;
         try {
             double fineAmount = getFineAmount(conn, fineId, userId);
             if (fineAmount <= 0) {
@@ -61,7 +80,7 @@ public class FineDAO {
             boolean paid = newAmount <= 0;
 
             String updateSql = "UPDATE fines SET amount = ?, paid = ? WHERE fine_id = ? AND user_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+            try (PreparedStatement stmt = StatementCache.prepare(conn, updateSql)) {
                 stmt.setDouble(1, newAmount);
                 stmt.setBoolean(2, paid);
                 stmt.setInt(3, fineId);
@@ -78,8 +97,8 @@ public class FineDAO {
                 if (b != null) {
                     borrowingDAO.updateBorrowingStatus(conn, b.getBorrowId(), "returned");
 
-                    MediaDAO mediaDAO = new MediaDAO();
-                    mediaDAO.setMediaStatus(conn, b.getMediaId(), paid);
+                    returnedMediaId = b.getMediaId();
+                    mediaDAO.setMediaStatus(conn, returnedMediaId, paid);
                 }
             }
 
@@ -88,12 +107,52 @@ public class FineDAO {
 
         } catch (Exception e) {
             conn.rollback();
+            new UserDAO().invalidate(conn, userId);
+            if (returnedMediaId >= 0) {
+                mediaDAO.invalidate(conn, returnedMediaId);
+            }
             throw e;
         } finally {
             conn.setAutoCommit(true);
         }
     }
 
+    /**
+     * Pays a fine with one call to library_pay_fine.
+     *
+     * @param conn active database connection
+     * @param fineId fine id
+     * @param userId user id
+     * @param amount amount to pay
+     * @return true if the update succeeded
+     * @throws Exception if the fine is not found or a database error occurs
+     */
+    private boolean payWithRoutine(Connection conn, int fineId, int userId, double amount) throws Exception {
+        int[] result;
+        try {
+            result = ServerRoutines.call(conn, ServerRoutines.PAY_FINE, 2, ps -> {
+                ps.setInt(1, fineId);
+                ps.setInt(2, userId);
+                ps.setDouble(3, amount);
+            });
+        } finally {
+            new UserDAO().invalidate(conn, userId);
+        }
+        switch (result[0]) {
+            case ServerRoutines.OK:
+                CacheInvalidationBus.publish(conn, CacheInvalidationBus.USER, userId, false);
+                if (result[1] > 0) {
+                    new MediaDAO().statusChanged(conn, result[1], true);
+                }
+                return true;
+            case 1:
+                throw new SQLException("Fine not found");
+            default:
+                System.out.println("This fine is already paid.");
+                return false;
+        }
+    }
+
     /**
      * Gets the current amount of a fine.
      *
@@ -105,7 +164,7 @@ public class FineDAO {
      */
     public double getFineAmount(Connection conn, int fineId, int userId) throws SQLException {
         String sql = "SELECT amount FROM fines WHERE fine_id = ? AND user_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setInt(1, fineId);
             stmt.setInt(2, userId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -126,8 +185,7 @@ public class FineDAO {
      * @throws Exception if a database error occurs
      */
     public Boolean isPaid(Connection conn, int borrowId) throws Exception {
-        String sql = "SELECT paid FROM fines WHERE borrow_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, PAID_BY_BORROWING_SQL)) {
             stmt.setInt(1, borrowId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) return rs.getBoolean("paid");
@@ -145,25 +203,26 @@ public class FineDAO {
      * @throws Exception if a database error occurs
      */
     public List<Fine> findFines(Connection conn, int userId) throws Exception {
-        List<Fine> fines = new ArrayList<>();
-        String sql = "SELECT * FROM fines WHERE user_id = ?";
+        return RetryPolicy.read(conn, () -> {
+            List<Fine> fines = new ArrayList<>();
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Fine f = new Fine();
-                    f.setId(rs.getInt("fine_id"));
-                    f.setUserId(userId);
-                    f.setBorrowId(rs.getInt("borrow_id"));
-                    f.setAmount(rs.getDouble("amount"));
-                    f.setPaid(rs.getBoolean("paid"));
-                    f.setFineDate(rs.getDate("fine_date").toLocalDate());
-                    fines.add(f);
+            try (PreparedStatement stmt = StatementCache.prepare(conn, BY_USER_SQL)) {
+                stmt.setInt(1, userId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Fine f = new Fine();
+                        f.setId(rs.getInt("fine_id"));
+                        f.setUserId(userId);
+                        f.setBorrowId(rs.getInt("borrow_id"));
+                        f.setAmount(rs.getDouble("amount"));
+                        f.setPaid(rs.getBoolean("paid"));
+                        f.setFineDate(rs.getDate("fine_date").toLocalDate());
+                        fines.add(f);
+                    }
                 }
             }
-        }
-        return fines;
+            return fines;
+        });
     }
 
     /**
@@ -175,8 +234,7 @@ public class FineDAO {
      * @throws Exception if a database error occurs
      */
     public Fine getBorrowingFine(Connection conn, int borrowId) throws Exception {
-        String sql = "SELECT * FROM fines WHERE borrow_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, BY_BORROWING_SQL)) {
             stmt.setInt(1, borrowId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -206,7 +264,7 @@ public class FineDAO {
     public void updateFineBalance(Connection conn, int fineId, double amount) throws Exception {
         String sql = "UPDATE fines SET amount = amount + ? WHERE fine_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setDouble(1, amount);
             stmt.setInt(2, fineId);
             stmt.executeUpdate();
@@ -223,7 +281,7 @@ public class FineDAO {
     public void updateFineDate(Connection conn, int fineId) throws Exception {
         String sql = "UPDATE fines SET fine_date = CURRENT_DATE WHERE fine_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setInt(1, fineId);
             stmt.executeUpdate();
         }
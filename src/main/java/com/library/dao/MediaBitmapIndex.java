@@ -0,0 +1,176 @@
+package com.library.dao;
+
+import com.library.model.FacetedSearchResult;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bitmaps over media ids: one per media type, one for available items,
+ * and one for ids whose availability is known.
+ * Media ids are dense serial keys, so a plain bit set already uses about
+ * one bit per id and needs no extra compression.
+ * Counts are only answered once the index was fully loaded, and a full
+ * load is trusted for a limited time so changes missed by this process
+ * do not stay visible forever.
+ */
+class MediaBitmapIndex {
+
+    private final BitSet known = new BitSet();
+    private final BitSet available = new BitSet();
+    private final Map<String, BitSet> byType = new HashMap<>();
+    private final long ttlMillis;
+    private boolean complete;
+    private long loadedAt;
+
+    /**
+     * Creates an index whose full loads never expire.
+     */
+    MediaBitmapIndex() {
+        this(0);
+    }
+
+    /**
+     * @param ttlMillis how long a full load stays complete, 0 for no limit
+     */
+    MediaBitmapIndex(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Records the full state of one item.
+     *
+     * @param mediaId media id
+     * @param type media type
+     * @param isAvailable availability flag
+     */
+    synchronized void record(int mediaId, String type, boolean isAvailable) {
+        clearType(mediaId);
+        if (type != null) {
+            byType.computeIfAbsent(type, t -> new BitSet()).set(mediaId);
+        }
+        known.set(mediaId);
+        available.set(mediaId, isAvailable);
+    }
+
+    /**
+     * Records the availability of one item.
+     *
+     * @param mediaId media id
+     * @param isAvailable availability flag
+     */
+    synchronized void setAvailable(int mediaId, boolean isAvailable) {
+        known.set(mediaId);
+        available.set(mediaId, isAvailable);
+    }
+
+    /**
+     * Returns the availability of an item if it is known.
+     *
+     * @param mediaId media id
+     * @return availability, or null if unknown
+     */
+    synchronized Boolean isAvailable(int mediaId) {
+        return known.get(mediaId) ? available.get(mediaId) : null;
+    }
+
+    /**
+     * Removes an item that was deleted.
+     *
+     * @param mediaId media id
+     */
+    synchronized void remove(int mediaId) {
+        clearType(mediaId);
+        known.clear(mediaId);
+        available.clear(mediaId);
+    }
+
+    /**
+     * Forgets what is known about one item, for example after a rollback.
+     *
+     * @param mediaId media id
+     */
+    synchronized void forget(int mediaId) {
+        known.clear(mediaId);
+        complete = false;
+    }
+
+    /**
+     * Marks the index as no longer covering every item, for example after an insert.
+     */
+    synchronized void markIncomplete() {
+        complete = false;
+    }
+
+    /**
+     * Clears all bits before a full reload.
+     */
+    synchronized void reset() {
+        known.clear();
+        available.clear();
+        byType.clear();
+        complete = false;
+    }
+
+    /**
+     * Marks the index as covering every item.
+     */
+    synchronized void markComplete() {
+        complete = true;
+        loadedAt = System.currentTimeMillis();
+    }
+
+    /** @return true if every item is in the index and the load has not expired */
+    synchronized boolean isComplete() {
+        if (complete && ttlMillis > 0 && System.currentTimeMillis() - loadedAt >= ttlMillis) {
+            complete = false;
+        }
+        return complete;
+    }
+
+    /**
+     * Counts available items of a type.
+     *
+     * @param type media type or null for all types
+     * @return number of available items
+     */
+    synchronized int countAvailable(String type) {
+        if (type == null) return available.cardinality();
+        BitSet bits = byType.get(type);
+        if (bits == null) return 0;
+        BitSet result = (BitSet) bits.clone();
+        result.and(available);
+        return result.cardinality();
+    }
+
+    /**
+     * Fills facet counts for a set of matching ids using bit intersections.
+     *
+     * @param matches ids of matching items
+     * @param result result that receives the counts
+     */
+    synchronized void facets(BitSet matches, FacetedSearchResult result) {
+        for (Map.Entry<String, BitSet> e : byType.entrySet()) {
+            BitSet typeMatches = (BitSet) matches.clone();
+            typeMatches.and(e.getValue());
+            if (typeMatches.isEmpty()) continue;
+            int total = typeMatches.cardinality();
+            typeMatches.and(available);
+            int free = typeMatches.cardinality();
+            result.addCount(e.getKey(), true, free);
+            result.addCount(e.getKey(), false, total - free);
+        }
+    }
+
+    /**
+     * Clears the type bit of an item.
+     *
+     * @param mediaId media id
+     */
+    private void clearType(int mediaId) {
+        for (BitSet bits : byType.values()) {
+            bits.clear(mediaId);
+        }
+    }
+}
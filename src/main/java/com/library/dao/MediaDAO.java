@@ -1,15 +1,76 @@
 package com.library.dao;
 
 import com.library.model.*;
+import com.library.util.AppConfig;
+import com.library.util.CacheStats;
+import com.library.util.ConnectionScoped;
+import com.library.util.RetryPolicy;
+import org.postgresql.PGConnection;
+
+import java.io.Reader;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * DAO for media operations. Supports adding, removing, searching,
+ * and caching repeated searches until the catalog changes.
+ * Availability is also tracked in per-type bitmaps, so counts and facets
+ * can be answered without a round trip, and items loaded by id
+ * are kept in a bounded read-through cache.
  */
 public class MediaDAO {
 
+    /** Catalog version and search cache, shared by all DAOs on a connection. */
+    private static final ConnectionScoped<CatalogState> CATALOG = new ConnectionScoped<>(CatalogState::new);
+
+    /** Columns read by {@link #mapRow(ResultSet)}, in select order. */
+    static final Columns COLUMNS = new Columns("media_id", "type", "title", "author", "isbn", "available");
+
+    private static final String SELECT_MEDIA = "SELECT " + COLUMNS.list() + " FROM media";
+    private static final int COL_ID = COLUMNS.index("media_id");
+    private static final int COL_TYPE = COLUMNS.index("type");
+    private static final int COL_TITLE = COLUMNS.index("title");
+    private static final int COL_AUTHOR = COLUMNS.index("author");
+    private static final int COL_ISBN = COLUMNS.index("isbn");
+    private static final int COL_AVAILABLE = COLUMNS.index("available");
+
+    /** Media types an import may contain. */
+    private static final String[] IMPORT_TYPES = { new Book().getType(), new CD().getType(), new Journal().getType() };
+
+    /** Staging table for imports; text columns so COPY accepts every row and checks run afterwards. */
+    static final String IMPORT_STAGE_SQL = "CREATE TEMP TABLE media_import ("
+            + "line BIGINT GENERATED ALWAYS AS IDENTITY, "
+            + "type TEXT, title TEXT, author TEXT, isbn TEXT) ON COMMIT DROP";
+
+    static final String IMPORT_COPY_SQL =
+            "COPY media_import (type, title, author, isbn) FROM STDIN WITH (FORMAT csv, HEADER true)";
+
+    /** Reason a staged row is rejected, null if it is valid; ? is the array of known types. */
+    private static final String IMPORT_ERROR = "CASE "
+            + "WHEN type IS NULL OR NOT lower(trim(type)) = ANY (?) THEN 'unknown type: ' || COALESCE(type, '') "
+            + "WHEN title IS NULL OR trim(title) = '' THEN 'missing title' "
+            + "WHEN length(trim(title)) > 255 THEN 'title longer than 255 characters' "
+            + "WHEN length(trim(author)) > 255 THEN 'author longer than 255 characters' "
+            + "WHEN length(trim(isbn)) > 32 THEN 'isbn longer than 32 characters' END";
+
+    static final String IMPORT_REJECTED_SQL = "SELECT line, error, left(NULLIF(trim(title), ''), 60) FROM "
+            + "(SELECT line, title, " + IMPORT_ERROR + " AS error FROM media_import) s "
+            + "WHERE error IS NOT NULL ORDER BY line";
+
+    static final String IMPORT_MERGE_SQL = "INSERT INTO media (type, title, author, isbn) "
+            + "SELECT lower(trim(type)), trim(title), NULLIF(trim(author), ''), NULLIF(trim(isbn), '') FROM "
+            + "(SELECT *, " + IMPORT_ERROR + " AS error FROM media_import) s "
+            + "WHERE error IS NULL ORDER BY line";
+
     /**
      * Adds a new media item.
      *
@@ -20,12 +81,97 @@ public class MediaDAO {
      */
     public boolean addMedia(Connection conn, Media media) throws Exception {
         String sql = "INSERT INTO media (title, author, isbn, type) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setString(1, media.getTitle());
             stmt.setString(2, media.getAuthor());
             stmt.setString(3, media.getIsbn());
             stmt.setString(4, media.getType());
-            return stmt.executeUpdate() > 0;
+            boolean added = contentChanged(conn, stmt.executeUpdate() > 0);
+            if (added) {
+                CATALOG.get(conn).bitmaps.markIncomplete();
+                CacheInvalidationBus.publish(conn, CacheInvalidationBus.CATALOG, 0, true);
+            }
+            return added;
+        }
+    }
+
+    /**
+     * Imports media from CSV in one transaction. The file is streamed with
+     * the COPY protocol into a staging table, rows with an unknown type, no
+     * title, or values too long for the catalog are rejected, and the rest
+     * are added to media with one INSERT ... SELECT. The file needs a header
+     * row followed by the columns type, title, author, isbn.
+     * Up to media.import.report.limit rejected rows are listed in the report,
+     * by CSV record number and title.
+     * In auto-commit mode the import commits on its own. Inside the caller's
+     * transaction it runs behind a savepoint and leaves the commit to the caller.
+     *
+     * @param conn active database connection
+     * @param csv CSV text, read to the end
+     * @return rows read, imported, and rejected
+     * @throws Exception if the file is not valid CSV or a database error occurs;
+     *                   nothing is imported then
+     */
+    public MediaImportReport importCsv(Connection conn, Reader csv) throws Exception {
+        int reportLimit = AppConfig.getInt("media.import.report.limit", 100);
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) conn.setAutoCommit(false);
+        Savepoint savepoint = autoCommit ? null : conn.setSavepoint();
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.execute(IMPORT_STAGE_SQL);
+            }
+            long read = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(IMPORT_COPY_SQL, csv);
+
+            Array types = conn.createArrayOf("text", IMPORT_TYPES);
+            List<MediaImportReport.Rejected> rejected = new ArrayList<>();
+            long rejectedCount = 0;
+            try (PreparedStatement ps = conn.prepareStatement(IMPORT_REJECTED_SQL)) {
+                ps.setArray(1, types);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (rejectedCount++ < reportLimit) {
+                            // line counts data records; the header is record 1 of the file
+                            rejected.add(new MediaImportReport.Rejected(rs.getLong(1) + 1,
+                                    rs.getString(3), rs.getString(2)));
+                        }
+                    }
+                }
+            }
+
+            int imported;
+            try (PreparedStatement ps = conn.prepareStatement(IMPORT_MERGE_SQL)) {
+                ps.setArray(1, types);
+                imported = ps.executeUpdate();
+            }
+            if (imported > 0) {
+                CacheInvalidationBus.publish(conn, CacheInvalidationBus.CATALOG, 0, true);
+            }
+            if (savepoint == null) {
+                conn.commit();
+            } else {
+                // the staging table only drops itself when the caller commits
+                try (Statement st = conn.createStatement()) {
+                    st.execute("DROP TABLE media_import");
+                }
+                conn.releaseSavepoint(savepoint);
+            }
+
+            if (contentChanged(conn, imported > 0)) {
+                CATALOG.get(conn).bitmaps.markIncomplete();
+            }
+            MediaImportReport report = new MediaImportReport(read, imported, rejectedCount);
+            report.getRejected().addAll(rejected);
+            return report;
+        } catch (Exception e) {
+            if (savepoint == null) {
+                conn.rollback();
+            } else {
+                conn.rollback(savepoint);
+            }
+            throw e;
+        } finally {
+            if (autoCommit) conn.setAutoCommit(true);
         }
     }
 
@@ -39,14 +185,23 @@ public class MediaDAO {
      */
     public boolean removeMedia(Connection conn, int mediaId) throws Exception {
         String sql = "DELETE FROM media WHERE media_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setInt(1, mediaId);
-            return stmt.executeUpdate() > 0;
+            boolean removed = contentChanged(conn, stmt.executeUpdate() > 0);
+            if (removed) {
+                CatalogState catalog = CATALOG.get(conn);
+                catalog.bitmaps.remove(mediaId);
+                catalog.items.remove(mediaId);
+                CacheInvalidationBus.publish(conn, CacheInvalidationBus.CATALOG, mediaId, false);
+            }
+            return removed;
         }
     }
 
     /**
      * Searches media by keyword and optional type.
+     * Repeated searches are answered from a cache until the catalog changes
+     * or the entry expires.
      *
      * @param conn active database connection
      * @param keyword search text
@@ -55,33 +210,267 @@ public class MediaDAO {
      * @throws Exception if a database error occurs
      */
     public List<Media> searchMedia(Connection conn, String keyword, String type) throws Exception {
-        List<Media> results = new ArrayList<>();
+        String key = normalizeKeyword(keyword);
+        String mediaType = normalizeType(type);
+        CatalogState catalog = CATALOG.get(conn);
+        String cacheKey = catalog.searchKey(key, mediaType);
 
-        StringBuilder sql = new StringBuilder(
-            "SELECT * FROM media WHERE (title ILIKE ? OR author ILIKE ? OR isbn ILIKE ?)"
-        );
-        if (type != null && !type.equalsIgnoreCase("media")) {
-            sql.append(" AND type = ?");
+        List<Media> cached = catalog.searches.get(cacheKey);
+        if (cached != null) {
+            return new ArrayList<>(cached);
         }
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            String like = "%" + keyword + "%";
-            stmt.setString(1, like);
-            stmt.setString(2, like);
-            stmt.setString(3, like);
+        List<Media> results = new ArrayList<>();
+        String sql = SELECT_MEDIA + searchFilter(mediaType);
 
-            if (type != null && !type.equalsIgnoreCase("media")) {
-                stmt.setString(4, type.toLowerCase());
-            }
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
+            bindSearchFilter(stmt, key, mediaType);
 
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
-                results.add(mapRowToMedia(rs));
+                results.add(mapRow(rs));
             }
         }
+        catalog.searches.put(cacheKey, Collections.unmodifiableList(new ArrayList<>(results)));
         return results;
     }
 
+    /**
+     * Searches media and returns counts per type and availability with one page of results.
+     * All counts come from a single grouped query over the matches,
+     * and the page comes from a second query ordered by id.
+     * If the matches are already cached, the counts and the page are built
+     * in memory from the availability bitmaps instead, loading them first
+     * if they are missing or expired.
+     *
+     * @param conn active database connection
+     * @param keyword search text
+     * @param type media type or "media" for all
+     * @param limit largest number of items in the page
+     * @param offset number of matches to skip before the page
+     * @return counts and the requested page
+     * @throws Exception if a database error occurs
+     */
+    public FacetedSearchResult facetedSearch(Connection conn, String keyword, String type,
+                                             int limit, int offset) throws Exception {
+        String key = normalizeKeyword(keyword);
+        String mediaType = normalizeType(type);
+        FacetedSearchResult result = new FacetedSearchResult();
+
+        CatalogState catalog = CATALOG.get(conn);
+        List<Media> cached = catalog.searches.get(catalog.searchKey(key, mediaType));
+        if (cached != null) {
+            return facetsFromBitmaps(loadedBitmaps(conn), cached, limit, offset);
+        }
+
+        String countSql = "SELECT type, available, COUNT(*) AS n FROM media"
+                + searchFilter(mediaType) + " GROUP BY type, available";
+        try (PreparedStatement stmt = StatementCache.prepare(conn, countSql)) {
+            bindSearchFilter(stmt, key, mediaType);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    result.addCount(rs.getString(1), rs.getBoolean(2), rs.getInt(3));
+                }
+            }
+        }
+
+        if (result.getTotal() == 0 || limit <= 0) {
+            return result;
+        }
+
+        List<Media> page = new ArrayList<>();
+        String pageSql = SELECT_MEDIA + searchFilter(mediaType)
+                + " ORDER BY media_id LIMIT ? OFFSET ?";
+        try (PreparedStatement stmt = StatementCache.prepare(conn, pageSql)) {
+            int next = bindSearchFilter(stmt, key, mediaType);
+            stmt.setInt(next, limit);
+            stmt.setInt(next + 1, Math.max(0, offset));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(mapRow(rs));
+                }
+            }
+        }
+        result.setPage(page);
+        return result;
+    }
+
+    /**
+     * Builds a faceted result from cached matches and the availability bitmaps.
+     *
+     * @param bitmaps complete bitmap index
+     * @param matches cached search matches
+     * @param limit largest number of items in the page
+     * @param offset number of matches to skip before the page
+     * @return counts and the requested page
+     */
+    private static FacetedSearchResult facetsFromBitmaps(MediaBitmapIndex bitmaps, List<Media> matches,
+                                                         int limit, int offset) {
+        FacetedSearchResult result = new FacetedSearchResult();
+        BitSet ids = new BitSet();
+        for (Media m : matches) {
+            ids.set(m.getId());
+        }
+        bitmaps.facets(ids, result);
+
+        if (limit > 0 && result.getTotal() > 0) {
+            List<Media> sorted = new ArrayList<>(matches);
+            sorted.sort(Comparator.comparingInt(Media::getId));
+            int from = Math.min(Math.max(0, offset), sorted.size());
+            int to = Math.min(from + limit, sorted.size());
+            result.setPage(new ArrayList<>(sorted.subList(from, to)));
+        }
+        return result;
+    }
+
+    /**
+     * Counts available media of a type.
+     * The first call loads the bitmaps for the whole catalog,
+     * later calls are bit operations.
+     *
+     * @param conn active database connection
+     * @param type media type or "media" for all
+     * @return number of available items
+     * @throws Exception if a database error occurs
+     */
+    public int countAvailable(Connection conn, String type) throws Exception {
+        String mediaType = normalizeType(type);
+        MediaBitmapIndex bitmaps = loadedBitmaps(conn);
+        return bitmaps.countAvailable(mediaType.equals("media") ? null : mediaType);
+    }
+
+    /**
+     * Returns what the bitmaps hold about an item, without querying the database.
+     * Only for counts and tests; write decisions must read the row.
+     *
+     * @param conn active database connection
+     * @param mediaId media id
+     * @return cached availability, or null if unknown
+     */
+    Boolean cachedAvailability(Connection conn, int mediaId) {
+        return CATALOG.get(conn).bitmaps.isAvailable(mediaId);
+    }
+
+    /**
+     * Drops in-memory state about an item, for example after a rolled back write.
+     *
+     * @param conn active database connection
+     * @param mediaId media id
+     */
+    public void invalidate(Connection conn, int mediaId) {
+        CatalogState catalog = CATALOG.get(conn);
+        catalog.bitmaps.forget(mediaId);
+        catalog.items.remove(mediaId);
+        catalog.bump();
+    }
+
+    /**
+     * Applies a status change made by another instance to the caches of every connection.
+     *
+     * @param mediaId media id
+     * @param available new availability
+     */
+    static void evictLocal(int mediaId, boolean available) {
+        for (CatalogState catalog : CATALOG.all()) {
+            catalog.bitmaps.setAvailable(mediaId, available);
+            catalog.items.remove(mediaId);
+            catalog.bump();
+        }
+    }
+
+    /**
+     * Applies an insert or delete made by another instance to the caches of every connection.
+     *
+     * @param mediaId removed media id, 0 for an insert
+     */
+    static void evictLocalContent(int mediaId) {
+        for (CatalogState catalog : CATALOG.all()) {
+            if (mediaId > 0) {
+                catalog.bitmaps.remove(mediaId);
+                catalog.items.remove(mediaId);
+            }
+            catalog.bitmaps.markIncomplete();
+            catalog.bumpContent();
+        }
+    }
+
+    /**
+     * Drops all cached media state of every connection.
+     */
+    static void evictAllLocal() {
+        for (CatalogState catalog : CATALOG.all()) {
+            catalog.items.clear();
+            catalog.bitmaps.reset();
+            catalog.bumpContent();
+        }
+    }
+
+    /**
+     * Returns the bitmaps of a connection, loading the whole catalog if needed.
+     *
+     * @param conn active database connection
+     * @return complete bitmap index
+     * @throws SQLException if a database error occurs
+     */
+    private static MediaBitmapIndex loadedBitmaps(Connection conn) throws SQLException {
+        MediaBitmapIndex bitmaps = CATALOG.get(conn).bitmaps;
+        synchronized (bitmaps) {
+            if (!bitmaps.isComplete()) {
+                bitmaps.reset();
+                CursorReader.stream(conn, "SELECT media_id, type, available FROM media",
+                        CursorReader.DEFAULT_FETCH_SIZE, ps -> { },
+                        rs -> {
+                            bitmaps.record(rs.getInt(1), rs.getString(2), rs.getBoolean(3));
+                            return null;
+                        }, row -> { });
+                bitmaps.markComplete();
+            }
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Returns the catalog version for a connection.
+     * The value changes whenever media is added, removed, or changes status.
+     *
+     * @param conn active database connection
+     * @return current catalog version
+     */
+    public long catalogVersion(Connection conn) {
+        return CATALOG.get(conn).version();
+    }
+
+    /**
+     * Returns the content version for a connection.
+     * The value changes only when media is added or removed.
+     *
+     * @param conn active database connection
+     * @return current content version
+     */
+    public long contentVersion(Connection conn) {
+        return CATALOG.get(conn).contentVersion();
+    }
+
+    /**
+     * Returns hit, miss, and eviction counters of the media cache used by findById.
+     *
+     * @param conn active database connection
+     * @return media cache statistics
+     */
+    public CacheStats mediaCacheStats(Connection conn) {
+        return CATALOG.get(conn).items.getStats();
+    }
+
+    /**
+     * Returns hit, miss, and eviction counters of the search cache.
+     *
+     * @param conn active database connection
+     * @return search cache statistics
+     */
+    public CacheStats searchCacheStats(Connection conn) {
+        return CATALOG.get(conn).searches.getStats();
+    }
+
     /**
      * Updates the availability of media.
      *
@@ -93,15 +482,43 @@ public class MediaDAO {
      */
     public boolean setMediaStatus(Connection conn, int mediaId, boolean available) throws Exception {
         String sql = "UPDATE media SET available = ? WHERE media_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setBoolean(1, available);
             stmt.setInt(2, mediaId);
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            if (updated) {
+                statusChanged(conn, mediaId, available);
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Brings the caches in line with an availability change that was already
+     * written, for example by a server-side routine, and publishes it.
+     *
+     * @param conn connection that made the change
+     * @param mediaId media id
+     * @param available new availability
+     * @throws SQLException if publishing the change fails
+     */
+    void statusChanged(Connection conn, int mediaId, boolean available) throws SQLException {
+        CatalogState catalog = CATALOG.get(conn);
+        catalog.bump();
+        catalog.bitmaps.setAvailable(mediaId, available);
+        Media cached = catalog.items.get(mediaId);
+        if (cached != null) {
+            Media copy = copyOf(cached);
+            copy.setAvailable(available);
+            catalog.items.put(mediaId, copy);
         }
+        CacheInvalidationBus.publish(conn, CacheInvalidationBus.MEDIA, mediaId, available);
     }
 
     /**
      * Checks if a media item is available.
+     * Always read from the database, since callers decide on writes with it;
+     * the answer also refreshes the bitmaps.
      *
      * @param conn active database connection
      * @param mediaId media id
@@ -109,11 +526,16 @@ public class MediaDAO {
      * @throws Exception if media is not found
      */
     public boolean mediaAvailable(Connection conn, int mediaId) throws Exception {
+        MediaBitmapIndex bitmaps = CATALOG.get(conn).bitmaps;
         String sql = "SELECT available FROM media WHERE media_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setInt(1, mediaId);
             ResultSet rs = stmt.executeQuery();
-            if (rs.next()) return rs.getBoolean("available");
+            if (rs.next()) {
+                boolean available = rs.getBoolean(1);
+                bitmaps.setAvailable(mediaId, available);
+                return available;
+            }
         }
         throw new Exception("Media not found");
     }
@@ -128,28 +550,169 @@ public class MediaDAO {
      */
     public List<Media> listAllMedia(Connection conn, String type) throws Exception {
         List<Media> mediaList = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT * FROM media");
+        StringBuilder sql = new StringBuilder(SELECT_MEDIA);
 
         if (type != null && !type.equalsIgnoreCase("media")) {
             sql.append(" WHERE type = ?");
         }
         sql.append(" ORDER BY media_id");
 
-        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql.toString())) {
             if (type != null && !type.equalsIgnoreCase("media")) {
                 ps.setString(1, type.toLowerCase());
             }
 
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                mediaList.add(mapRowToMedia(rs));
+                mediaList.add(mapRow(rs));
             }
         }
         return mediaList;
     }
 
+    /**
+     * Returns one page of media ordered by id, optionally filtered by type.
+     * Uses keyset pagination: the next page starts after the last id seen,
+     * so deep pages cost the same as the first one.
+     *
+     * @param conn active database connection
+     * @param type media type or "media" for all
+     * @param afterId last id of the previous page, 0 for the first page
+     * @param limit largest number of items
+     * @return page of media
+     * @throws Exception if a database error occurs
+     */
+    public List<Media> listMediaPage(Connection conn, String type, int afterId, int limit) throws Exception {
+        String mediaType = normalizeType(type);
+        List<Media> page = new ArrayList<>();
+        String sql = SELECT_MEDIA + " WHERE media_id > ?"
+                + (mediaType.equals("media") ? "" : " AND type = ?")
+                + " ORDER BY media_id LIMIT ?";
+
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            int i = 1;
+            ps.setInt(i++, afterId);
+            if (!mediaType.equals("media")) {
+                ps.setString(i++, mediaType);
+            }
+            ps.setInt(i, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    page.add(mapRow(rs));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns one page of search matches ordered by id.
+     *
+     * @param conn active database connection
+     * @param keyword search text
+     * @param type media type or "media" for all
+     * @param afterId last id of the previous page, 0 for the first page
+     * @param limit largest number of items
+     * @return page of matching media
+     * @throws Exception if a database error occurs
+     */
+    public List<Media> searchMediaPage(Connection conn, String keyword, String type,
+                                       int afterId, int limit) throws Exception {
+        String key = normalizeKeyword(keyword);
+        String mediaType = normalizeType(type);
+        List<Media> page = new ArrayList<>();
+        String sql = SELECT_MEDIA + searchFilter(mediaType)
+                + " AND media_id > ? ORDER BY media_id LIMIT ?";
+
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            int next = bindSearchFilter(ps, key, mediaType);
+            ps.setInt(next, afterId);
+            ps.setInt(next + 1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    page.add(mapRow(rs));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns the items among the given ids that match a search, so results
+     * ranked elsewhere can be checked against the same filter the counts use.
+     *
+     * @param conn active database connection
+     * @param keyword search text
+     * @param type media type or "media" for all
+     * @param mediaIds candidate ids
+     * @return matching items by id
+     * @throws Exception if a database error occurs
+     */
+    public Map<Integer, Media> searchMediaAmong(Connection conn, String keyword, String type,
+                                                Collection<Integer> mediaIds) throws Exception {
+        Map<Integer, Media> found = new HashMap<>();
+        if (mediaIds == null || mediaIds.isEmpty()) return found;
+
+        String key = normalizeKeyword(keyword);
+        String mediaType = normalizeType(type);
+        String sql = SELECT_MEDIA + searchFilter(mediaType) + " AND media_id = ANY(?)";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            int next = bindSearchFilter(ps, key, mediaType);
+            ps.setArray(next, conn.createArrayOf("integer", mediaIds.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Media m = mapRow(rs);
+                    found.put(m.getId(), m);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Streams all media ordered by id to a consumer without building a list.
+     * Rows are fetched from a server-side cursor in batches.
+     *
+     * @param conn active database connection
+     * @param type media type or "media" for all
+     * @param consumer receives each media item
+     * @return number of items streamed
+     * @throws Exception if a database error occurs
+     */
+    public int forEachMedia(Connection conn, String type, Consumer<Media> consumer) throws Exception {
+        String mediaType = normalizeType(type);
+        String sql = SELECT_MEDIA
+                + (mediaType.equals("media") ? "" : " WHERE type = ?")
+                + " ORDER BY media_id";
+        return CursorReader.stream(conn, sql, CursorReader.DEFAULT_FETCH_SIZE, ps -> {
+            if (!mediaType.equals("media")) {
+                ps.setString(1, mediaType);
+            }
+        }, MediaDAO::mapRow, consumer);
+    }
+
+    /**
+     * Streams all search matches ordered by id to a consumer without building a list.
+     *
+     * @param conn active database connection
+     * @param keyword search text
+     * @param type media type or "media" for all
+     * @param consumer receives each matching item
+     * @return number of items streamed
+     * @throws Exception if a database error occurs
+     */
+    public int forEachSearchMatch(Connection conn, String keyword, String type,
+                                  Consumer<Media> consumer) throws Exception {
+        String key = normalizeKeyword(keyword);
+        String mediaType = normalizeType(type);
+        String sql = SELECT_MEDIA + searchFilter(mediaType) + " ORDER BY media_id";
+        return CursorReader.stream(conn, sql, CursorReader.DEFAULT_FETCH_SIZE,
+                ps -> bindSearchFilter(ps, key, mediaType), MediaDAO::mapRow, consumer);
+    }
+
     /**
      * Finds media by id.
+     * Items are served from the media cache when present and cached after a database read.
      *
      * @param conn active database connection
      * @param mediaId media id
@@ -157,15 +720,63 @@ public class MediaDAO {
      * @throws Exception if a database error occurs
      */
     public Media findById(Connection conn, int mediaId) throws Exception {
-        String sql = "SELECT * FROM media WHERE media_id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, mediaId);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return mapRowToMedia(rs);
+        CatalogState catalog = CATALOG.get(conn);
+        Media cached = catalog.items.get(mediaId);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+
+        String sql = SELECT_MEDIA + " WHERE media_id = ?";
+        return RetryPolicy.read(conn, () -> {
+            try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+                ps.setInt(1, mediaId);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    Media m = mapRow(rs);
+                    remember(catalog, m);
+                    return m;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Finds several media items with one query.
+     *
+     * @param conn active database connection
+     * @param mediaIds media ids
+     * @return map from id to media, without ids that were not found
+     * @throws Exception if a database error occurs
+     */
+    public Map<Integer, Media> findByIds(Connection conn, Collection<Integer> mediaIds) throws Exception {
+        Map<Integer, Media> found = new HashMap<>();
+        if (mediaIds == null || mediaIds.isEmpty()) return found;
+
+        CatalogState catalog = CATALOG.get(conn);
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : mediaIds) {
+            Media cached = catalog.items.get(id);
+            if (cached != null) {
+                found.put(id, copyOf(cached));
+            } else {
+                missing.add(id);
             }
         }
-        return null;
+        if (missing.isEmpty()) return found;
+
+        String sql = SELECT_MEDIA + " WHERE media_id = ANY(?)";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            ps.setArray(1, conn.createArrayOf("integer", missing.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Media m = mapRow(rs);
+                    remember(catalog, m);
+                    found.put(m.getId(), m);
+                }
+            }
+        }
+        return found;
     }
 
     /**
@@ -179,15 +790,15 @@ public class MediaDAO {
     public List<Media> findActiveMedia(Connection conn, int userId) throws Exception {
         List<Media> mediaList = new ArrayList<>();
 
-        String sql = "SELECT m.* FROM media m " +
+        String sql = "SELECT " + COLUMNS.list("m") + " FROM media m " +
                      "JOIN borrowings b ON m.media_id = b.media_id " +
                      "WHERE b.user_id = ? AND b.status = 'borrowed'";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
             stmt.setInt(1, userId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    mediaList.add(mapRowToMedia(rs));
+                    mediaList.add(mapRow(rs));
                 }
             }
         }
@@ -195,33 +806,132 @@ public class MediaDAO {
     }
 
     /**
-     * Creates a Media object from a database row.
+     * Builds the WHERE clause shared by the search queries.
      *
-     * @param rs result set with media fields
-     * @return media instance
-     * @throws SQLException if a read fails
+     * @param mediaType normalized type filter
+     * @return WHERE clause with placeholders
      */
-    private Media mapRowToMedia(ResultSet rs) throws SQLException {
-        String type = rs.getString("type");
-        Media m;
+    private static String searchFilter(String mediaType) {
+        String where = " WHERE (title ILIKE ? OR author ILIKE ? OR isbn ILIKE ?)";
+        return mediaType.equals("media") ? where : where + " AND type = ?";
+    }
 
+    /**
+     * Binds the parameters of {@link #searchFilter(String)}.
+     *
+     * @param stmt statement to bind
+     * @param keyword normalized keyword
+     * @param mediaType normalized type filter
+     * @return index of the next free parameter
+     * @throws SQLException if binding fails
+     */
+    private static int bindSearchFilter(PreparedStatement stmt, String keyword, String mediaType)
+            throws SQLException {
+        String like = "%" + keyword + "%";
+        stmt.setString(1, like);
+        stmt.setString(2, like);
+        stmt.setString(3, like);
+        if (mediaType.equals("media")) {
+            return 4;
+        }
+        stmt.setString(4, mediaType);
+        return 5;
+    }
+
+    /**
+     * Bumps the content version when an insert or delete changed a row.
+     *
+     * @param conn active database connection
+     * @param changed true if the write affected a row
+     * @return the changed flag, unchanged
+     */
+    private boolean contentChanged(Connection conn, boolean changed) {
+        if (changed) {
+            CATALOG.get(conn).bumpContent();
+        }
+        return changed;
+    }
+
+    /**
+     * Normalizes a search keyword so equal searches share a cache entry.
+     *
+     * @param keyword raw keyword
+     * @return trimmed, lowercase keyword
+     */
+    private static String normalizeKeyword(String keyword) {
+        return keyword == null ? "" : keyword.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a media type filter.
+     *
+     * @param type raw type, null or "media" for all
+     * @return lowercase type or "media"
+     */
+    private static String normalizeType(String type) {
+        return type == null ? "media" : type.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Puts a freshly loaded item into the media cache and the bitmaps.
+     *
+     * @param catalog catalog state of the connection
+     * @param m loaded media, not shared with the caller afterwards
+     */
+    private static void remember(CatalogState catalog, Media m) {
+        catalog.items.put(m.getId(), copyOf(m));
+        catalog.bitmaps.record(m.getId(), m.getType(), m.isAvailable());
+    }
+
+    /**
+     * Copies a media item so cached entries are never changed by callers.
+     *
+     * @param m media to copy
+     * @return new media with the same fields
+     */
+    private static Media copyOf(Media m) {
+        Media copy = newMedia(m.getType());
+        copy.setId(m.getId());
+        copy.setTitle(m.getTitle());
+        copy.setAuthor(m.getAuthor());
+        copy.setIsbn(m.getIsbn());
+        copy.setAvailable(m.isAvailable());
+        return copy;
+    }
+
+    /**
+     * Creates an empty media object of a type.
+     *
+     * @param type media type, books for unknown types
+     * @return new media instance
+     */
+    static Media newMedia(String type) {
         switch (type) {
             case "cd":
-                m = new CD();
-                break;
+                return new CD();
             case "journal":
-                m = new Journal();
-                break;
+                return new Journal();
             default:
-                m = new Book();
-                break;
+                return new Book();
         }
+    }
+
+    /**
+     * Creates a Media object from a row selected with {@link #COLUMNS}.
+     * Reads columns by position, so no name lookup happens per row.
+     *
+     * @param rs result set with media fields
+     * @return media instance
+     * @throws SQLException if a read fails
+     */
+    static Media mapRow(ResultSet rs) throws SQLException {
+        Media m = newMedia(rs.getString(COL_TYPE));
 
-        m.setId(rs.getInt("media_id"));
-        m.setTitle(rs.getString("title"));
-        m.setAuthor(rs.getString("author"));
-        m.setIsbn(rs.getString("isbn"));
-        m.setAvailable(rs.getBoolean("available"));
+        m.setId(rs.getInt(COL_ID));
+        m.setTitle(rs.getString(COL_TITLE));
+        m.setAuthor(rs.getString(COL_AUTHOR));
+        m.setIsbn(rs.getString(COL_ISBN));
+        m.setAvailable(rs.getBoolean(COL_AVAILABLE));
         return m;
     }
 }
@@ -0,0 +1,177 @@
+package com.library.dao;
+
+import com.library.model.OutboxMessage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles the notification_outbox table of schema version 4.
+ * Messages are written with an idempotency key, so queueing the same message
+ * twice keeps one row. Senders claim due messages with SKIP LOCKED and push
+ * their next attempt time forward, so two senders never send the same row at
+ * the same time. Each method is one statement: in auto-commit mode it commits
+ * on its own, inside a transaction the caller commits.
+ */
+public class OutboxDAO {
+
+    /** Message waits for its next attempt. */
+    public static final String PENDING = "pending";
+
+    /** Message was accepted by the mail server. */
+    public static final String SENT = "sent";
+
+    /** Message failed too often and is no longer tried. */
+    public static final String DEAD = "dead";
+
+    /** Claims due pending messages and moves their next attempt past the lease. */
+    static final String CLAIM_SQL = "UPDATE notification_outbox SET attempts = attempts + 1, " +
+            "next_attempt_at = CURRENT_TIMESTAMP + make_interval(secs => ?) " +
+            "WHERE outbox_id IN (SELECT outbox_id FROM notification_outbox " +
+            "WHERE status = 'pending' AND next_attempt_at <= CURRENT_TIMESTAMP " +
+            "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING outbox_id, idempotency_key, recipient, subject, body, attempts";
+
+    /**
+     * Queues a message unless a message with the same key exists.
+     *
+     * @param conn active database connection
+     * @param key idempotency key
+     * @param to recipient email address
+     * @param subject subject line
+     * @param body message body
+     * @return true if queued, false if the key was already used
+     * @throws Exception if a database error occurs
+     */
+    public boolean enqueue(Connection conn, String key, String to, String subject, String body) throws Exception {
+        String sql = "INSERT INTO notification_outbox (idempotency_key, recipient, subject, body) " +
+                "VALUES (?, ?, ?, ?) ON CONFLICT (idempotency_key) DO NOTHING";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            ps.setString(1, key);
+            ps.setString(2, to);
+            ps.setString(3, subject);
+            ps.setString(4, body);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Claims up to limit due messages for sending.
+     * A claimed message is not due again until the lease ends, so a sender
+     * that stops while sending leaves it to be retried later.
+     *
+     * @param conn active database connection
+     * @param limit largest number of messages to claim
+     * @param leaseSeconds seconds before an unfinished claim can be taken again
+     * @return claimed messages, oldest first
+     * @throws Exception if a database error occurs
+     */
+    public List<OutboxMessage> claim(Connection conn, int limit, int leaseSeconds) throws Exception {
+        List<OutboxMessage> claimed = new ArrayList<>();
+        try (PreparedStatement ps = StatementCache.prepare(conn, CLAIM_SQL)) {
+            ps.setInt(1, leaseSeconds);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    OutboxMessage m = new OutboxMessage();
+                    m.setId(rs.getLong(1));
+                    m.setIdempotencyKey(rs.getString(2));
+                    m.setRecipient(rs.getString(3));
+                    m.setSubject(rs.getString(4));
+                    m.setBody(rs.getString(5));
+                    m.setAttempts(rs.getInt(6));
+                    claimed.add(m);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Marks a message as sent.
+     *
+     * @param conn active database connection
+     * @param id outbox row id
+     * @throws Exception if a database error occurs
+     */
+    public void markSent(Connection conn, long id) throws Exception {
+        String sql = "UPDATE notification_outbox SET status = 'sent', sent_at = CURRENT_TIMESTAMP, " +
+                "last_error = NULL WHERE outbox_id = ?";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            ps.setLong(1, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Records a failed attempt and schedules the next one.
+     *
+     * @param conn active database connection
+     * @param id outbox row id
+     * @param error failure description
+     * @param retrySeconds seconds until the next attempt
+     * @throws Exception if a database error occurs
+     */
+    public void markRetry(Connection conn, long id, String error, long retrySeconds) throws Exception {
+        String sql = "UPDATE notification_outbox SET last_error = ?, " +
+                "next_attempt_at = CURRENT_TIMESTAMP + make_interval(secs => ?) WHERE outbox_id = ?";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            ps.setString(1, truncate(error));
+            ps.setLong(2, retrySeconds);
+            ps.setLong(3, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Moves a message to the dead-letter state.
+     *
+     * @param conn active database connection
+     * @param id outbox row id
+     * @param error last failure description
+     * @throws Exception if a database error occurs
+     */
+    public void markDead(Connection conn, long id, String error) throws Exception {
+        String sql = "UPDATE notification_outbox SET status = 'dead', last_error = ? WHERE outbox_id = ?";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            ps.setString(1, truncate(error));
+            ps.setLong(2, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Counts messages per status.
+     *
+     * @param conn active database connection
+     * @return map from status to number of messages
+     * @throws Exception if a database error occurs
+     */
+    public Map<String, Integer> countByStatus(Connection conn) throws Exception {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        String sql = "SELECT status, COUNT(*) FROM notification_outbox GROUP BY status ORDER BY status";
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Shortens an error text to the column size.
+     *
+     * @param error error text, may be null
+     * @return text of at most 500 characters
+     */
+    private static String truncate(String error) {
+        if (error == null || error.length() <= 500) return error;
+        return error.substring(0, 500);
+    }
+}
@@ -0,0 +1,159 @@
+package com.library.dao;
+
+import com.library.util.AppConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Startup check that runs EXPLAIN on the hot DAO queries and warns when one
+ * would read a whole table.
+ * Sequential scans are disabled for the check, so on small test tables the
+ * planner still picks an index if one fits and a remaining Seq Scan means
+ * that no index covers the predicate. Nothing is written; the check runs in
+ * a transaction that is rolled back.
+ */
+public final class QueryPlanAdvisor {
+
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    /**
+     * One DAO query with sample parameters.
+     */
+    static final class Probe {
+        final String name;
+        final String sql;
+        final CursorReader.Binder binder;
+
+        /**
+         * @param name short name used in warnings
+         * @param sql query text as used by the DAO
+         * @param binder sets sample parameters
+         */
+        Probe(String name, String sql, CursorReader.Binder binder) {
+            this.name = name;
+            this.sql = sql;
+            this.binder = binder;
+        }
+    }
+
+    /** Queries that run on every borrow, return, login, or sweep. */
+    static final List<Probe> PROBES = Arrays.asList(
+            new Probe("overdue borrowings", BorrowingDAO.OVERDUE_SQL, ps -> { }),
+            new Probe("overdue recipients", BorrowingDAO.OVERDUE_RECIPIENTS_SQL, ps -> { }),
+            new Probe("reminder digests", BorrowingDAO.OVERDUE_DIGESTS_SQL, ps -> {
+                ps.setString(1, "");
+                ps.setInt(2, 0);
+            }),
+            new Probe("borrowings of a user", BorrowingDAO.BY_USER_SQL, ps -> ps.setInt(1, 0)),
+            new Probe("borrowed items of a user", BorrowingDAO.BORROWED_ITEMS_SQL, ps -> ps.setInt(1, 0)),
+            new Probe("active borrowing", BorrowingDAO.ACTIVE_BORROWING_SQL, ps -> {
+                ps.setInt(1, 0);
+                ps.setInt(2, 0);
+            }),
+            new Probe("overdue check", BorrowingDAO.HAS_OVERDUE_SQL, ps -> ps.setInt(1, 0)),
+            new Probe("fine paid flag", FineDAO.PAID_BY_BORROWING_SQL, ps -> ps.setInt(1, 0)),
+            new Probe("fines of a user", FineDAO.BY_USER_SQL, ps -> ps.setInt(1, 0)),
+            new Probe("fine of a borrowing", FineDAO.BY_BORROWING_SQL, ps -> ps.setInt(1, 0)),
+            new Probe("user by username", UserDAO.BY_USERNAME_SQL, ps -> ps.setString(1, ""))
+    );
+
+    private QueryPlanAdvisor() {}
+
+    /**
+     * Runs the check if schema.advisor.enabled is true and prints the warnings.
+     *
+     * @param conn active database connection
+     * @return warnings, empty if all queries use an index or the check is disabled
+     * @throws SQLException if a query cannot be explained
+     */
+    public static List<String> checkIfEnabled(Connection conn) throws SQLException {
+        if (!AppConfig.getBoolean("schema.advisor.enabled", true)) return new ArrayList<>();
+        List<String> warnings = check(conn);
+        for (String w : warnings) {
+            System.out.println("Warning: " + w);
+        }
+        return warnings;
+    }
+
+    /**
+     * Explains every probe and collects one warning per sequential scan.
+     * In auto-commit mode the check runs in a transaction of its own that is
+     * rolled back; inside the caller's transaction it runs behind a savepoint,
+     * so only the check's own setting is undone.
+     *
+     * @param conn active database connection
+     * @return warnings such as "user by username reads all of users"
+     * @throws SQLException if a query cannot be explained
+     */
+    public static List<String> check(Connection conn) throws SQLException {
+        List<String> warnings = new ArrayList<>();
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) conn.setAutoCommit(false);
+        Savepoint savepoint = autoCommit ? null : conn.setSavepoint();
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.execute("SET LOCAL enable_seqscan = off");
+            }
+            for (Probe p : PROBES) {
+                for (String table : seqScans(explain(conn, p))) {
+                    warnings.add(p.name + " reads all of " + table + "; add an index for its WHERE clause");
+                }
+            }
+        } finally {
+            if (savepoint != null) {
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+            } else {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+        return warnings;
+    }
+
+    /**
+     * Returns the plan of one probe.
+     *
+     * @param conn connection with the check transaction
+     * @param p probe to explain
+     * @return plan lines
+     * @throws SQLException if EXPLAIN fails
+     */
+    private static List<String> explain(Connection conn, Probe p) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + p.sql)) {
+            p.binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString(1));
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Finds the tables read by sequential scans in a plan.
+     *
+     * @param plan plan lines
+     * @return scanned table names in plan order
+     */
+    static List<String> seqScans(List<String> plan) {
+        List<String> tables = new ArrayList<>();
+        for (String line : plan) {
+            Matcher m = SEQ_SCAN.matcher(line);
+            if (m.find()) tables.add(m.group(1));
+        }
+        return tables;
+    }
+}
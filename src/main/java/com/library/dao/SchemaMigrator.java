@@ -0,0 +1,260 @@
+package com.library.dao;
+
+import com.library.util.AppConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Owns the database schema as a list of numbered migrations.
+ * The applied version is kept in the schema_version table, and only newer
+ * migrations run. All pending migrations run in one transaction under an
+ * advisory lock, so two instances starting together cannot apply them twice.
+ * Version 1 uses IF NOT EXISTS, so a database created before this class
+ * existed is adopted without changes.
+ */
+public final class SchemaMigrator {
+
+    /** Advisory lock key that serializes migrations between instances. */
+    static final long LOCK_KEY = 0x4C6962536368656DL;
+
+    /**
+     * One schema version and the statements that produce it.
+     */
+    static final class Migration {
+        final int version;
+        final String description;
+        final List<String> statements;
+
+        /**
+         * @param version schema version after this migration
+         * @param description short description stored with the version
+         * @param statements DDL statements in order
+         */
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = Arrays.asList(statements);
+        }
+    }
+
+    /** All migrations in version order. */
+    static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Base tables",
+                    "CREATE TABLE IF NOT EXISTS users ("
+                            + "user_id SERIAL PRIMARY KEY, "
+                            + "username VARCHAR(50) NOT NULL UNIQUE, "
+                            + "email VARCHAR(100), "
+                            + "password_hash VARCHAR(255) NOT NULL, "
+                            + "role VARCHAR(20) NOT NULL, "
+                            + "balance NUMERIC(10, 2) NOT NULL DEFAULT 0)",
+                    "CREATE TABLE IF NOT EXISTS media ("
+                            + "media_id SERIAL PRIMARY KEY, "
+                            + "type VARCHAR(20) NOT NULL, "
+                            + "title VARCHAR(255) NOT NULL, "
+                            + "author VARCHAR(255), "
+                            + "isbn VARCHAR(32), "
+                            + "available BOOLEAN NOT NULL DEFAULT TRUE)",
+                    "CREATE TABLE IF NOT EXISTS borrowings ("
+                            + "borrow_id SERIAL PRIMARY KEY, "
+                            + "user_id INT NOT NULL REFERENCES users (user_id) ON DELETE CASCADE, "
+                            + "media_id INT NOT NULL REFERENCES media (media_id) ON DELETE CASCADE, "
+                            + "borrow_date DATE NOT NULL DEFAULT CURRENT_DATE, "
+                            + "due_date DATE NOT NULL, "
+                            + "return_date DATE, "
+                            + "status VARCHAR(20) NOT NULL DEFAULT 'borrowed')",
+                    "CREATE TABLE IF NOT EXISTS fines ("
+                            + "fine_id SERIAL PRIMARY KEY, "
+                            + "user_id INT NOT NULL REFERENCES users (user_id) ON DELETE CASCADE, "
+                            + "borrow_id INT REFERENCES borrowings (borrow_id) ON DELETE CASCADE, "
+                            + "amount NUMERIC(10, 2) NOT NULL, "
+                            + "paid BOOLEAN NOT NULL DEFAULT FALSE, "
+                            + "fine_date DATE NOT NULL DEFAULT CURRENT_DATE)"),
+            new Migration(2, "Indexes for hot query predicates",
+                    "CREATE INDEX IF NOT EXISTS borrowings_user_status_idx "
+                            + "ON borrowings (user_id, status)",
+                    "CREATE INDEX IF NOT EXISTS borrowings_active_status_due_idx "
+                            + "ON borrowings (status, due_date) WHERE status <> 'returned'",
+                    "CREATE INDEX IF NOT EXISTS borrowings_active_user_media_idx "
+                            + "ON borrowings (user_id, media_id, status) WHERE status <> 'returned'",
+                    "CREATE INDEX IF NOT EXISTS fines_borrow_id_idx ON fines (borrow_id)",
+                    "CREATE INDEX IF NOT EXISTS fines_user_id_idx ON fines (user_id)"),
+            new Migration(3, "Server-side borrow, return, and pay fine",
+                    "CREATE OR REPLACE FUNCTION library_borrow(p_user INT, p_media INT, "
+                            + "p_book_days INT, p_cd_days INT, p_journal_days INT) "
+                            + "RETURNS INT LANGUAGE plpgsql AS $$\n"
+                            + "DECLARE v_type VARCHAR(20);\n"
+                            + "BEGIN\n"
+                            + "  UPDATE media SET available = FALSE WHERE media_id = p_media AND available\n"
+                            + "    RETURNING type INTO v_type;\n"
+                            + "  IF NOT FOUND THEN\n"
+                            + "    IF EXISTS (SELECT 1 FROM media WHERE media_id = p_media) THEN RETURN 2; END IF;\n"
+                            + "    RETURN 1;\n"
+                            + "  END IF;\n"
+                            + "  INSERT INTO borrowings (user_id, media_id, borrow_date, due_date, status)\n"
+                            + "  VALUES (p_user, p_media, CURRENT_DATE, CURRENT_DATE + CASE v_type\n"
+                            + "    WHEN 'cd' THEN p_cd_days WHEN 'journal' THEN p_journal_days ELSE p_book_days END,\n"
+                            + "    'borrowed');\n"
+                            + "  RETURN 0;\n"
+                            + "END $$",
+                    "CREATE OR REPLACE FUNCTION library_return(p_user INT, p_media INT) "
+                            + "RETURNS INT LANGUAGE plpgsql AS $$\n"
+                            + "DECLARE v_borrow INT; v_due DATE; v_paid BOOLEAN;\n"
+                            + "BEGIN\n"
+                            + "  SELECT borrow_id, due_date INTO v_borrow, v_due FROM borrowings\n"
+                            + "   WHERE user_id = p_user AND media_id = p_media\n"
+                            + "     AND (status = 'borrowed' OR status = 'overdue')\n"
+                            + "   LIMIT 1 FOR UPDATE;\n"
+                            + "  IF NOT FOUND THEN RETURN 1; END IF;\n"
+                            + "  IF v_due < CURRENT_DATE THEN\n"
+                            + "    SELECT paid INTO v_paid FROM fines WHERE borrow_id = v_borrow LIMIT 1;\n"
+                            + "    IF v_paid IS NOT TRUE THEN RETURN 2; END IF;\n"
+                            + "  END IF;\n"
+                            + "  UPDATE borrowings SET status = 'returned', return_date = CURRENT_DATE\n"
+                            + "   WHERE borrow_id = v_borrow;\n"
+                            + "  UPDATE media SET available = TRUE WHERE media_id = p_media;\n"
+                            + "  IF NOT FOUND THEN RAISE EXCEPTION 'Failed to update media availability'; END IF;\n"
+                            + "  RETURN 0;\n"
+                            + "END $$",
+                    "CREATE OR REPLACE FUNCTION library_pay_fine(p_fine INT, p_user INT, p_amount DOUBLE PRECISION, "
+                            + "OUT result_code INT, OUT returned_media_id INT) LANGUAGE plpgsql AS $$\n"
+                            + "DECLARE v_amount NUMERIC; v_payment NUMERIC; v_borrow INT;\n"
+                            + "BEGIN\n"
+                            + "  returned_media_id := 0;\n"
+                            + "  SELECT amount, borrow_id INTO v_amount, v_borrow FROM fines\n"
+                            + "   WHERE fine_id = p_fine AND user_id = p_user FOR UPDATE;\n"
+                            + "  IF NOT FOUND THEN result_code := 1; RETURN; END IF;\n"
+                            + "  IF v_amount <= 0 THEN result_code := 2; RETURN; END IF;\n"
+                            + "  v_payment := LEAST(p_amount::NUMERIC, v_amount);\n"
+                            + "  UPDATE fines SET amount = v_amount - v_payment, paid = (v_amount - v_payment <= 0)\n"
+                            + "   WHERE fine_id = p_fine;\n"
+                            + "  UPDATE users SET balance = balance - v_payment WHERE user_id = p_user;\n"
+                            + "  IF v_amount - v_payment <= 0 AND v_borrow IS NOT NULL THEN\n"
+                            + "    UPDATE borrowings SET status = 'returned' WHERE borrow_id = v_borrow\n"
+                            + "      RETURNING media_id INTO returned_media_id;\n"
+                            + "    IF FOUND THEN\n"
+                            + "      UPDATE media SET available = TRUE WHERE media_id = returned_media_id;\n"
+                            + "    ELSE\n"
+                            + "      returned_media_id := 0;\n"
+                            + "    END IF;\n"
+                            + "  END IF;\n"
+                            + "  result_code := 0;\n"
+                            + "END $$"),
+            new Migration(4, "Notification outbox",
+                    "CREATE TABLE IF NOT EXISTS notification_outbox ("
+                            + "outbox_id BIGSERIAL PRIMARY KEY, "
+                            + "idempotency_key VARCHAR(200) NOT NULL UNIQUE, "
+                            + "recipient VARCHAR(100) NOT NULL, "
+                            + "subject VARCHAR(255) NOT NULL, "
+                            + "body TEXT NOT NULL, "
+                            + "status VARCHAR(20) NOT NULL DEFAULT 'pending', "
+                            + "attempts INT NOT NULL DEFAULT 0, "
+                            + "next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "last_error VARCHAR(500), "
+                            + "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                            + "sent_at TIMESTAMP)",
+                    "CREATE INDEX IF NOT EXISTS notification_outbox_pending_idx "
+                            + "ON notification_outbox (next_attempt_at) WHERE status = 'pending'"),
+            new Migration(5, "Reminder log",
+                    "CREATE TABLE IF NOT EXISTS reminder_log ("
+                            + "user_id INT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE, "
+                            + "subject VARCHAR(255) NOT NULL, "
+                            + "sent_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)",
+                    "CREATE INDEX IF NOT EXISTS reminder_log_user_idx "
+                            + "ON reminder_log (user_id, subject, sent_at)")
+    );
+
+    private SchemaMigrator() {}
+
+    /**
+     * Applies pending migrations if schema.migrate.enabled is true.
+     *
+     * @param conn active database connection
+     * @return number of migrations applied
+     * @throws SQLException if a migration fails
+     */
+    public static int migrateIfEnabled(Connection conn) throws SQLException {
+        if (!AppConfig.getBoolean("schema.migrate.enabled", true)) return 0;
+        return migrate(conn);
+    }
+
+    /**
+     * Applies every migration newer than the recorded schema version.
+     * Either all pending migrations are applied or none.
+     *
+     * @param conn active database connection
+     * @return number of migrations applied
+     * @throws SQLException if a migration fails
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) conn.setAutoCommit(false);
+        int applied = 0;
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT PRIMARY KEY, "
+                        + "description VARCHAR(255) NOT NULL, "
+                        + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+                st.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+
+                int current = currentVersion(st);
+                for (Migration m : MIGRATIONS) {
+                    if (m.version <= current) continue;
+                    for (String ddl : m.statements) {
+                        st.execute(ddl);
+                    }
+                    record(conn, m);
+                    System.out.println("Applied schema version " + m.version + ": " + m.description);
+                    applied++;
+                }
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            if (autoCommit) conn.setAutoCommit(true);
+        }
+        return applied;
+    }
+
+    /** @return version of the newest migration */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Reads the recorded schema version.
+     *
+     * @param st statement on the migrating connection
+     * @return highest applied version, 0 if none
+     * @throws SQLException if the query fails
+     */
+    private static int currentVersion(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Records an applied migration.
+     *
+     * @param conn migrating connection
+     * @param m applied migration
+     * @throws SQLException if the insert fails
+     */
+    private static void record(Connection conn, Migration m) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            ps.setInt(1, m.version);
+            ps.setString(2, m.description);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.library.dao;
+
+import com.library.util.AppConfig;
+import com.library.util.CacheStats;
+import com.library.util.ConnectionScoped;
+import com.library.util.DatabaseConnection;
+import org.postgresql.PGStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps prepared statements open per connection, keyed by SQL text.
+ * DAOs borrow a statement with {@link #prepare(Connection, String)} and close it
+ * as usual; the statement comes wrapped in a {@link LeasedStatement}, and
+ * closing it only returns it to the cache, so the next call with the
+ * same SQL reuses the statement and the driver can keep it prepared on the server.
+ * The least recently used statements are closed when the cache is full.
+ * When the shared connection loses its physical connection, the statements
+ * prepared on it are dead, so the cache of that connection is dropped.
+ * The cache of a dedicated connection is dropped when it is closed with
+ * {@link DatabaseConnection#closeDedicated(Connection)}; other connections
+ * that stay open call {@link #release(Connection)}.
+ */
+public final class StatementCache {
+
+    /** Statement caches of all live connections. */
+    private static final ConnectionScoped<StatementCache> CACHES = new ConnectionScoped<>(StatementCache::new);
+
+    static {
+        DatabaseConnection.onConnectionLost(CACHES::remove);
+        // cached statements reference their connection, so the weak key alone never clears
+        DatabaseConnection.onDedicatedClosed(CACHES::remove);
+    }
+
+    /** One cached statement and whether a caller is using it. */
+    static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final int maxSize = AppConfig.getInt("cache.statements.size", 64);
+    private final int prepareThreshold = AppConfig.getInt("cache.statements.prepare.threshold", 0);
+    private final CacheStats stats = new CacheStats();
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= maxSize) return false;
+            stats.recordEviction();
+            evict(eldest.getValue());
+            return true;
+        }
+    };
+
+    /**
+     * Returns a statement for the SQL, reusing a cached one when it is free.
+     * Closing the returned statement gives it back to the cache.
+     *
+     * @param conn active database connection
+     * @param sql statement text
+     * @return statement to use and close
+     * @throws SQLException if preparing fails
+     */
+    static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        return CACHES.get(conn).lease(conn, sql);
+    }
+
+    /**
+     * Returns hit, miss, and eviction counters for a connection.
+     * A hit is a reused statement, a miss is a newly prepared one.
+     *
+     * @param conn database connection
+     * @return statement cache statistics
+     */
+    public static CacheStats stats(Connection conn) {
+        return CACHES.get(conn).stats;
+    }
+
+    /**
+     * Closes all cached statements of a connection that stays open.
+     * Statements are also closed by the driver when the connection closes.
+     *
+     * @param conn database connection
+     * @throws SQLException if closing a statement fails
+     */
+    public static void release(Connection conn) throws SQLException {
+        StatementCache cache = CACHES.remove(conn);
+        if (cache != null) {
+            cache.closeAll();
+        }
+    }
+
+    /**
+     * Hands out a cached statement or prepares a new one.
+     *
+     * @param conn connection that owns the statements
+     * @param sql statement text
+     * @return leased statement
+     * @throws SQLException if preparing fails
+     */
+    private synchronized PreparedStatement lease(Connection conn, String sql) throws SQLException {
+        Entry e = entries.get(sql);
+        if (e != null && !e.inUse && !e.statement.isClosed()) {
+            stats.recordHit();
+            e.inUse = true;
+            return new LeasedStatement(this, e, conn);
+        }
+        stats.recordMiss();
+        PreparedStatement ps = conn.prepareStatement(sql);
+        if (prepareThreshold > 0 && ps.isWrapperFor(PGStatement.class)) {
+            ps.unwrap(PGStatement.class).setPrepareThreshold(prepareThreshold);
+        }
+        if (e != null && e.inUse) {
+            return ps;
+        }
+        Entry fresh = new Entry(ps);
+        fresh.inUse = true;
+        entries.put(sql, fresh);
+        return new LeasedStatement(this, fresh, conn);
+    }
+
+    /**
+     * Takes a statement back after the caller closed it.
+     *
+     * @param e returned entry
+     * @param open result set left open by the caller, or null
+     * @throws SQLException if cleaning up fails
+     */
+    synchronized void giveBack(Entry e, ResultSet open) throws SQLException {
+        if (!e.inUse) return;
+        e.inUse = false;
+        if (open != null) open.close();
+        if (e.evicted) {
+            e.statement.close();
+        } else {
+            e.statement.clearParameters();
+        }
+    }
+
+    /**
+     * Closes an evicted statement now, or when its caller returns it.
+     *
+     * @param e evicted entry
+     */
+    private void evict(Entry e) {
+        e.evicted = true;
+        if (!e.inUse) {
+            try {
+                e.statement.close();
+            } catch (SQLException ignore) {
+                // the statement is dropped either way
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement.
+     *
+     * @throws SQLException if closing a statement fails
+     */
+    private synchronized void closeAll() throws SQLException {
+        List<Entry> all = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry e : all) {
+            e.evicted = true;
+            if (!e.inUse) e.statement.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.library.dao;
+
+import com.library.model.User;
+import com.library.util.AppConfig;
+import com.library.util.CacheStats;
+import com.library.util.LruCache;
+
+/**
+ * Users loaded by id or username for one connection.
+ * Entries are indexed by id; the username index only maps names to ids,
+ * so both lookups share one copy of each user.
+ */
+class UserCache {
+
+    private final LruCache<Integer, User> byId;
+    private final LruCache<String, Integer> idsByName;
+    private final CacheStats lookups = new CacheStats();
+
+    /**
+     * Creates a cache sized by the cache.user.size setting.
+     */
+    UserCache() {
+        int size = AppConfig.getInt("cache.user.size", 512);
+        byId = new LruCache<>(size);
+        idsByName = new LruCache<>(size);
+    }
+
+    /**
+     * Returns a copy of a cached user.
+     *
+     * @param userId user id
+     * @return user copy or null if not cached
+     */
+    User byId(int userId) {
+        return found(byId.get(userId));
+    }
+
+    /**
+     * Returns a copy of a cached user.
+     *
+     * @param username username
+     * @return user copy or null if not cached
+     */
+    User byUsername(String username) {
+        Integer id = idsByName.get(username);
+        User u = id == null ? null : byId.get(id);
+        if (u != null && !username.equals(u.getUsername())) {
+            idsByName.remove(username);
+            u = null;
+        }
+        return found(u);
+    }
+
+    /**
+     * Caches a copy of a user loaded from the database.
+     *
+     * @param u loaded user
+     */
+    void put(User u) {
+        byId.put(u.getUserId(), copyOf(u));
+        if (u.getUsername() != null) {
+            idsByName.put(u.getUsername(), u.getUserId());
+        }
+    }
+
+    /**
+     * Evicts a user by id.
+     *
+     * @param userId user id
+     */
+    void evict(int userId) {
+        User u = byId.remove(userId);
+        if (u != null && u.getUsername() != null) {
+            idsByName.remove(u.getUsername());
+        }
+    }
+
+    /**
+     * Evicts a username mapping.
+     *
+     * @param username username
+     */
+    void evictUsername(String username) {
+        if (username == null) return;
+        Integer id = idsByName.remove(username);
+        if (id != null) {
+            byId.remove(id);
+        }
+    }
+
+    /**
+     * Evicts every user.
+     */
+    void clear() {
+        byId.clear();
+        idsByName.clear();
+    }
+
+    /** @return hit and miss counters of lookups by id and by username */
+    CacheStats getStats() {
+        return lookups;
+    }
+
+    /**
+     * Counts a lookup and copies the user that was found.
+     *
+     * @param u cached user or null
+     * @return user copy or null
+     */
+    private User found(User u) {
+        if (u == null) {
+            lookups.recordMiss();
+            return null;
+        }
+        lookups.recordHit();
+        return copyOf(u);
+    }
+
+    /**
+     * Copies a user so cached entries are never changed by callers.
+     *
+     * @param u user to copy
+     * @return new user with the same fields
+     */
+    private static User copyOf(User u) {
+        User copy = new User();
+        copy.setUserId(u.getUserId());
+        copy.setUsername(u.getUsername());
+        copy.setEmail(u.getEmail());
+        copy.setPasswordHash(u.getPasswordHash());
+        copy.setRole(u.getRole());
+        copy.setBalance(u.getBalance());
+        return copy;
+    }
+}
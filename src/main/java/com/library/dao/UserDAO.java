@@ -1,15 +1,90 @@
 package com.library.dao;
 
 import com.library.model.User;
+import com.library.util.CacheStats;
+import com.library.util.ConnectionScoped;
+import com.library.util.RetryPolicy;
 
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * DAO for user operations such as finding, adding, listing, updating balance, and deleting users.
+ * Users found by id or username are cached until they are written.
  */
 public class UserDAO {
 
+    /** Users cached by id and username, shared by all DAOs on a connection. */
+    private static final ConnectionScoped<UserCache> USERS = new ConnectionScoped<>(UserCache::new);
+
+    /** All user columns, used by lookups that check credentials or are cached. */
+    static final UserMapper FULL = new UserMapper(
+            new Columns("user_id", "username", "email", "password_hash", "role", "balance"));
+
+    /** User columns for listings, without the password hash. */
+    static final UserMapper LISTED = new UserMapper(
+            new Columns("user_id", "username", "email", "role", "balance"));
+
+    /** Lookup of one user by login name. */
+    static final String BY_USERNAME_SQL = FULL.select() + " WHERE username = ?";
+
+    /**
+     * Maps rows selected with one column list.
+     * Column positions are resolved once when the mapper is created.
+     */
+    static final class UserMapper implements CursorReader.Mapper<User> {
+        private final Columns columns;
+        private final int id;
+        private final int username;
+        private final int email;
+        private final int passwordHash;
+        private final int role;
+        private final int balance;
+
+        /**
+         * @param columns selected columns, in select order
+         */
+        UserMapper(Columns columns) {
+            this.columns = columns;
+            this.id = columns.index("user_id");
+            this.username = columns.index("username");
+            this.email = columns.index("email");
+            this.passwordHash = columns.index("password_hash");
+            this.role = columns.index("role");
+            this.balance = columns.index("balance");
+        }
+
+        /**
+         * Returns the select clause for the users table.
+         *
+         * @return SELECT with the column list and FROM users
+         */
+        String select() {
+            return "SELECT " + columns.list() + " FROM users";
+        }
+
+        /**
+         * Creates a User object from the current row.
+         * Columns that are not selected keep their default values.
+         *
+         * @param rs result set positioned on a row
+         * @return user instance
+         * @throws SQLException if a read fails
+         */
+        @Override
+        public User map(ResultSet rs) throws SQLException {
+            User u = new User();
+            u.setUserId(rs.getInt(id));
+            u.setUsername(rs.getString(username));
+            u.setEmail(rs.getString(email));
+            if (passwordHash > 0) u.setPasswordHash(rs.getString(passwordHash));
+            u.setRole(rs.getString(role));
+            u.setBalance(rs.getDouble(balance));
+            return u;
+        }
+    }
+
     /**
      * Finds a user by username.
      *
@@ -19,22 +94,22 @@ public class UserDAO {
      * @throws Exception if a database error occurs
      */
     public User findByUsername(Connection conn, String username) throws Exception {
-        String sql = "SELECT * FROM users WHERE username = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                User u = new User();
-                u.setUserId(rs.getInt("user_id"));
-                u.setUsername(rs.getString("username"));
-                u.setEmail(rs.getString("email"));
-                u.setPasswordHash(rs.getString("password_hash"));
-                u.setRole(rs.getString("role"));
-                u.setBalance(rs.getDouble("balance"));
-                return u;
+        UserCache cache = USERS.get(conn);
+        User cached = cache.byUsername(username);
+        if (cached != null) return cached;
+
+        return RetryPolicy.read(conn, () -> {
+            try (PreparedStatement stmt = StatementCache.prepare(conn, BY_USERNAME_SQL)) {
+                stmt.setString(1, username);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    User u = FULL.map(rs);
+                    cache.put(u);
+                    return u;
+                }
             }
-        }
-        return null;
+            return null;
+        });
     }
 
     /**
@@ -47,13 +122,14 @@ public class UserDAO {
      */
     public boolean addUser(Connection conn, User user) throws Exception {
         String sql = "INSERT INTO users (username, email, password_hash, role, balance) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
             stmt.setString(1, user.getUsername());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getPasswordHash());
             stmt.setString(4, user.getRole());
             stmt.setDouble(5, user.getBalance());
+            USERS.get(conn).evictUsername(user.getUsername());
             return stmt.executeUpdate() > 0;
         } catch (SQLException e) {
             if (e.getSQLState().equals("23505")) {
@@ -72,28 +148,63 @@ public class UserDAO {
      * @throws Exception if a database error occurs
      */
     public List<User> getAllUsers(Connection conn) throws Exception {
-        String sql = "SELECT * FROM users ORDER BY user_id";
+        String sql = LISTED.select() + " ORDER BY user_id";
         List<User> users = new ArrayList<>();
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql);
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                User user = new User();
-                user.setUserId(rs.getInt("user_id"));
-                user.setUsername(rs.getString("username"));
-                user.setEmail(rs.getString("email"));
-                user.setPasswordHash(rs.getString("password_hash"));
-                user.setRole(rs.getString("role"));
-                user.setBalance(rs.getDouble("balance"));
-                users.add(user);
+                users.add(LISTED.map(rs));
             }
         }
         return users;
     }
 
+    /**
+     * Returns one page of users ordered by id.
+     * Uses keyset pagination: the next page starts after the last id seen.
+     *
+     * @param conn active database connection
+     * @param afterId last id of the previous page, 0 for the first page
+     * @param limit largest number of users
+     * @return page of users
+     * @throws Exception if a database error occurs
+     */
+    public List<User> getUsersPage(Connection conn, int afterId, int limit) throws Exception {
+        String sql = LISTED.select() + " WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        List<User> users = new ArrayList<>();
+
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(LISTED.map(rs));
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Streams all users ordered by id to a consumer without building a list.
+     * Rows are fetched from a server-side cursor in batches.
+     *
+     * @param conn active database connection
+     * @param consumer receives each user
+     * @return number of users streamed
+     * @throws Exception if a database error occurs
+     */
+    public int forEachUser(Connection conn, Consumer<User> consumer) throws Exception {
+        String sql = LISTED.select() + " ORDER BY user_id";
+        return CursorReader.stream(conn, sql, CursorReader.DEFAULT_FETCH_SIZE,
+                ps -> { }, LISTED, consumer);
+    }
+
     /**
      * Updates a user's balance by adding the given amount.
+     * The cached copy of the user is dropped so the next lookup reads the new balance.
      *
      * @param conn active database connection
      * @param userId user id
@@ -103,11 +214,14 @@ public class UserDAO {
     public void updateUserBalance(Connection conn, int userId, double amount) throws Exception {
         String sql = "UPDATE users SET balance = balance + ? WHERE user_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
             stmt.setDouble(1, amount);
             stmt.setInt(2, userId);
             stmt.executeUpdate();
+            CacheInvalidationBus.publish(conn, CacheInvalidationBus.USER, userId, false);
+        } finally {
+            USERS.get(conn).evict(userId);
         }
     }
 
@@ -122,13 +236,13 @@ public class UserDAO {
     public double getUserBalance(Connection conn, int userId) throws Exception {
         String sql = "SELECT balance FROM users WHERE user_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = StatementCache.prepare(conn, sql)) {
 
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
 
             if (rs.next()) {
-                return rs.getDouble("balance");
+                return rs.getDouble(1);
             }
         }
         throw new Exception("user not found");
@@ -143,24 +257,64 @@ public class UserDAO {
      * @throws Exception if a database error occurs
      */
     public User findById(Connection conn, int userId) throws Exception {
-        String sql = "SELECT user_id, username, email, password_hash, role, balance " +
-                     "FROM users WHERE user_id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    User u = new User();
-                    u.setUserId(rs.getInt("user_id"));
-                    u.setUsername(rs.getString("username"));
-                    u.setEmail(rs.getString("email"));
-                    u.setPasswordHash(rs.getString("password_hash"));
-                    u.setRole(rs.getString("role"));
-                    u.setBalance(rs.getDouble("balance"));
-                    return u;
+        UserCache cache = USERS.get(conn);
+        User cached = cache.byId(userId);
+        if (cached != null) return cached;
+
+        String sql = FULL.select() + " WHERE user_id = ?";
+        return RetryPolicy.read(conn, () -> {
+            try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+                ps.setInt(1, userId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        User u = FULL.map(rs);
+                        cache.put(u);
+                        return u;
+                    }
                 }
             }
+            return null;
+        });
+    }
+
+    /**
+     * Drops the cached copy of a user, for example after a rolled back write.
+     *
+     * @param conn active database connection
+     * @param userId user id
+     */
+    public void invalidate(Connection conn, int userId) {
+        USERS.get(conn).evict(userId);
+    }
+
+    /**
+     * Evicts a user changed by another instance from the caches of every connection.
+     *
+     * @param userId user id
+     */
+    static void evictLocal(int userId) {
+        for (UserCache cache : USERS.all()) {
+            cache.evict(userId);
         }
-        return null;
+    }
+
+    /**
+     * Drops all cached users of every connection.
+     */
+    static void evictAllLocal() {
+        for (UserCache cache : USERS.all()) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns hit and miss counters of the user cache.
+     *
+     * @param conn active database connection
+     * @return user cache statistics
+     */
+    public CacheStats userCacheStats(Connection conn) {
+        return USERS.get(conn).getStats();
     }
 
     /**
@@ -173,9 +327,15 @@ public class UserDAO {
      */
     public boolean deleteUser(Connection conn, int userId) throws Exception {
         String sql = "DELETE FROM users WHERE user_id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
             ps.setInt(1, userId);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            if (deleted) {
+                CacheInvalidationBus.publish(conn, CacheInvalidationBus.USER, userId, false);
+            }
+            return deleted;
+        } finally {
+            USERS.get(conn).evict(userId);
         }
     }
 }
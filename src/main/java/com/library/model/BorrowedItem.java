@@ -0,0 +1,61 @@
+package com.library.model;
+
+import java.time.LocalDate;
+
+/**
+ * Row of a user's borrowed-items view.
+ * Combines an active borrowing with the title and type of its media item.
+ */
+public class BorrowedItem {
+    private int borrowId;
+    private int mediaId;
+    private String title;
+    private String type;
+    private LocalDate dueDate;
+    private String status;
+
+    /** @return borrowing identifier */
+    public int getBorrowId() { return borrowId; }
+
+    /** @param borrowId borrowing identifier */
+    public void setBorrowId(int borrowId) { this.borrowId = borrowId; }
+
+    /** @return media identifier */
+    public int getMediaId() { return mediaId; }
+
+    /** @param mediaId media identifier */
+    public void setMediaId(int mediaId) { this.mediaId = mediaId; }
+
+    /** @return media title */
+    public String getTitle() { return title; }
+
+    /** @param title media title */
+    public void setTitle(String title) { this.title = title; }
+
+    /** @return media type */
+    public String getType() { return type; }
+
+    /** @param type media type */
+    public void setType(String type) { this.type = type; }
+
+    /** @return due date */
+    public LocalDate getDueDate() { return dueDate; }
+
+    /** @param dueDate due date */
+    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; }
+
+    /** @return status string */
+    public String getStatus() { return status; }
+
+    /** @param status status string */
+    public void setStatus(String status) { this.status = status; }
+
+    /**
+     * Checks if the item is overdue.
+     *
+     * @return true if marked overdue or the due date has passed
+     */
+    public boolean isOverdue() {
+        return "overdue".equalsIgnoreCase(status) || (dueDate != null && dueDate.isBefore(LocalDate.now()));
+    }
+}
@@ -0,0 +1,62 @@
+package com.library.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Result of a faceted media search.
+ * Holds counts per media type and per availability for all matches,
+ * and one page of the matching items.
+ */
+public class FacetedSearchResult {
+    private final Map<String, Integer> typeCounts = new TreeMap<>();
+    private int availableCount;
+    private int borrowedCount;
+    private List<Media> page = new ArrayList<>();
+
+    /**
+     * Adds a group of matches to the counts.
+     *
+     * @param type media type of the group
+     * @param available availability of the group
+     * @param count number of matches in the group
+     */
+    public void addCount(String type, boolean available, int count) {
+        if (count <= 0) return;
+        typeCounts.merge(type == null ? "unknown" : type, count, Integer::sum);
+        if (available) {
+            availableCount += count;
+        } else {
+            borrowedCount += count;
+        }
+    }
+
+    /** @return read-only map of media type to number of matches */
+    public Map<String, Integer> getTypeCounts() { return Collections.unmodifiableMap(typeCounts); }
+
+    /**
+     * Returns the number of matches of one type.
+     *
+     * @param type media type
+     * @return number of matches, 0 if none
+     */
+    public int getTypeCount(String type) { return typeCounts.getOrDefault(type, 0); }
+
+    /** @return number of available matches */
+    public int getAvailableCount() { return availableCount; }
+
+    /** @return number of borrowed matches */
+    public int getBorrowedCount() { return borrowedCount; }
+
+    /** @return total number of matches */
+    public int getTotal() { return availableCount + borrowedCount; }
+
+    /** @return the page of matching media */
+    public List<Media> getPage() { return page; }
+
+    /** @param page the page of matching media */
+    public void setPage(List<Media> page) { this.page = page; }
+}
@@ -0,0 +1,77 @@
+package com.library.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk media import: rows read, rows added to the catalog,
+ * and the rows that were rejected with the reason.
+ */
+public class MediaImportReport {
+
+    /**
+     * One rejected row.
+     * Rows are numbered as CSV records, the header being record 1. A quoted
+     * value that spans lines keeps its record on one number, so after such a
+     * value the record number is lower than the line number in an editor;
+     * the title is reported as well to find the row.
+     */
+    public static class Rejected {
+        private final long record;
+        private final String title;
+        private final String reason;
+
+        /**
+         * @param record CSV record number, the header being record 1
+         * @param title title of the row, may be null
+         * @param reason why the row was rejected
+         */
+        public Rejected(long record, String title, String reason) {
+            this.record = record;
+            this.title = title;
+            this.reason = reason;
+        }
+
+        /** @return CSV record number, the header being record 1 */
+        public long getRecord() { return record; }
+
+        /** @return title of the row, may be null */
+        public String getTitle() { return title; }
+
+        /** @return why the row was rejected */
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return "record " + record + (title == null ? "" : " (" + title + ")") + ": " + reason;
+        }
+    }
+
+    private final long rowsRead;
+    private final long imported;
+    private final long rejectedCount;
+    private final List<Rejected> rejected = new ArrayList<>();
+
+    /**
+     * @param rowsRead data rows read from the file
+     * @param imported rows added to the catalog
+     * @param rejectedCount rows rejected, including those not listed
+     */
+    public MediaImportReport(long rowsRead, long imported, long rejectedCount) {
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.rejectedCount = rejectedCount;
+    }
+
+    /** @return data rows read from the file */
+    public long getRowsRead() { return rowsRead; }
+
+    /** @return rows added to the catalog */
+    public long getImported() { return imported; }
+
+    /** @return rows rejected, including those not listed */
+    public long getRejectedCount() { return rejectedCount; }
+
+    /** @return first rejected rows, in file order */
+    public List<Rejected> getRejected() { return rejected; }
+}
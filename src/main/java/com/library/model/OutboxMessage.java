@@ -0,0 +1,49 @@
+package com.library.model;
+
+/**
+ * Email waiting in the notification outbox.
+ */
+public class OutboxMessage {
+    private long id;
+    private String idempotencyKey;
+    private String recipient;
+    private String subject;
+    private String body;
+    private int attempts;
+
+    /** @return outbox row id */
+    public long getId() { return id; }
+
+    /** @param id outbox row id */
+    public void setId(long id) { this.id = id; }
+
+    /** @return key that identifies the message across runs */
+    public String getIdempotencyKey() { return idempotencyKey; }
+
+    /** @param idempotencyKey key that identifies the message across runs */
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    /** @return recipient email address */
+    public String getRecipient() { return recipient; }
+
+    /** @param recipient recipient email address */
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+
+    /** @return subject line */
+    public String getSubject() { return subject; }
+
+    /** @param subject subject line */
+    public void setSubject(String subject) { this.subject = subject; }
+
+    /** @return message body */
+    public String getBody() { return body; }
+
+    /** @param body message body */
+    public void setBody(String body) { this.body = body; }
+
+    /** @return delivery attempts so far, including the current one */
+    public int getAttempts() { return attempts; }
+
+    /** @param attempts delivery attempts so far, including the current one */
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+}
@@ -0,0 +1,65 @@
+package com.library.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Overdue items of one user, as shown in a reminder digest.
+ */
+public class ReminderDigest {
+
+    /**
+     * One overdue item with its unpaid fine.
+     */
+    public static class Item {
+        private final String title;
+        private final LocalDate dueDate;
+        private final double fine;
+
+        /**
+         * @param title media title
+         * @param dueDate due date
+         * @param fine unpaid fine issued for the item, 0 if none
+         */
+        public Item(String title, LocalDate dueDate, double fine) {
+            this.title = title;
+            this.dueDate = dueDate;
+            this.fine = fine;
+        }
+
+        /** @return media title */
+        public String getTitle() { return title; }
+
+        /** @return due date */
+        public LocalDate getDueDate() { return dueDate; }
+
+        /** @return unpaid fine issued for the item, 0 if none */
+        public double getFine() { return fine; }
+    }
+
+    private final User user;
+    private final List<Item> items = new ArrayList<>();
+
+    /**
+     * @param user recipient with id, username, and email
+     */
+    public ReminderDigest(User user) {
+        this.user = user;
+    }
+
+    /** @return recipient with id, username, and email */
+    public User getUser() { return user; }
+
+    /** @return overdue items, earliest due date first */
+    public List<Item> getItems() { return items; }
+
+    /** @return sum of the unpaid fines of all items */
+    public double getTotalFine() {
+        double total = 0;
+        for (Item i : items) {
+            total += i.getFine();
+        }
+        return total;
+    }
+}
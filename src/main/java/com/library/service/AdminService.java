@@ -2,11 +2,21 @@ package com.library.service;
 
 import com.library.dao.*;
 import com.library.model.*;
+import com.library.util.AppConfig;
 import com.library.util.DatabaseConnection;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service for administrator tasks.
@@ -78,6 +88,93 @@ public class AdminService {
         return mediaDAO.addMedia(conn, media);
     }
 
+    /**
+     * Imports media from a CSV file with the columns type, title, author, isbn
+     * after a header row. Valid rows are added in one transaction; rejected
+     * rows are listed in the report.
+     *
+     * @param file UTF-8 CSV file
+     * @return rows read, imported, and rejected
+     * @throws Exception if not logged in, the file cannot be read, or a database error occurs
+     */
+    public MediaImportReport importMedia(Path file) throws Exception {
+        if (loggedAdmin == null)
+            throw new IllegalStateException("Admin not logged in");
+        try (Reader csv = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return mediaDAO.importCsv(conn, csv);
+        }
+    }
+
+    /**
+     * Exports media to a CSV file in the import format, type, title, author,
+     * isbn after a header row. Rows are streamed from a database cursor to the
+     * file, so the catalog is never held in memory.
+     *
+     * @param keyword search text, or null or empty for all media
+     * @param type media type or "media" for all
+     * @param file UTF-8 CSV file to write
+     * @return number of media exported
+     * @throws Exception if not logged in, the file cannot be written, or a database error occurs
+     */
+    public int exportMedia(String keyword, String type, Path file) throws Exception {
+        if (loggedAdmin == null)
+            throw new IllegalStateException("Admin not logged in");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("type,title,author,isbn\n");
+            Consumer<Media> row = m -> writeCsv(out, m.getType(), m.getTitle(), m.getAuthor(), m.getIsbn());
+            if (keyword == null || keyword.isEmpty()) {
+                return mediaDAO.forEachMedia(conn, type, row);
+            }
+            return mediaDAO.forEachSearchMatch(conn, keyword, type, row);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Exports users to a CSV file with the columns user_id, username, email,
+     * role, balance after a header row. Password hashes are not exported.
+     * Rows are streamed from a database cursor to the file.
+     *
+     * @param file UTF-8 CSV file to write
+     * @return number of users exported
+     * @throws Exception if not logged in, the file cannot be written, or a database error occurs
+     */
+    public int exportUsers(Path file) throws Exception {
+        if (loggedAdmin == null)
+            throw new IllegalStateException("Admin not logged in");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("user_id,username,email,role,balance\n");
+            return userDAO.forEachUser(conn, u -> writeCsv(out, String.valueOf(u.getUserId()),
+                    u.getUsername(), u.getEmail(), u.getRole(), String.valueOf(u.getBalance())));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes one CSV row, quoting values that contain a comma, quote, or line break.
+     *
+     * @param out file being written
+     * @param values column values, null for empty
+     * @throws UncheckedIOException if writing fails
+     */
+    private static void writeCsv(Writer out, String... values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) out.write(',');
+                String v = values[i] == null ? "" : values[i];
+                if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                    v = '"' + v.replace("\"", "\"\"") + '"';
+                }
+                out.write(v);
+            }
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Searches media by keyword and type.
      *
@@ -118,6 +215,30 @@ public class AdminService {
         return mediaDAO.listAllMedia(conn, type);
     }
 
+    /**
+     * Returns one page of media ordered by id.
+     *
+     * @param type media type or media for all
+     * @param afterId last id of the previous page, 0 for the first page
+     * @param limit largest number of items
+     * @return page of media
+     * @throws Exception if a database error occurs
+     */
+    public List<Media> listMediaPage(String type, int afterId, int limit) throws Exception {
+        return mediaDAO.listMediaPage(conn, type, afterId, limit);
+    }
+
+    /**
+     * Counts available media of a type.
+     *
+     * @param type media type or media for all
+     * @return number of available items
+     * @throws Exception if a database error occurs
+     */
+    public int countAvailable(String type) throws Exception {
+        return mediaDAO.countAvailable(conn, type);
+    }
+
     /**
      * Adds a user.
      *
@@ -180,29 +301,122 @@ public class AdminService {
         return userDAO.getAllUsers(conn);
     }
 
+    /**
+     * Returns one page of users ordered by id.
+     *
+     * @param afterId last id of the previous page, 0 for the first page
+     * @param limit largest number of users
+     * @return page of users
+     * @throws Exception if not logged in or a database error occurs
+     */
+    public List<User> listUsersPage(int afterId, int limit) throws Exception {
+        if (loggedAdmin == null)
+            throw new IllegalStateException("Admin not logged in");
+        return userDAO.getUsersPage(conn, afterId, limit);
+    }
+
     /**
      * Sends overdue reminders using .env settings.
+     * With reminder.pipeline.enabled, messages are rendered and sent by the
+     * reminder pipeline while the recipients are read; the call returns once
+     * every message is sent or failed. Without the pipeline, messages are
+     * sent from a background email queue while the recipients are read.
+     * With outbox.enabled, the reminders are
+     * first stored in the notification outbox and then sent from there,
+     * so a run that fails halfway can be repeated without sending twice.
+     * Sending keeps to the provider's rate limit, if one is configured.
      *
-     * @return number of users notified
+     * @return number of users notified, without those whose message failed
      * @throws Exception if sending fails
      */
     public int sendOverdueRemindersFromEnv() throws Exception {
-        EmailServer emailServer = new DotenvEmailServer();
-        EmailNotifier notifier = new EmailNotifier(emailServer);
-        ReminderService reminder = new ReminderService(conn, borrowingDAO, userDAO, notifier);
-        return reminder.sendOverdueReminders().size();
+        if (AppConfig.getBoolean("outbox.enabled", false)) {
+            OutboxDAO outboxDAO = new OutboxDAO();
+            String kind = AppConfig.getBoolean("reminder.digest.enabled", false) ? "digest" : "overdue";
+            String run = OutboxEmailServer.run(kind, Instant.now(), AppConfig.getInt("reminder.window.hours", 24));
+            int users;
+            // queued on a connection of its own, so batches commit while the read cursor stays open;
+            // that connection is used by one thread, so the run is not pipelined
+            Connection queue = DatabaseConnection.openDedicated();
+            try (OutboxEmailServer outbox = new OutboxEmailServer(queue, outboxDAO, run)) {
+                queue.setAutoCommit(false);
+                users = sendOverdueReminders(outbox, false);
+            } finally {
+                DatabaseConnection.closeDedicated(queue);
+            }
+            try (DotenvEmailServer smtp = new DotenvEmailServer();
+                 OutboxSender sender = new OutboxSender(conn, outboxDAO,
+                         RateLimitedEmailServer.forProvider(smtp.getHost(), smtp))) {
+                sender.drain();
+                if (sender.getRetried() > 0 || sender.getDead() > 0) {
+                    System.out.println("Reminders to retry later: " + sender.getRetried()
+                            + ", given up: " + sender.getDead());
+                }
+            }
+            return users;
+        }
+        try (DotenvEmailServer smtp = new DotenvEmailServer()) {
+            EmailServer limited = RateLimitedEmailServer.forProvider(smtp.getHost(), smtp);
+            if (AppConfig.getBoolean("reminder.pipeline.enabled", true)) {
+                return sendOverdueReminders(limited, true);
+            }
+            return sendOverdueRemindersQueued(limited);
+        }
+    }
+
+    /**
+     * Sends overdue reminders through a background email queue, so the
+     * recipients are read while earlier messages are still being sent.
+     * The call returns once the queue is drained or mail.async.drain.s passed.
+     *
+     * @param emailServer email server the queue sends with
+     * @return number of users notified, without those whose message failed or was dropped
+     * @throws Exception if reading the recipients fails
+     */
+    int sendOverdueRemindersQueued(EmailServer emailServer) throws Exception {
+        AsyncEmailServer queued = new AsyncEmailServer(emailServer);
+        int users;
+        try {
+            users = sendOverdueReminders(queued, false);
+        } finally {
+            queued.close();
+        }
+        // one message per user, so each lost message is one user not notified
+        long lost = queued.getFailed() + queued.getDropped();
+        if (lost > 0) {
+            System.out.println("Reminders not sent: " + lost);
+        }
+        return users - (int) lost;
     }
 
     /**
      * Sends overdue reminders using a given email server.
+     * With reminder.digest.enabled, each user gets a digest of the overdue items.
+     * With reminder.pipeline.enabled, messages are rendered and sent on
+     * pipeline workers while the recipients are read.
      *
      * @param emailServer email server to use
      * @return number of users notified
      * @throws Exception if sending fails
      */
     public int sendOverdueReminders(EmailServer emailServer) throws Exception {
+        return sendOverdueReminders(emailServer, AppConfig.getBoolean("reminder.pipeline.enabled", true));
+    }
+
+    /**
+     * Sends overdue reminders using a given email server.
+     *
+     * @param emailServer email server to use
+     * @param pipelined true to render and send on pipeline workers
+     * @return number of users notified
+     * @throws Exception if sending fails
+     */
+    private int sendOverdueReminders(EmailServer emailServer, boolean pipelined) throws Exception {
         EmailNotifier notifier = new EmailNotifier(emailServer);
-        ReminderService reminder = new ReminderService(conn, borrowingDAO, userDAO, notifier);
+        ReminderService reminder = new ReminderService(conn, borrowingDAO, userDAO, notifier, pipelined);
+        if (AppConfig.getBoolean("reminder.digest.enabled", false)) {
+            return reminder.sendOverdueDigests().size();
+        }
         return reminder.sendOverdueReminders().size();
     }
 }
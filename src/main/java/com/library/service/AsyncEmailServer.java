@@ -0,0 +1,201 @@
+package com.library.service;
+
+import com.library.util.AppConfig;
+import com.library.util.WorkerThreads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Email server that queues messages and sends them from worker threads.
+ * Callers return as soon as a message is queued, so a slow SMTP round trip
+ * no longer stalls a reminder run. The queue is bounded: when it is full,
+ * send waits until a worker takes a message, which keeps memory flat.
+ * Workers are virtual threads on Java 21 and later, platform threads otherwise.
+ * Closing stops new messages and waits up to mail.async.drain.s for the
+ * queue to drain; messages still queued after that are dropped and counted.
+ * Settings: mail.async.workers, mail.async.queue.size, and mail.async.drain.s.
+ */
+public class AsyncEmailServer implements EmailServer, AutoCloseable {
+
+    /**
+     * One queued message.
+     */
+    private static final class Task {
+        final String to;
+        final String subject;
+        final String body;
+
+        Task(String to, String subject, String body) {
+            this.to = to;
+            this.subject = subject;
+            this.body = body;
+        }
+    }
+
+    /** Tells a worker to stop; queued behind every pending message. */
+    private static final Task STOP = new Task(null, null, null);
+
+    private final EmailServer delegate;
+    private final BlockingQueue<Task> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final long drainSeconds;
+    /** Senders hold the read lock while queueing; close takes the write lock to wait for them. */
+    private final ReadWriteLock gate = new ReentrantReadWriteLock();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private long dropped;
+    private volatile boolean closed;
+
+    /**
+     * Creates an asynchronous server with the configured settings.
+     *
+     * @param delegate server that sends the messages
+     */
+    public AsyncEmailServer(EmailServer delegate) {
+        this(delegate,
+                AppConfig.getInt("mail.async.workers", 4),
+                AppConfig.getInt("mail.async.queue.size", 1000),
+                AppConfig.getLong("mail.async.drain.s", 60));
+    }
+
+    /**
+     * Creates an asynchronous server and starts its workers.
+     *
+     * @param delegate server that sends the messages
+     * @param workerCount number of worker threads
+     * @param capacity number of messages that can wait in the queue
+     * @param drainSeconds how long close waits for the queue to drain
+     */
+    AsyncEmailServer(EmailServer delegate, int workerCount, int capacity, long drainSeconds) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.drainSeconds = drainSeconds;
+        ThreadFactory factory = WorkerThreads.factory("email-worker-");
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread t = factory.newThread(this::work);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    /**
+     * Queues a message. Waits while the queue is full.
+     *
+     * @param to      recipient email address
+     * @param subject subject line
+     * @param body    message body
+     * @throws IllegalStateException if the server is closed
+     */
+    @Override
+    public void send(String to, String subject, String body) {
+        gate.readLock().lock();
+        try {
+            if (closed) throw new IllegalStateException("Email queue is closed");
+            queue.put(new Task(to, subject, body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing email", e);
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stops accepting messages and waits until the queued ones are sent.
+     * Workers still busy after mail.async.drain.s are interrupted, and the
+     * messages they did not reach are dropped and counted.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+        try {
+            // senders that got past the closed check finish queueing first,
+            // so every message is ahead of the stop markers
+            if (gate.writeLock().tryLock(drainSeconds, TimeUnit.SECONDS)) {
+                gate.writeLock().unlock();
+            }
+            for (int i = 0; i < workers.size(); i++) {
+                if (!queue.offer(STOP, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) break;
+            }
+            for (Thread t : workers) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left > 0) t.join(left);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.forEach(Thread::interrupt);
+
+        long left = 0;
+        for (Task t; (t = queue.poll()) != null; ) {
+            if (t != STOP) left++;
+        }
+        if (left > 0) {
+            synchronized (this) {
+                dropped += left;
+            }
+            System.out.println("Emails not sent before the queue closed: " + left);
+        }
+    }
+
+    /** @return number of messages sent */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /** @return number of messages that could not be sent */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /** @return number of messages dropped because close timed out */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /** @return number of messages waiting in the queue */
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * Takes messages from the queue until told to stop.
+     */
+    private void work() {
+        try {
+            for (Task t = queue.take(); t != STOP; t = queue.take()) {
+                deliver(t);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends one message. A failure is counted and does not stop the worker.
+     *
+     * @param t queued message
+     */
+    private void deliver(Task t) {
+        try {
+            delegate.send(t.to, t.subject, t.body);
+            sent.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            System.out.println("Failed to send email to " + t.to + ": " + e.getMessage());
+        }
+    }
+}
@@ -15,6 +15,8 @@ public class AuthService {
 
     /**
      * Verifies a username and password hash.
+     * Uses the shared connection and leaves it open, so the services used
+     * after login keep the same connection and its caches.
      *
      * @param username username to check
      * @param passwordHash password hash to match
@@ -22,11 +24,10 @@ public class AuthService {
      * @throws Exception if a database error occurs
      */
     public User authenticate(String username, String passwordHash) throws Exception {
-        try (Connection conn = DatabaseConnection.connect()) {
-            User u = userDAO.findByUsername(conn, username);
-            if (u == null) return null;
-            if (u.getPasswordHash() == null) return null;
-            return u.getPasswordHash().equals(passwordHash) ? u : null;
-        }
+        Connection conn = DatabaseConnection.connect();
+        User u = userDAO.findByUsername(conn, username);
+        if (u == null) return null;
+        if (u.getPasswordHash() == null) return null;
+        return u.getPasswordHash().equals(passwordHash) ? u : null;
     }
 }
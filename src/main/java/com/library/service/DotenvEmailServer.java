@@ -6,8 +6,9 @@ import io.github.cdimascio.dotenv.Dotenv;
  * Email server that reads SMTP credentials from a .env file.
  * Looks for EMAIL_USERNAME and EMAIL_PASSWORD and uses them to
  * configure an EmailService instance.
+ * Close it after a batch to release the pooled SMTP connections.
  */
-public class DotenvEmailServer implements EmailServer {
+public class DotenvEmailServer implements EmailServer, AutoCloseable {
 
     private final EmailService emailService;
 
@@ -53,4 +54,17 @@ public class DotenvEmailServer implements EmailServer {
     public void send(String to, String subject, String body) {
         emailService.sendEmail(to, subject, body);
     }
+
+    /** @return SMTP host the messages are sent to */
+    public String getHost() {
+        return emailService.getHost();
+    }
+
+    /**
+     * Closes the SMTP connections kept by the email service.
+     */
+    @Override
+    public void close() {
+        emailService.close();
+    }
 }
@@ -7,6 +7,10 @@ import com.library.model.User;
  * Wraps an email server and provides a simple method to notify a user.
  */
 public class EmailNotifier {
+
+    /** Subject line of reminder messages. */
+    public static final String SUBJECT = "Overdue Reminder";
+
     private final EmailServer server;
 
     /**
@@ -27,6 +31,6 @@ public class EmailNotifier {
      */
     public void notify(User user, String message) {
         if (user == null || user.getEmail() == null) return;
-        server.send(user.getEmail(), "Overdue Reminder", message);
+        server.send(user.getEmail(), SUBJECT, message);
     }
 }
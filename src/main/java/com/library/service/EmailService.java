@@ -1,24 +1,54 @@
 package com.library.service;
 
-import jakarta.mail.Authenticator;
+import com.library.util.AppConfig;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
-import jakarta.mail.PasswordAuthentication;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.Session;
 import jakarta.mail.Transport;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
 
 /**
  * Sends real email messages using SMTP.
- * This service uses Gmail's SMTP server with TLS.
+ * The server is set by mail.smtp.host, mail.smtp.port, mail.smtp.tls
+ * (starttls, ssl, or none) and mail.smtp.auth; the defaults use Gmail's
+ * SMTP server with STARTTLS.
+ * One mail session is shared by all messages, and connected transports are
+ * kept in a small pool, so a batch of messages pays for the TLS handshake and
+ * login once per connection instead of once per message. A connection is
+ * replaced after mail.transport.max.messages messages or when it fails;
+ * at most mail.transport.pool.size connections are open at a time.
  */
-public class EmailService {
+public class EmailService implements AutoCloseable {
+
+    /**
+     * A pooled transport and the number of messages it has sent.
+     */
+    private static final class Pooled {
+        final Transport transport;
+        boolean connected;
+        int sent;
+
+        Pooled(Transport transport) {
+            this.transport = transport;
+        }
+    }
 
     private final String username;
     private final String password;
+    private final Session session;
+    private final int maxMessages;
+    private final Semaphore permits;
+    private final Deque<Pooled> idle = new ArrayDeque<>();
+    private boolean closed;
 
     /**
      * Creates a new email service with the given credentials.
@@ -27,12 +57,59 @@ public class EmailService {
      * @param password SMTP password or app password
      */
     public EmailService(String username, String password) {
+        this(username, password,
+                AppConfig.getInt("mail.transport.pool.size", 4),
+                AppConfig.getInt("mail.transport.max.messages", 100));
+    }
+
+    /**
+     * Creates a new email service with explicit pool limits.
+     *
+     * @param username SMTP login email
+     * @param password SMTP password or app password
+     * @param poolSize connections open at most at the same time
+     * @param maxMessages messages sent over one connection before it is replaced
+     */
+    EmailService(String username, String password, int poolSize, int maxMessages) {
         this.username = username;
         this.password = password;
+        this.maxMessages = Math.max(1, maxMessages);
+        this.permits = new Semaphore(Math.max(1, poolSize));
+
+        this.session = Session.getInstance(smtpProperties());
+    }
+
+    /**
+     * Builds the mail session settings from the configuration.
+     *
+     * @return SMTP settings
+     * @throws IllegalArgumentException if mail.smtp.tls has an unknown value
+     */
+    static Properties smtpProperties() {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", AppConfig.get("mail.smtp.host", "smtp.gmail.com"));
+        props.put("mail.smtp.port", String.valueOf(AppConfig.getInt("mail.smtp.port", 587)));
+        props.put("mail.smtp.auth", String.valueOf(AppConfig.getBoolean("mail.smtp.auth", true)));
+
+        String tls = AppConfig.get("mail.smtp.tls", "starttls");
+        switch (tls) {
+            case "starttls":
+                props.put("mail.smtp.starttls.enable", "true");
+                break;
+            case "ssl":
+                props.put("mail.smtp.ssl.enable", "true");
+                break;
+            case "none":
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mail.smtp.tls value: " + tls);
+        }
+        return props;
     }
 
     /**
      * Sends a basic text email.
+     * If the connection fails, the message is sent once more over a new one.
      *
      * @param to      recipient email address
      * @param subject email subject line
@@ -40,30 +117,130 @@ public class EmailService {
      * @throws RuntimeException if the email cannot be sent
      */
     public void sendEmail(String to, String subject, String body) {
-        Properties props = new Properties();
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.smtp.host", "smtp.gmail.com");
-        props.put("mail.smtp.port", "587");
-
-        Session session = Session.getInstance(props, new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(username, password);
-            }
-        });
-
+        permits.acquireUninterruptibly();
+        Pooled pooled = null;
         try {
-            Message message = new MimeMessage(session);
+            MimeMessage message = new MimeMessage(session);
             message.setFrom(new InternetAddress(username));
             message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
             message.setSubject(subject);
             message.setText(body);
-            Transport.send(message);
+            message.saveChanges();
+
+            pooled = borrow();
+            try {
+                deliver(pooled, message);
+            } catch (SendFailedException e) {
+                // the server refused the recipients, the connection is fine
+                giveBack(pooled);
+                pooled = null;
+                throw e;
+            } catch (MessagingException | IllegalStateException e) {
+                // the server dropped the connection, for example after an idle timeout
+                discard(pooled);
+                pooled = new Pooled(newTransport());
+                deliver(pooled, message);
+            }
+            giveBack(pooled);
+            pooled = null;
             System.out.println("Email sent successfully to " + to);
         } catch (MessagingException e) {
             e.printStackTrace();
             throw new RuntimeException("Failed to send email", e);
+        } finally {
+            if (pooled != null) discard(pooled);
+            permits.release();
+        }
+    }
+
+    /** @return SMTP host the messages are sent to */
+    public String getHost() {
+        return session.getProperty("mail.smtp.host");
+    }
+
+    /**
+     * Closes every idle connection. Connections in use are closed when returned.
+     */
+    @Override
+    public void close() {
+        List<Pooled> all;
+        synchronized (this) {
+            closed = true;
+            all = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (Pooled p : all) {
+            discard(p);
+        }
+    }
+
+    /**
+     * Opens a transport for the shared session; tests replace it.
+     *
+     * @return unconnected transport
+     * @throws MessagingException if no SMTP provider is available
+     */
+    Transport newTransport() throws MessagingException {
+        return session.getTransport("smtp");
+    }
+
+    /**
+     * Takes an idle connection from the pool or creates a new one.
+     *
+     * @return pooled transport
+     * @throws MessagingException if a transport cannot be created
+     */
+    private Pooled borrow() throws MessagingException {
+        synchronized (this) {
+            Pooled p = idle.pollFirst();
+            if (p != null) return p;
+        }
+        return new Pooled(newTransport());
+    }
+
+    /**
+     * Sends a message, connecting a new transport first.
+     * A connection the server dropped fails here and is replaced by the caller.
+     *
+     * @param pooled transport to use
+     * @param message prepared message
+     * @throws MessagingException if sending fails
+     */
+    private void deliver(Pooled pooled, MimeMessage message) throws MessagingException {
+        if (!pooled.connected) {
+            pooled.transport.connect(username, password);
+            pooled.connected = true;
+        }
+        pooled.transport.sendMessage(message, message.getAllRecipients());
+        pooled.sent++;
+    }
+
+    /**
+     * Returns a connection to the pool, or closes it once it has sent
+     * its share of messages or the service is closed.
+     *
+     * @param pooled transport to return
+     */
+    private void giveBack(Pooled pooled) {
+        synchronized (this) {
+            if (!closed && pooled.sent < maxMessages) {
+                idle.addFirst(pooled);
+                return;
+            }
+        }
+        discard(pooled);
+    }
+
+    /**
+     * Closes a connection that will not be used again.
+     *
+     * @param pooled transport to close
+     */
+    private static void discard(Pooled pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException ignore) {
+            // the connection is dropped either way
         }
     }
 }
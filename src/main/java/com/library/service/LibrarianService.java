@@ -4,6 +4,7 @@ import com.library.dao.*;
 import com.library.model.*;
 import com.library.strategy.*;
 import com.library.util.DatabaseConnection;
+import com.library.util.RetryPolicy;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -23,6 +24,8 @@ public class LibrarianService {
     private final FineDAO fineDAO = new FineDAO();
     private final UserDAO userDAO = new UserDAO();
     private final MediaDAO mediaDAO = new MediaDAO();
+    /** Opens the connection the overdue cursor is read on. */
+    private RetryPolicy.SqlCall<Connection> openReader = DatabaseConnection::openDedicated;
     private User loggedLibrarian;
 
     /**
@@ -64,6 +67,10 @@ public class LibrarianService {
     /**
      * Detects overdue media and automatically issues or updates fines.
      * Applies the appropriate fine strategy per media type.
+     * The overdue borrowings are read through a cursor on a dedicated
+     * connection, and the fines of each borrowing are committed on their own
+     * on the shared connection. If one borrowing fails, its writes are rolled
+     * back and the sweep stops, but the fines written before it are kept.
      *
      * @throws Exception if reading or writing database records fails
      */
@@ -71,67 +78,99 @@ public class LibrarianService {
         if (loggedLibrarian == null)
             throw new IllegalStateException("Librarian not logged in");
 
-        List<Borrowing> overdueList = borrowingDAO.findOverdueMedia(conn);
-        if (overdueList == null || overdueList.isEmpty()) {
+        LocalDate today = LocalDate.now();
+        int seen;
+        Connection reader = openReader.call();
+        try {
+            seen = borrowingDAO.streamOverdueMedia(reader, b -> fineOverdueAndCommit(b, today));
+        } finally {
+            DatabaseConnection.closeDedicated(reader);
+        }
+        if (seen == 0) {
             System.out.println("No overdue borrowings found.");
-            return;
         }
+    }
 
-        LocalDate today = LocalDate.now();
-
-        for (Borrowing b : overdueList) {
-
-            if ("overdue".equalsIgnoreCase(b.getStatus())) {
-                Fine existingFine = fineDAO.getBorrowingFine(conn, b.getBorrowId());
-                if (existingFine != null && existingFine.getFineDate() != null) {
-
-                    long daysSinceLastFine = ChronoUnit.DAYS.between(existingFine.getFineDate(), today);
-                    if (daysSinceLastFine < 1) continue;
-
-                    fineDAO.updateFineBalance(conn, existingFine.getId(), (int) daysSinceLastFine);
-                    fineDAO.updateFineDate(conn, existingFine.getId());
-                    userDAO.updateUserBalance(conn, b.getUserId(), daysSinceLastFine);
+    /**
+     * Writes the fine of one overdue borrowing in a transaction of its own.
+     *
+     * @param b overdue borrowing
+     * @param today date of the sweep
+     * @throws Exception if reading or writing database records fails; the
+     *                   borrowing's writes are rolled back then
+     */
+    private void fineOverdueAndCommit(Borrowing b, LocalDate today) throws Exception {
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) conn.setAutoCommit(false);
+        try {
+            fineOverdue(b, today);
+            conn.commit();
+        } catch (Exception e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            if (autoCommit) conn.setAutoCommit(true);
+        }
+    }
 
-                    System.out.printf(
-                        "Fine's amount updated for borrowId=%d (amount + %d NIS)%n",
-                        b.getBorrowId(), daysSinceLastFine
-                    );
-                    continue;
-                }
-            }
+    /**
+     * Issues a new fine for one overdue borrowing or adds the days since the last fine.
+     *
+     * @param b overdue borrowing
+     * @param today date of the sweep
+     * @throws Exception if reading or writing database records fails
+     */
+    private void fineOverdue(Borrowing b, LocalDate today) throws Exception {
+        if ("overdue".equalsIgnoreCase(b.getStatus())) {
+            Fine existingFine = fineDAO.getBorrowingFine(conn, b.getBorrowId());
+            if (existingFine != null && existingFine.getFineDate() != null) {
 
-            Media media = mediaDAO.findById(conn, b.getMediaId());
-            if (media == null) continue;
-
-            long overdueDays = ChronoUnit.DAYS.between(b.getDueDate(), today);
-            if (overdueDays <= 0) continue;
-
-            FineCalculator fineCalculator;
-            switch (media.getType().toLowerCase()) {
-                case "cd":
-                    fineCalculator = new FineCalculator(new CDFineStrategy());
-                    break;
-                case "journal":
-                    fineCalculator = new FineCalculator(new JournalFineStrategy());
-                    break;
-                default:
-                    fineCalculator = new FineCalculator(new BookFineStrategy());
-                    break;
-            }
+                long daysSinceLastFine = ChronoUnit.DAYS.between(existingFine.getFineDate(), today);
+                if (daysSinceLastFine < 1) return;
 
-            double fineAmount = fineCalculator.calculateFine((int) overdueDays);
-            boolean issued = fineDAO.issueFine(conn, b.getBorrowId(), b.getUserId(), fineAmount);
+                fineDAO.updateFineBalance(conn, existingFine.getId(), (int) daysSinceLastFine);
+                fineDAO.updateFineDate(conn, existingFine.getId());
+                userDAO.updateUserBalance(conn, b.getUserId(), daysSinceLastFine);
 
-            if (issued) {
-                borrowingDAO.updateBorrowingStatus(conn, b.getBorrowId(), "overdue");
-                userDAO.updateUserBalance(conn, b.getUserId(), fineAmount);
                 System.out.printf(
-                    "Issued new fine %.2f for borrowId=%d (overdue %d days)%n",
-                    fineAmount, b.getBorrowId(), overdueDays
+                    "Fine's amount updated for borrowId=%d (amount + %d NIS)%n",
+                    b.getBorrowId(), daysSinceLastFine
                 );
-            } else {
-                System.out.printf("Failed to issue fine for borrowId=%d%n", b.getBorrowId());
+                return;
             }
         }
+
+        Media media = mediaDAO.findById(conn, b.getMediaId());
+        if (media == null) return;
+
+        long overdueDays = ChronoUnit.DAYS.between(b.getDueDate(), today);
+        if (overdueDays <= 0) return;
+
+        FineCalculator fineCalculator;
+        switch (media.getType().toLowerCase()) {
+            case "cd":
+                fineCalculator = new FineCalculator(new CDFineStrategy());
+                break;
+            case "journal":
+                fineCalculator = new FineCalculator(new JournalFineStrategy());
+                break;
+            default:
+                fineCalculator = new FineCalculator(new BookFineStrategy());
+                break;
+        }
+
+        double fineAmount = fineCalculator.calculateFine((int) overdueDays);
+        boolean issued = fineDAO.issueFine(conn, b.getBorrowId(), b.getUserId(), fineAmount);
+
+        if (issued) {
+            borrowingDAO.updateBorrowingStatus(conn, b.getBorrowId(), "overdue");
+            userDAO.updateUserBalance(conn, b.getUserId(), fineAmount);
+            System.out.printf(
+                "Issued new fine %.2f for borrowId=%d (overdue %d days)%n",
+                fineAmount, b.getBorrowId(), overdueDays
+            );
+        } else {
+            System.out.printf("Failed to issue fine for borrowId=%d%n", b.getBorrowId());
+        }
     }
 }
@@ -0,0 +1,210 @@
+package com.library.service;
+
+import com.library.model.Media;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over media titles and authors.
+ * Scores matches with BM25F, where title hits weigh more than author hits,
+ * and keeps only the best k results in a bounded heap.
+ * Query words also match indexed words that start with them,
+ * so "algo" finds "Algorithms".
+ */
+public class MediaSearchIndex {
+
+    /** Term frequency saturation. */
+    static final double K1 = 1.2;
+    /** Length normalization strength. */
+    static final double B = 0.75;
+    /** Weight of a title hit. */
+    static final double TITLE_WEIGHT = 2.0;
+    /** Weight of an author hit. */
+    static final double AUTHOR_WEIGHT = 1.0;
+
+    /** One document that contains a term, with counts per field. */
+    private static final class Posting {
+        final int doc;
+        int titleTf;
+        int authorTf;
+
+        Posting(int doc) {
+            this.doc = doc;
+        }
+    }
+
+    /** Document score used by the top-k heap. */
+    private static final class Scored {
+        final int doc;
+        final double score;
+
+        Scored(int doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    private final int[] ids;
+    private final String[] types;
+    private final int[] titleLengths;
+    private final int[] authorLengths;
+    private final double avgTitleLength;
+    private final double avgAuthorLength;
+    private final TreeMap<String, List<Posting>> postings = new TreeMap<>();
+
+    /**
+     * Builds an index over the given media items.
+     *
+     * @param media items to index
+     */
+    public MediaSearchIndex(List<Media> media) {
+        int n = media.size();
+        ids = new int[n];
+        types = new String[n];
+        titleLengths = new int[n];
+        authorLengths = new int[n];
+        long titleTotal = 0;
+        long authorTotal = 0;
+
+        for (int doc = 0; doc < n; doc++) {
+            Media m = media.get(doc);
+            ids[doc] = m.getId();
+            types[doc] = m.getType();
+            titleLengths[doc] = addField(doc, m.getTitle(), true);
+            authorLengths[doc] = addField(doc, m.getAuthor(), false);
+            titleTotal += titleLengths[doc];
+            authorTotal += authorLengths[doc];
+        }
+        avgTitleLength = n == 0 ? 1 : Math.max(1.0, (double) titleTotal / n);
+        avgAuthorLength = n == 0 ? 1 : Math.max(1.0, (double) authorTotal / n);
+    }
+
+    /**
+     * Adds the words of one field to the postings.
+     *
+     * @param doc document number
+     * @param text field text
+     * @param title true for the title field, false for the author field
+     * @return number of words in the field
+     */
+    private int addField(int doc, String text, boolean title) {
+        List<String> words = tokenize(text);
+        for (String w : words) {
+            List<Posting> list = postings.computeIfAbsent(w, k -> new ArrayList<>());
+            Posting p = list.isEmpty() ? null : list.get(list.size() - 1);
+            if (p == null || p.doc != doc) {
+                p = new Posting(doc);
+                list.add(p);
+            }
+            if (title) {
+                p.titleTf++;
+            } else {
+                p.authorTf++;
+            }
+        }
+        return words.size();
+    }
+
+    /**
+     * Returns the ids of the best matching media, best first.
+     *
+     * @param keyword search text
+     * @param type media type or "media" for all
+     * @param k largest number of results
+     * @return media ids ordered by score
+     */
+    public List<Integer> topK(String keyword, String type, int k) {
+        List<Integer> result = new ArrayList<>();
+        List<String> terms = tokenize(keyword);
+        if (terms.isEmpty() || k <= 0 || ids.length == 0) return result;
+
+        String wanted = type == null || type.equalsIgnoreCase("media") ? null : type.toLowerCase(Locale.ROOT);
+        Map<Integer, Double> scores = new HashMap<>();
+
+        for (String term : terms) {
+            SortedMap<String, List<Posting>> matches = postings.subMap(term, term + Character.MAX_VALUE);
+            for (List<Posting> list : matches.values()) {
+                double idf = idf(list.size());
+                for (Posting p : list) {
+                    if (wanted != null && !wanted.equals(types[p.doc])) continue;
+                    double tf = TITLE_WEIGHT * p.titleTf / norm(titleLengths[p.doc], avgTitleLength)
+                              + AUTHOR_WEIGHT * p.authorTf / norm(authorLengths[p.doc], avgAuthorLength);
+                    scores.merge(p.doc, idf * tf / (K1 + tf), Double::sum);
+                }
+            }
+        }
+
+        PriorityQueue<Scored> heap = new PriorityQueue<>(k + 1, (x, y) -> {
+            int c = Double.compare(x.score, y.score);
+            return c != 0 ? c : Integer.compare(ids[y.doc], ids[x.doc]);
+        });
+        for (Map.Entry<Integer, Double> e : scores.entrySet()) {
+            heap.offer(new Scored(e.getKey(), e.getValue()));
+            if (heap.size() > k) heap.poll();
+        }
+
+        while (!heap.isEmpty()) {
+            result.add(ids[heap.poll().doc]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** @return number of indexed media items */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Computes the inverse document frequency of a term.
+     *
+     * @param docFreq number of documents containing the term
+     * @return idf value, always positive
+     */
+    private double idf(int docFreq) {
+        return Math.log(1 + (ids.length - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    /**
+     * Computes the length normalization of a field.
+     *
+     * @param length field length in words
+     * @param avg average field length
+     * @return normalization factor
+     */
+    private static double norm(int length, double avg) {
+        return 1 - B + B * length / avg;
+    }
+
+    /**
+     * Splits text into lowercase words of letters and digits.
+     *
+     * @param text text to split
+     * @return list of words
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        StringBuilder sb = new StringBuilder();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else if (sb.length() > 0) {
+                words.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        if (sb.length() > 0) words.add(sb.toString());
+        return words;
+    }
+}
@@ -0,0 +1,140 @@
+package com.library.service;
+
+import com.library.dao.OutboxDAO;
+import com.library.util.AppConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Email server that writes messages to the notification outbox instead of
+ * sending them. Messages are committed every outbox.batch.size messages and
+ * on close, so the connection should not be the one reading the recipients:
+ * what was queued stays queued if the run fails later.
+ * The idempotency key is the run (reminder kind and window) plus a hash of
+ * the recipient. It does not depend on the message text, so repeating a run
+ * in the same window does not queue a message twice even if fines or days
+ * late changed in between.
+ */
+public class OutboxEmailServer implements EmailServer, AutoCloseable {
+
+    private final Connection conn;
+    private final OutboxDAO outboxDAO;
+    private final String run;
+    private final int batchSize;
+    private int pending;
+    private int queued;
+
+    /**
+     * Creates a server that queues into the outbox.
+     *
+     * @param conn connection the messages are written on
+     * @param outboxDAO DAO for the outbox table
+     * @param run identity of the run, see {@link #run(String, Instant, int)}
+     */
+    public OutboxEmailServer(Connection conn, OutboxDAO outboxDAO, String run) {
+        this.conn = conn;
+        this.outboxDAO = outboxDAO;
+        this.run = run;
+        this.batchSize = Math.max(1, AppConfig.getInt("outbox.batch.size", 100));
+    }
+
+    /**
+     * Queues a message unless the recipient already has one for this run.
+     * If queueing fails, the messages of the current batch are rolled back.
+     *
+     * @param to      recipient email address
+     * @param subject subject line
+     * @param body    message body
+     * @throws RuntimeException if the message cannot be queued
+     */
+    @Override
+    public void send(String to, String subject, String body) {
+        try {
+            if (outboxDAO.enqueue(conn, key(run, to), to, subject, body)) {
+                queued++;
+            }
+            if (++pending >= batchSize) {
+                flush();
+            }
+        } catch (Exception e) {
+            pending = 0;
+            try {
+                if (!conn.getAutoCommit()) conn.rollback();
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new RuntimeException("Failed to queue email", e);
+        }
+    }
+
+    /**
+     * Commits the messages queued since the last commit.
+     *
+     * @throws SQLException if the commit fails
+     */
+    public void flush() throws SQLException {
+        if (pending > 0 && !conn.getAutoCommit()) {
+            conn.commit();
+        }
+        pending = 0;
+    }
+
+    /**
+     * Commits the last batch.
+     *
+     * @throws SQLException if the commit fails
+     */
+    @Override
+    public void close() throws SQLException {
+        flush();
+    }
+
+    /** @return messages queued by this server, without duplicates */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Builds the identity of a reminder run: its kind and the start of the
+     * window it falls in. Windows are counted from the epoch in UTC, so with
+     * 24 hours every day is one run.
+     *
+     * @param kind reminder kind, for example overdue or digest
+     * @param now time of the run
+     * @param windowHours length of a window in hours
+     * @return run identity of the form kind@windowStart
+     */
+    public static String run(String kind, Instant now, int windowHours) {
+        long window = Math.max(1, windowHours) * 3600L;
+        long start = Math.floorDiv(now.getEpochSecond(), window) * window;
+        return kind + "@" + Instant.ofEpochSecond(start);
+    }
+
+    /**
+     * Builds the idempotency key of a message.
+     *
+     * @param run identity of the run
+     * @param to recipient email address
+     * @return key of the form run:hash
+     */
+    static String key(String run, String to) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha.digest(to.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(run + ":");
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.library.service;
+
+import com.library.dao.OutboxDAO;
+import com.library.model.OutboxMessage;
+import com.library.util.AppConfig;
+import com.library.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the messages of the notification outbox in batches.
+ * A failed message is tried again after an exponentially growing delay and
+ * moves to the dead-letter state after outbox.max.attempts attempts.
+ * Because every sent message is recorded, a run that stopped halfway
+ * continues where it stopped and does not send anything twice.
+ * Settings: outbox.batch.size, outbox.lease.s, outbox.max.attempts,
+ * outbox.retry.base.s, outbox.retry.max.s, and outbox.poll.ms.
+ */
+public class OutboxSender implements AutoCloseable {
+
+    private final Connection conn;
+    private final OutboxDAO outboxDAO;
+    private final EmailServer server;
+    private final int batchSize;
+    private final int leaseSeconds;
+    private final int maxAttempts;
+    private final long retryBaseSeconds;
+    private final long retryMaxSeconds;
+    private ScheduledExecutorService scheduler;
+    private Runnable onClose = () -> { };
+
+    private int sent;
+    private int retried;
+    private int dead;
+
+    /**
+     * Creates a sender with the configured settings.
+     *
+     * @param conn connection used for the outbox
+     * @param outboxDAO DAO for the outbox table
+     * @param server server that sends the messages
+     */
+    public OutboxSender(Connection conn, OutboxDAO outboxDAO, EmailServer server) {
+        this.conn = conn;
+        this.outboxDAO = outboxDAO;
+        this.server = server;
+        this.batchSize = Math.max(1, AppConfig.getInt("outbox.batch.size", 100));
+        this.leaseSeconds = Math.max(1, AppConfig.getInt("outbox.lease.s", 300));
+        this.maxAttempts = Math.max(1, AppConfig.getInt("outbox.max.attempts", 5));
+        this.retryBaseSeconds = Math.max(1, AppConfig.getLong("outbox.retry.base.s", 60));
+        this.retryMaxSeconds = Math.max(retryBaseSeconds, AppConfig.getLong("outbox.retry.max.s", 3600));
+    }
+
+    /**
+     * Starts a background sender on a dedicated connection if
+     * outbox.poll.ms is greater than 0. Credentials come from the .env file.
+     *
+     * @return running sender, or null if it is disabled or cannot start
+     */
+    public static OutboxSender startIfEnabled() {
+        long interval = AppConfig.getLong("outbox.poll.ms", 0);
+        if (interval <= 0) return null;
+        try {
+            Connection dedicated = DatabaseConnection.openDedicated();
+            DotenvEmailServer smtp;
+            try {
+                smtp = new DotenvEmailServer();
+            } catch (RuntimeException e) {
+                DatabaseConnection.closeDedicated(dedicated);
+                throw e;
+            }
+            OutboxSender sender = new OutboxSender(dedicated, new OutboxDAO(),
+                    RateLimitedEmailServer.forProvider(smtp.getHost(), smtp));
+            sender.onClose = () -> {
+                smtp.close();
+                try {
+                    DatabaseConnection.closeDedicated(dedicated);
+                } catch (Exception ignore) {
+                    // the sender is stopping either way
+                }
+            };
+            sender.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "outbox-sender");
+                t.setDaemon(true);
+                return t;
+            });
+            sender.scheduler.scheduleWithFixedDelay(sender::drainQuietly, interval, interval, TimeUnit.MILLISECONDS);
+            return sender;
+        } catch (Exception e) {
+            System.out.println("Outbox sender not started: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sends due messages batch by batch until none is due.
+     *
+     * @return number of messages sent
+     * @throws Exception if the outbox cannot be read or updated
+     */
+    public synchronized int drain() throws Exception {
+        int before = sent;
+        List<OutboxMessage> batch = claim();
+        while (!batch.isEmpty()) {
+            for (OutboxMessage m : batch) {
+                deliver(m);
+            }
+            batch = claim();
+        }
+        return sent - before;
+    }
+
+    /** @return messages sent by this sender */
+    public synchronized int getSent() {
+        return sent;
+    }
+
+    /** @return failed attempts that were scheduled again */
+    public synchronized int getRetried() {
+        return retried;
+    }
+
+    /** @return messages moved to the dead-letter state */
+    public synchronized int getDead() {
+        return dead;
+    }
+
+    /**
+     * Stops the background sender. Messages not sent yet stay in the outbox.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        onClose.run();
+    }
+
+    /**
+     * Picks the wait before the next attempt.
+     *
+     * @param attempts attempts made so far, from 1
+     * @return wait in seconds
+     */
+    long retryDelaySeconds(int attempts) {
+        long delay = retryBaseSeconds << Math.min(Math.max(0, attempts - 1), 20);
+        return Math.min(retryMaxSeconds, delay);
+    }
+
+    /**
+     * Claims the next batch and commits the claim if a transaction is open.
+     *
+     * @return claimed messages
+     * @throws Exception if the outbox cannot be read
+     */
+    private List<OutboxMessage> claim() throws Exception {
+        List<OutboxMessage> batch = outboxDAO.claim(conn, batchSize, leaseSeconds);
+        commitIfNeeded();
+        return batch;
+    }
+
+    /**
+     * Sends one message and records the outcome.
+     *
+     * @param m claimed message
+     * @throws Exception if the outcome cannot be recorded
+     */
+    private void deliver(OutboxMessage m) throws Exception {
+        try {
+            server.send(m.getRecipient(), m.getSubject(), m.getBody());
+        } catch (RuntimeException e) {
+            String error = e.getCause() != null ? e.getCause().toString() : e.toString();
+            if (m.getAttempts() >= maxAttempts) {
+                outboxDAO.markDead(conn, m.getId(), error);
+                dead++;
+                System.out.println("Giving up on email to " + m.getRecipient() + ": " + error);
+            } else {
+                outboxDAO.markRetry(conn, m.getId(), error, retryDelaySeconds(m.getAttempts()));
+                retried++;
+            }
+            commitIfNeeded();
+            return;
+        }
+        outboxDAO.markSent(conn, m.getId());
+        commitIfNeeded();
+        sent++;
+    }
+
+    /**
+     * Commits when the connection is not in auto-commit mode,
+     * so every outcome is stored as soon as it is known.
+     *
+     * @throws Exception if the commit fails
+     */
+    private void commitIfNeeded() throws Exception {
+        if (!conn.getAutoCommit()) conn.commit();
+    }
+
+    /**
+     * Drains on the background thread and reports failures instead of stopping.
+     */
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (Exception e) {
+            System.out.println("Outbox sending failed: " + e.getMessage());
+        }
+    }
+}
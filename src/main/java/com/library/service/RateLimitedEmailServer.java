@@ -0,0 +1,86 @@
+package com.library.service;
+
+import com.library.util.AppConfig;
+import com.library.util.TokenBucketRateLimiter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Email server that keeps the send rate within the quota of the mail provider.
+ * Every message takes a token from the provider's bucket first and waits when
+ * the bucket is empty, so bursts are smoothed instead of rejected. Servers for
+ * the same provider share one bucket, so the background outbox sender and an
+ * interactive run together stay within the quota.
+ * Settings: mail.rate.per.s and mail.rate.burst, or per provider
+ * mail.rate.HOST.per.s and mail.rate.HOST.burst.
+ */
+public class RateLimitedEmailServer implements EmailServer {
+
+    private static final Map<String, TokenBucketRateLimiter> BUCKETS = new ConcurrentHashMap<>();
+
+    private final EmailServer delegate;
+    private final TokenBucketRateLimiter limiter;
+
+    /**
+     * Creates a server that waits for a token before each message.
+     *
+     * @param delegate server that sends the messages
+     * @param limiter bucket the tokens come from
+     */
+    public RateLimitedEmailServer(EmailServer delegate, TokenBucketRateLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Wraps a server with the configured quota of a provider.
+     *
+     * @param provider SMTP host of the provider
+     * @param delegate server that sends the messages
+     * @return rate limited server, or the delegate itself if no rate is configured
+     */
+    public static EmailServer forProvider(String provider, EmailServer delegate) {
+        TokenBucketRateLimiter limiter = limiter(provider);
+        return limiter == null ? delegate : new RateLimitedEmailServer(delegate, limiter);
+    }
+
+    /**
+     * Returns the shared bucket of a provider.
+     *
+     * @param provider SMTP host of the provider
+     * @return bucket, or null if the provider has no rate limit
+     */
+    public static TokenBucketRateLimiter limiter(String provider) {
+        double rate = AppConfig.getDouble("mail.rate." + provider + ".per.s",
+                AppConfig.getDouble("mail.rate.per.s", 0));
+        if (rate <= 0) return null;
+        int burst = AppConfig.getInt("mail.rate." + provider + ".burst",
+                AppConfig.getInt("mail.rate.burst", 1));
+        return BUCKETS.computeIfAbsent(provider, p -> new TokenBucketRateLimiter(rate, burst));
+    }
+
+    /**
+     * Waits for a token, then sends the message.
+     *
+     * @param to      recipient email address
+     * @param subject subject line
+     * @param body    message body
+     * @throws RuntimeException if interrupted while waiting or if sending fails
+     */
+    @Override
+    public void send(String to, String subject, String body) {
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to send email", e);
+        }
+        delegate.send(to, subject, body);
+    }
+
+    /** @return bucket this server takes tokens from */
+    public TokenBucketRateLimiter getLimiter() {
+        return limiter;
+    }
+}
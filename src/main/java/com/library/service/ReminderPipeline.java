@@ -0,0 +1,295 @@
+package com.library.service;
+
+import com.library.model.User;
+import com.library.util.AppConfig;
+import com.library.util.StageMetrics;
+import com.library.util.WorkerThreads;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs reminders through three stages joined by bounded queues:
+ * read (the caller, which streams recipients from the database), render,
+ * and send. Render and send run on their own executors, so the database
+ * cursor keeps moving while earlier messages are still on their way to the
+ * SMTP server. A full queue makes the stage before it wait, which keeps
+ * memory flat. A message that fails to render or send, or is still queued
+ * when the drain deadline passes, is counted and reported, and its user is
+ * listed in {@link #getFailedUserIds()}; the run goes on.
+ * Settings: reminder.pipeline.render.threads, reminder.pipeline.send.threads,
+ * reminder.pipeline.queue.size, and reminder.pipeline.drain.s.
+ */
+public class ReminderPipeline implements AutoCloseable {
+
+    /**
+     * One reminder on its way through the stages.
+     */
+    private static final class Job {
+        final User user;
+        final Callable<String> render;
+        String body;
+
+        Job(User user, Callable<String> render) {
+            this.user = user;
+            this.render = render;
+        }
+    }
+
+    /** Tells a worker to stop; queued behind every pending job. */
+    private static final Job STOP = new Job(null, null);
+
+    private final EmailNotifier notifier;
+    private final BlockingQueue<Job> toRender;
+    private final BlockingQueue<Job> toSend;
+    private final ExecutorService renderers;
+    private final ExecutorService senders;
+    private final int renderThreads;
+    private final int sendThreads;
+    private final long drainSeconds;
+    private final StageMetrics read = new StageMetrics("read");
+    private final StageMetrics render = new StageMetrics("render");
+    private final StageMetrics send = new StageMetrics("send");
+    private final Set<Integer> failedUserIds = ConcurrentHashMap.newKeySet();
+    private long lastSubmit = System.nanoTime();
+    private boolean closed;
+
+    /**
+     * Creates a pipeline with the configured settings.
+     *
+     * @param notifier notifier the send stage uses
+     */
+    public ReminderPipeline(EmailNotifier notifier) {
+        this(notifier,
+                AppConfig.getInt("reminder.pipeline.render.threads", 1),
+                AppConfig.getInt("reminder.pipeline.send.threads", 4),
+                AppConfig.getInt("reminder.pipeline.queue.size", 1000),
+                AppConfig.getLong("reminder.pipeline.drain.s", 60));
+    }
+
+    /**
+     * Creates a pipeline and starts its workers.
+     *
+     * @param notifier notifier the send stage uses
+     * @param renderThreads render workers
+     * @param sendThreads send workers
+     * @param capacity jobs that can wait in each queue
+     * @param drainSeconds how long close waits for the queues to drain
+     */
+    ReminderPipeline(EmailNotifier notifier, int renderThreads, int sendThreads, int capacity, long drainSeconds) {
+        this.notifier = notifier;
+        this.renderThreads = Math.max(1, renderThreads);
+        this.sendThreads = Math.max(1, sendThreads);
+        this.toRender = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.toSend = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.drainSeconds = drainSeconds;
+        this.renderers = start("reminder-render-", this.renderThreads, this::renderLoop);
+        this.senders = start("reminder-send-", this.sendThreads, this::sendLoop);
+    }
+
+    /**
+     * Hands a reminder to the render stage. Waits while its queue is full.
+     * Called by the read stage only.
+     *
+     * @param user recipient
+     * @param body renders the message body; runs on a render worker
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public void submit(User user, Callable<String> body) throws InterruptedException {
+        if (closed) throw new IllegalStateException("Reminder pipeline is closed");
+        read.recordItem(System.nanoTime() - lastSubmit);
+        handOff(toRender, new Job(user, body), read, render);
+        lastSubmit = System.nanoTime();
+    }
+
+    /** @return metrics of the read, render, and send stages, in that order */
+    public List<StageMetrics> getMetrics() {
+        return List.of(read, render, send);
+    }
+
+    /**
+     * Returns the users whose reminder failed to render or send, or was
+     * dropped at the drain deadline. Complete once close has returned.
+     *
+     * @return ids of users who were not reminded
+     */
+    public Set<Integer> getFailedUserIds() {
+        return failedUserIds;
+    }
+
+    /**
+     * Waits until every submitted reminder is sent, then stops the workers.
+     * Workers still busy after reminder.pipeline.drain.s are interrupted,
+     * and the reminders they did not get to are counted as failed.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+        try {
+            stop(toRender, renderThreads, renderers, deadline);
+            stop(toSend, sendThreads, senders, deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            renderers.shutdownNow();
+            senders.shutdownNow();
+        }
+        awaitExit(renderers);
+        awaitExit(senders);
+        dropPending(toRender, render);
+        dropPending(toSend, send);
+    }
+
+    /**
+     * Renders jobs until told to stop.
+     */
+    private void renderLoop() {
+        try {
+            for (Job j = toRender.take(); j != STOP; j = toRender.take()) {
+                long start = System.nanoTime();
+                try {
+                    j.body = j.render.call();
+                } catch (Exception e) {
+                    fail(render, j, "Failed to render reminder for " + j.user.getEmail() + ": " + e.getMessage());
+                    continue;
+                }
+                render.recordItem(System.nanoTime() - start);
+                try {
+                    handOff(toSend, j, render, send);
+                } catch (InterruptedException e) {
+                    fail(send, j, "Reminder to " + j.user.getEmail() + " dropped: not sent before the drain deadline");
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends jobs until told to stop.
+     */
+    private void sendLoop() {
+        try {
+            for (Job j = toSend.take(); j != STOP; j = toSend.take()) {
+                long start = System.nanoTime();
+                try {
+                    notifier.notify(j.user, j.body);
+                } catch (RuntimeException e) {
+                    fail(send, j, "Failed to send reminder to " + j.user.getEmail() + ": " + e.getMessage());
+                    continue;
+                }
+                send.recordItem(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Counts a reminder that was not sent and reports it.
+     *
+     * @param stage stage the reminder failed in
+     * @param job the reminder
+     * @param message what went wrong
+     */
+    private void fail(StageMetrics stage, Job job, String message) {
+        stage.recordFailure();
+        failedUserIds.add(job.user.getUserId());
+        System.out.println(message);
+    }
+
+    /**
+     * Counts the jobs left on a queue after its workers stopped as failed.
+     *
+     * @param queue input queue of the stage
+     * @param stage stage that reads the queue
+     */
+    private void dropPending(BlockingQueue<Job> queue, StageMetrics stage) {
+        for (Job j = queue.poll(); j != null; j = queue.poll()) {
+            if (j != STOP) {
+                fail(stage, j, "Reminder to " + j.user.getEmail() + " dropped: not sent before the drain deadline");
+            }
+        }
+    }
+
+    /**
+     * Gives interrupted workers a moment to exit, so no job moves between
+     * queues while the leftovers are counted.
+     *
+     * @param executor executor of a stage
+     */
+    private static void awaitExit(ExecutorService executor) {
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puts a job on the next stage's queue and records the wait and depth.
+     *
+     * @param queue queue of the next stage
+     * @param job job to pass on
+     * @param from stage handing the job off
+     * @param to stage that reads the queue
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void handOff(BlockingQueue<Job> queue, Job job, StageMetrics from, StageMetrics to)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        queue.put(job);
+        from.recordWait(System.nanoTime() - start);
+        to.recordQueueDepth(queue.size());
+    }
+
+    /**
+     * Queues one stop marker per worker and waits for the stage to finish.
+     * A stage that is still busy at the deadline is interrupted.
+     *
+     * @param queue input queue of the stage
+     * @param workers number of workers
+     * @param executor executor of the stage
+     * @param deadline System.nanoTime value to give up at
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void stop(BlockingQueue<Job> queue, int workers, ExecutorService executor, long deadline)
+            throws InterruptedException {
+        for (int i = 0; i < workers; i++) {
+            if (!queue.offer(STOP, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+                return;
+            }
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts the workers of one stage on an executor of its own.
+     *
+     * @param prefix thread name prefix
+     * @param threads number of workers
+     * @param loop worker loop
+     * @return executor running the workers
+     */
+    private static ExecutorService start(String prefix, int threads, Runnable loop) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, WorkerThreads.factory(prefix));
+        for (int i = 0; i < threads; i++) {
+            executor.execute(loop);
+        }
+        return executor;
+    }
+}
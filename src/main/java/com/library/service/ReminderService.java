@@ -2,24 +2,70 @@ package com.library.service;
 
 import com.library.dao.BorrowingDAO;
 import com.library.dao.UserDAO;
-import com.library.model.Borrowing;
+
+import com.library.model.ReminderDigest;
 import com.library.model.User;
+import com.library.util.AppConfig;
+import com.library.util.StageMetrics;
 
 import java.sql.Connection;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Reminder logic for overdue borrowings (US3.1).
- * Counts overdue items per user and sends a message:
- * "You have n overdue book(s)." to each user.
+ * Sends each user with overdue items either the short message
+ * "You have n overdue book(s)." or, with reminder.digest.enabled, a digest
+ * of the items and unpaid fines rendered from the reminder templates.
+ * Recipients are streamed from one grouped query, and the users reached
+ * are recorded in the reminder log so digests skip them within the window.
+ * With reminder.pipeline.enabled, messages are rendered and sent by a
+ * ReminderPipeline while the recipients are still being read; the stage
+ * metrics of that run are available from {@link #getStageMetrics()}.
  */
 public class ReminderService {
 
+    /**
+     * Receives a recipient and the renderer of the message body.
+     */
+    private interface Sink {
+        /**
+         * @param user recipient
+         * @param body renders the message body
+         * @throws Exception if the message cannot be passed on
+         */
+        void accept(User user, Callable<String> body) throws Exception;
+    }
+
+    /**
+     * Reads recipients and passes them to a sink.
+     */
+    private interface Reader {
+        /**
+         * @param sink receives every recipient read
+         * @throws Exception if reading fails
+         */
+        void read(Sink sink) throws Exception;
+    }
+
+    /** Default digest text; {items} holds the rendered item lines, one per overdue item. */
+    static final String DIGEST_TEMPLATE = "Hello {name},\n\n"
+            + "You have {count} overdue item(s):\n{items}\n\n"
+            + "Unpaid fines: {fines} NIS.";
+
+    /** Default line for one overdue item. */
+    static final String ITEM_TEMPLATE = "- {title}, due {due}, {days} day(s) late, fine {fine} NIS";
+
     private final Connection conn;
     private final BorrowingDAO borrowingDAO;
     private final UserDAO userDAO;
     private final EmailNotifier notifier;
+    private final ReminderTemplate digestTemplate;
+    private final ReminderTemplate itemTemplate;
+    private final boolean pipelined;
+    private List<StageMetrics> stageMetrics = List.of();
 
     /**
      * Creates a new reminder service.
@@ -33,38 +79,133 @@ public class ReminderService {
                            BorrowingDAO borrowingDAO,
                            UserDAO userDAO,
                            EmailNotifier notifier) {
+        this(conn, borrowingDAO, userDAO, notifier, AppConfig.getBoolean("reminder.pipeline.enabled", true));
+    }
+
+    /**
+     * Creates a new reminder service.
+     * Messages must be sent on the reading thread when sending writes to the
+     * same connection, as the outbox does.
+     *
+     * @param conn         SQL connection used for queries
+     * @param borrowingDAO DAO for overdue borrowings
+     * @param userDAO      DAO for users
+     * @param notifier     helper used to send emails
+     * @param pipelined    true to render and send on pipeline workers,
+     *                     false to do everything on the reading thread
+     */
+    public ReminderService(Connection conn,
+                           BorrowingDAO borrowingDAO,
+                           UserDAO userDAO,
+                           EmailNotifier notifier,
+                           boolean pipelined) {
         this.conn = conn;
+        this.pipelined = pipelined;
         this.borrowingDAO = borrowingDAO;
         this.userDAO = userDAO;
         this.notifier = notifier;
+        this.digestTemplate = ReminderTemplate.compile(AppConfig.get("reminder.template", DIGEST_TEMPLATE));
+        this.itemTemplate = ReminderTemplate.compile(AppConfig.get("reminder.item.template", ITEM_TEMPLATE));
     }
 
     /**
      * Sends reminder emails to users who have overdue items.
      * The email body uses the text: "You have n overdue book(s).".
+     * Recipients are streamed from one grouped query that already carries
+     * each user's email address and overdue count, so no user is looked up
+     * separately. The users reminded are recorded in the reminder log.
      *
-     * @return map from user id to number of overdue items
+     * @return map from user id to number of overdue items, for the users
+     *         whose reminder was sent
      * @throws Exception if reading data or sending messages fails
      */
     public Map<Integer, Integer> sendOverdueReminders() throws Exception {
-        List<Borrowing> all = borrowingDAO.findOverdueMedia(conn);
-        if (all == null || all.isEmpty()) return Collections.emptyMap();
+        Map<Integer, Integer> counts = new LinkedHashMap<>();
+        Set<Integer> failed = run(sink -> borrowingDAO.streamOverdueRecipients(conn, (user, overdue) -> {
+            counts.put(user.getUserId(), overdue);
+            sink.accept(user, () -> String.format("You have %d overdue book(s).", overdue));
+        }));
+        counts.keySet().removeAll(failed);
+        borrowingDAO.recordReminders(conn, counts.keySet(), EmailNotifier.SUBJECT);
+        return counts;
+    }
 
+    /**
+     * Sends one digest per user with overdue items: titles, due dates, days
+     * late, and unpaid fines, rendered from the reminder.template and
+     * reminder.item.template settings. Digests come from one grouped query.
+     * Users who were reminded within reminder.window.hours, directly or
+     * through the outbox, are skipped, so repeated runs do not flood them.
+     *
+     * @return map from user id to number of overdue items, for the users
+     *         whose digest was sent
+     * @throws Exception if reading data or sending messages fails
+     */
+    public Map<Integer, Integer> sendOverdueDigests() throws Exception {
         LocalDate today = LocalDate.now();
-        Map<Integer, Integer> counts = new HashMap<>();
+        int window = AppConfig.getInt("reminder.window.hours", 24);
+        Map<Integer, Integer> counts = new LinkedHashMap<>();
+        Set<Integer> failed = run(sink -> borrowingDAO.streamOverdueDigests(conn, EmailNotifier.SUBJECT, window, d -> {
+            counts.put(d.getUser().getUserId(), d.getItems().size());
+            sink.accept(d.getUser(), () -> renderDigest(d, today));
+        }));
+        counts.keySet().removeAll(failed);
+        borrowingDAO.recordReminders(conn, counts.keySet(), EmailNotifier.SUBJECT);
+        return counts;
+    }
+
+    /** @return stage metrics of the last pipelined run, empty if there was none */
+    public List<StageMetrics> getStageMetrics() {
+        return stageMetrics;
+    }
 
-        for (Borrowing b : all) {
-            boolean overdue = "overdue".equalsIgnoreCase(b.getStatus())
-                    || (b.getDueDate() != null && b.getDueDate().isBefore(today));
-            if (!overdue) continue;
-            counts.merge(b.getUserId(), 1, Integer::sum);
+    /**
+     * Reads the recipients and sends their messages, through a pipeline
+     * if enabled. Every message read has been sent or reported when this returns.
+     *
+     * @param reader streams the recipients
+     * @return ids of users whose message failed on the pipeline, empty without one
+     * @throws Exception if reading fails, or sending fails without a pipeline
+     */
+    private Set<Integer> run(Reader reader) throws Exception {
+        if (!pipelined) {
+            reader.read((user, body) -> notifier.notify(user, body.call()));
+            return Set.of();
+        }
+        ReminderPipeline pipeline = new ReminderPipeline(notifier);
+        try {
+            reader.read(pipeline::submit);
+        } finally {
+            pipeline.close();
+            stageMetrics = pipeline.getMetrics();
         }
+        return pipeline.getFailedUserIds();
+    }
 
-        for (Map.Entry<Integer, Integer> e : counts.entrySet()) {
-            User u = userDAO.findById(conn, e.getKey());
-            String body = String.format("You have %d overdue book(s).", e.getValue());
-            notifier.notify(u, body);
+    /**
+     * Renders the message of one digest.
+     *
+     * @param digest overdue items of one user
+     * @param today date the days late are counted to
+     * @return message body
+     */
+    String renderDigest(ReminderDigest digest, LocalDate today) {
+        StringBuilder items = new StringBuilder();
+        Map<String, Object> values = new HashMap<>();
+        for (ReminderDigest.Item item : digest.getItems()) {
+            if (items.length() > 0) items.append('\n');
+            values.put("title", item.getTitle());
+            values.put("due", item.getDueDate());
+            values.put("days", item.getDueDate() == null ? 0 : ChronoUnit.DAYS.between(item.getDueDate(), today));
+            values.put("fine", String.format("%.2f", item.getFine()));
+            itemTemplate.renderTo(items, values);
         }
-        return counts;
+
+        values.clear();
+        values.put("name", digest.getUser().getUsername());
+        values.put("count", digest.getItems().size());
+        values.put("items", items);
+        values.put("fines", String.format("%.2f", digest.getTotalFine()));
+        return digestTemplate.render(values);
     }
 }
@@ -0,0 +1,76 @@
+package com.library.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Message template with {name} placeholders, parsed once and then rendered
+ * many times. Rendering appends the literal parts and the placeholder values
+ * to one builder, without searching the template again for every message.
+ * Unknown placeholders render as empty text.
+ */
+public final class ReminderTemplate {
+
+    /** Literal text and placeholder names, alternating, starting with text. */
+    private final String[] parts;
+
+    /**
+     * @param parts literal text and placeholder names, alternating
+     */
+    private ReminderTemplate(String[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Parses a template.
+     *
+     * @param template text with {name} placeholders
+     * @return compiled template
+     * @throws IllegalArgumentException if a placeholder is not closed
+     */
+    public static ReminderTemplate compile(String template) {
+        List<String> parts = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+            int open = template.indexOf('{', pos);
+            if (open < 0) break;
+            int close = template.indexOf('}', open);
+            if (close < 0) throw new IllegalArgumentException("Unclosed placeholder at " + open);
+            parts.add(template.substring(pos, open));
+            parts.add(template.substring(open + 1, close));
+            pos = close + 1;
+        }
+        parts.add(template.substring(pos));
+        return new ReminderTemplate(parts.toArray(new String[0]));
+    }
+
+    /**
+     * Renders the template into a builder.
+     *
+     * @param out builder that receives the text
+     * @param values placeholder values by name
+     */
+    public void renderTo(StringBuilder out, Map<String, ?> values) {
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 0) {
+                out.append(parts[i]);
+            } else {
+                Object v = values.get(parts[i]);
+                if (v != null) out.append(v);
+            }
+        }
+    }
+
+    /**
+     * Renders the template.
+     *
+     * @param values placeholder values by name
+     * @return rendered text
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder out = new StringBuilder();
+        renderTo(out, values);
+        return out.toString();
+    }
+}
@@ -6,7 +6,9 @@ import com.library.util.DatabaseConnection;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service for end-user actions: login, search, borrow, return,
@@ -19,6 +21,8 @@ public class UserService {
     private BorrowingDAO borrowingDAO = new BorrowingDAO();
     private FineDAO fineDAO = new FineDAO();
     private User loggedUser;
+    private MediaSearchIndex searchIndex;
+    private long searchIndexVersion = -1;
 
     /**
      * Opens a database connection for user operations.
@@ -68,6 +72,98 @@ public class UserService {
         return mediaDAO.searchMedia(conn, keyword, type);
     }
 
+    /**
+     * Searches for media and returns counts per type and availability
+     * together with the first page of matches, best matches first.
+     * Counts and page cover the same matches: the best title and author
+     * hits from the ranking index are kept only if they pass the database
+     * filter, and the rest of the page is filled with the lowest-id matches,
+     * read with a limit. This covers keywords that only match inside words
+     * or in the ISBN, which the ranking index does not.
+     *
+     * @param keyword text to match
+     * @param type media type or "media" for all
+     * @param pageSize largest number of items in the page
+     * @return counts and the first page of matches
+     * @throws Exception if data access fails
+     */
+    public FacetedSearchResult facetedSearch(String keyword, String type, int pageSize) throws Exception {
+        FacetedSearchResult result = mediaDAO.facetedSearch(conn, keyword, type, 0, 0);
+        if (result.getTotal() == 0 || pageSize <= 0) return result;
+
+        List<Integer> ranked = rankedIds(keyword, type, pageSize);
+        Map<Integer, Media> matches = mediaDAO.searchMediaAmong(conn, keyword, type, ranked);
+        List<Media> page = new ArrayList<>();
+        for (Integer id : ranked) {
+            Media m = matches.get(id);
+            if (m != null) page.add(m);
+        }
+        if (page.size() < pageSize) {
+            for (Media m : mediaDAO.searchMediaPage(conn, keyword, type, 0, pageSize)) {
+                if (page.size() == pageSize) break;
+                if (!matches.containsKey(m.getId())) page.add(m);
+            }
+        }
+        result.setPage(page);
+        return result;
+    }
+
+    /**
+     * Returns one page of search matches ordered by id, for paging through
+     * all matches after the ranked first page of {@link #facetedSearch}.
+     *
+     * @param keyword text to match
+     * @param type media type or "media" for all
+     * @param afterId last id of the previous page, 0 for the first page
+     * @param limit largest number of items
+     * @return page of matching media
+     * @throws Exception if data access fails
+     */
+    public List<Media> searchMediaPage(String keyword, String type, int afterId, int limit) throws Exception {
+        return mediaDAO.searchMediaPage(conn, keyword, type, afterId, limit);
+    }
+
+    /**
+     * Returns the best title and author matches ranked with BM25.
+     * The index is rebuilt only when media was added or removed;
+     * the returned items are loaded fresh so availability is current.
+     *
+     * @param keyword text to match
+     * @param type media type or "media" for all
+     * @param limit largest number of results
+     * @return ranked matches, best first
+     * @throws Exception if data access fails
+     */
+    public List<Media> rankedSearch(String keyword, String type, int limit) throws Exception {
+        List<Integer> ids = rankedIds(keyword, type, limit);
+        Map<Integer, Media> current = mediaDAO.findByIds(conn, ids);
+        List<Media> ranked = new ArrayList<>();
+        for (Integer id : ids) {
+            Media m = current.get(id);
+            if (m != null) ranked.add(m);
+        }
+        return ranked;
+    }
+
+    /**
+     * Returns the ids of the best title and author matches, best first,
+     * rebuilding the ranking index if media was added or removed.
+     *
+     * @param keyword text to match
+     * @param type media type or "media" for all
+     * @param limit largest number of ids
+     * @return ranked ids
+     * @throws Exception if data access fails
+     */
+    private List<Integer> rankedIds(String keyword, String type, int limit) throws Exception {
+        long version = mediaDAO.contentVersion(conn);
+        if (searchIndex == null || version != searchIndexVersion) {
+            searchIndex = new MediaSearchIndex(mediaDAO.listAllMedia(conn, "media"));
+            searchIndexVersion = version;
+        }
+        return searchIndex.topK(keyword, type, limit);
+    }
+
     /**
      * Borrows a media item for the logged-in user.
      * Borrowing is allowed only if the user has no unpaid balance
@@ -87,11 +183,6 @@ public class UserService {
             return false;
         }
 
-        if (!media.isAvailable()) {
-            System.out.println("Media is already borrowed.");
-            return false;
-        }
-
         double balance = userDAO.getUserBalance(conn, loggedUser.getUserId());
         if (balance > 0) {
             System.out.println("User has unpaid balance and cannot borrow.");
@@ -165,6 +256,19 @@ public class UserService {
         return borrowingDAO.findBorrowings(conn, userId);
     }
 
+    /**
+     * Gets the items a user has not returned yet, with their titles.
+     *
+     * @param userId user id
+     * @return list of borrowed items
+     * @throws Exception if not logged in or reading fails
+     */
+    public List<BorrowedItem> findBorrowedItems(int userId) throws Exception {
+        if (loggedUser == null)
+            throw new IllegalStateException("User not logged in.");
+        return borrowingDAO.findBorrowedItems(conn, userId);
+    }
+
     /**
      * Gets fines for a specific user.
      *
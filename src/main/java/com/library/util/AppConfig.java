@@ -0,0 +1,105 @@
+package com.library.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Reads optional tuning settings from library.properties.
+ * A JVM system property with the same key overrides the file value,
+ * and every getter falls back to a default when the key is missing.
+ */
+public final class AppConfig {
+
+    /** Settings loaded once from the classpath. */
+    private static final Properties PROPS = load();
+
+    private AppConfig() {}
+
+    /**
+     * Loads library.properties from the classpath if it exists.
+     *
+     * @return loaded properties, empty if the file is missing
+     */
+    private static Properties load() {
+        Properties props = new Properties();
+        try (InputStream input =
+                 AppConfig.class.getClassLoader().getResourceAsStream("library.properties")) {
+            if (input != null) {
+                props.load(input);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not read library.properties: " + e.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Returns a text setting.
+     *
+     * @param key setting name
+     * @param defaultValue value used when the key is missing
+     * @return configured value or the default
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) value = PROPS.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Returns an integer setting.
+     *
+     * @param key setting name
+     * @param defaultValue value used when the key is missing or invalid
+     * @return configured value or the default
+     */
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns a long setting.
+     *
+     * @param key setting name
+     * @param defaultValue value used when the key is missing or invalid
+     * @return configured value or the default
+     */
+    public static long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns a decimal setting.
+     *
+     * @param key setting name
+     * @param defaultValue value used when the key is missing or invalid
+     * @return configured value or the default
+     */
+    public static double getDouble(String key, double defaultValue) {
+        try {
+            return Double.parseDouble(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns a boolean setting.
+     *
+     * @param key setting name
+     * @param defaultValue value used when the key is missing
+     * @return configured value or the default
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.library.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a cache: hits, misses, evictions, and expired entries.
+ */
+public class CacheStats {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /** Records a lookup that was served from the cache. */
+    public void recordHit() { hits.incrementAndGet(); }
+
+    /** Records a lookup that had to go to the source. */
+    public void recordMiss() { misses.incrementAndGet(); }
+
+    /** Records an entry dropped because the cache was full. */
+    public void recordEviction() { evictions.incrementAndGet(); }
+
+    /** Records an entry dropped because it was too old or out of date. */
+    public void recordExpiration() { expirations.incrementAndGet(); }
+
+    /** @return number of hits */
+    public long getHits() { return hits.get(); }
+
+    /** @return number of misses */
+    public long getMisses() { return misses.get(); }
+
+    /** @return number of size evictions */
+    public long getEvictions() { return evictions.get(); }
+
+    /** @return number of expired or stale entries */
+    public long getExpirations() { return expirations.get(); }
+
+    /**
+     * Returns the share of lookups served from the cache.
+     *
+     * @return hit rate between 0 and 1, or 0 when nothing was looked up
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d evictions=%d expired=%d hitRate=%.2f",
+                getHits(), getMisses(), getEvictions(), getExpirations(), getHitRate());
+    }
+}
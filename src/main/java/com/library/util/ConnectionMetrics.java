@@ -0,0 +1,83 @@
+package com.library.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the database connection: opens, reconnects, transient
+ * failures, retries, pings, and how long opening a connection took.
+ * A slow open usually means the database endpoint was resuming from idle.
+ */
+public class ConnectionMetrics {
+
+    private final AtomicLong opens = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong transientFailures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong pings = new AtomicLong();
+    private final AtomicLong failedPings = new AtomicLong();
+    private final AtomicLong lastOpenMillis = new AtomicLong();
+    private final AtomicLong maxOpenMillis = new AtomicLong();
+
+    /**
+     * Records a connection that was opened.
+     *
+     * @param millis time from the first attempt to the open connection, retries included
+     */
+    public void recordOpen(long millis) {
+        opens.incrementAndGet();
+        lastOpenMillis.set(millis);
+        maxOpenMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    /** Records a broken connection that was replaced. */
+    public void recordReconnect() { reconnects.incrementAndGet(); }
+
+    /** Records a call that failed with a transient error. */
+    public void recordTransientFailure() { transientFailures.incrementAndGet(); }
+
+    /** Records a call that was attempted again. */
+    public void recordRetry() { retries.incrementAndGet(); }
+
+    /**
+     * Records a keep-alive ping.
+     *
+     * @param ok true if the connection answered
+     */
+    public void recordPing(boolean ok) {
+        pings.incrementAndGet();
+        if (!ok) failedPings.incrementAndGet();
+    }
+
+    /** @return number of connections opened */
+    public long getOpens() { return opens.get(); }
+
+    /** @return number of broken connections replaced */
+    public long getReconnects() { return reconnects.get(); }
+
+    /** @return number of transient failures seen */
+    public long getTransientFailures() { return transientFailures.get(); }
+
+    /** @return number of retried calls */
+    public long getRetries() { return retries.get(); }
+
+    /** @return number of pings sent */
+    public long getPings() { return pings.get(); }
+
+    /** @return number of pings that failed */
+    public long getFailedPings() { return failedPings.get(); }
+
+    /** @return time the last open took, in milliseconds */
+    public long getLastOpenMillis() { return lastOpenMillis.get(); }
+
+    /** @return longest open so far, in milliseconds */
+    public long getMaxOpenMillis() { return maxOpenMillis.get(); }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return String.format("opens=%d reconnects=%d transientFailures=%d retries=%d pings=%d failedPings=%d "
+                        + "lastOpenMs=%d maxOpenMs=%d",
+                getOpens(), getReconnects(), getTransientFailures(), getRetries(), getPings(), getFailedPings(),
+                getLastOpenMillis(), getMaxOpenMillis());
+    }
+}
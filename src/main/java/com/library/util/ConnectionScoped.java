@@ -0,0 +1,63 @@
+package com.library.util;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds one value per open database connection.
+ * DAO objects are created freely, so state that must be shared by all of
+ * them (caches, indexes) is kept here instead of in DAO fields. Entries go
+ * away once their connection is no longer referenced, but only if the value
+ * does not reference the connection itself: a value holding statements
+ * keeps its own key alive, so such holders must {@link #remove(Connection)}
+ * the entry when the connection is closed.
+ *
+ * @param <T> value type
+ */
+public class ConnectionScoped<T> {
+
+    private final Map<Connection, T> values = new WeakHashMap<>();
+    private final Supplier<T> factory;
+
+    /**
+     * Creates a holder that builds new values with the given factory.
+     *
+     * @param factory creates the value for a new connection
+     */
+    public ConnectionScoped(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the value for the connection, creating it on first use.
+     *
+     * @param conn database connection
+     * @return value bound to the connection
+     */
+    public synchronized T get(Connection conn) {
+        return values.computeIfAbsent(conn, c -> factory.get());
+    }
+
+    /**
+     * Returns a snapshot of all current values.
+     *
+     * @return list of values for all live connections
+     */
+    public synchronized List<T> all() {
+        return new ArrayList<>(values.values());
+    }
+
+    /**
+     * Drops the value for a connection, for example after it was closed.
+     *
+     * @param conn database connection
+     * @return removed value or null
+     */
+    public synchronized T remove(Connection conn) {
+        return values.remove(conn);
+    }
+}
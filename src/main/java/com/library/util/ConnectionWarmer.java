@@ -0,0 +1,80 @@
+package com.library.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings a connection on a schedule so an idle serverless endpoint does not
+ * suspend, and so a lost connection is replaced in the background instead
+ * of on the next user action.
+ * Runs only when db.ping.interval.ms is greater than 0.
+ */
+public final class ConnectionWarmer implements AutoCloseable {
+
+    private final Connection conn;
+    private final int timeoutSeconds;
+    private final ConnectionMetrics metrics;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param conn connection to keep warm
+     * @param timeoutSeconds how long a ping may take
+     * @param metrics counters that receive pings
+     */
+    ConnectionWarmer(Connection conn, int timeoutSeconds, ConnectionMetrics metrics) {
+        this.conn = conn;
+        this.timeoutSeconds = timeoutSeconds;
+        this.metrics = metrics;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-warmer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts pinging the connection if a ping interval is configured.
+     *
+     * @param conn connection to keep warm
+     * @return running warmer, or null if pinging is disabled
+     */
+    public static ConnectionWarmer startIfEnabled(Connection conn) {
+        long interval = AppConfig.getLong("db.ping.interval.ms", 0);
+        if (interval <= 0) return null;
+        ConnectionWarmer warmer = new ConnectionWarmer(conn,
+                AppConfig.getInt("db.ping.timeout.s", 5), DatabaseConnection.metrics());
+        warmer.scheduler.scheduleWithFixedDelay(warmer::ping, interval, interval, TimeUnit.MILLISECONDS);
+        return warmer;
+    }
+
+    /**
+     * Checks the connection once. A failed check marks it lost,
+     * so the next ping or call opens a new one.
+     *
+     * @return true if the connection answered
+     */
+    boolean ping() {
+        boolean ok;
+        try {
+            ok = conn.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            ok = false;
+        }
+        if (!ok) {
+            ResilientConnection.markBroken(conn);
+        }
+        metrics.recordPing(ok);
+        return ok;
+    }
+
+    /**
+     * Stops pinging. The connection itself stays open.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -3,16 +3,26 @@ package com.library.util;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.io.InputStream;
 import java.io.IOException;
 
 /**
  * Loads database settings from db.properties and provides a shared connection.
+ * Opening retries transient failures, and the shared connection reopens
+ * itself after it was lost, for example when an idle serverless endpoint
+ * suspended. Open times, reconnects, and retries are counted in {@link #metrics()}.
  */
 public class DatabaseConnection {
     private static Connection connection;
 
+    private static final ConnectionMetrics METRICS = new ConnectionMetrics();
+    private static final List<Consumer<Connection>> LOST_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final List<Consumer<Connection>> CLOSED_LISTENERS = new CopyOnWriteArrayList<>();
+
     /**
      * Opens a database connection using values from db.properties.
      * Reuses the connection if it is already open.
@@ -23,21 +33,144 @@ public class DatabaseConnection {
      */
     public static Connection connect() throws SQLException, IOException {
         if (connection == null || connection.isClosed()) {
-            Properties props = new Properties();
-            try (InputStream input =
-                     DatabaseConnection.class.getClassLoader().getResourceAsStream("db.properties")) {
-                if (input == null) {
-                    throw new IOException("db.properties not found on classpath");
+            connection = openShared();
+        }
+        return connection;
+    }
+
+    /**
+     * Opens a new connection that is not shared, for example for a background listener.
+     * Transient failures are retried. The caller must close it with
+     * {@link #closeDedicated(Connection)}.
+     *
+     * @return new SQL connection
+     * @throws SQLException on database errors
+     * @throws IOException if the properties file cannot be read
+     */
+    public static Connection openDedicated() throws SQLException, IOException {
+        try {
+            return openWithRetry();
+        } catch (SQLException | IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Could not open connection", "08001", e);
+        }
+    }
+
+    /** @return connection counters */
+    public static ConnectionMetrics metrics() {
+        return METRICS;
+    }
+
+    /** @return retry policy for database calls, built from the current settings */
+    public static RetryPolicy retryPolicy() {
+        return RetryPolicy.fromConfig(METRICS);
+    }
+
+    /**
+     * Registers code that must run when the physical connection behind the
+     * shared connection is lost, for example to drop statements prepared on it.
+     *
+     * @param listener receives the shared connection
+     */
+    public static void onConnectionLost(Consumer<Connection> listener) {
+        LOST_LISTENERS.add(listener);
+    }
+
+    /**
+     * Registers code that must run before a dedicated connection is closed,
+     * for example to drop statements cached for it.
+     *
+     * @param listener receives the connection being closed
+     */
+    public static void onDedicatedClosed(Consumer<Connection> listener) {
+        CLOSED_LISTENERS.add(listener);
+    }
+
+    /**
+     * Closes a connection opened with {@link #openDedicated()}, after the
+     * listeners registered with {@link #onDedicatedClosed(Consumer)} dropped
+     * what they keep for it.
+     *
+     * @param conn dedicated connection, may be null
+     * @throws SQLException if closing fails
+     */
+    public static void closeDedicated(Connection conn) throws SQLException {
+        if (conn == null) return;
+        for (Consumer<Connection> listener : CLOSED_LISTENERS) {
+            listener.accept(conn);
+        }
+        conn.close();
+    }
+
+    /**
+     * Reports a failed call. If the error means the connection was lost,
+     * the shared connection opens a new one on its next use.
+     *
+     * @param conn connection the call used
+     * @param e the failure
+     */
+    public static void reportFailure(Connection conn, SQLException e) {
+        if (TransientErrors.isConnectionLost(e)) {
+            ResilientConnection.markBroken(conn);
+        }
+    }
+
+    /**
+     * Opens the shared connection that reconnects on demand.
+     *
+     * @return shared connection
+     * @throws SQLException on database errors
+     * @throws IOException if the properties file cannot be read
+     */
+    private static Connection openShared() throws SQLException, IOException {
+        try {
+            return ResilientConnection.open(DatabaseConnection::openWithRetry, METRICS, c -> {
+                for (Consumer<Connection> listener : LOST_LISTENERS) {
+                    listener.accept(c);
                 }
-                props.load(input);
-            }
+            });
+        } catch (SQLException | IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Could not open connection", "08001", e);
+        }
+    }
+
+    /**
+     * Opens a physical connection, retrying transient failures, and records how long it took.
+     *
+     * @return new SQL connection
+     * @throws Exception if the connection cannot be opened
+     */
+    private static Connection openWithRetry() throws Exception {
+        long start = System.nanoTime();
+        Connection c = retryPolicy().call(DatabaseConnection::open);
+        METRICS.recordOpen((System.nanoTime() - start) / 1_000_000);
+        return c;
+    }
 
-            String url = props.getProperty("db.url");
-            String user = props.getProperty("db.user");
-            String password = props.getProperty("db.password");
-            connection = DriverManager.getConnection(url, user, password);
+    /**
+     * Opens one physical connection with the settings from db.properties.
+     *
+     * @return new SQL connection
+     * @throws SQLException on database errors
+     * @throws IOException if the properties file cannot be read
+     */
+    private static Connection open() throws SQLException, IOException {
+        Properties props = new Properties();
+        try (InputStream input =
+                 DatabaseConnection.class.getClassLoader().getResourceAsStream("db.properties")) {
+            if (input == null) {
+                throw new IOException("db.properties not found on classpath");
+            }
+            props.load(input);
         }
-        return connection;
+
+        String url = props.getProperty("db.url");
+        String user = props.getProperty("db.user");
+        String password = props.getProperty("db.password");
+        return DriverManager.getConnection(url, user, password);
     }
 
     /**
@@ -1,10 +1,10 @@
 package com.library.util;
 
-import java.sql.Connection;
 import java.util.List;
+import java.util.Map;
 
-import com.library.dao.MediaDAO;
-import com.library.model.Borrowing;
+import com.library.model.BorrowedItem;
+import com.library.model.FacetedSearchResult;
 import com.library.model.Fine;
 import com.library.model.Media;
 import com.library.service.FineSummary;
@@ -15,9 +15,6 @@ import com.library.service.FineSummary;
  */
 public class DisplayPrinter {
 
-    /** DAO used to look up media details when printing borrowings. */
-    private static final MediaDAO mediaDAO = new MediaDAO();
-
     /**
      * Prints a list of media items. Shows a placeholder when empty.
      *
@@ -36,24 +33,46 @@ public class DisplayPrinter {
     }
 
     /**
-     * Prints borrowed media with due date and status. Skips returned items.
+     * Prints search counts per type and availability, then the page of matches.
+     * Example: "Found 20: 12 books, 3 cds, 5 journals | 5 available, 15 borrowed".
+     *
+     * @param result faceted search result
+     */
+    public static void printFacetedResult(FacetedSearchResult result) {
+        if (result == null || result.getTotal() == 0) {
+            System.out.println("(No matching media)");
+            return;
+        }
+        StringBuilder line = new StringBuilder("Found " + result.getTotal() + ":");
+        String sep = " ";
+        for (Map.Entry<String, Integer> e : result.getTypeCounts().entrySet()) {
+            line.append(sep).append(e.getValue()).append(' ').append(e.getKey()).append('s');
+            sep = ", ";
+        }
+        line.append(" | ").append(result.getAvailableCount()).append(" available, ")
+            .append(result.getBorrowedCount()).append(" borrowed");
+        System.out.println(line);
+        printMediaList(result.getPage());
+        if (result.getPage().size() < result.getTotal()) {
+            System.out.printf("(Showing the best %d of %d, page through the rest by id below)%n",
+                    result.getPage().size(), result.getTotal());
+        }
+    }
+
+    /**
+     * Prints borrowed media with due date and status.
      *
-     * @param conn _ active database connection
-     * @param borrowings list of borrowing records
-     * @throws Exception if media lookup fails
+     * @param items borrowed items, already without returned ones
      */
-    public static void printBorrowedMedia(Connection conn, List<Borrowing> borrowings) throws Exception {
-        if (borrowings == null || borrowings.isEmpty()) {
+    public static void printBorrowedMedia(List<BorrowedItem> items) {
+        if (items == null || items.isEmpty()) {
             System.out.println("(You have no borrowed books)");
             return;
         }
-        for (Borrowing b : borrowings) {
-            if (!"returned".equalsIgnoreCase(b.getStatus())) {
-                Media m = mediaDAO.findById(conn, b.getMediaId());
-                System.out.printf("#%d  %s | Due: %s | Status: %s%n",
-                        m.getId(), m.getTitle(), b.getDueDate(),
-                        b.isOverdue() ? "Overdue (Can't return)" : "On Time");
-            }
+        for (BorrowedItem item : items) {
+            System.out.printf("#%d  %s | Due: %s | Status: %s%n",
+                    item.getMediaId(), item.getTitle(), item.getDueDate(),
+                    item.isOverdue() ? "Overdue (Can't return)" : "On Time");
         }
     }
 
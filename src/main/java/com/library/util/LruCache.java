@@ -0,0 +1,134 @@
+package com.library.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Small thread-safe cache that keeps the most recently used entries.
+ * Entries can also expire after a fixed time to live.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+
+    /** Value together with the time it stops being valid. */
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final CacheStats stats = new CacheStats();
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    /**
+     * Creates a cache without a time limit.
+     *
+     * @param maxSize largest number of entries kept
+     */
+    public LruCache(int maxSize) {
+        this(maxSize, 0, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache with a time limit.
+     *
+     * @param maxSize largest number of entries kept
+     * @param ttlMillis time to live in milliseconds, 0 or less for no limit
+     */
+    public LruCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache with a custom clock (testing use).
+     *
+     * @param maxSize largest number of entries kept
+     * @param ttlMillis time to live in milliseconds, 0 or less for no limit
+     * @param clock source of the current time in nanoseconds
+     */
+    public LruCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttlMillis <= 0 ? 0 : ttlMillis * 1_000_000L;
+        this.clock = clock;
+        this.map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    stats.recordEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value and records a hit or miss.
+     *
+     * @param key lookup key
+     * @return cached value or null if missing or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> e = map.get(key);
+        if (e == null) {
+            stats.recordMiss();
+            return null;
+        }
+        if (ttlNanos > 0 && clock.getAsLong() - e.expiresAt > 0) {
+            map.remove(key);
+            stats.recordExpiration();
+            stats.recordMiss();
+            return null;
+        }
+        stats.recordHit();
+        return e.value;
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entry if full.
+     *
+     * @param key entry key
+     * @param value entry value
+     */
+    public synchronized void put(K key, V value) {
+        map.put(key, new Entry<>(value, clock.getAsLong() + ttlNanos));
+    }
+
+    /**
+     * Removes one entry.
+     *
+     * @param key entry key
+     * @return the removed value, or null if there was none
+     */
+    public synchronized V remove(K key) {
+        Entry<V> e = map.remove(key);
+        return e == null ? null : e.value;
+    }
+
+    /**
+     * Removes all entries. Counters are kept.
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /** @return current number of entries */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /** @return hit, miss, and eviction counters */
+    public CacheStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,149 @@
+package com.library.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * A connection that replaces its physical connection after it was lost.
+ * Callers keep one Connection object for the whole session, so services and
+ * per-connection caches stay valid; the next call after a failure opens a
+ * new physical connection first. Work of a transaction that was open on the
+ * lost connection is gone, so a rollback after the loss does nothing.
+ */
+final class ResilientConnection implements InvocationHandler {
+
+    private final RetryPolicy.SqlCall<Connection> opener;
+    private final ConnectionMetrics metrics;
+    private final Consumer<Connection> onLost;
+    private Connection physical;
+    private Connection proxy;
+    private boolean broken;
+    private boolean closed;
+
+    /**
+     * @param opener opens a new physical connection
+     * @param metrics counters that receive reconnects
+     * @param onLost told about the proxy when its physical connection is found lost
+     */
+    private ResilientConnection(RetryPolicy.SqlCall<Connection> opener, ConnectionMetrics metrics,
+                                Consumer<Connection> onLost) {
+        this.opener = opener;
+        this.metrics = metrics;
+        this.onLost = onLost;
+    }
+
+    /**
+     * Opens a physical connection and wraps it.
+     *
+     * @param opener opens a new physical connection
+     * @param metrics counters that receive reconnects
+     * @param onLost told about the proxy when its physical connection is found lost
+     * @return connection that reconnects on demand
+     * @throws Exception if the first connection cannot be opened
+     */
+    static Connection open(RetryPolicy.SqlCall<Connection> opener, ConnectionMetrics metrics,
+                           Consumer<Connection> onLost) throws Exception {
+        ResilientConnection handler = new ResilientConnection(opener, metrics, onLost);
+        handler.physical = opener.call();
+        handler.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, handler);
+        return handler.proxy;
+    }
+
+    /**
+     * Marks a connection as lost so the next call reconnects.
+     * Does nothing for connections that are not resilient.
+     *
+     * @param conn connection that failed
+     */
+    static void markBroken(Connection conn) {
+        if (conn != null && Proxy.isProxyClass(conn.getClass())
+                && Proxy.getInvocationHandler(conn) instanceof ResilientConnection) {
+            ResilientConnection handler = (ResilientConnection) Proxy.getInvocationHandler(conn);
+            boolean first;
+            synchronized (handler) {
+                first = !handler.broken;
+                handler.broken = true;
+            }
+            if (first) handler.onLost.accept(handler.proxy);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return self == args[0];
+            case "hashCode":
+                return System.identityHashCode(self);
+            case "toString":
+                return "ResilientConnection[" + physical + "]";
+            case "isClosed":
+                synchronized (this) {
+                    return closed;
+                }
+            case "close":
+                synchronized (this) {
+                    closed = true;
+                    physical.close();
+                    return null;
+                }
+            case "rollback":
+                if (args == null && isLost()) return null;
+                break;
+            default:
+                break;
+        }
+
+        Connection target = current();
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException && TransientErrors.isConnectionLost((SQLException) cause)) {
+                markBroken(proxy);
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * @return true if the physical connection is known to be gone
+     * @throws SQLException if the state cannot be read
+     */
+    private synchronized boolean isLost() throws SQLException {
+        return broken || physical.isClosed();
+    }
+
+    /**
+     * Returns the physical connection, replacing it first if it was lost.
+     *
+     * @return usable physical connection
+     * @throws Exception if the connection is closed or cannot be reopened
+     */
+    private synchronized Connection current() throws Exception {
+        if (closed) throw new SQLException("Connection is closed", "08003");
+        if (!isLost()) return physical;
+        if (!broken) {
+            broken = true;
+            onLost.accept(proxy);
+        }
+
+        Connection fresh = opener.call();
+        try {
+            physical.close();
+        } catch (SQLException ignore) {
+            // the old connection is already gone
+        }
+        physical = fresh;
+        broken = false;
+        metrics.recordReconnect();
+        return physical;
+    }
+}
@@ -0,0 +1,125 @@
+package com.library.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Repeats a database call that failed with a transient error.
+ * The wait before each new attempt is random between zero and an
+ * exponentially growing cap, so clients that failed together do not
+ * all retry at the same moment.
+ * Settings: db.retry.attempts, db.retry.base.ms, and db.retry.max.ms.
+ */
+public final class RetryPolicy {
+
+    /**
+     * A database call that can be made again.
+     *
+     * @param <T> result type
+     */
+    public interface SqlCall<T> {
+        /**
+         * @return call result
+         * @throws Exception if the call fails
+         */
+        T call() throws Exception;
+    }
+
+    private final int attempts;
+    private final long baseMillis;
+    private final long maxMillis;
+    private final ConnectionMetrics metrics;
+
+    /**
+     * Creates a policy.
+     *
+     * @param attempts total number of attempts, at least 1
+     * @param baseMillis wait cap before the first retry
+     * @param maxMillis largest wait cap
+     * @param metrics counters that receive failures and retries
+     */
+    public RetryPolicy(int attempts, long baseMillis, long maxMillis, ConnectionMetrics metrics) {
+        this.attempts = Math.max(1, attempts);
+        this.baseMillis = Math.max(0, baseMillis);
+        this.maxMillis = Math.max(this.baseMillis, maxMillis);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates a policy from the configured settings.
+     *
+     * @param metrics counters that receive failures and retries
+     * @return configured policy
+     */
+    public static RetryPolicy fromConfig(ConnectionMetrics metrics) {
+        return new RetryPolicy(
+                AppConfig.getInt("db.retry.attempts", 3),
+                AppConfig.getLong("db.retry.base.ms", 100),
+                AppConfig.getLong("db.retry.max.ms", 2000),
+                metrics);
+    }
+
+    /**
+     * Runs a read that is safe to repeat.
+     * It is retried only in auto-commit mode; inside a transaction the
+     * whole transaction would have to be repeated, so the error is passed on.
+     * A lost connection is marked broken so the next attempt reconnects.
+     *
+     * @param conn connection the read uses
+     * @param read the read
+     * @param <T> result type
+     * @return read result
+     * @throws Exception if the read fails for good
+     */
+    public static <T> T read(Connection conn, SqlCall<T> read) throws Exception {
+        if (!conn.getAutoCommit()) return read.call();
+        return DatabaseConnection.retryPolicy().call(() -> {
+            try {
+                return read.call();
+            } catch (SQLException e) {
+                DatabaseConnection.reportFailure(conn, e);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Runs a call, repeating it after transient failures.
+     *
+     * @param call the call
+     * @param <T> result type
+     * @return call result
+     * @throws Exception the last failure, or any non-transient failure
+     */
+    public <T> T call(SqlCall<T> call) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                if (!TransientErrors.isTransient(e)) throw e;
+                metrics.recordTransientFailure();
+                if (attempt >= attempts) throw e;
+                metrics.recordRetry();
+                try {
+                    Thread.sleep(delayMillis(attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the wait before a retry.
+     *
+     * @param attempt number of the attempt that just failed, from 1
+     * @return wait in milliseconds
+     */
+    long delayMillis(int attempt) {
+        long cap = baseMillis << Math.min(attempt - 1, 20);
+        cap = Math.min(maxMillis, cap);
+        return cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
@@ -0,0 +1,101 @@
+package com.library.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for one stage of a pipeline: items handled, failures, time spent
+ * working, time spent waiting for room in the next queue, and the deepest
+ * its input queue got. A stage that waits a lot is faster than the one after
+ * it; a stage whose queue stays full is the bottleneck.
+ */
+public class StageMetrics {
+
+    private final String name;
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * @param name stage name used in the summary
+     */
+    public StageMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records an item that was handled.
+     *
+     * @param nanos time spent on the item
+     */
+    public void recordItem(long nanos) {
+        long end = System.nanoTime();
+        items.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+        firstStart.accumulateAndGet(end - nanos, Math::min);
+        lastEnd.accumulateAndGet(end, Math::max);
+    }
+
+    /** Records an item that failed. */
+    public void recordFailure() { failed.incrementAndGet(); }
+
+    /**
+     * Records time spent waiting for room in the next queue.
+     *
+     * @param nanos time waited
+     */
+    public void recordWait(long nanos) { waitNanos.addAndGet(nanos); }
+
+    /**
+     * Records the depth of the stage's input queue.
+     *
+     * @param depth items waiting in the queue
+     */
+    public void recordQueueDepth(int depth) { maxQueueDepth.accumulateAndGet(depth, Math::max); }
+
+    /** @return stage name */
+    public String getName() { return name; }
+
+    /** @return number of items handled */
+    public long getItems() { return items.get(); }
+
+    /** @return number of items that failed */
+    public long getFailed() { return failed.get(); }
+
+    /** @return total time spent working, in milliseconds */
+    public long getBusyMillis() { return TimeUnit.NANOSECONDS.toMillis(busyNanos.get()); }
+
+    /** @return total time spent waiting for the next stage, in milliseconds */
+    public long getWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(waitNanos.get()); }
+
+    /** @return deepest the input queue got */
+    public int getMaxQueueDepth() { return maxQueueDepth.get(); }
+
+    /**
+     * Returns items per second between the first item's start and the last item's end.
+     *
+     * @return throughput, 0 before any item is handled
+     */
+    public double getThroughput() {
+        long elapsed = lastEnd.get() - firstStart.get();
+        if (items.get() == 0 || elapsed <= 0) return 0;
+        return items.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Returns a one-line summary.
+     *
+     * @return summary
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: items=%d, failed=%d, %.1f/s, busy=%d ms, waited=%d ms, max queue=%d",
+                name, getItems(), getFailed(), getThroughput(), getBusyMillis(), getWaitMillis(),
+                getMaxQueueDepth());
+    }
+}
@@ -0,0 +1,102 @@
+package com.library.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that limits how often an action runs.
+ * Tokens are added at a sustained rate up to a burst size; each action takes
+ * one. When the bucket is empty, the caller waits until its token is due
+ * instead of failing. Waiting callers reserve their tokens in order, so
+ * concurrent callers together never exceed the rate.
+ */
+public class TokenBucketRateLimiter {
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final LongSupplier clock;
+    private double tokens;
+    private long lastRefill;
+
+    private long permits;
+    private long throttled;
+    private long throttledNanos;
+
+    /**
+     * Creates a limiter that starts with a full bucket.
+     *
+     * @param perSecond sustained actions per second
+     * @param burst actions allowed at once after an idle period, at least 1
+     */
+    public TokenBucketRateLimiter(double perSecond, int burst) {
+        this(perSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * Creates a limiter with a custom clock.
+     *
+     * @param perSecond sustained actions per second
+     * @param burst actions allowed at once after an idle period, at least 1
+     * @param clock nanosecond clock
+     */
+    TokenBucketRateLimiter(double perSecond, int burst, LongSupplier clock) {
+        if (perSecond <= 0) throw new IllegalArgumentException("Rate must be positive");
+        this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.clock = clock;
+        this.tokens = this.burst;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Takes one token, waiting until it is available.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Takes one token and returns how long the caller must wait for it.
+     * The bucket may go below zero; later callers then wait longer.
+     *
+     * @return wait in nanoseconds, 0 if a token was available
+     */
+    synchronized long reserve() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        tokens -= 1;
+        permits++;
+        if (tokens >= 0) return 0;
+
+        long wait = (long) Math.ceil(-tokens / tokensPerNano);
+        throttled++;
+        throttledNanos += wait;
+        return wait;
+    }
+
+    /** @return number of tokens handed out */
+    public synchronized long getPermits() { return permits; }
+
+    /** @return number of callers that had to wait */
+    public synchronized long getThrottled() { return throttled; }
+
+    /** @return total time callers waited, in milliseconds */
+    public synchronized long getThrottledMillis() { return TimeUnit.NANOSECONDS.toMillis(throttledNanos); }
+
+    /**
+     * Returns a one-line summary.
+     *
+     * @return summary
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("permits=%d, throttled=%d, waited=%d ms", permits, throttled,
+                TimeUnit.NANOSECONDS.toMillis(throttledNanos));
+    }
+}
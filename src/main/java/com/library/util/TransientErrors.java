@@ -0,0 +1,61 @@
+package com.library.util;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+
+/**
+ * Decides from the SQLState whether a database error is worth retrying.
+ * Lost or refused connections, a server that is starting or shutting down,
+ * too many connections, serialization failures, and deadlocks usually go
+ * away when the same call is made again a moment later.
+ */
+public final class TransientErrors {
+
+    private TransientErrors() {}
+
+    /**
+     * Checks whether an error, or one chained to it, is transient.
+     *
+     * @param e error to check
+     * @return true if retrying may succeed
+     */
+    public static boolean isTransient(SQLException e) {
+        for (SQLException cur = e; cur != null; cur = cur.getNextException()) {
+            if (cur instanceof SQLTransientException) return true;
+            String state = cur.getSQLState();
+            if (state == null) continue;
+            if (isConnectionState(state)
+                    || state.equals("53300")
+                    || state.equals("40001")
+                    || state.equals("40P01")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether an error means the connection itself is gone.
+     *
+     * @param e error to check
+     * @return true if the connection must be replaced
+     */
+    public static boolean isConnectionLost(SQLException e) {
+        for (SQLException cur = e; cur != null; cur = cur.getNextException()) {
+            String state = cur.getSQLState();
+            if (state != null && isConnectionState(state)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param state SQLState code
+     * @return true for connection exceptions (class 08) and server shutdown or startup (57P01 to 57P03)
+     */
+    private static boolean isConnectionState(String state) {
+        return state.startsWith("08")
+                || state.equals("57P01")
+                || state.equals("57P02")
+                || state.equals("57P03");
+    }
+}
@@ -1,12 +1,67 @@
 package com.library.util;
 
+import com.library.model.User;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
 /**
  * Basic validation helpers for checking user roles and email formats.
+ * The email pattern is compiled once and roles are looked up in a set,
+ * so the checks stay cheap when a whole import is validated.
  */
 public class ValidationHelper {
 
     /** Allowed user roles. */
-    private static final String[] VALID_ROLES = { "admin", "librarian", "user" };
+    private static final Set<String> VALID_ROLES = Set.of("admin", "librarian", "user");
+
+    /** Basic email format: name, @, domain, and a top-level domain of two or more letters. */
+    private static final Pattern EMAIL = Pattern.compile("^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$");
+
+    /**
+     * A problem found in one user record.
+     */
+    public static final class Violation {
+        private final int index;
+        private final String username;
+        private final String field;
+        private final String message;
+
+        /**
+         * @param index position of the record, from 0
+         * @param username username of the record, may be null
+         * @param field field that failed
+         * @param message what is wrong
+         */
+        public Violation(int index, String username, String field, String message) {
+            this.index = index;
+            this.username = username;
+            this.field = field;
+            this.message = message;
+        }
+
+        /** @return position of the record, from 0 */
+        public int getIndex() { return index; }
+
+        /** @return username of the record, may be null */
+        public String getUsername() { return username; }
+
+        /** @return field that failed */
+        public String getField() { return field; }
+
+        /** @return what is wrong */
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "#" + index + " (" + username + ") " + field + ": " + message;
+        }
+    }
 
     /**
      * Returns true if the given role matches one of the allowed roles.
@@ -15,11 +70,7 @@ public class ValidationHelper {
      * @return true if valid, false otherwise
      */
     public static boolean isValidRole(String role) {
-        if (role == null) return false;
-        for (String valid : VALID_ROLES) {
-            if (valid.equals(role)) return true;
-        }
-        return false;
+        return role != null && VALID_ROLES.contains(role);
     }
 
     /**
@@ -29,6 +80,36 @@ public class ValidationHelper {
      * @return true if the format is valid, false otherwise
      */
     public static boolean isValidEmail(String email) {
-        return email != null && email.matches("^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$");
+        return email != null && EMAIL.matcher(email).matches();
+    }
+
+    /**
+     * Validates user records for a bulk import and collects every problem
+     * instead of stopping at the first one: blank or repeated usernames,
+     * bad email formats, and unknown roles.
+     *
+     * @param users records to check, read once in order
+     * @return violations in record order, empty if all records are valid
+     */
+    public static List<Violation> validateUsers(Stream<User> users) {
+        List<Violation> violations = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        Iterator<User> it = users.iterator();
+        for (int i = 0; it.hasNext(); i++) {
+            User u = it.next();
+            String name = u.getUsername();
+            if (name == null || name.isBlank()) {
+                violations.add(new Violation(i, name, "username", "username is empty"));
+            } else if (!seen.add(name)) {
+                violations.add(new Violation(i, name, "username", "username appears more than once"));
+            }
+            if (!isValidEmail(u.getEmail())) {
+                violations.add(new Violation(i, name, "email", "invalid email format: " + u.getEmail()));
+            }
+            if (!isValidRole(u.getRole())) {
+                violations.add(new Violation(i, name, "role", "invalid role: " + u.getRole()));
+            }
+        }
+        return violations;
     }
 }
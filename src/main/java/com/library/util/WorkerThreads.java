@@ -0,0 +1,46 @@
+package com.library.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads background workers run on: virtual threads on Java 21
+ * and later, daemon platform threads otherwise.
+ */
+public final class WorkerThreads {
+
+    private WorkerThreads() {}
+
+    /**
+     * Creates an unstarted worker, virtual where the runtime supports it.
+     * The virtual thread API is looked up by reflection because the project
+     * still compiles for Java 17.
+     *
+     * @param task worker loop
+     * @param name thread name
+     * @return unstarted thread
+     */
+    public static Thread newWorker(Runnable task, String name) {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            virtual = builder.getMethod("name", String.class).invoke(virtual, name);
+            return (Thread) builder.getMethod("unstarted", Runnable.class).invoke(virtual, task);
+        } catch (ReflectiveOperationException e) {
+            Thread t = new Thread(task, name);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    /**
+     * Returns a factory for workers named prefix0, prefix1, and so on.
+     *
+     * @param prefix thread name prefix
+     * @return thread factory
+     */
+    public static ThreadFactory factory(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> newWorker(r, prefix + n.getAndIncrement());
+    }
+}
@@ -1,10 +1,14 @@
 package com.library.app;
 
+import com.library.model.Book;
 import com.library.model.Media;
+import com.library.model.MediaImportReport;
 import com.library.model.User;
 import com.library.service.AdminService;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -93,7 +97,7 @@ public class AdminCLITest {
     }
 
     /**
-     * List media flow should call AdminService.listAllMedia.
+     * List media flow should request the first page from AdminService.
      *
      * @throws Exception if the CLI run fails
      */
@@ -107,12 +111,49 @@ public class AdminCLITest {
         Scanner scanner = new Scanner(input);
         AdminService admin = mock(AdminService.class);
         List<Media> list = new ArrayList<>();
-        when(admin.listAllMedia("media")).thenReturn(list);
+        when(admin.listMediaPage(eq("media"), eq(0), anyInt())).thenReturn(list);
 
         AdminCLI cli = new AdminCLI(scanner, admin);
         assertDoesNotThrow(() -> cli.run());
 
-        verify(admin).listAllMedia("media");
+        verify(admin).listMediaPage(eq("media"), eq(0), anyInt());
+    }
+
+    /**
+     * List media flow should load the next page after ENTER and stop on q.
+     *
+     * @throws Exception if the CLI run fails
+     */
+    @Test
+    public void testListMediaFlowPagesOnDemand() throws Exception {
+        String input =
+                "2\n" +
+                "book\n" +
+                "\n" +
+                "q\n" +
+                "\n" +
+                "0\n";
+        Scanner scanner = new Scanner(input);
+        AdminService admin = mock(AdminService.class);
+        when(admin.listMediaPage(eq("book"), anyInt(), anyInt())).thenAnswer(inv -> {
+            int afterId = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            List<Media> page = new ArrayList<>();
+            for (int i = 1; i <= limit; i++) {
+                Media m = new Book();
+                m.setId(afterId + i);
+                m.setTitle("T" + (afterId + i));
+                page.add(m);
+            }
+            return page;
+        });
+
+        AdminCLI cli = new AdminCLI(scanner, admin);
+        assertDoesNotThrow(() -> cli.run());
+
+        verify(admin).listMediaPage(eq("book"), eq(0), anyInt());
+        verify(admin).listMediaPage(eq("book"), eq(25), anyInt());
+        verify(admin, times(2)).listMediaPage(eq("book"), anyInt(), anyInt());
     }
 
     /**
@@ -273,12 +314,12 @@ public class AdminCLITest {
         Scanner scanner = new Scanner(input);
         AdminService admin = mock(AdminService.class);
         List<User> users = new ArrayList<>();
-        when(admin.listUsers()).thenReturn(users);
+        when(admin.listUsersPage(eq(0), anyInt())).thenReturn(users);
 
         AdminCLI cli = new AdminCLI(scanner, admin);
         assertDoesNotThrow(() -> cli.run());
 
-        verify(admin).listUsers();
+        verify(admin).listUsersPage(eq(0), anyInt());
     }
 
     /**
@@ -304,12 +345,12 @@ public class AdminCLITest {
         u.setBalance(0.0);
         users.add(u);
 
-        when(admin.listUsers()).thenReturn(users);
+        when(admin.listUsersPage(eq(0), anyInt())).thenReturn(users);
 
         AdminCLI cli = new AdminCLI(scanner, admin);
         assertDoesNotThrow(() -> cli.run());
 
-        verify(admin).listUsers();
+        verify(admin).listUsersPage(eq(0), anyInt());
     }
 
     /**
@@ -376,6 +417,51 @@ public class AdminCLITest {
         verify(admin).sendOverdueRemindersFromEnv();
     }
 
+    /**
+     * Import flow should pass the file path to AdminService.importMedia.
+     *
+     * @throws Exception if the CLI run fails
+     */
+    @Test
+    public void testImportMediaFlowCallsService() throws Exception {
+        String input = "8\nacquisitions.csv\n\n0\n";
+
+        Scanner scanner = new Scanner(input);
+        AdminService admin = mock(AdminService.class);
+        MediaImportReport report = new MediaImportReport(3, 2, 1);
+        report.getRejected().add(new MediaImportReport.Rejected(3, "Kind of Blue", "unknown type: dvd"));
+        when(admin.importMedia(any(Path.class))).thenReturn(report);
+
+        AdminCLI cli = new AdminCLI(scanner, admin);
+
+        assertDoesNotThrow(() -> cli.run());
+
+        verify(admin).importMedia(Paths.get("acquisitions.csv"));
+    }
+
+    /**
+     * Export flows should pass the filter and file path to AdminService,
+     * with * meaning no keyword.
+     *
+     * @throws Exception if the CLI run fails
+     */
+    @Test
+    public void testExportFlowsCallService() throws Exception {
+        String input = "9\nbook\n*\nbooks.csv\n\n10\nusers.csv\n\n0\n";
+
+        Scanner scanner = new Scanner(input);
+        AdminService admin = mock(AdminService.class);
+        when(admin.exportMedia(isNull(), eq("book"), any(Path.class))).thenReturn(12);
+        when(admin.exportUsers(any(Path.class))).thenReturn(3);
+
+        AdminCLI cli = new AdminCLI(scanner, admin);
+
+        assertDoesNotThrow(() -> cli.run());
+
+        verify(admin).exportMedia(null, "book", Paths.get("books.csv"));
+        verify(admin).exportUsers(Paths.get("users.csv"));
+    }
+
 
     /**
      * Run with choice 0 only to cover direct logout branch.
@@ -134,4 +134,29 @@ public class InputHelperTest {
         double result = InputHelper.readDouble(scanner, "Enter: ", 0.0, 10.0);
         assertEquals(2.25, result);
     }
+
+    /**
+     * Verifies readNextPage continues on ENTER and stops on q or end of input.
+     */
+    @Test
+    public void testReadNextPage() {
+        Scanner scanner = new Scanner("\nQ\n");
+        assertTrue(InputHelper.readNextPage(scanner));
+        assertFalse(InputHelper.readNextPage(scanner));
+        assertFalse(InputHelper.readNextPage(scanner));
+    }
+
+    /**
+     * Verifies readPageMove accepts only the offered moves and stops on ENTER
+     * or end of input.
+     */
+    @Test
+    public void testReadPageMove() {
+        Scanner scanner = new Scanner("p\nN\np\n\n");
+        assertEquals(1, InputHelper.readPageMove(scanner, false, true));
+        assertEquals(-1, InputHelper.readPageMove(scanner, true, false));
+        assertEquals(0, InputHelper.readPageMove(scanner, true, true));
+        assertEquals(0, InputHelper.readPageMove(scanner, true, true));
+        assertEquals(0, InputHelper.readPageMove(scanner, false, false));
+    }
 }
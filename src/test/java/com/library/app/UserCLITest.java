@@ -1,7 +1,8 @@
 package com.library.app;
 
 import com.library.model.Book;
-import com.library.model.Borrowing;
+import com.library.model.BorrowedItem;
+import com.library.model.FacetedSearchResult;
 import com.library.model.Fine;
 import com.library.model.Media;
 import com.library.model.User;
@@ -58,14 +59,50 @@ public class UserCLITest {
         book.setIsbn("123");
         book.setAvailable(true);
 
-        List<Media> results = new ArrayList<>();
-        results.add(book);
-        when(userService.searchMedia("how", "book")).thenReturn(results);
+        List<Media> page = new ArrayList<>();
+        page.add(book);
+        FacetedSearchResult results = new FacetedSearchResult();
+        results.addCount("book", true, 1);
+        results.setPage(page);
+        when(userService.facetedSearch(eq("how"), eq("book"), anyInt())).thenReturn(results);
 
         UserCLI cli = new UserCLI(scanner, userService);
         cli.run();
 
-        verify(userService).searchMedia("how", "book");
+        verify(userService).facetedSearch(eq("how"), eq("book"), anyInt());
+    }
+
+    /**
+     * Tests that a search with more matches than the first page pages
+     * forward and back by id.
+     *
+     * @throws Exception if the CLI run fails
+     */
+    @Test
+    public void testSearchMediaPagesThroughMatches() throws Exception {
+        String input = "1\nmedia\njava\nn\nn\np\n\n\n0\n";
+        Scanner scanner = new Scanner(input);
+        UserService userService = mock(UserService.class);
+
+        List<Media> first = new ArrayList<>();
+        List<Media> second = new ArrayList<>();
+        for (int id = 1; id <= 25; id++) {
+            Book b = new Book();
+            b.setId(id);
+            b.setTitle("Java " + id);
+            (id <= 21 ? first : second).add(b);
+        }
+        FacetedSearchResult results = new FacetedSearchResult();
+        results.addCount("book", true, 25);
+        results.setPage(new ArrayList<>(first.subList(0, 20)));
+        when(userService.facetedSearch(eq("java"), eq("media"), anyInt())).thenReturn(results);
+        when(userService.searchMediaPage("java", "media", 0, 21)).thenReturn(first);
+        when(userService.searchMediaPage("java", "media", 20, 21)).thenReturn(second);
+
+        new UserCLI(scanner, userService).run();
+
+        verify(userService, times(2)).searchMediaPage("java", "media", 0, 21);
+        verify(userService).searchMediaPage("java", "media", 20, 21);
     }
 
     /**
@@ -136,12 +173,9 @@ public class UserCLITest {
         User user = createTestUser();
         when(userService.getLoggedUser()).thenReturn(user);
 
-        when(userService.findBorrowings(user.getUserId()))
+        when(userService.findBorrowedItems(user.getUserId()))
                 .thenReturn(new ArrayList<>());
 
-        java.sql.Connection conn = mock(java.sql.Connection.class);
-        when(userService.getUserConnection()).thenReturn(conn);
-
         when(userService.returnMedia(1)).thenReturn(true);
 
         UserCLI cli = new UserCLI(scanner, userService);
@@ -169,14 +203,14 @@ public class UserCLITest {
         User user = createTestUser();
         when(userService.getLoggedUser()).thenReturn(user);
 
-        List<Borrowing> borrowings = new ArrayList<>();
-        when(userService.findBorrowings(user.getUserId())).thenReturn(borrowings);
+        List<BorrowedItem> items = new ArrayList<>();
+        when(userService.findBorrowedItems(user.getUserId())).thenReturn(items);
         when(userService.returnMedia(2)).thenReturn(false);
 
         UserCLI cli = new UserCLI(scanner, userService);
         cli.run();
 
-        verify(userService).findBorrowings(user.getUserId());
+        verify(userService).findBorrowedItems(user.getUserId());
         verify(userService).returnMedia(2);
     }
 
@@ -322,7 +356,7 @@ public class UserCLITest {
     }
 
     /**
-     * Tests that the run loop catch block is executed when searchMedia throws.
+     * Tests that the run loop catch block is executed when the search throws.
      *
      * @throws Exception if the CLI run fails
      */
@@ -339,11 +373,12 @@ public class UserCLITest {
         UserService userService = mock(UserService.class);
         User user = createTestUser();
         when(userService.getLoggedUser()).thenReturn(user);
-        when(userService.searchMedia("x", "media")).thenThrow(new RuntimeException("search-error"));
+        when(userService.facetedSearch(eq("x"), eq("media"), anyInt()))
+                .thenThrow(new RuntimeException("search-error"));
 
         UserCLI cli = new UserCLI(scanner, userService);
         cli.run();
 
-        verify(userService).searchMedia("x", "media");
+        verify(userService).facetedSearch(eq("x"), eq("media"), anyInt());
     }
 }
@@ -1,17 +1,28 @@
 package com.library.dao;
 
+import com.library.model.BorrowedItem;
 import com.library.model.Borrowing;
 import com.library.model.Media;
+import com.library.model.ReminderDigest;
 import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -82,6 +93,159 @@ class BorrowingDAOTest {
         assertNotNull(list.get(1).getReturnDate());
     }
 
+    /**
+     * Tests that overdue borrowings are streamed through a cursor in one read transaction.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void streamOverdueMedia_fetchesInBatchesAndCommits() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getInt("borrow_id")).thenReturn(1, 2);
+        when(rs.getInt("user_id")).thenReturn(10, 10);
+        when(rs.getDate("borrow_date")).thenReturn(Date.valueOf("2025-01-01"));
+        when(rs.getDate("due_date")).thenReturn(Date.valueOf("2025-01-05"));
+        when(rs.getString("status")).thenReturn("overdue");
+
+        BorrowingDAO dao = new BorrowingDAO();
+        StringBuilder ids = new StringBuilder();
+        int count = dao.streamOverdueMedia(conn, b -> ids.append(b.getBorrowId()));
+
+        assertEquals(2, count);
+        assertEquals("12", ids.toString());
+        verify(conn).prepareStatement(contains("ORDER BY user_id"), anyInt(), anyInt());
+        verify(ps).setFetchSize(CursorReader.DEFAULT_FETCH_SIZE);
+        verify(conn).setAutoCommit(false);
+        verify(conn).commit();
+        verify(conn).setAutoCommit(true);
+    }
+
+    /**
+     * Tests that a checked exception from the handler is rethrown as is and rolls back.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void streamOverdueMedia_rethrowsHandlerFailureAndRollsBack() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getDate("borrow_date")).thenReturn(Date.valueOf("2025-01-01"));
+        when(rs.getDate("due_date")).thenReturn(Date.valueOf("2025-01-05"));
+
+        BorrowingDAO dao = new BorrowingDAO();
+        SQLException failure = new SQLException("write failed");
+
+        SQLException thrown = assertThrows(SQLException.class,
+                () -> dao.streamOverdueMedia(conn, b -> { throw failure; }));
+
+        assertSame(failure, thrown);
+        verify(conn).rollback();
+        verify(conn, never()).commit();
+    }
+
+    /**
+     * Tests that recipients are streamed with their email and overdue count.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void streamOverdueRecipients_mapsGroupedRows() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getInt(1)).thenReturn(10, 20);
+        when(rs.getString(3)).thenReturn("a@example.com", "b@example.com");
+        when(rs.getInt(4)).thenReturn(2, 1);
+
+        BorrowingDAO dao = new BorrowingDAO();
+        StringBuilder seen = new StringBuilder();
+        int count = dao.streamOverdueRecipients(conn,
+                (u, overdue) -> seen.append(u.getUserId()).append(u.getEmail()).append(overdue).append(';'));
+
+        assertEquals(2, count);
+        assertEquals("10a@example.com2;20b@example.com1;", seen.toString());
+        verify(conn).prepareStatement(contains("GROUP BY u.user_id"), anyInt(), anyInt());
+    }
+
+    /**
+     * Tests that a digest row is mapped from its aggregated arrays.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void streamOverdueDigests_mapsAggregatedItems() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        Array titles = mock(Array.class);
+        Array dues = mock(Array.class);
+        Array fines = mock(Array.class);
+
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getInt(1)).thenReturn(10);
+        when(rs.getString(3)).thenReturn("a@example.com");
+        when(rs.getArray(4)).thenReturn(titles);
+        when(rs.getArray(5)).thenReturn(dues);
+        when(rs.getArray(6)).thenReturn(fines);
+        when(titles.getArray()).thenReturn(new String[] {"Dune", "Blue"});
+        when(dues.getArray()).thenReturn(new Date[] {Date.valueOf("2025-01-01"), Date.valueOf("2025-01-02")});
+        when(fines.getArray()).thenReturn(new BigDecimal[] {new BigDecimal("20.00"),
+                BigDecimal.ZERO});
+
+        List<ReminderDigest> seen = new ArrayList<>();
+        int count = new BorrowingDAO().streamOverdueDigests(conn, "Overdue Reminder", 24, seen::add);
+
+        assertEquals(1, count);
+        assertEquals("a@example.com", seen.get(0).getUser().getEmail());
+        assertEquals(2, seen.get(0).getItems().size());
+        assertEquals("Blue", seen.get(0).getItems().get(1).getTitle());
+        assertEquals(20.0, seen.get(0).getTotalFine());
+        verify(ps).setString(1, "Overdue Reminder");
+        verify(ps).setInt(2, 24);
+    }
+
+    /**
+     * Tests that reminded users are logged with one array insert, and nothing is written for none.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void recordReminders_insertsAllUsersAtOnce() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        Array ids = mock(Array.class);
+
+        when(conn.prepareStatement(startsWith("INSERT INTO reminder_log"))).thenReturn(ps);
+        when(conn.createArrayOf(eq("integer"), any(Object[].class))).thenReturn(ids);
+
+        BorrowingDAO dao = new BorrowingDAO();
+        dao.recordReminders(conn, List.of(3, 8), "Overdue Reminder");
+        dao.recordReminders(conn, List.of(), "Overdue Reminder");
+
+        verify(ps).setArray(1, ids);
+        verify(ps).setString(2, "Overdue Reminder");
+        verify(ps, times(1)).executeUpdate();
+    }
+
     @Test
     void findActiveBorrowing_returnsBorrowingWhenFound() throws Exception {
         Connection conn = mock(Connection.class);
@@ -149,6 +313,41 @@ class BorrowingDAOTest {
         assertEquals("overdue", list.get(1).getStatus());
     }
 
+    /**
+     * Tests that findBorrowedItems reads titles through one joined query
+     * and leaves returned borrowings to the database filter.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void findBorrowedItems_joinsMediaAndFiltersReturned() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getInt("borrow_id")).thenReturn(1, 2);
+        when(rs.getInt("media_id")).thenReturn(5, 6);
+        when(rs.getString("title")).thenReturn("Dune", "Blue");
+        when(rs.getString("type")).thenReturn("book", "cd");
+        when(rs.getString("status")).thenReturn("borrowed", "overdue");
+        when(rs.getDate("due_date")).thenReturn(Date.valueOf("2025-01-10"), (Date) null);
+
+        BorrowingDAO dao = new BorrowingDAO();
+        List<BorrowedItem> items = dao.findBorrowedItems(conn, 42);
+
+        assertEquals(2, items.size());
+        assertEquals("Dune", items.get(0).getTitle());
+        assertEquals(6, items.get(1).getMediaId());
+        assertNull(items.get(1).getDueDate());
+        assertTrue(items.get(1).isOverdue());
+        verify(conn, times(1)).prepareStatement(argThat((String sql) ->
+                sql.contains("JOIN media") && sql.contains("status <> 'returned'")));
+        verify(ps).setInt(1, 42);
+    }
+
     @Test
     void hasOverdueForUser_returnsTrueWhenOverdueExists() throws Exception {
         Connection conn = mock(Connection.class);
@@ -326,6 +525,29 @@ class BorrowingDAOTest {
         verify(conn, never()).commit();
     }
 
+    /**
+     * Stubs the claim and existence queries of borrowMedia.
+     *
+     * @param conn mocked connection
+     * @param claimedType type returned by the claim, null if nothing was claimed
+     * @param exists whether the media row exists
+     * @throws SQLException never, the statements are mocks
+     */
+    private static void stubClaim(Connection conn, String claimedType, boolean exists) throws SQLException {
+        PreparedStatement claim = mock(PreparedStatement.class);
+        ResultSet claimed = mock(ResultSet.class);
+        when(conn.prepareStatement(startsWith("UPDATE media SET available = FALSE"))).thenReturn(claim);
+        when(claim.executeQuery()).thenReturn(claimed);
+        when(claimed.next()).thenReturn(claimedType != null);
+        when(claimed.getString(1)).thenReturn(claimedType);
+
+        PreparedStatement exist = mock(PreparedStatement.class);
+        ResultSet found = mock(ResultSet.class);
+        when(conn.prepareStatement(startsWith("SELECT 1 FROM media"))).thenReturn(exist);
+        when(exist.executeQuery()).thenReturn(found);
+        when(found.next()).thenReturn(exists);
+    }
+
     /**
      * borrowMedia: media not found.
      *
@@ -334,44 +556,48 @@ class BorrowingDAOTest {
     @Test
     void borrowMedia_returnsFalseWhenMediaNotFound() throws Exception {
         Connection conn = mock(Connection.class);
+        stubClaim(conn, null, false);
 
-        BorrowingDAO dao = spy(new BorrowingDAO());
+        BorrowingDAO dao = new BorrowingDAO();
         MediaDAO mediaDaoMock = mock(MediaDAO.class);
-        when(mediaDaoMock.findById(conn, 2)).thenReturn(null);
         injectMediaDao(dao, mediaDaoMock);
 
         boolean result = dao.borrowMedia(conn, 1, 2);
 
         assertFalse(result);
         verify(conn, never()).commit();
-        verify(conn, never()).rollback();
+        verify(conn).rollback();
+        verify(conn, never()).prepareStatement(startsWith("INSERT INTO borrowings"));
     }
 
     /**
-     * borrowMedia: media already borrowed.
+     * borrowMedia: the claim finds the media already borrowed, whatever the cache says.
      *
      * @throws Exception if the DAO call fails
      */
     @Test
     void borrowMedia_returnsFalseWhenMediaUnavailable() throws Exception {
         Connection conn = mock(Connection.class);
+        stubClaim(conn, null, true);
 
-        Media media = mock(Media.class);
-        when(media.isAvailable()).thenReturn(false);
+        Media cached = mock(Media.class);
+        when(cached.isAvailable()).thenReturn(true);
 
-        BorrowingDAO dao = spy(new BorrowingDAO());
+        BorrowingDAO dao = new BorrowingDAO();
         MediaDAO mediaDaoMock = mock(MediaDAO.class);
-        when(mediaDaoMock.findById(conn, 2)).thenReturn(media);
+        when(mediaDaoMock.findById(conn, 2)).thenReturn(cached);
         injectMediaDao(dao, mediaDaoMock);
 
         boolean result = dao.borrowMedia(conn, 1, 2);
 
         assertFalse(result);
         verify(conn, never()).commit();
+        verify(conn, never()).prepareStatement(startsWith("INSERT INTO borrowings"));
+        verify(mediaDaoMock, never()).findById(any(), anyInt());
     }
 
     /**
-     * borrowMedia: happy path.
+     * borrowMedia: happy path, the due date follows the claimed type.
      *
      * @throws Exception if the DAO call fails
      */
@@ -379,50 +605,95 @@ class BorrowingDAOTest {
     void borrowMedia_commitsWhenSuccessful() throws Exception {
         Connection conn = mock(Connection.class);
         PreparedStatement ps = mock(PreparedStatement.class);
-
+        stubClaim(conn, "cd", true);
         when(conn.prepareStatement(startsWith("INSERT INTO borrowings"))).thenReturn(ps);
 
-        Media media = mock(Media.class);
-        when(media.isAvailable()).thenReturn(true);
-        when(media.getBorrowDurationDays()).thenReturn(7);
-
-        BorrowingDAO dao = spy(new BorrowingDAO());
+        BorrowingDAO dao = new BorrowingDAO();
         MediaDAO mediaDaoMock = mock(MediaDAO.class);
-        when(mediaDaoMock.findById(conn, 2)).thenReturn(media);
-        when(mediaDaoMock.setMediaStatus(conn, 2, false)).thenReturn(true);
         injectMediaDao(dao, mediaDaoMock);
 
         boolean result = dao.borrowMedia(conn, 1, 2);
 
         assertTrue(result);
+        verify(ps).setDate(4, Date.valueOf(LocalDate.now().plusDays(7)));
+        verify(mediaDaoMock).statusChanged(conn, 2, false);
         verify(conn).commit();
     }
 
     /**
-     * borrowMedia: failure when updating media status.
+     * borrowMedia: failure when inserting the borrowing.
      *
      * @throws Exception if the DAO call fails
      */
     @Test
-    void borrowMedia_rollsBackOnMediaStatusFailure() throws Exception {
+    void borrowMedia_rollsBackOnInsertFailure() throws Exception {
         Connection conn = mock(Connection.class);
         PreparedStatement ps = mock(PreparedStatement.class);
-
+        stubClaim(conn, "book", true);
         when(conn.prepareStatement(startsWith("INSERT INTO borrowings"))).thenReturn(ps);
+        when(ps.executeUpdate()).thenThrow(new SQLException("insert failed"));
 
-        Media media = mock(Media.class);
-        when(media.isAvailable()).thenReturn(true);
-        when(media.getBorrowDurationDays()).thenReturn(7);
-
-        BorrowingDAO dao = spy(new BorrowingDAO());
+        BorrowingDAO dao = new BorrowingDAO();
         MediaDAO mediaDaoMock = mock(MediaDAO.class);
-        when(mediaDaoMock.findById(conn, 2)).thenReturn(media);
-        when(mediaDaoMock.setMediaStatus(conn, 2, false)).thenReturn(false);
         injectMediaDao(dao, mediaDaoMock);
 
         assertThrows(Exception.class, () -> dao.borrowMedia(conn, 1, 2));
         verify(conn).rollback();
         verify(conn, never()).commit();
+        verify(mediaDaoMock).invalidate(conn, 2);
+    }
+
+    /**
+     * Borrowing and returning on the shared connection leave it in auto-commit
+     * mode, so a later CSV import commits on its own instead of running in a
+     * transaction nobody commits.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void borrowAndReturn_restoreAutoCommitForLaterImport() throws Exception {
+        Connection conn = mock(Connection.class);
+        AtomicBoolean autoCommit = new AtomicBoolean(true);
+        when(conn.getAutoCommit()).thenAnswer(inv -> autoCommit.get());
+        doAnswer(inv -> {
+            autoCommit.set(inv.getArgument(0));
+            return null;
+        }).when(conn).setAutoCommit(anyBoolean());
+
+        stubClaim(conn, "book", true);
+        when(conn.prepareStatement(startsWith("INSERT INTO borrowings"))).thenReturn(mock(PreparedStatement.class));
+        when(conn.prepareStatement(startsWith("UPDATE borrowings"))).thenReturn(mock(PreparedStatement.class));
+        Borrowing borrowing = mock(Borrowing.class);
+        when(borrowing.getBorrowId()).thenReturn(99);
+
+        BorrowingDAO dao = spy(new BorrowingDAO());
+        doReturn(borrowing).when(dao).findActiveBorrowing(conn, 1, 2);
+        MediaDAO mediaDaoMock = mock(MediaDAO.class);
+        when(mediaDaoMock.setMediaStatus(conn, 2, true)).thenReturn(true);
+        injectMediaDao(dao, mediaDaoMock);
+
+        assertTrue(dao.borrowMedia(conn, 1, 2));
+        assertTrue(autoCommit.get());
+        assertTrue(dao.returnMedia(conn, 1, 2));
+        assertTrue(autoCommit.get());
+
+        PGConnection pg = mock(PGConnection.class);
+        CopyManager copy = mock(CopyManager.class);
+        PreparedStatement rejected = mock(PreparedStatement.class);
+        PreparedStatement merge = mock(PreparedStatement.class);
+        when(conn.createStatement()).thenReturn(mock(Statement.class));
+        when(conn.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copy);
+        when(copy.copyIn(eq(MediaDAO.IMPORT_COPY_SQL), any(Reader.class))).thenReturn(0L);
+        when(conn.prepareStatement(MediaDAO.IMPORT_REJECTED_SQL)).thenReturn(rejected);
+        when(conn.prepareStatement(MediaDAO.IMPORT_MERGE_SQL)).thenReturn(merge);
+        when(rejected.executeQuery()).thenReturn(mock(ResultSet.class));
+
+        new MediaDAO().importCsv(conn, new StringReader("type,title,author,isbn\n"));
+
+        verify(conn, times(3)).commit();
+        verify(conn, never()).setSavepoint();
+        assertTrue(autoCommit.get());
     }
 
     /**
@@ -491,6 +762,73 @@ class BorrowingDAOTest {
         verify(ps).executeUpdate();
     }
 
+    /**
+     * Tests that with routines enabled a borrow is one auto-committed call
+     * and the media is then known to be borrowed.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void borrowMedia_usesRoutineWhenEnabled() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(ServerRoutines.BORROW)).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(ServerRoutines.OK, 2);
+
+        BorrowingDAO dao = new BorrowingDAO();
+        System.setProperty("dao.routines.enabled", "true");
+        try {
+            assertTrue(dao.borrowMedia(conn, 10, 44));
+            assertFalse(dao.borrowMedia(conn, 11, 44));
+        } finally {
+            System.clearProperty("dao.routines.enabled");
+        }
+
+        verify(ps, times(2)).setInt(3, 28);
+        verify(ps, times(2)).setInt(4, 7);
+        verify(ps, times(2)).setInt(5, 14);
+        verify(ps, times(2)).executeQuery();
+        verify(conn, never()).setAutoCommit(anyBoolean());
+        verify(conn, never()).commit();
+        assertEquals(Boolean.FALSE, new MediaDAO().cachedAvailability(conn, 44));
+    }
+
+    /**
+     * Tests that the routine's unpaid fine status is reported as a refused return.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void returnMedia_routineRefusesUnpaidOverdue() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(false);
+        when(conn.prepareStatement(ServerRoutines.RETURN)).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(2);
+
+        BorrowingDAO dao = new BorrowingDAO();
+        System.setProperty("dao.routines.enabled", "true");
+        try {
+            assertFalse(dao.returnMedia(conn, 10, 45));
+        } finally {
+            System.clearProperty("dao.routines.enabled");
+        }
+
+        verify(ps).setInt(1, 10);
+        verify(ps).setInt(2, 45);
+        verify(conn).commit();
+        verify(conn, never()).prepareStatement(startsWith("UPDATE"));
+    }
+
     /**
      * Injects a mocked {@link MediaDAO} into a {@link BorrowingDAO} instance.
      *
@@ -0,0 +1,207 @@
+package com.library.dao;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for CacheInvalidationBus.
+ * The LISTEN/NOTIFY round trip runs only when LIBRARY_TEST_DB_URL points to a PostgreSQL
+ * database, with LIBRARY_TEST_DB_USER and LIBRARY_TEST_DB_PASSWORD as credentials.
+ */
+class CacheInvalidationBusTest {
+
+    /**
+     * Tests that events from this instance and malformed payloads are ignored.
+     */
+    @Test
+    void apply_ignoresOwnAndMalformedEvents() {
+        assertFalse(CacheInvalidationBus.apply(CacheInvalidationBus.NODE_ID + "|media|1|1"));
+        assertFalse(CacheInvalidationBus.apply("other|media|x|1"));
+        assertFalse(CacheInvalidationBus.apply("other|unknown|1|1"));
+        assertFalse(CacheInvalidationBus.apply(null));
+    }
+
+    /**
+     * Tests that a remote status change evicts the cached item and updates the bitmaps.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void apply_mediaEventEvictsCachedItem() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(31);
+        when(rs.getBoolean(6)).thenReturn(true, false);
+
+        MediaDAO dao = new MediaDAO();
+        assertTrue(dao.findById(conn, 31).isAvailable());
+        long before = dao.catalogVersion(conn);
+
+        assertTrue(CacheInvalidationBus.apply("other|media|31|0"));
+
+        assertEquals(Boolean.FALSE, dao.cachedAvailability(conn, 31));
+        assertTrue(dao.catalogVersion(conn) > before);
+        assertFalse(dao.findById(conn, 31).isAvailable());
+        verify(ps, times(2)).executeQuery();
+    }
+
+    /**
+     * Tests that a remote user change evicts the cached user.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void apply_userEventEvictsCachedUser() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(12);
+        when(rs.getString(2)).thenReturn("remote");
+
+        UserDAO dao = new UserDAO();
+        dao.findById(conn, 12);
+        assertTrue(CacheInvalidationBus.apply("other|user|12|0"));
+        dao.findById(conn, 12);
+
+        verify(ps, times(2)).executeQuery();
+    }
+
+    /**
+     * Tests that a write publishes a notification when the bus is enabled.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void setMediaStatus_publishesWhenEnabled() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement update = mock(PreparedStatement.class);
+        PreparedStatement notify = mock(PreparedStatement.class);
+
+        when(conn.prepareStatement(startsWith("UPDATE"))).thenReturn(update);
+        when(conn.prepareStatement(contains("pg_notify"))).thenReturn(notify);
+        when(update.executeUpdate()).thenReturn(1);
+
+        System.setProperty("cache.bus.enabled", "true");
+        try {
+            new MediaDAO().setMediaStatus(conn, 5, false);
+        } finally {
+            System.clearProperty("cache.bus.enabled");
+        }
+
+        verify(notify).setString(1, CacheInvalidationBus.CHANNEL);
+        verify(notify).setString(2, CacheInvalidationBus.NODE_ID + "|media|5|0");
+        verify(notify).execute();
+    }
+
+    /**
+     * Tests that a listener whose connection fails clears the local caches,
+     * keeps trying to reconnect, clears them again once listening, and then
+     * applies events from the new connection.
+     *
+     * @throws Exception if the listener cannot start
+     */
+    @Test
+    void listener_reconnectsAfterConnectionLoss() throws Exception {
+        Connection first = mock(Connection.class);
+        Connection second = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        PGConnection pgFirst = mock(PGConnection.class);
+        PGConnection pgSecond = mock(PGConnection.class);
+        PGNotification note = mock(PGNotification.class);
+
+        when(first.createStatement()).thenReturn(st);
+        when(second.createStatement()).thenReturn(st);
+        when(first.unwrap(PGConnection.class)).thenReturn(pgFirst);
+        when(second.unwrap(PGConnection.class)).thenReturn(pgSecond);
+        when(pgFirst.getNotifications(anyInt())).thenThrow(new SQLException("connection lost", "08006"));
+        when(note.getParameter()).thenReturn("other|catalog|0|0");
+        when(pgSecond.getNotifications(anyInt()))
+                .thenReturn(new PGNotification[] { note })
+                .thenAnswer(inv -> {
+                    Thread.sleep(10);
+                    return null;
+                });
+
+        Connection local = mock(Connection.class);
+        MediaDAO dao = new MediaDAO();
+        long before = dao.contentVersion(local);
+        AtomicInteger opens = new AtomicInteger();
+
+        System.setProperty("cache.bus.reconnect.base.ms", "10");
+        try (CacheInvalidationBus bus = CacheInvalidationBus.start(first, () -> {
+            if (opens.getAndIncrement() == 0) throw new SQLException("connection refused", "08001");
+            return second;
+        })) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dao.contentVersion(local) < before + 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(bus.isRunning());
+            assertEquals(1, bus.getReconnects());
+        } finally {
+            System.clearProperty("cache.bus.reconnect.base.ms");
+        }
+
+        assertEquals(2, opens.get());
+        assertTrue(dao.contentVersion(local) >= before + 3);
+        verify(first).close();
+        verify(second).close();
+        verify(st, times(2)).execute("LISTEN " + CacheInvalidationBus.CHANNEL);
+    }
+
+    /**
+     * Tests the full round trip: a NOTIFY from another connection reaches the listener
+     * and updates the local bitmaps.
+     *
+     * @throws Exception if the database is not reachable
+     */
+    @Test
+    void listener_receivesNotificationsFromPostgres() throws Exception {
+        String url = System.getenv("LIBRARY_TEST_DB_URL");
+        assumeTrue(url != null && !url.isEmpty(), "LIBRARY_TEST_DB_URL is not set");
+        String user = System.getenv("LIBRARY_TEST_DB_USER");
+        String password = System.getenv("LIBRARY_TEST_DB_PASSWORD");
+
+        Connection local = mock(Connection.class);
+        MediaDAO dao = new MediaDAO();
+        dao.catalogVersion(local);
+
+        try (CacheInvalidationBus bus = CacheInvalidationBus.start(DriverManager.getConnection(url, user, password));
+             Connection writer = DriverManager.getConnection(url, user, password);
+             PreparedStatement ps = writer.prepareStatement("SELECT pg_notify(?, ?)")) {
+            ps.setString(1, CacheInvalidationBus.CHANNEL);
+            ps.setString(2, "other-node|media|4242|0");
+            ps.execute();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dao.cachedAvailability(local, 4242) == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(bus.isRunning());
+        }
+        assertEquals(Boolean.FALSE, dao.cachedAvailability(local, 4242));
+    }
+}
@@ -0,0 +1,34 @@
+package com.library.dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Columns.
+ */
+class ColumnsTest {
+
+    /**
+     * Tests select lists with and without a table alias.
+     */
+    @Test
+    void list_joinsNamesInOrder() {
+        Columns c = new Columns("media_id", "title");
+
+        assertEquals("media_id, title", c.list());
+        assertEquals("m.media_id, m.title", c.list("m"));
+    }
+
+    /**
+     * Tests that positions are 1-based and missing columns return 0.
+     */
+    @Test
+    void index_returnsPositionOrZero() {
+        Columns c = new Columns("user_id", "username", "role");
+
+        assertEquals(1, c.index("user_id"));
+        assertEquals(3, c.index("role"));
+        assertEquals(0, c.index("password_hash"));
+    }
+}
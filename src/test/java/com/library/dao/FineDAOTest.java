@@ -423,4 +423,62 @@ class FineDAOTest {
         verify(psUpdateBorrow).executeUpdate();
         verify(psUpdateMedia).executeUpdate();
     }
+
+    /**
+     * Tests that a full payment through the routine makes the returned media available.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void payFine_routineMarksReturnedMediaAvailable() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(ServerRoutines.PAY_FINE)).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(ServerRoutines.OK);
+        when(rs.getInt(2)).thenReturn(46);
+
+        FineDAO dao = new FineDAO();
+        System.setProperty("dao.routines.enabled", "true");
+        try {
+            assertTrue(dao.payFine(conn, 3, 10, 20.0));
+        } finally {
+            System.clearProperty("dao.routines.enabled");
+        }
+
+        verify(ps).setDouble(3, 20.0);
+        verify(conn, never()).setAutoCommit(anyBoolean());
+        assertEquals(Boolean.TRUE, new MediaDAO().cachedAvailability(conn, 46));
+    }
+
+    /**
+     * Tests that a missing fine reported by the routine raises the same error as the statement path.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void payFine_routineThrowsWhenFineMissing() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(ServerRoutines.PAY_FINE)).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(1);
+
+        FineDAO dao = new FineDAO();
+        System.setProperty("dao.routines.enabled", "true");
+        try {
+            SQLException e = assertThrows(SQLException.class, () -> dao.payFine(conn, 99, 10, 5.0));
+            assertEquals("Fine not found", e.getMessage());
+        } finally {
+            System.clearProperty("dao.routines.enabled");
+        }
+    }
 }
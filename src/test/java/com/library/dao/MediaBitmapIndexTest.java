@@ -0,0 +1,91 @@
+package com.library.dao;
+
+import com.library.model.FacetedSearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MediaBitmapIndex.
+ */
+class MediaBitmapIndexTest {
+
+    /**
+     * Tests counts per type after records and status changes.
+     */
+    @Test
+    void countAvailable_followsStatusChanges() {
+        MediaBitmapIndex index = new MediaBitmapIndex();
+        index.record(1, "cd", true);
+        index.record(2, "cd", false);
+        index.record(3, "book", true);
+
+        assertEquals(1, index.countAvailable("cd"));
+        assertEquals(2, index.countAvailable(null));
+        assertEquals(0, index.countAvailable("journal"));
+
+        index.setAvailable(2, true);
+        index.remove(3);
+
+        assertEquals(2, index.countAvailable("cd"));
+        assertEquals(0, index.countAvailable("book"));
+    }
+
+    /**
+     * Tests that unknown and forgotten items report no availability.
+     */
+    @Test
+    void isAvailable_nullWhenUnknown() {
+        MediaBitmapIndex index = new MediaBitmapIndex();
+        assertNull(index.isAvailable(5));
+
+        index.setAvailable(5, false);
+        assertEquals(Boolean.FALSE, index.isAvailable(5));
+
+        index.markComplete();
+        index.forget(5);
+        assertNull(index.isAvailable(5));
+        assertFalse(index.isComplete());
+    }
+
+    /**
+     * Tests facet counts built from bit intersections.
+     */
+    @Test
+    void facets_countsMatchesPerTypeAndAvailability() {
+        MediaBitmapIndex index = new MediaBitmapIndex();
+        index.record(1, "book", true);
+        index.record(2, "book", false);
+        index.record(3, "cd", true);
+        index.record(4, "cd", true);
+
+        BitSet matches = new BitSet();
+        matches.set(1);
+        matches.set(2);
+        matches.set(4);
+        FacetedSearchResult result = new FacetedSearchResult();
+        index.facets(matches, result);
+
+        assertEquals(2, result.getTypeCount("book"));
+        assertEquals(1, result.getTypeCount("cd"));
+        assertEquals(2, result.getAvailableCount());
+        assertEquals(1, result.getBorrowedCount());
+    }
+
+    /**
+     * Tests that a full load stops counting as complete once it expires.
+     *
+     * @throws Exception if the sleep is interrupted
+     */
+    @Test
+    void isComplete_expiresAfterTtl() throws Exception {
+        MediaBitmapIndex index = new MediaBitmapIndex(20);
+        index.markComplete();
+        assertTrue(index.isComplete());
+
+        Thread.sleep(40);
+        assertFalse(index.isComplete());
+    }
+}
@@ -2,14 +2,25 @@ package com.library.dao;
 
 import com.library.model.Book;
 import com.library.model.CD;
+import com.library.model.FacetedSearchResult;
 import com.library.model.Journal;
 import com.library.model.Media;
+import com.library.model.MediaImportReport;
 import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -75,12 +86,12 @@ class MediaDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
 
         when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("book");
-        when(rs.getInt("media_id")).thenReturn(1);
-        when(rs.getString("title")).thenReturn("Algorithms");
-        when(rs.getString("author")).thenReturn("CLRS");
-        when(rs.getString("isbn")).thenReturn("123456");
-        when(rs.getBoolean("available")).thenReturn(true);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(1);
+        when(rs.getString(3)).thenReturn("Algorithms");
+        when(rs.getString(4)).thenReturn("CLRS");
+        when(rs.getString(5)).thenReturn("123456");
+        when(rs.getBoolean(6)).thenReturn(true);
 
         MediaDAO dao = new MediaDAO();
         List<Media> list = dao.searchMedia(conn, "algo", "book");
@@ -106,12 +117,12 @@ class MediaDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
 
         when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("book");
-        when(rs.getInt("media_id")).thenReturn(2);
-        when(rs.getString("title")).thenReturn("Data Structures");
-        when(rs.getString("author")).thenReturn("Author X");
-        when(rs.getString("isbn")).thenReturn("DSISBN");
-        when(rs.getBoolean("available")).thenReturn(true);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(2);
+        when(rs.getString(3)).thenReturn("Data Structures");
+        when(rs.getString(4)).thenReturn("Author X");
+        when(rs.getString(5)).thenReturn("DSISBN");
+        when(rs.getBoolean(6)).thenReturn(true);
 
         MediaDAO dao = new MediaDAO();
         List<Media> list = dao.searchMedia(conn, "data", "media");
@@ -154,7 +165,7 @@ class MediaDAOTest {
         when(conn.prepareStatement(anyString())).thenReturn(ps);
         when(ps.executeQuery()).thenReturn(rs);
         when(rs.next()).thenReturn(true);
-        when(rs.getBoolean("available")).thenReturn(true);
+        when(rs.getBoolean(1)).thenReturn(true);
 
         MediaDAO dao = new MediaDAO();
         boolean available = dao.mediaAvailable(conn, 7);
@@ -206,17 +217,17 @@ class MediaDAOTest {
 
         when(rs.next()).thenReturn(true, true, true, false);
 
-        when(rs.getString("type"))
+        when(rs.getString(2))
                 .thenReturn("book", "cd", "journal");
-        when(rs.getInt("media_id"))
+        when(rs.getInt(1))
                 .thenReturn(1, 2, 3);
-        when(rs.getString("title"))
+        when(rs.getString(3))
                 .thenReturn("Book T", "CD T", "Journal T");
-        when(rs.getString("author"))
+        when(rs.getString(4))
                 .thenReturn("Book A", "CD A", "Journal A");
-        when(rs.getString("isbn"))
+        when(rs.getString(5))
                 .thenReturn("BISBN", "CISBN", "JISBN");
-        when(rs.getBoolean("available"))
+        when(rs.getBoolean(6))
                 .thenReturn(true, false, true);
 
         MediaDAO dao = new MediaDAO();
@@ -244,12 +255,12 @@ class MediaDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
 
         when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("book");
-        when(rs.getInt("media_id")).thenReturn(11);
-        when(rs.getString("title")).thenReturn("Filtered Book");
-        when(rs.getString("author")).thenReturn("Filtered Author");
-        when(rs.getString("isbn")).thenReturn("FISBN");
-        when(rs.getBoolean("available")).thenReturn(true);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(11);
+        when(rs.getString(3)).thenReturn("Filtered Book");
+        when(rs.getString(4)).thenReturn("Filtered Author");
+        when(rs.getString(5)).thenReturn("FISBN");
+        when(rs.getBoolean(6)).thenReturn(true);
 
         MediaDAO dao = new MediaDAO();
         List<Media> list = dao.listAllMedia(conn, "book");
@@ -275,12 +286,12 @@ class MediaDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
 
         when(rs.next()).thenReturn(true);
-        when(rs.getString("type")).thenReturn("cd");
-        when(rs.getInt("media_id")).thenReturn(10);
-        when(rs.getString("title")).thenReturn("Cool CD");
-        when(rs.getString("author")).thenReturn("DJ");
-        when(rs.getString("isbn")).thenReturn("CDISBN");
-        when(rs.getBoolean("available")).thenReturn(true);
+        when(rs.getString(2)).thenReturn("cd");
+        when(rs.getInt(1)).thenReturn(10);
+        when(rs.getString(3)).thenReturn("Cool CD");
+        when(rs.getString(4)).thenReturn("DJ");
+        when(rs.getString(5)).thenReturn("CDISBN");
+        when(rs.getBoolean(6)).thenReturn(true);
 
         MediaDAO dao = new MediaDAO();
         Media m = dao.findById(conn, 10);
@@ -327,12 +338,12 @@ class MediaDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
 
         when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("journal");
-        when(rs.getInt("media_id")).thenReturn(22);
-        when(rs.getString("title")).thenReturn("Journal of Testing");
-        when(rs.getString("author")).thenReturn("Tester");
-        when(rs.getString("isbn")).thenReturn("JTEST");
-        when(rs.getBoolean("available")).thenReturn(false);
+        when(rs.getString(2)).thenReturn("journal");
+        when(rs.getInt(1)).thenReturn(22);
+        when(rs.getString(3)).thenReturn("Journal of Testing");
+        when(rs.getString(4)).thenReturn("Tester");
+        when(rs.getString(5)).thenReturn("JTEST");
+        when(rs.getBoolean(6)).thenReturn(false);
 
         MediaDAO dao = new MediaDAO();
         List<Media> list = dao.findActiveMedia(conn, 101);
@@ -359,12 +370,12 @@ class MediaDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
 
         when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("book");
-        when(rs.getInt("media_id")).thenReturn(30);
-        when(rs.getString("title")).thenReturn("Null Type Book");
-        when(rs.getString("author")).thenReturn("Someone");
-        when(rs.getString("isbn")).thenReturn("NULLISBN");
-        when(rs.getBoolean("available")).thenReturn(true);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(30);
+        when(rs.getString(3)).thenReturn("Null Type Book");
+        when(rs.getString(4)).thenReturn("Someone");
+        when(rs.getString(5)).thenReturn("NULLISBN");
+        when(rs.getBoolean(6)).thenReturn(true);
 
         MediaDAO dao = new MediaDAO();
         List<Media> list = dao.searchMedia(conn, "null", null);
@@ -390,12 +401,12 @@ class MediaDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
 
         when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("cd");
-        when(rs.getInt("media_id")).thenReturn(44);
-        when(rs.getString("title")).thenReturn("CD with Null Type Filter");
-        when(rs.getString("author")).thenReturn("CD Author");
-        when(rs.getString("isbn")).thenReturn("CDNULL");
-        when(rs.getBoolean("available")).thenReturn(true);
+        when(rs.getString(2)).thenReturn("cd");
+        when(rs.getInt(1)).thenReturn(44);
+        when(rs.getString(3)).thenReturn("CD with Null Type Filter");
+        when(rs.getString(4)).thenReturn("CD Author");
+        when(rs.getString(5)).thenReturn("CDNULL");
+        when(rs.getBoolean(6)).thenReturn(true);
 
         MediaDAO dao = new MediaDAO();
         List<Media> list = dao.listAllMedia(conn, null);
@@ -405,4 +416,670 @@ class MediaDAOTest {
         assertTrue(list.get(0) instanceof CD);
         assertEquals("CD with Null Type Filter", list.get(0).getTitle());
     }
+
+    /**
+     * Tests that a repeated search is answered from the cache without a second query,
+     * even when the keyword differs only in case and spacing.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void searchMedia_repeatedSearchSkipsDatabase() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(1);
+        when(rs.getString(3)).thenReturn("Algorithms");
+        when(rs.getBoolean(6)).thenReturn(true);
+
+        MediaDAO dao = new MediaDAO();
+        List<Media> first = dao.searchMedia(conn, "algo", "book");
+        List<Media> second = new MediaDAO().searchMedia(conn, "  ALGO ", "Book");
+
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertEquals("Algorithms", second.get(0).getTitle());
+        verify(ps, times(1)).executeQuery();
+        assertEquals(1, dao.searchCacheStats(conn).getHits());
+        assertEquals(1, dao.searchCacheStats(conn).getMisses());
+    }
+
+    /**
+     * Tests that a status change bumps the catalog version and the next search goes to the database.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void searchMedia_invalidatedBySetMediaStatus() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(ps.executeUpdate()).thenReturn(1);
+
+        when(rs.next()).thenReturn(true, false, true, false);
+        when(rs.getString(2)).thenReturn("cd");
+        when(rs.getInt(1)).thenReturn(4);
+        when(rs.getString(3)).thenReturn("Cool CD");
+        when(rs.getBoolean(6)).thenReturn(true, false);
+
+        MediaDAO dao = new MediaDAO();
+        long before = dao.catalogVersion(conn);
+        assertTrue(dao.searchMedia(conn, "cool", "cd").get(0).isAvailable());
+
+        dao.setMediaStatus(conn, 4, false);
+
+        assertTrue(dao.catalogVersion(conn) > before);
+        assertFalse(dao.searchMedia(conn, "cool", "cd").get(0).isAvailable());
+        verify(ps, times(2)).executeQuery();
+    }
+
+    /**
+     * Tests that a failed write does not change the catalog version.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void removeMedia_noRowKeepsCatalogVersion() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeUpdate()).thenReturn(0);
+
+        MediaDAO dao = new MediaDAO();
+        long before = dao.catalogVersion(conn);
+
+        assertFalse(dao.removeMedia(conn, 77));
+        assertEquals(before, dao.catalogVersion(conn));
+    }
+
+    /**
+     * Tests that facetedSearch builds counts from the grouped query and loads one page.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void facetedSearch_returnsCountsAndPage() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement psCount = mock(PreparedStatement.class);
+        PreparedStatement psPage = mock(PreparedStatement.class);
+        ResultSet rsCount = mock(ResultSet.class);
+        ResultSet rsPage = mock(ResultSet.class);
+
+        when(conn.prepareStatement(contains("GROUP BY"))).thenReturn(psCount);
+        when(conn.prepareStatement(contains("LIMIT"))).thenReturn(psPage);
+        when(psCount.executeQuery()).thenReturn(rsCount);
+        when(psPage.executeQuery()).thenReturn(rsPage);
+
+        when(rsCount.next()).thenReturn(true, true, true, false);
+        when(rsCount.getString(1)).thenReturn("book", "book", "cd");
+        when(rsCount.getBoolean(2)).thenReturn(true, false, true);
+        when(rsCount.getInt(3)).thenReturn(10, 2, 3);
+
+        when(rsPage.next()).thenReturn(true, false);
+        when(rsPage.getString(2)).thenReturn("book");
+        when(rsPage.getInt(1)).thenReturn(1);
+        when(rsPage.getString(3)).thenReturn("First");
+        when(rsPage.getBoolean(6)).thenReturn(true);
+
+        MediaDAO dao = new MediaDAO();
+        FacetedSearchResult result = dao.facetedSearch(conn, "x", "media", 1, 0);
+
+        assertEquals(15, result.getTotal());
+        assertEquals(12, result.getTypeCount("book"));
+        assertEquals(3, result.getTypeCount("cd"));
+        assertEquals(13, result.getAvailableCount());
+        assertEquals(2, result.getBorrowedCount());
+        assertEquals(1, result.getPage().size());
+        verify(psPage).setInt(4, 1);
+        verify(psPage).setInt(5, 0);
+    }
+
+    /**
+     * Tests that facetedSearch skips the page query when nothing matches.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void facetedSearch_skipsPageWhenNoMatches() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(false);
+
+        MediaDAO dao = new MediaDAO();
+        FacetedSearchResult result = dao.facetedSearch(conn, "none", "book", 20, 0);
+
+        assertEquals(0, result.getTotal());
+        assertTrue(result.getPage().isEmpty());
+        verify(conn, times(1)).prepareStatement(anyString());
+    }
+
+    /**
+     * Tests that findByIds loads all ids with one array query.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void findByIds_loadsItemsWithOneQuery() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        Array array = mock(Array.class);
+
+        when(conn.prepareStatement(contains("ANY"))).thenReturn(ps);
+        when(conn.createArrayOf(eq("integer"), any(Object[].class))).thenReturn(array);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getString(2)).thenReturn("book", "journal");
+        when(rs.getInt(1)).thenReturn(1, 2);
+
+        MediaDAO dao = new MediaDAO();
+        Map<Integer, Media> found = dao.findByIds(conn, Arrays.asList(1, 2, 3));
+
+        assertEquals(2, found.size());
+        assertTrue(found.get(2) instanceof Journal);
+        verify(ps).setArray(1, array);
+        assertTrue(dao.findByIds(conn, Collections.emptyList()).isEmpty());
+    }
+
+    /**
+     * Tests that searchMediaAmong applies the search filter to the candidate ids.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void searchMediaAmong_filtersCandidates() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        Array array = mock(Array.class);
+
+        when(conn.prepareStatement(contains("ILIKE"))).thenReturn(ps);
+        when(conn.createArrayOf(eq("integer"), any(Object[].class))).thenReturn(array);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(4);
+
+        MediaDAO dao = new MediaDAO();
+        Map<Integer, Media> found = dao.searchMediaAmong(conn, " Clean Code ", "Book", Arrays.asList(4, 5));
+
+        assertEquals(1, found.size());
+        verify(ps).setString(1, "%clean code%");
+        verify(ps).setString(4, "book");
+        verify(ps).setArray(5, array);
+        assertTrue(dao.searchMediaAmong(conn, "x", "media", Collections.emptyList()).isEmpty());
+    }
+
+    /**
+     * Tests that listMediaPage binds the last seen id, the type, and the limit.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void listMediaPage_usesKeysetArguments() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(contains("media_id > ?"))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString(2)).thenReturn("cd");
+        when(rs.getInt(1)).thenReturn(51);
+
+        MediaDAO dao = new MediaDAO();
+        List<Media> page = dao.listMediaPage(conn, "CD", 50, 25);
+
+        assertEquals(1, page.size());
+        assertEquals(51, page.get(0).getId());
+        verify(ps).setInt(1, 50);
+        verify(ps).setString(2, "cd");
+        verify(ps).setInt(3, 25);
+    }
+
+    /**
+     * Tests that searchMediaPage appends the keyset condition after the search filter.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void searchMediaPage_usesKeysetArguments() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(contains("media_id > ?"))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(false);
+
+        MediaDAO dao = new MediaDAO();
+        assertTrue(dao.searchMediaPage(conn, "x", "media", 7, 10).isEmpty());
+
+        verify(ps).setInt(4, 7);
+        verify(ps).setInt(5, 10);
+    }
+
+    /**
+     * Tests that forEachMedia streams rows through a cursor and restores auto-commit.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void forEachMedia_streamsRowsWithFetchSize() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getString(2)).thenReturn("book", "cd");
+        when(rs.getInt(1)).thenReturn(1, 2);
+
+        MediaDAO dao = new MediaDAO();
+        List<Media> seen = new ArrayList<>();
+        int count = dao.forEachMedia(conn, "media", seen::add);
+
+        assertEquals(2, count);
+        assertTrue(seen.get(1) instanceof CD);
+        verify(ps).setFetchSize(anyInt());
+        verify(conn).setAutoCommit(false);
+        verify(conn).commit();
+        verify(conn).setAutoCommit(true);
+    }
+
+    /**
+     * Tests that forEachSearchMatch rolls back its read transaction when the consumer fails.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void forEachSearchMatch_rollsBackOnConsumerError() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getString(2)).thenReturn("book");
+
+        MediaDAO dao = new MediaDAO();
+        assertThrows(IllegalStateException.class, () ->
+                dao.forEachSearchMatch(conn, "x", "book", m -> { throw new IllegalStateException("stop"); }));
+
+        verify(conn).rollback();
+        verify(conn).setAutoCommit(true);
+    }
+
+    /**
+     * Tests that countAvailable loads the bitmaps once and follows later status changes in memory.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void countAvailable_loadsOnceThenUsesBitmaps() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement psLoad = mock(PreparedStatement.class);
+        PreparedStatement psUpdate = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(psLoad);
+        when(conn.prepareStatement(startsWith("UPDATE"))).thenReturn(psUpdate);
+        when(psLoad.executeQuery()).thenReturn(rs);
+        when(psUpdate.executeUpdate()).thenReturn(1);
+        when(rs.next()).thenReturn(true, true, true, false);
+        when(rs.getInt(1)).thenReturn(1, 2, 3);
+        when(rs.getString(2)).thenReturn("cd", "cd", "book");
+        when(rs.getBoolean(3)).thenReturn(true, false, true);
+
+        MediaDAO dao = new MediaDAO();
+        assertEquals(1, dao.countAvailable(conn, "cd"));
+        assertEquals(2, dao.countAvailable(conn, "media"));
+
+        dao.setMediaStatus(conn, 2, true);
+
+        assertEquals(2, dao.countAvailable(conn, "CD"));
+        assertEquals(Boolean.TRUE, dao.cachedAvailability(conn, 2));
+        verify(psLoad, times(1)).executeQuery();
+    }
+
+    /**
+     * Tests that mediaAvailable reads the row every time, even when the bitmaps
+     * already know the item, and refreshes the bitmaps with the answer.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void mediaAvailable_alwaysReadsDatabase() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getBoolean(1)).thenReturn(false, true);
+
+        MediaDAO dao = new MediaDAO();
+        assertFalse(dao.mediaAvailable(conn, 8));
+        assertEquals(Boolean.FALSE, dao.cachedAvailability(conn, 8));
+
+        assertTrue(dao.mediaAvailable(conn, 8));
+        assertEquals(Boolean.TRUE, dao.cachedAvailability(conn, 8));
+        verify(ps, times(2)).executeQuery();
+    }
+
+    /**
+     * Tests that facetedSearch answers cached matches from the bitmaps, loading them once.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void facetedSearch_usesBitmapsForCachedMatches() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement psLoad = mock(PreparedStatement.class);
+        PreparedStatement psSearch = mock(PreparedStatement.class);
+        ResultSet rsLoad = mock(ResultSet.class);
+        ResultSet rsSearch = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(psLoad);
+        when(conn.prepareStatement(anyString())).thenReturn(psSearch);
+        when(psLoad.executeQuery()).thenReturn(rsLoad);
+        when(psSearch.executeQuery()).thenReturn(rsSearch);
+
+        when(rsLoad.next()).thenReturn(true, true, true, false);
+        when(rsLoad.getInt(1)).thenReturn(1, 2, 3);
+        when(rsLoad.getString(2)).thenReturn("book", "cd", "book");
+        when(rsLoad.getBoolean(3)).thenReturn(true, false, true);
+
+        when(rsSearch.next()).thenReturn(true, true, false);
+        when(rsSearch.getString(2)).thenReturn("cd", "book");
+        when(rsSearch.getInt(1)).thenReturn(2, 1);
+        when(rsSearch.getBoolean(6)).thenReturn(false, true);
+
+        MediaDAO dao = new MediaDAO();
+        dao.searchMedia(conn, "x", "media");
+
+        FacetedSearchResult result = dao.facetedSearch(conn, "x", "media", 1, 0);
+        dao.facetedSearch(conn, "x", "media", 1, 0);
+
+        assertEquals(2, result.getTotal());
+        assertEquals(1, result.getTypeCount("book"));
+        assertEquals(1, result.getTypeCount("cd"));
+        assertEquals(1, result.getBorrowedCount());
+        assertEquals(1, result.getPage().get(0).getId());
+        verify(psSearch, times(1)).executeQuery();
+        verify(psLoad, times(1)).executeQuery();
+    }
+
+    /**
+     * Tests that findById serves repeated reads from the media cache and hands out copies.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void findById_cachesItemsAndReturnsCopies() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getString(2)).thenReturn("journal");
+        when(rs.getInt(1)).thenReturn(6);
+        when(rs.getString(3)).thenReturn("Nature");
+        when(rs.getBoolean(6)).thenReturn(true);
+
+        MediaDAO dao = new MediaDAO();
+        Media first = dao.findById(conn, 6);
+        first.setTitle("changed");
+        Media second = new MediaDAO().findById(conn, 6);
+
+        assertTrue(second instanceof Journal);
+        assertEquals("Nature", second.getTitle());
+        verify(ps, times(1)).executeQuery();
+        assertEquals(0.5, dao.mediaCacheStats(conn).getHitRate(), 0.0001);
+    }
+
+    /**
+     * Tests that setMediaStatus updates the cached item and removeMedia evicts it.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void findById_cacheFollowsStatusChangeAndRemoval() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(ps.executeUpdate()).thenReturn(1);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString(2)).thenReturn("book");
+        when(rs.getInt(1)).thenReturn(9);
+        when(rs.getBoolean(6)).thenReturn(true);
+
+        MediaDAO dao = new MediaDAO();
+        dao.findById(conn, 9);
+        dao.setMediaStatus(conn, 9, false);
+
+        assertFalse(dao.findById(conn, 9).isAvailable());
+
+        dao.removeMedia(conn, 9);
+
+        assertNull(dao.findById(conn, 9));
+        verify(ps, times(2)).executeQuery();
+    }
+
+    /**
+     * Tests that findByIds only queries the ids missing from the media cache.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void findByIds_queriesOnlyUncachedIds() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        Array array = mock(Array.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(conn.createArrayOf(eq("integer"), any())).thenReturn(array);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getString(2)).thenReturn("book", "cd");
+        when(rs.getInt(1)).thenReturn(1, 2);
+
+        MediaDAO dao = new MediaDAO();
+        dao.findById(conn, 1);
+        Map<Integer, Media> found = dao.findByIds(conn, Arrays.asList(1, 2));
+
+        assertEquals(2, found.size());
+        assertTrue(found.get(2) instanceof CD);
+        verify(conn).createArrayOf("integer", new Object[] {2});
+    }
+
+    /**
+     * Tests that an import stages the file with COPY, reports rejected rows by
+     * record number and title, merges the rest, and commits once.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void importCsv_reportsRejectedRowsAndCommits() throws Exception {
+        Connection conn = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        PGConnection pg = mock(PGConnection.class);
+        CopyManager copy = mock(CopyManager.class);
+        PreparedStatement rejected = mock(PreparedStatement.class);
+        PreparedStatement merge = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.createStatement()).thenReturn(st);
+        when(conn.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copy);
+        when(copy.copyIn(eq(MediaDAO.IMPORT_COPY_SQL), any(Reader.class))).thenReturn(3L);
+        when(conn.prepareStatement(MediaDAO.IMPORT_REJECTED_SQL)).thenReturn(rejected);
+        when(conn.prepareStatement(MediaDAO.IMPORT_MERGE_SQL)).thenReturn(merge);
+        when(rejected.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getLong(1)).thenReturn(2L);
+        when(rs.getString(2)).thenReturn("unknown type: dvd");
+        when(rs.getString(3)).thenReturn("Kind of Blue");
+        when(merge.executeUpdate()).thenReturn(2);
+
+        MediaImportReport report = new MediaDAO().importCsv(conn, new StringReader("type,title,author,isbn\n"));
+
+        assertEquals(3, report.getRowsRead());
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getRejectedCount());
+        assertEquals("record 3 (Kind of Blue): unknown type: dvd", report.getRejected().get(0).toString());
+        verify(st).execute(MediaDAO.IMPORT_STAGE_SQL);
+        verify(conn).createArrayOf("text", new Object[] {"book", "cd", "journal"});
+        verify(conn).commit();
+        verify(conn).setAutoCommit(true);
+        verify(conn, never()).setSavepoint();
+    }
+
+    /**
+     * Tests that a file COPY cannot parse rolls the import back.
+     *
+     * @throws Exception if the mocks fail
+     */
+    @Test
+    void importCsv_rollsBackWhenCopyFails() throws Exception {
+        Connection conn = mock(Connection.class);
+        PGConnection pg = mock(PGConnection.class);
+        CopyManager copy = mock(CopyManager.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.createStatement()).thenReturn(mock(Statement.class));
+        when(conn.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copy);
+        when(copy.copyIn(anyString(), any(Reader.class))).thenThrow(new SQLException("missing data for column"));
+
+        assertThrows(SQLException.class, () -> new MediaDAO().importCsv(conn, new StringReader("x")));
+
+        verify(conn).rollback();
+        verify(conn, never()).commit();
+        verify(conn, never()).prepareStatement(anyString());
+    }
+
+    /**
+     * Tests that inside the caller's transaction an import drops its staging
+     * table and releases its savepoint, leaving the commit to the caller.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void importCsv_keepsCallerTransaction() throws Exception {
+        Connection conn = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        PGConnection pg = mock(PGConnection.class);
+        CopyManager copy = mock(CopyManager.class);
+        PreparedStatement rejected = mock(PreparedStatement.class);
+        PreparedStatement merge = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        Savepoint savepoint = mock(Savepoint.class);
+
+        when(conn.getAutoCommit()).thenReturn(false);
+        when(conn.setSavepoint()).thenReturn(savepoint);
+        when(conn.createStatement()).thenReturn(st);
+        when(conn.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copy);
+        when(copy.copyIn(eq(MediaDAO.IMPORT_COPY_SQL), any(Reader.class))).thenReturn(1L);
+        when(conn.prepareStatement(MediaDAO.IMPORT_REJECTED_SQL)).thenReturn(rejected);
+        when(conn.prepareStatement(MediaDAO.IMPORT_MERGE_SQL)).thenReturn(merge);
+        when(rejected.executeQuery()).thenReturn(rs);
+        when(merge.executeUpdate()).thenReturn(0);
+
+        new MediaDAO().importCsv(conn, new StringReader("type,title,author,isbn\n"));
+
+        verify(st).execute("DROP TABLE media_import");
+        verify(conn).releaseSavepoint(savepoint);
+        verify(conn, never()).commit();
+        verify(conn, never()).rollback();
+        verify(conn, never()).setAutoCommit(anyBoolean());
+    }
+
+    /**
+     * Tests that a failed import inside the caller's transaction rolls back
+     * to its savepoint only.
+     *
+     * @throws Exception if the mocks fail
+     */
+    @Test
+    void importCsv_rollsBackToSavepointInCallerTransaction() throws Exception {
+        Connection conn = mock(Connection.class);
+        PGConnection pg = mock(PGConnection.class);
+        CopyManager copy = mock(CopyManager.class);
+        Savepoint savepoint = mock(Savepoint.class);
+
+        when(conn.getAutoCommit()).thenReturn(false);
+        when(conn.setSavepoint()).thenReturn(savepoint);
+        when(conn.createStatement()).thenReturn(mock(Statement.class));
+        when(conn.unwrap(PGConnection.class)).thenReturn(pg);
+        when(pg.getCopyAPI()).thenReturn(copy);
+        when(copy.copyIn(anyString(), any(Reader.class))).thenThrow(new SQLException("missing data for column"));
+
+        assertThrows(SQLException.class, () -> new MediaDAO().importCsv(conn, new StringReader("x")));
+
+        verify(conn).rollback(savepoint);
+        verify(conn, never()).rollback();
+        verify(conn, never()).commit();
+    }
+
+    /**
+     * Tests against a real database that valid rows are imported and bad ones reported.
+     *
+     * @throws Exception if the database is not reachable
+     */
+    @Test
+    void importCsv_importsValidRowsOnPostgres() throws Exception {
+        String url = System.getenv("LIBRARY_TEST_DB_URL");
+        assumeTrue(url != null && !url.isEmpty(), "LIBRARY_TEST_DB_URL is not set");
+
+        try (Connection conn = DriverManager.getConnection(url,
+                System.getenv("LIBRARY_TEST_DB_USER"), System.getenv("LIBRARY_TEST_DB_PASSWORD"))) {
+            SchemaMigrator.migrate(conn);
+            String csv = "type,title,author,isbn\n"
+                    + "Book,Import Test A,Ann,111\n"
+                    + "dvd,Import Test B,Ben,222\n"
+                    + "journal,\"Import Test, C\",,\n";
+            try {
+                MediaImportReport report = new MediaDAO().importCsv(conn, new StringReader(csv));
+
+                assertEquals(3, report.getRowsRead());
+                assertEquals(2, report.getImported());
+                assertEquals(3, report.getRejected().get(0).getRecord());
+                assertEquals("Import Test B", report.getRejected().get(0).getTitle());
+            } finally {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("DELETE FROM media WHERE title LIKE 'Import Test%'");
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package com.library.dao;
+
+import com.library.model.OutboxMessage;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for OutboxDAO using Mockito mocks.
+ */
+class OutboxDAOTest {
+
+    /**
+     * Tests that a message with a used key is not queued again.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void enqueue_returnsFalseForDuplicateKey() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+
+        when(conn.prepareStatement(contains("ON CONFLICT (idempotency_key) DO NOTHING"))).thenReturn(ps);
+        when(ps.executeUpdate()).thenReturn(1, 0);
+
+        OutboxDAO dao = new OutboxDAO();
+
+        assertTrue(dao.enqueue(conn, "k", "a@example.com", "S", "B"));
+        assertFalse(dao.enqueue(conn, "k", "a@example.com", "S", "B"));
+        verify(ps, times(2)).setString(1, "k");
+    }
+
+    /**
+     * Tests that claim binds the lease and limit and maps the returned rows.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void claim_bindsLeaseAndMapsRows() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(contains("FOR UPDATE SKIP LOCKED"))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getLong(1)).thenReturn(7L);
+        when(rs.getString(3)).thenReturn("a@example.com");
+        when(rs.getInt(6)).thenReturn(2);
+
+        List<OutboxMessage> claimed = new OutboxDAO().claim(conn, 50, 300);
+
+        assertEquals(1, claimed.size());
+        assertEquals(7L, claimed.get(0).getId());
+        assertEquals("a@example.com", claimed.get(0).getRecipient());
+        assertEquals(2, claimed.get(0).getAttempts());
+        verify(ps).setInt(1, 300);
+        verify(ps).setInt(2, 50);
+    }
+}
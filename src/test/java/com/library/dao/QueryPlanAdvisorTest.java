@@ -0,0 +1,98 @@
+package com.library.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for QueryPlanAdvisor.
+ */
+class QueryPlanAdvisorTest {
+
+    /**
+     * Tests that table names are taken from Seq Scan nodes only.
+     */
+    @Test
+    void seqScans_findsScannedTables() {
+        List<String> plan = Arrays.asList(
+                "Nested Loop  (cost=0.29..16.34 rows=1 width=40)",
+                "  ->  Seq Scan on borrowings b  (cost=10000000000.00..10000000001.01 rows=1 width=16)",
+                "  ->  Index Scan using media_pkey on media m  (cost=0.29..8.30 rows=1 width=28)");
+
+        assertEquals(Arrays.asList("borrowings"), QueryPlanAdvisor.seqScans(plan));
+    }
+
+    /**
+     * Tests that every probe with a sequential scan gets a warning and nothing is committed.
+     *
+     * @throws Exception if the check fails
+     */
+    @Test
+    void check_warnsForEachSeqScanAndRollsBack() throws Exception {
+        Connection conn = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        PreparedStatement seq = mock(PreparedStatement.class);
+        PreparedStatement indexed = mock(PreparedStatement.class);
+        ResultSet seqPlan = mock(ResultSet.class);
+        ResultSet indexPlan = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.createStatement()).thenReturn(st);
+        when(conn.prepareStatement(anyString())).thenReturn(indexed);
+        when(conn.prepareStatement("EXPLAIN " + UserDAO.BY_USERNAME_SQL)).thenReturn(seq);
+        when(seq.executeQuery()).thenReturn(seqPlan);
+        when(seqPlan.next()).thenReturn(true, false);
+        when(seqPlan.getString(1)).thenReturn("Seq Scan on users  (cost=0.00..1.01 rows=1 width=64)");
+        when(indexed.executeQuery()).thenReturn(indexPlan);
+        when(indexPlan.next()).thenReturn(true, false, true, false, true, false, true, false,
+                true, false, true, false, true, false, true, false);
+        when(indexPlan.getString(1)).thenReturn("Index Scan using fines_user_id_idx on fines");
+
+        List<String> warnings = QueryPlanAdvisor.check(conn);
+
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).startsWith("user by username reads all of users"));
+        verify(st).execute("SET LOCAL enable_seqscan = off");
+        verify(seq).setString(1, "");
+        verify(conn).rollback();
+        verify(conn, never()).commit();
+        verify(conn).setAutoCommit(true);
+    }
+
+    /**
+     * Tests that inside the caller's transaction only a savepoint is rolled back.
+     *
+     * @throws Exception if the check fails
+     */
+    @Test
+    void check_keepsCallerTransaction() throws Exception {
+        Connection conn = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet plan = mock(ResultSet.class);
+        Savepoint savepoint = mock(Savepoint.class);
+
+        when(conn.getAutoCommit()).thenReturn(false);
+        when(conn.setSavepoint()).thenReturn(savepoint);
+        when(conn.createStatement()).thenReturn(st);
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(plan);
+
+        assertTrue(QueryPlanAdvisor.check(conn).isEmpty());
+
+        verify(conn).rollback(savepoint);
+        verify(conn).releaseSavepoint(savepoint);
+        verify(conn, never()).rollback();
+        verify(conn, never()).setAutoCommit(anyBoolean());
+    }
+}
@@ -0,0 +1,111 @@
+package com.library.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for SchemaMigrator.
+ */
+class SchemaMigratorTest {
+
+    /**
+     * Tests that migration versions are unique and increasing.
+     */
+    @Test
+    void migrations_areOrderedByVersion() {
+        int last = 0;
+        for (SchemaMigrator.Migration m : SchemaMigrator.MIGRATIONS) {
+            assertTrue(m.version > last);
+            assertFalse(m.statements.isEmpty());
+            last = m.version;
+        }
+        assertEquals(last, SchemaMigrator.latestVersion());
+    }
+
+    /**
+     * Tests that only migrations newer than the recorded version run, in one transaction.
+     *
+     * @throws Exception if the migration fails
+     */
+    @Test
+    void migrate_appliesOnlyPendingMigrations() throws Exception {
+        Connection conn = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        ResultSet rs = mock(ResultSet.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.createStatement()).thenReturn(st);
+        when(st.executeQuery(contains("schema_version"))).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(1);
+        when(conn.prepareStatement(startsWith("INSERT INTO schema_version"))).thenReturn(insert);
+
+        int applied = SchemaMigrator.migrate(conn);
+
+        assertEquals(SchemaMigrator.latestVersion() - 1, applied);
+        verify(st).execute(contains("pg_advisory_xact_lock"));
+        verify(st, never()).execute(startsWith("CREATE TABLE IF NOT EXISTS users"));
+        verify(st).execute(contains("borrowings_active_user_media_idx"));
+        verify(insert).setInt(1, 2);
+        verify(conn).commit();
+        verify(conn, never()).rollback();
+        verify(conn).setAutoCommit(true);
+    }
+
+    /**
+     * Tests that a failing statement rolls back every pending migration.
+     *
+     * @throws Exception if the mocks fail
+     */
+    @Test
+    void migrate_rollsBackOnFailure() throws Exception {
+        Connection conn = mock(Connection.class);
+        Statement st = mock(Statement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.createStatement()).thenReturn(st);
+        when(st.executeQuery(anyString())).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(0);
+        when(st.execute(startsWith("CREATE TABLE IF NOT EXISTS media"))).thenThrow(new SQLException("denied"));
+
+        assertThrows(SQLException.class, () -> SchemaMigrator.migrate(conn));
+
+        verify(conn).rollback();
+        verify(conn, never()).commit();
+        verify(conn, never()).prepareStatement(anyString());
+    }
+
+    /**
+     * Tests against a real database that migrating twice applies nothing the second time
+     * and that the indexes leave no sequential scans in the hot queries.
+     *
+     * @throws Exception if the database is not reachable
+     */
+    @Test
+    void migrate_isIdempotentOnPostgres() throws Exception {
+        String url = System.getenv("LIBRARY_TEST_DB_URL");
+        assumeTrue(url != null && !url.isEmpty(), "LIBRARY_TEST_DB_URL is not set");
+
+        try (Connection conn = DriverManager.getConnection(url,
+                System.getenv("LIBRARY_TEST_DB_USER"), System.getenv("LIBRARY_TEST_DB_PASSWORD"))) {
+            SchemaMigrator.migrate(conn);
+
+            assertEquals(0, SchemaMigrator.migrate(conn));
+            assertTrue(QueryPlanAdvisor.check(conn).isEmpty());
+        }
+    }
+}
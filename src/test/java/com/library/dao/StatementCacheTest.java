@@ -0,0 +1,160 @@
+package com.library.dao;
+
+import com.library.util.DatabaseConnection;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for StatementCache.
+ */
+class StatementCacheTest {
+
+    /**
+     * Tests that a closed statement is reused for the same SQL.
+     */
+    @Test
+    void prepare_reusesStatementAfterClose() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(conn.prepareStatement("SELECT 1")).thenReturn(ps);
+
+        try (PreparedStatement first = StatementCache.prepare(conn, "SELECT 1")) {
+            first.setInt(1, 5);
+        }
+        try (PreparedStatement second = StatementCache.prepare(conn, "SELECT 1")) {
+            second.setInt(1, 6);
+        }
+
+        verify(conn, times(1)).prepareStatement("SELECT 1");
+        verify(ps).setInt(1, 5);
+        verify(ps).setInt(1, 6);
+        verify(ps, never()).close();
+        assertEquals(1, StatementCache.stats(conn).getHits());
+        assertEquals(1, StatementCache.stats(conn).getMisses());
+    }
+
+    /**
+     * Tests that a statement still in use is not handed out twice.
+     */
+    @Test
+    void prepare_nestedLeaseGetsOwnStatement() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement cached = mock(PreparedStatement.class);
+        PreparedStatement extra = mock(PreparedStatement.class);
+        when(conn.prepareStatement("SELECT 2")).thenReturn(cached, extra);
+
+        try (PreparedStatement outer = StatementCache.prepare(conn, "SELECT 2")) {
+            try (PreparedStatement inner = StatementCache.prepare(conn, "SELECT 2")) {
+                inner.execute();
+            }
+            outer.execute();
+        }
+
+        verify(extra).execute();
+        verify(extra).close();
+        verify(cached).execute();
+        verify(cached, never()).close();
+    }
+
+    /**
+     * Tests that returning a statement clears its parameters and closes its result set.
+     */
+    @Test
+    void close_clearsParametersAndClosesResultSet() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(conn.prepareStatement("SELECT 3")).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+
+        PreparedStatement leased = StatementCache.prepare(conn, "SELECT 3");
+        leased.executeQuery();
+        leased.close();
+
+        assertTrue(leased.isClosed());
+        verify(rs).close();
+        verify(ps).clearParameters();
+    }
+
+    /**
+     * Tests that a returned lease refuses further calls, so it cannot touch
+     * the statement after another caller leased it.
+     */
+    @Test
+    void close_leaseRefusesCallsAfterReturn() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(conn.prepareStatement("SELECT 5")).thenReturn(ps);
+
+        PreparedStatement stale = StatementCache.prepare(conn, "SELECT 5");
+        stale.close();
+        try (PreparedStatement current = StatementCache.prepare(conn, "SELECT 5")) {
+            current.setInt(1, 1);
+            assertThrows(SQLException.class, () -> stale.setInt(1, 2));
+            stale.close();
+            assertFalse(current.isClosed());
+        }
+
+        verify(ps, never()).setInt(1, 2);
+        verify(ps, times(2)).clearParameters();
+    }
+
+    /**
+     * Tests that unwrapping reaches the driver statement behind the lease.
+     */
+    @Test
+    void unwrap_reachesDriverStatement() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(conn.prepareStatement("SELECT 6")).thenReturn(ps);
+        when(ps.unwrap(Connection.class)).thenReturn(conn);
+
+        try (PreparedStatement leased = StatementCache.prepare(conn, "SELECT 6")) {
+            assertSame(leased, leased.unwrap(PreparedStatement.class));
+            assertSame(conn, leased.unwrap(Connection.class));
+        }
+    }
+
+    /**
+     * Tests that closing a dedicated connection drops its cache, which the
+     * weak key alone would not since the statements reference the connection.
+     *
+     * @throws Exception if the mocks fail
+     */
+    @Test
+    void closeDedicated_dropsCache() throws Exception {
+        Connection conn = mock(Connection.class);
+        when(conn.prepareStatement("SELECT 7")).thenReturn(mock(PreparedStatement.class));
+
+        StatementCache.prepare(conn, "SELECT 7").close();
+        DatabaseConnection.closeDedicated(conn);
+        StatementCache.prepare(conn, "SELECT 7").close();
+
+        verify(conn).close();
+        verify(conn, times(2)).prepareStatement("SELECT 7");
+        assertEquals(1, StatementCache.stats(conn).getMisses());
+        StatementCache.release(conn);
+    }
+
+    /**
+     * Tests that release closes the cached statements.
+     */
+    @Test
+    void release_closesCachedStatements() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(conn.prepareStatement("SELECT 4")).thenReturn(ps);
+
+        StatementCache.prepare(conn, "SELECT 4").close();
+        StatementCache.release(conn);
+
+        verify(ps).close();
+    }
+}
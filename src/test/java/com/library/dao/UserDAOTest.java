@@ -29,12 +29,12 @@ class UserDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
         when(rs.next()).thenReturn(true);
 
-        when(rs.getInt("user_id")).thenReturn(1);
-        when(rs.getString("username")).thenReturn("abdallah");
-        when(rs.getString("email")).thenReturn("abdallahalmasri2612@gmail.com");
-        when(rs.getString("password_hash")).thenReturn("123");
-        when(rs.getString("role")).thenReturn("admin");
-        when(rs.getDouble("balance")).thenReturn(10.0);
+        when(rs.getInt(1)).thenReturn(1);
+        when(rs.getString(2)).thenReturn("abdallah");
+        when(rs.getString(3)).thenReturn("abdallahalmasri2612@gmail.com");
+        when(rs.getString(4)).thenReturn("123");
+        when(rs.getString(5)).thenReturn("admin");
+        when(rs.getDouble(6)).thenReturn(10.0);
 
         UserDAO dao = new UserDAO();
         User u = dao.findByUsername(conn, "abdallah");
@@ -134,18 +134,20 @@ class UserDAOTest {
 
         when(rs.next()).thenReturn(true, false);
 
-        when(rs.getInt("user_id")).thenReturn(1);
-        when(rs.getString("username")).thenReturn("abdallah");
-        when(rs.getString("email")).thenReturn("abdallahalmasri2612@gmail.com");
-        when(rs.getString("password_hash")).thenReturn("123");
-        when(rs.getString("role")).thenReturn("admin");
-        when(rs.getDouble("balance")).thenReturn(10.0);
+        when(rs.getInt(1)).thenReturn(1);
+        when(rs.getString(2)).thenReturn("abdallah");
+        when(rs.getString(3)).thenReturn("abdallahalmasri2612@gmail.com");
+        when(rs.getString(4)).thenReturn("admin");
+        when(rs.getDouble(5)).thenReturn(10.0);
 
         UserDAO dao = new UserDAO();
         List<User> users = dao.getAllUsers(conn);
 
         assertEquals(1, users.size());
         assertEquals("abdallah", users.get(0).getUsername());
+        assertEquals("admin", users.get(0).getRole());
+        assertNull(users.get(0).getPasswordHash());
+        verify(conn).prepareStatement("SELECT user_id, username, email, role, balance FROM users ORDER BY user_id");
     }
 
     /**
@@ -182,7 +184,7 @@ class UserDAOTest {
         when(conn.prepareStatement(anyString())).thenReturn(ps);
         when(ps.executeQuery()).thenReturn(rs);
         when(rs.next()).thenReturn(true);
-        when(rs.getDouble("balance")).thenReturn(50.0);
+        when(rs.getDouble(1)).thenReturn(50.0);
 
         UserDAO dao = new UserDAO();
         double bal = dao.getUserBalance(conn, 1);
@@ -225,12 +227,12 @@ class UserDAOTest {
         when(ps.executeQuery()).thenReturn(rs);
         when(rs.next()).thenReturn(true);
 
-        when(rs.getInt("user_id")).thenReturn(1);
-        when(rs.getString("username")).thenReturn("abdallah");
-        when(rs.getString("email")).thenReturn("abdallahalmasri2612@gmail.com");
-        when(rs.getString("password_hash")).thenReturn("123");
-        when(rs.getString("role")).thenReturn("admin");
-        when(rs.getDouble("balance")).thenReturn(0.0);
+        when(rs.getInt(1)).thenReturn(1);
+        when(rs.getString(2)).thenReturn("abdallah");
+        when(rs.getString(3)).thenReturn("abdallahalmasri2612@gmail.com");
+        when(rs.getString(4)).thenReturn("123");
+        when(rs.getString(5)).thenReturn("admin");
+        when(rs.getDouble(6)).thenReturn(0.0);
 
         UserDAO dao = new UserDAO();
         User u = dao.findById(conn, 1);
@@ -344,4 +346,137 @@ class UserDAOTest {
         assertNotNull(users);
         assertTrue(users.isEmpty());
     }
+
+    /**
+     * Tests that getUsersPage binds the last seen id and the limit.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void getUsersPage_usesKeysetArguments() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(contains("user_id > ?"))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getInt(1)).thenReturn(11);
+
+        UserDAO dao = new UserDAO();
+        List<User> page = dao.getUsersPage(conn, 10, 5);
+
+        assertEquals(1, page.size());
+        assertEquals(11, page.get(0).getUserId());
+        verify(ps).setInt(1, 10);
+        verify(ps).setInt(2, 5);
+    }
+
+    /**
+     * Tests that forEachUser streams users inside the caller's transaction without committing it.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void forEachUser_usesCallerTransaction() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.getAutoCommit()).thenReturn(false);
+        when(conn.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, true, false);
+        when(rs.getString(2)).thenReturn("a", "b", "c");
+
+        UserDAO dao = new UserDAO();
+        StringBuilder names = new StringBuilder();
+        int count = dao.forEachUser(conn, u -> names.append(u.getUsername()));
+
+        assertEquals(3, count);
+        assertEquals("abc", names.toString());
+        verify(conn, never()).commit();
+        verify(conn, never()).setAutoCommit(anyBoolean());
+    }
+
+    /**
+     * Tests that a user found by username is then served by id and by name from the cache.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void findByUsername_cachesUserForBothLookups() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(3);
+        when(rs.getString(2)).thenReturn("sara");
+        when(rs.getString(5)).thenReturn("user");
+
+        UserDAO dao = new UserDAO();
+        User first = dao.findByUsername(conn, "sara");
+        first.setRole("admin");
+
+        assertEquals("user", new UserDAO().findByUsername(conn, "sara").getRole());
+        assertEquals("sara", dao.findById(conn, 3).getUsername());
+        verify(ps, times(1)).executeQuery();
+        assertEquals(1, dao.userCacheStats(conn).getMisses());
+    }
+
+    /**
+     * Tests that a balance update drops the cached user so the next lookup reads the new balance.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void updateUserBalance_evictsCachedUser() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getInt(1)).thenReturn(4);
+        when(rs.getString(2)).thenReturn("omar");
+        when(rs.getDouble(6)).thenReturn(0.0, 5.0);
+
+        UserDAO dao = new UserDAO();
+        assertEquals(0.0, dao.findById(conn, 4).getBalance());
+
+        dao.updateUserBalance(conn, 4, 5.0);
+
+        assertEquals(5.0, dao.findByUsername(conn, "omar").getBalance());
+        verify(ps, times(2)).executeQuery();
+    }
+
+    /**
+     * Tests that deleteUser evicts the user from both indexes.
+     *
+     * @throws Exception if the DAO call fails
+     */
+    @Test
+    void deleteUser_evictsCachedUser() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(ps.executeUpdate()).thenReturn(1);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getInt(1)).thenReturn(6);
+        when(rs.getString(2)).thenReturn("lina");
+
+        UserDAO dao = new UserDAO();
+        dao.findByUsername(conn, "lina");
+        dao.deleteUser(conn, 6);
+
+        assertNull(dao.findByUsername(conn, "lina"));
+        verify(ps, times(2)).executeQuery();
+    }
 }
@@ -3,18 +3,24 @@ package com.library.service;
 import com.library.dao.BorrowingDAO;
 import com.library.dao.MediaDAO;
 import com.library.dao.UserDAO;
-import com.library.model.Borrowing;
+import com.library.model.Book;
 import com.library.model.Media;
+import com.library.model.MediaImportReport;
 import com.library.model.User;
 import com.library.util.DatabaseConnection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.Reader;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -181,6 +187,91 @@ class AdminServiceTest {
         verify(mediaDAO).addMedia(conn, m);
     }
 
+    /**
+     * Tests that importMedia streams the file to the DAO when admin is logged in.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    void importMediaPassesFileToDao() throws Exception {
+        assertThrows(IllegalStateException.class, () -> service.importMedia(Paths.get("media.csv")));
+
+        setLoggedAdmin();
+        Path file = Files.createTempFile("media", ".csv");
+        try {
+            Files.writeString(file, "type,title,author,isbn\nbook,Dune,Herbert,1\n");
+            MediaImportReport report = new MediaImportReport(1, 1, 0);
+            when(mediaDAO.importCsv(eq(conn), any(Reader.class))).thenReturn(report);
+
+            assertSame(report, service.importMedia(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that exportMedia streams all media, or only the search matches,
+     * to the file in the import format and quotes values with commas.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportMediaStreamsRowsToFile() throws Exception {
+        assertThrows(IllegalStateException.class, () -> service.exportMedia(null, "media", Paths.get("out.csv")));
+
+        setLoggedAdmin();
+        Book dune = new Book();
+        dune.setTitle("Dune, Part One");
+        dune.setAuthor("Herbert");
+        dune.setIsbn("1");
+        doAnswer(inv -> {
+            ((Consumer<Media>) inv.getArgument(2)).accept(dune);
+            return 1;
+        }).when(mediaDAO).forEachMedia(eq(conn), eq("media"), any());
+        when(mediaDAO.forEachSearchMatch(eq(conn), eq("dune"), eq("book"), any())).thenReturn(0);
+
+        Path file = Files.createTempFile("media", ".csv");
+        try {
+            assertEquals(1, service.exportMedia(null, "media", file));
+            assertEquals("type,title,author,isbn\nbook,\"Dune, Part One\",Herbert,1\n", Files.readString(file));
+
+            assertEquals(0, service.exportMedia("dune", "book", file));
+            verify(mediaDAO).forEachSearchMatch(eq(conn), eq("dune"), eq("book"), any());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that exportUsers streams users to the file without password hashes.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportUsersStreamsRowsToFile() throws Exception {
+        setLoggedAdmin();
+        User sara = new User();
+        sara.setUserId(3);
+        sara.setUsername("sara");
+        sara.setEmail("sara@example.com");
+        sara.setRole("user");
+        doAnswer(inv -> {
+            ((Consumer<User>) inv.getArgument(1)).accept(sara);
+            return 1;
+        }).when(userDAO).forEachUser(eq(conn), any());
+
+        Path file = Files.createTempFile("users", ".csv");
+        try {
+            assertEquals(1, service.exportUsers(file));
+            assertEquals("user_id,username,email,role,balance\n3,sara,sara@example.com,user,0.0\n",
+                    Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     /**
      * Tests that searchMedia delegates to MediaDAO.
      *
@@ -424,6 +515,48 @@ class AdminServiceTest {
         assertEquals(1, result.get(0).getUserId());
     }
 
+    /**
+     * Tests that listUsersPage passes the keyset arguments to UserDAO.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    void listUsersPageDelegatesToDao() throws Exception {
+        setLoggedAdmin();
+        User u = new User();
+        u.setUserId(41);
+        when(userDAO.getUsersPage(conn, 40, 10)).thenReturn(Arrays.asList(u));
+
+        List<User> result = service.listUsersPage(40, 10);
+
+        assertEquals(41, result.get(0).getUserId());
+    }
+
+    /**
+     * Tests that listMediaPage passes the keyset arguments to MediaDAO.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    void listMediaPageDelegatesToDao() throws Exception {
+        List<Media> list = Arrays.asList(new Book());
+        when(mediaDAO.listMediaPage(conn, "book", 5, 20)).thenReturn(list);
+
+        assertSame(list, service.listMediaPage("book", 5, 20));
+    }
+
+    /**
+     * Tests that countAvailable delegates to MediaDAO.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    void countAvailableDelegatesToDao() throws Exception {
+        when(mediaDAO.countAvailable(conn, "cd")).thenReturn(3);
+
+        assertEquals(3, service.countAvailable("cd"));
+    }
+
     /**
      * Tests sendOverdueReminders when there are overdue borrowings.
      *
@@ -431,27 +564,6 @@ class AdminServiceTest {
      */
     @Test
     void sendOverdueRemindersCountsUsersAndSendsEmails() throws Exception {
-        Borrowing b1 = new Borrowing();
-        b1.setBorrowId(1);
-        b1.setUserId(10);
-        b1.setStatus("overdue");
-        b1.setDueDate(LocalDate.now().minusDays(3));
-
-        Borrowing b2 = new Borrowing();
-        b2.setBorrowId(2);
-        b2.setUserId(10);
-        b2.setStatus("overdue");
-        b2.setDueDate(LocalDate.now().minusDays(1));
-
-        Borrowing b3 = new Borrowing();
-        b3.setBorrowId(3);
-        b3.setUserId(20);
-        b3.setStatus("borrowed");
-        b3.setDueDate(LocalDate.now().minusDays(2));
-
-        List<Borrowing> list = Arrays.asList(b1, b2, b3);
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(list);
-
         User u1 = new User();
         u1.setUserId(10);
         u1.setEmail("u1@example.com");
@@ -459,8 +571,7 @@ class AdminServiceTest {
         u2.setUserId(20);
         u2.setEmail("u2@example.com");
 
-        when(userDAO.findById(conn, 10)).thenReturn(u1);
-        when(userDAO.findById(conn, 20)).thenReturn(u2);
+        OverdueRecipients.stub(borrowingDAO, conn, Arrays.asList(u1, u2), 2, 1);
 
         EmailServer emailServer = mock(EmailServer.class);
 
@@ -469,6 +580,34 @@ class AdminServiceTest {
         assertEquals(2, count);
         verify(emailServer).send("u1@example.com", "Overdue Reminder", "You have 2 overdue book(s).");
         verify(emailServer).send("u2@example.com", "Overdue Reminder", "You have 1 overdue book(s).");
+        verify(userDAO, never()).findById(any(), anyInt());
+    }
+
+    /**
+     * Tests that reminders sent through the background queue all go out
+     * before the call returns, and a failed message is not counted.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    void sendOverdueRemindersQueuedDrainsAndSkipsFailures() throws Exception {
+        User u1 = new User();
+        u1.setUserId(10);
+        u1.setEmail("u1@example.com");
+        User u2 = new User();
+        u2.setUserId(20);
+        u2.setEmail("u2@example.com");
+        OverdueRecipients.stub(borrowingDAO, conn, Arrays.asList(u1, u2), 2, 1);
+
+        EmailServer emailServer = mock(EmailServer.class);
+        doThrow(new RuntimeException("Failed to send email"))
+                .when(emailServer).send(eq("u2@example.com"), anyString(), anyString());
+
+        int count = service.sendOverdueRemindersQueued(emailServer);
+
+        assertEquals(1, count);
+        verify(emailServer).send("u1@example.com", "Overdue Reminder", "You have 2 overdue book(s).");
+        verify(emailServer).send("u2@example.com", "Overdue Reminder", "You have 1 overdue book(s).");
     }
 
     /**
@@ -478,7 +617,7 @@ class AdminServiceTest {
      */
     @Test
     void sendOverdueRemindersReturnsZeroWhenNone() throws Exception {
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(null);
+        OverdueRecipients.stub(borrowingDAO, conn, Collections.emptyList());
 
         EmailServer emailServer = mock(EmailServer.class);
 
@@ -0,0 +1,142 @@
+package com.library.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the background email queue with in-memory email servers.
+ */
+class AsyncEmailServerTest {
+
+    /**
+     * Closing waits until every queued message was sent, using several workers.
+     */
+    @Test
+    void close_drainsQueue() {
+        Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        Set<String> recipients = Collections.synchronizedSet(new HashSet<>());
+        EmailServer slow = (to, subject, body) -> {
+            threads.add(Thread.currentThread().getName());
+            recipients.add(to);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        AsyncEmailServer server = new AsyncEmailServer(slow, 3, 10, 30);
+        for (int i = 0; i < 30; i++) {
+            server.send("u" + i + "@example.com", "S", "B");
+        }
+        server.close();
+
+        assertEquals(30, recipients.size());
+        assertEquals(30, server.getSent());
+        assertEquals(0, server.getPending());
+        assertTrue(threads.size() > 1);
+    }
+
+    /**
+     * A full queue makes send wait until a worker takes a message.
+     */
+    @Test
+    void send_waitsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        EmailServer blocked = (to, subject, body) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AsyncEmailServer server = new AsyncEmailServer(blocked, 1, 1, 30);
+
+        server.send("a@example.com", "S", "B");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        server.send("b@example.com", "S", "B");
+
+        Thread producer = new Thread(() -> server.send("c@example.com", "S", "B"));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        server.close();
+        assertEquals(3, server.getSent());
+    }
+
+    /**
+     * A failing message is counted and later messages are still sent.
+     */
+    @Test
+    void failure_isCountedAndWorkerContinues() {
+        EmailServer delegate = mock(EmailServer.class);
+        doThrow(new RuntimeException("Failed to send email"))
+                .when(delegate).send(eq("bad@example.com"), anyString(), anyString());
+        AsyncEmailServer server = new AsyncEmailServer(delegate, 1, 10, 30);
+
+        server.send("bad@example.com", "S", "B");
+        server.send("good@example.com", "S", "B");
+        server.close();
+
+        assertEquals(1, server.getFailed());
+        assertEquals(1, server.getSent());
+        verify(delegate).send("good@example.com", "S", "B");
+    }
+
+    /**
+     * Close gives up after the drain time and counts the messages it did not send.
+     *
+     * @throws Exception if waiting is interrupted
+     */
+    @Test
+    void close_dropsWhatIsLeftAfterDrainTime() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EmailServer hung = (to, subject, body) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AsyncEmailServer server = new AsyncEmailServer(hung, 1, 10, 1);
+        server.send("a@example.com", "S", "B");
+        server.send("b@example.com", "S", "B");
+        server.send("c@example.com", "S", "B");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        server.close();
+        release.countDown();
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        assertEquals(2, server.getDropped());
+        assertEquals(0, server.getPending());
+    }
+
+    /**
+     * A closed server refuses new messages.
+     */
+    @Test
+    void send_afterCloseThrows() {
+        AsyncEmailServer server = new AsyncEmailServer(mock(EmailServer.class), 1, 1, 30);
+        server.close();
+
+        assertThrows(IllegalStateException.class, () -> server.send("a@example.com", "S", "B"));
+    }
+}
@@ -88,6 +88,7 @@ class AuthServiceTest {
 
         assertNotNull(result);
         assertEquals("u", result.getUsername());
+        verify(conn, never()).close();
     }
 
     /**
@@ -0,0 +1,180 @@
+package com.library.service;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests EmailService connection reuse with mocked transports, and the real
+ * SMTP conversation against an in-process sink, so no mail leaves the machine.
+ */
+class EmailServiceTest {
+
+    /**
+     * Email service that hands out prepared transports and counts them.
+     */
+    private static class StubService extends EmailService {
+        final List<Transport> created = new ArrayList<>();
+        private final List<Transport> next;
+
+        StubService(int maxMessages, Transport... transports) {
+            super("library@example.com", "secret", 1, maxMessages);
+            next = new ArrayList<>(List.of(transports));
+        }
+
+        @Override
+        Transport newTransport() {
+            Transport t = next.remove(0);
+            created.add(t);
+            return t;
+        }
+    }
+
+    /**
+     * Several messages go over one connection that is logged in once.
+     */
+    @Test
+    void sendEmail_reusesConnection() throws Exception {
+        Transport t = mock(Transport.class);
+        StubService service = new StubService(100, t);
+
+        service.sendEmail("a@example.com", "S", "B");
+        service.sendEmail("b@example.com", "S", "B");
+        service.sendEmail("c@example.com", "S", "B");
+        service.close();
+
+        assertEquals(1, service.created.size());
+        verify(t).connect("library@example.com", "secret");
+        verify(t, times(3)).sendMessage(any(Message.class), any(Address[].class));
+        verify(t).close();
+    }
+
+    /**
+     * A dropped connection is replaced and the message is sent over the new one.
+     */
+    @Test
+    void sendEmail_reconnectsAfterFailure() throws Exception {
+        Transport first = mock(Transport.class);
+        Transport second = mock(Transport.class);
+        doNothing().doThrow(new MessagingException("connection reset"))
+                .when(first).sendMessage(any(Message.class), any(Address[].class));
+        StubService service = new StubService(100, first, second);
+
+        service.sendEmail("a@example.com", "S", "B");
+        service.sendEmail("b@example.com", "S", "B");
+
+        verify(first).close();
+        verify(second).connect("library@example.com", "secret");
+        verify(second).sendMessage(any(Message.class), any(Address[].class));
+    }
+
+    /**
+     * A connection is closed and replaced after its message limit.
+     */
+    @Test
+    void sendEmail_rotatesConnectionAfterLimit() throws Exception {
+        Transport first = mock(Transport.class);
+        Transport second = mock(Transport.class);
+        StubService service = new StubService(2, first, second);
+
+        service.sendEmail("a@example.com", "S", "B");
+        service.sendEmail("b@example.com", "S", "B");
+        service.sendEmail("c@example.com", "S", "B");
+
+        assertEquals(2, service.created.size());
+        verify(first, times(2)).sendMessage(any(Message.class), any(Address[].class));
+        verify(first).close();
+        verify(second).sendMessage(any(Message.class), any(Address[].class));
+    }
+
+    /**
+     * A failure on the replacement connection is reported to the caller.
+     */
+    @Test
+    void sendEmail_throwsWhenRetryFails() throws Exception {
+        Transport first = mock(Transport.class);
+        Transport second = mock(Transport.class);
+        doThrow(new MessagingException("down")).when(first).connect(anyString(), anyString());
+        doThrow(new MessagingException("down")).when(second).connect(anyString(), anyString());
+        StubService service = new StubService(100, first, second);
+
+        assertThrows(RuntimeException.class, () -> service.sendEmail("a@example.com", "S", "B"));
+
+        verify(second).close();
+    }
+
+    /**
+     * Messages reach a local SMTP server over one logged-in connection.
+     */
+    @Test
+    void sendEmail_deliversToConfiguredServer() throws Exception {
+        try (SmtpSink sink = SmtpSink.start()) {
+            sink.setProperties();
+            try (EmailService service = new EmailService("library@example.com", "secret", 1, 100)) {
+                assertEquals(sink.getHost(), service.getHost());
+                service.sendEmail("a@example.com", "First", "Hello A");
+                service.sendEmail("b@example.com", "Second", "Hello B");
+                service.sendEmail("c@example.com", "Third", "Hello C");
+            } finally {
+                SmtpSink.clearProperties();
+            }
+
+            assertEquals(3, sink.getMessages());
+            assertEquals(1, sink.getConnections());
+            List<String> received = sink.getReceived();
+            assertTrue(received.get(0).contains("Subject: First"));
+            assertTrue(received.get(2).contains("To: c@example.com"));
+            assertTrue(received.get(2).contains("Hello C"));
+        }
+    }
+
+    /**
+     * The message limit opens new connections to the server.
+     */
+    @Test
+    void sendEmail_opensNewConnectionsAfterLimit() throws Exception {
+        try (SmtpSink sink = SmtpSink.start(false)) {
+            sink.setProperties();
+            try (EmailService service = new EmailService("library@example.com", "secret", 1, 2)) {
+                for (int i = 0; i < 5; i++) {
+                    service.sendEmail("user" + i + "@example.com", "S", "B");
+                }
+            } finally {
+                SmtpSink.clearProperties();
+            }
+
+            assertEquals(5, sink.getMessages());
+            assertEquals(3, sink.getConnections());
+        }
+    }
+
+    /**
+     * The TLS setting maps to the session properties; unknown values are rejected.
+     */
+    @Test
+    void smtpProperties_followConfiguration() {
+        try {
+            System.setProperty("mail.smtp.tls", "ssl");
+            System.setProperty("mail.smtp.port", "465");
+            Properties props = EmailService.smtpProperties();
+            assertEquals("true", props.getProperty("mail.smtp.ssl.enable"));
+            assertNull(props.getProperty("mail.smtp.starttls.enable"));
+            assertEquals("465", props.getProperty("mail.smtp.port"));
+
+            System.setProperty("mail.smtp.tls", "plain");
+            assertThrows(IllegalArgumentException.class, EmailService::smtpProperties);
+        } finally {
+            System.clearProperty("mail.smtp.tls");
+            System.clearProperty("mail.smtp.port");
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.library.model.Fine;
 import com.library.model.Media;
 import com.library.model.User;
 import com.library.util.DatabaseConnection;
+import com.library.util.RetryPolicy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -34,6 +35,7 @@ class LibrarianServiceTest {
     private UserDAO userDAO;
     private MediaDAO mediaDAO;
     private Connection conn;
+    private Connection reader;
 
     /**
      * Creates a LibrarianService and replaces its DAOs with mocks.
@@ -56,6 +58,10 @@ class LibrarianServiceTest {
         setField(service, "fineDAO", fineDAO);
         setField(service, "userDAO", userDAO);
         setField(service, "mediaDAO", mediaDAO);
+
+        reader = mock(Connection.class);
+        RetryPolicy.SqlCall<Connection> openReader = () -> reader;
+        setField(service, "openReader", openReader);
     }
 
     /**
@@ -166,7 +172,7 @@ class LibrarianServiceTest {
     @Test
     void detectOverdueMediaDoesNothingWhenListNull() throws Exception {
         setLoggedLibrarian();
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(null);
+        stubOverdue(borrowingDAO, reader, null);
 
         service.detectOverdueMedia();
 
@@ -181,7 +187,7 @@ class LibrarianServiceTest {
     @Test
     void detectOverdueMediaDoesNothingWhenListEmpty() throws Exception {
         setLoggedLibrarian();
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(Collections.emptyList());
+        stubOverdue(borrowingDAO, reader, Collections.emptyList());
 
         service.detectOverdueMedia();
 
@@ -205,7 +211,7 @@ class LibrarianServiceTest {
         b.setDueDate(LocalDate.now().minusDays(10));
 
         List<Borrowing> list = Arrays.asList(b);
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(list);
+        stubOverdue(borrowingDAO, reader, list);
 
         Fine existing = new Fine();
         existing.setId(100);
@@ -237,7 +243,7 @@ class LibrarianServiceTest {
         b.setStatus("overdue");
         b.setDueDate(LocalDate.now().minusDays(3));
 
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(Arrays.asList(b));
+        stubOverdue(borrowingDAO, reader, Arrays.asList(b));
 
         Fine existing = new Fine();
         existing.setId(200);
@@ -269,7 +275,7 @@ class LibrarianServiceTest {
         b.setDueDate(LocalDate.now().minusDays(2));
 
         List<Borrowing> list = Arrays.asList(b);
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(list);
+        stubOverdue(borrowingDAO, reader, list);
 
         when(fineDAO.getBorrowingFine(conn, 7)).thenReturn(null);
 
@@ -302,7 +308,7 @@ class LibrarianServiceTest {
         b.setStatus("borrowed");
         b.setDueDate(LocalDate.now().minusDays(3));
 
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(Arrays.asList(b));
+        stubOverdue(borrowingDAO, reader, Arrays.asList(b));
         when(fineDAO.getBorrowingFine(conn, 10)).thenReturn(null);
         when(mediaDAO.findById(conn, 99)).thenReturn(null);
 
@@ -327,7 +333,7 @@ class LibrarianServiceTest {
         b.setStatus("borrowed");
         b.setDueDate(LocalDate.now());
 
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(Arrays.asList(b));
+        stubOverdue(borrowingDAO, reader, Arrays.asList(b));
         when(fineDAO.getBorrowingFine(conn, 11)).thenReturn(null);
 
         Book book = new Book();
@@ -356,7 +362,7 @@ class LibrarianServiceTest {
         b.setDueDate(LocalDate.now().minusDays(1));
 
         List<Borrowing> list = Arrays.asList(b);
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(list);
+        stubOverdue(borrowingDAO, reader, list);
 
         when(fineDAO.getBorrowingFine(conn, 8)).thenReturn(null);
 
@@ -393,7 +399,7 @@ class LibrarianServiceTest {
         b.setDueDate(LocalDate.now().minusDays(1));
 
         List<Borrowing> list = Arrays.asList(b);
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(list);
+        stubOverdue(borrowingDAO, reader, list);
 
         when(fineDAO.getBorrowingFine(conn, 9)).thenReturn(null);
 
@@ -429,7 +435,7 @@ class LibrarianServiceTest {
         b.setStatus("borrowed");
         b.setDueDate(LocalDate.now().minusDays(2));
 
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(Arrays.asList(b));
+        stubOverdue(borrowingDAO, reader, Arrays.asList(b));
         when(fineDAO.getBorrowingFine(conn, 12)).thenReturn(null);
 
         Book book = new Book();
@@ -443,4 +449,64 @@ class LibrarianServiceTest {
         verify(borrowingDAO, never()).updateBorrowingStatus(conn, 12, "overdue");
         verify(userDAO, never()).updateUserBalance(conn, 80, 20.0);
     }
+
+    /**
+     * Each borrowing's fine is committed on its own: when a later borrowing
+     * fails, only its writes are rolled back and the cursor connection is closed.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    void detectOverdueMediaCommitsPerBorrowing() throws Exception {
+        setLoggedLibrarian();
+        when(conn.getAutoCommit()).thenReturn(true);
+
+        Borrowing first = new Borrowing();
+        first.setBorrowId(30);
+        first.setUserId(90);
+        first.setMediaId(40);
+        first.setStatus("borrowed");
+        first.setDueDate(LocalDate.now().minusDays(1));
+        Borrowing second = new Borrowing();
+        second.setBorrowId(31);
+        second.setUserId(91);
+        second.setMediaId(41);
+        second.setStatus("borrowed");
+        second.setDueDate(LocalDate.now().minusDays(1));
+        stubOverdue(borrowingDAO, reader, Arrays.asList(first, second));
+
+        Book book = new Book();
+        book.setId(40);
+        when(mediaDAO.findById(conn, 40)).thenReturn(book);
+        when(mediaDAO.findById(conn, 41)).thenThrow(new IllegalStateException("lost"));
+        when(fineDAO.issueFine(conn, 30, 90, 10.0)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> service.detectOverdueMedia());
+
+        verify(fineDAO).issueFine(conn, 30, 90, 10.0);
+        verify(conn, times(1)).commit();
+        verify(conn, times(1)).rollback();
+        verify(conn, times(2)).setAutoCommit(true);
+        verify(reader).close();
+        verify(reader, never()).commit();
+    }
+
+    /**
+     * Makes the DAO stream the given borrowings to the service's handler.
+     *
+     * @param dao mocked borrowing DAO
+     * @param conn connection the cursor is read on
+     * @param list borrowings to stream, null for none
+     * @throws Exception if stubbing fails
+     */
+    private static void stubOverdue(BorrowingDAO dao, Connection conn, List<Borrowing> list) throws Exception {
+        doAnswer(inv -> {
+            BorrowingDAO.OverdueHandler handler = inv.getArgument(1);
+            List<Borrowing> rows = list == null ? Collections.emptyList() : list;
+            for (Borrowing b : rows) {
+                handler.handle(b);
+            }
+            return rows.size();
+        }).when(dao).streamOverdueMedia(eq(conn), any());
+    }
 }
@@ -0,0 +1,98 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.model.CD;
+import com.library.model.Media;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests BM25 ranking in MediaSearchIndex.
+ */
+class MediaSearchIndexTest {
+
+    /**
+     * Creates a media item for the index.
+     *
+     * @param m empty media object
+     * @param id media id
+     * @param title title text
+     * @param author author name
+     * @return filled media object
+     */
+    private Media media(Media m, int id, String title, String author) {
+        m.setId(id);
+        m.setTitle(title);
+        m.setAuthor(author);
+        return m;
+    }
+
+    /**
+     * Tests that a title hit ranks above an author hit for the same word.
+     */
+    @Test
+    void topK_titleHitRanksAboveAuthorHit() {
+        MediaSearchIndex index = new MediaSearchIndex(Arrays.asList(
+                media(new Book(), 1, "Cooking at Home", "Martin Fowler"),
+                media(new Book(), 2, "Refactoring with Fowler", "Kent Beck")));
+
+        List<Integer> ids = index.topK("fowler", "media", 10);
+
+        assertEquals(Arrays.asList(2, 1), ids);
+    }
+
+    /**
+     * Tests that a rare word weighs more than a common word.
+     */
+    @Test
+    void topK_rareTermScoresHigher() {
+        MediaSearchIndex index = new MediaSearchIndex(Arrays.asList(
+                media(new Book(), 1, "Java Basics", "A"),
+                media(new Book(), 2, "Java Streams", "B"),
+                media(new Book(), 3, "Java Concurrency", "C"),
+                media(new Book(), 4, "Concurrency Patterns", "D")));
+
+        List<Integer> ids = index.topK("java concurrency", "media", 1);
+
+        assertEquals(Arrays.asList(3), ids);
+    }
+
+    /**
+     * Tests that only k results are returned from a large match set.
+     */
+    @Test
+    void topK_returnsAtMostK() {
+        List<Media> all = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            all.add(media(new Book(), i, "Data Book " + i, "Author"));
+        }
+        all.add(media(new Book(), 999, "Data Data Data", "Author"));
+        MediaSearchIndex index = new MediaSearchIndex(all);
+
+        List<Integer> ids = index.topK("data", "media", 5);
+
+        assertEquals(5, ids.size());
+        assertEquals(999, ids.get(0));
+        assertEquals(501, index.size());
+    }
+
+    /**
+     * Tests prefix matching and the type filter.
+     */
+    @Test
+    void topK_matchesPrefixAndFiltersType() {
+        MediaSearchIndex index = new MediaSearchIndex(Arrays.asList(
+                media(new Book(), 1, "Algorithms", "CLRS"),
+                media(new CD(), 2, "Algorithmic Beats", "DJ")));
+
+        assertEquals(Arrays.asList(2), index.topK("ALGO", "cd", 10));
+        assertEquals(2, index.topK("algo", null, 10).size());
+        assertTrue(index.topK("zzz", "media", 10).isEmpty());
+        assertTrue(index.topK("  ", "media", 10).isEmpty());
+    }
+}
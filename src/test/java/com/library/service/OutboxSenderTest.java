@@ -0,0 +1,141 @@
+package com.library.service;
+
+import com.library.dao.OutboxDAO;
+import com.library.model.OutboxMessage;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests sending from the notification outbox with a mocked DAO and email server.
+ */
+class OutboxSenderTest {
+
+    /**
+     * Creates a claimed message.
+     *
+     * @param id outbox row id
+     * @param to recipient
+     * @param attempts attempts including the current one
+     * @return message
+     */
+    private static OutboxMessage message(long id, String to, int attempts) {
+        OutboxMessage m = new OutboxMessage();
+        m.setId(id);
+        m.setRecipient(to);
+        m.setSubject("Overdue Reminder");
+        m.setBody("You have 1 overdue book(s).");
+        m.setAttempts(attempts);
+        return m;
+    }
+
+    /**
+     * Sent messages are marked sent, failures are scheduled again, and
+     * a message that failed on its last attempt is moved to the dead letters.
+     *
+     * @throws Exception if the sender fails
+     */
+    @Test
+    void drain_recordsEveryOutcome() throws Exception {
+        Connection conn = mock(Connection.class);
+        when(conn.getAutoCommit()).thenReturn(true);
+        OutboxDAO dao = mock(OutboxDAO.class);
+        EmailServer server = mock(EmailServer.class);
+        doThrow(new RuntimeException("Failed to send email"))
+                .when(server).send(eq("retry@example.com"), anyString(), anyString());
+        doThrow(new RuntimeException("Failed to send email"))
+                .when(server).send(eq("dead@example.com"), anyString(), anyString());
+        when(dao.claim(eq(conn), anyInt(), anyInt()))
+                .thenReturn(Arrays.asList(message(1, "ok@example.com", 1), message(2, "retry@example.com", 2)))
+                .thenReturn(Collections.singletonList(message(3, "dead@example.com", 5)))
+                .thenReturn(Collections.emptyList());
+
+        OutboxSender sender = new OutboxSender(conn, dao, server);
+        int sent = sender.drain();
+
+        assertEquals(1, sent);
+        assertEquals(1, sender.getRetried());
+        assertEquals(1, sender.getDead());
+        verify(dao).markSent(conn, 1);
+        verify(dao).markRetry(eq(conn), eq(2L), anyString(), eq(120L));
+        verify(dao).markDead(eq(conn), eq(3L), anyString());
+        verify(conn, never()).commit();
+    }
+
+    /**
+     * Retry delays grow exponentially up to the configured maximum.
+     */
+    @Test
+    void retryDelay_isCapped() {
+        OutboxSender sender = new OutboxSender(mock(Connection.class), mock(OutboxDAO.class), mock(EmailServer.class));
+
+        assertEquals(60, sender.retryDelaySeconds(1));
+        assertEquals(240, sender.retryDelaySeconds(3));
+        assertEquals(3600, sender.retryDelaySeconds(30));
+    }
+
+    /**
+     * Queueing uses a key built from the run and the recipient only, so a
+     * changed body in the same window is still a duplicate, and duplicates
+     * are not counted.
+     *
+     * @throws Exception if queueing fails
+     */
+    @Test
+    void outboxServer_usesStableIdempotencyKey() throws Exception {
+        Connection conn = mock(Connection.class);
+        when(conn.getAutoCommit()).thenReturn(true);
+        OutboxDAO dao = mock(OutboxDAO.class);
+        when(dao.enqueue(eq(conn), anyString(), anyString(), anyString(), anyString())).thenReturn(true, false);
+
+        String run = OutboxEmailServer.run("overdue", Instant.parse("2026-03-01T10:15:00Z"), 24);
+        assertEquals("overdue@2026-03-01T00:00:00Z", run);
+        assertEquals(run, OutboxEmailServer.run("overdue", Instant.parse("2026-03-01T23:59:00Z"), 24));
+
+        OutboxEmailServer server = new OutboxEmailServer(conn, dao, run);
+        server.send("a@example.com", "S", "You have 1 overdue book(s).");
+        server.send("A@example.com", "S", "You have 2 overdue book(s).");
+
+        String key = OutboxEmailServer.key(run, "a@example.com");
+        verify(dao, times(2)).enqueue(eq(conn), eq(key), anyString(), eq("S"), anyString());
+        assertEquals(1, server.getQueued());
+        assertNotEquals(key, OutboxEmailServer.key(
+                OutboxEmailServer.run("digest", Instant.parse("2026-03-01T10:15:00Z"), 24), "a@example.com"));
+    }
+
+    /**
+     * Outside auto-commit mode, queued messages are committed in batches and
+     * on close, and a failed enqueue rolls back only the open batch.
+     *
+     * @throws Exception if queueing fails
+     */
+    @Test
+    void outboxServer_commitsInBatches() throws Exception {
+        Connection conn = mock(Connection.class);
+        OutboxDAO dao = mock(OutboxDAO.class);
+        when(dao.enqueue(eq(conn), anyString(), anyString(), anyString(), anyString())).thenReturn(true);
+        when(dao.enqueue(eq(conn), anyString(), eq("bad@example.com"), anyString(), anyString()))
+                .thenThrow(new SQLException("insert failed"));
+
+        System.setProperty("outbox.batch.size", "2");
+        try (OutboxEmailServer server = new OutboxEmailServer(conn, dao, "overdue@x")) {
+            server.send("a@example.com", "S", "B");
+            server.send("b@example.com", "S", "B");
+            verify(conn, times(1)).commit();
+            server.send("c@example.com", "S", "B");
+            assertThrows(RuntimeException.class, () -> server.send("bad@example.com", "S", "B"));
+            verify(conn).rollback();
+            server.send("d@example.com", "S", "B");
+        } finally {
+            System.clearProperty("outbox.batch.size");
+        }
+        verify(conn, times(2)).commit();
+    }
+}
@@ -0,0 +1,40 @@
+package com.library.service;
+
+import com.library.dao.BorrowingDAO;
+import com.library.model.User;
+
+import java.sql.Connection;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Stubs BorrowingDAO.streamOverdueRecipients for the reminder tests, so the
+ * admin and reminder services see the same recipient stream.
+ */
+final class OverdueRecipients {
+
+    private OverdueRecipients() {
+    }
+
+    /**
+     * Makes the DAO stream the given recipients to the service's handler.
+     *
+     * @param dao mocked borrowing DAO
+     * @param conn connection the service uses
+     * @param users recipients in order
+     * @param overdue overdue count of each recipient
+     * @throws Exception if stubbing fails
+     */
+    static void stub(BorrowingDAO dao, Connection conn, List<User> users, int... overdue) throws Exception {
+        doAnswer(inv -> {
+            BorrowingDAO.RecipientHandler handler = inv.getArgument(1);
+            for (int i = 0; i < users.size(); i++) {
+                handler.handle(users.get(i), overdue[i]);
+            }
+            return users.size();
+        }).when(dao).streamOverdueRecipients(eq(conn), any());
+    }
+}
@@ -0,0 +1,49 @@
+package com.library.service;
+
+import com.library.util.TokenBucketRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the rate limited email server with a mocked delegate.
+ */
+class RateLimitedEmailServerTest {
+
+    /**
+     * Without a configured rate the delegate is used as is.
+     */
+    @Test
+    void forProvider_returnsDelegateWithoutRate() {
+        EmailServer delegate = mock(EmailServer.class);
+
+        assertSame(delegate, RateLimitedEmailServer.forProvider("unlimited.example.com", delegate));
+    }
+
+    /**
+     * Servers of one provider share a bucket and every message takes a token.
+     */
+    @Test
+    void forProvider_sharesBucketPerProvider() {
+        System.setProperty("mail.rate.limited.example.com.per.s", "1000");
+        System.setProperty("mail.rate.limited.example.com.burst", "5");
+        try {
+            EmailServer delegate = mock(EmailServer.class);
+            EmailServer a = RateLimitedEmailServer.forProvider("limited.example.com", delegate);
+            EmailServer b = RateLimitedEmailServer.forProvider("limited.example.com", delegate);
+
+            a.send("x@example.com", "S", "B");
+            b.send("y@example.com", "S", "B");
+
+            TokenBucketRateLimiter limiter = ((RateLimitedEmailServer) a).getLimiter();
+            assertSame(limiter, ((RateLimitedEmailServer) b).getLimiter());
+            assertEquals(2, limiter.getPermits());
+            verify(delegate).send("x@example.com", "S", "B");
+            verify(delegate).send("y@example.com", "S", "B");
+        } finally {
+            System.clearProperty("mail.rate.limited.example.com.per.s");
+            System.clearProperty("mail.rate.limited.example.com.burst");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.library.service;
+
+import com.library.model.User;
+import com.library.util.StageMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the staged reminder pipeline with an in-memory email server.
+ */
+class ReminderPipelineTest {
+
+    /**
+     * Email server that records recipients and the sending threads.
+     */
+    private static class RecordingServer implements EmailServer {
+        final Set<String> sent = ConcurrentHashMap.newKeySet();
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void send(String to, String subject, String body) {
+            if (to.startsWith("fail")) throw new RuntimeException("rejected");
+            sent.add(to + ": " + body);
+            threads.add(Thread.currentThread());
+        }
+    }
+
+    private static User user(int id) {
+        User u = new User();
+        u.setUserId(id);
+        u.setEmail((id % 10 == 0 ? "fail" : "user") + id + "@example.com");
+        return u;
+    }
+
+    /**
+     * Everything submitted through small queues is sent by the time close returns,
+     * on worker threads, and each stage counts its items.
+     */
+    @Test
+    void close_waitsUntilEverythingIsSent() throws Exception {
+        RecordingServer server = new RecordingServer();
+        ReminderPipeline pipeline = new ReminderPipeline(new EmailNotifier(server), 2, 3, 2, 30);
+
+        for (int i = 1; i <= 9; i++) {
+            int n = i;
+            pipeline.submit(user(i), () -> "item " + n);
+        }
+        pipeline.close();
+
+        assertEquals(9, server.sent.size());
+        assertTrue(server.sent.contains("user7@example.com: item 7"));
+        assertFalse(server.threads.contains(Thread.currentThread()));
+
+        List<StageMetrics> stages = pipeline.getMetrics();
+        assertEquals(9, stages.get(0).getItems());
+        assertEquals(9, stages.get(1).getItems());
+        assertEquals(9, stages.get(2).getItems());
+        assertTrue(stages.get(1).getMaxQueueDepth() <= 2);
+    }
+
+    /**
+     * A message that fails to render or send is counted; the others still go out.
+     */
+    @Test
+    void failures_areCountedAndDoNotStopTheRun() throws Exception {
+        RecordingServer server = new RecordingServer();
+        ReminderPipeline pipeline = new ReminderPipeline(new EmailNotifier(server), 1, 2, 10, 30);
+        try (pipeline) {
+            pipeline.submit(user(1), () -> "ok");
+            pipeline.submit(user(2), () -> {
+                throw new IllegalStateException("bad template");
+            });
+            pipeline.submit(user(10), () -> "ok");
+            pipeline.submit(user(3), () -> "ok");
+        }
+
+        assertEquals(2, server.sent.size());
+        assertEquals(1, pipeline.getMetrics().get(1).getFailed());
+        assertEquals(1, pipeline.getMetrics().get(2).getFailed());
+        assertEquals(Set.of(2, 10), pipeline.getFailedUserIds());
+    }
+
+    /**
+     * Reading goes on while an earlier message is still being sent.
+     */
+    @Test
+    void submit_doesNotWaitForSending() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        EmailServer slow = (to, subject, body) -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ReminderPipeline pipeline = new ReminderPipeline(new EmailNotifier(slow), 1, 1, 10, 30);
+
+        for (int i = 1; i <= 5; i++) {
+            pipeline.submit(user(i), () -> "body");
+        }
+        assertEquals(5, pipeline.getMetrics().get(0).getItems());
+        assertEquals(0, pipeline.getMetrics().get(2).getItems());
+
+        release.countDown();
+        pipeline.close();
+        assertEquals(5, pipeline.getMetrics().get(2).getItems());
+    }
+
+    /**
+     * Reminders still waiting when the drain deadline passes are counted as
+     * failed instead of disappearing.
+     *
+     * @throws Exception if submitting is interrupted
+     */
+    @Test
+    void close_countsRemindersDroppedAtTheDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        EmailServer stuck = (to, subject, body) -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ReminderPipeline pipeline = new ReminderPipeline(new EmailNotifier(stuck), 1, 1, 10, 0);
+
+        for (int i = 1; i <= 4; i++) {
+            pipeline.submit(user(i), () -> "body");
+        }
+        pipeline.close();
+        release.countDown();
+
+        List<StageMetrics> stages = pipeline.getMetrics();
+        long done = stages.get(2).getItems();
+        long failed = stages.get(1).getFailed() + stages.get(2).getFailed();
+        assertEquals(4, done + failed);
+        assertTrue(failed >= 3);
+        assertEquals(failed, pipeline.getFailedUserIds().size());
+    }
+
+    /**
+     * A closed pipeline takes no more reminders.
+     */
+    @Test
+    void submit_rejectsAfterClose() {
+        ReminderPipeline pipeline = new ReminderPipeline(new EmailNotifier(new RecordingServer()), 1, 1, 1, 30);
+        pipeline.close();
+
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(user(1), () -> "late"));
+    }
+}
@@ -2,16 +2,19 @@ package com.library.service;
 
 import com.library.dao.BorrowingDAO;
 import com.library.dao.UserDAO;
-import com.library.model.Borrowing;
+import com.library.model.ReminderDigest;
 import com.library.model.User;
+import com.library.util.StageMetrics;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,24 +37,6 @@ class ReminderServiceTest {
         UserDAO userDAO = mock(UserDAO.class);
         EmailServer emailServer = mock(EmailServer.class);
 
-        Borrowing b1 = new Borrowing();
-        b1.setUserId(1);
-        b1.setStatus("overdue");
-        b1.setDueDate(LocalDate.now().minusDays(3));
-
-        Borrowing b2 = new Borrowing();
-        b2.setUserId(1);
-        b2.setStatus("borrowed");
-        b2.setDueDate(LocalDate.now().minusDays(1));
-
-        Borrowing b3 = new Borrowing();
-        b3.setUserId(2);
-        b3.setStatus("overdue");
-        b3.setDueDate(LocalDate.now().minusDays(5));
-
-        List<Borrowing> list = Arrays.asList(b1, b2, b3);
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(list);
-
         User u1 = new User();
         u1.setUserId(1);
         u1.setEmail("u1@example.com");
@@ -60,8 +45,7 @@ class ReminderServiceTest {
         u2.setUserId(2);
         u2.setEmail("u2@example.com");
 
-        when(userDAO.findById(conn, 1)).thenReturn(u1);
-        when(userDAO.findById(conn, 2)).thenReturn(u2);
+        OverdueRecipients.stub(borrowingDAO, conn, Arrays.asList(u1, u2), 2, 1);
 
         ReminderService service =
                 new ReminderService(conn, borrowingDAO, userDAO, new EmailNotifier(emailServer));
@@ -76,10 +60,11 @@ class ReminderServiceTest {
         verify(emailServer, times(1))
                 .send("u2@example.com", "Overdue Reminder", "You have 1 overdue book(s).");
         verifyNoMoreInteractions(emailServer);
+        verifyNoInteractions(userDAO);
     }
 
     /**
-     * Tests that an empty or null list returns an empty map and sends no emails.
+     * Tests that no recipients returns an empty map and sends no emails.
      *
      * @throws Exception if DAO calls fail
      */
@@ -91,7 +76,7 @@ class ReminderServiceTest {
         UserDAO userDAO = mock(UserDAO.class);
         EmailServer emailServer = mock(EmailServer.class);
 
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(null);
+        OverdueRecipients.stub(borrowingDAO, conn, Collections.emptyList());
 
         ReminderService service =
                 new ReminderService(conn, borrowingDAO, userDAO, new EmailNotifier(emailServer));
@@ -104,68 +89,181 @@ class ReminderServiceTest {
     }
 
     /**
-     * Tests that non-overdue borrowings are ignored.
+     * Tests that a user without an email address is counted but not emailed.
      *
      * @throws Exception if DAO calls fail
      */
     @Test
-    void nonOverdueBorrowingsAreIgnored() throws Exception {
+    void recipientWithoutEmailIsCountedButNotEmailed() throws Exception {
         Connection conn = null;
 
         BorrowingDAO borrowingDAO = mock(BorrowingDAO.class);
         UserDAO userDAO = mock(UserDAO.class);
         EmailServer emailServer = mock(EmailServer.class);
 
-        Borrowing b = new Borrowing();
-        b.setUserId(1);
-        b.setStatus("borrowed");
-        b.setDueDate(LocalDate.now().plusDays(1));
+        User u = new User();
+        u.setUserId(3);
 
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(Collections.singletonList(b));
+        OverdueRecipients.stub(borrowingDAO, conn, Collections.singletonList(u), 1);
 
         ReminderService service =
                 new ReminderService(conn, borrowingDAO, userDAO, new EmailNotifier(emailServer));
 
         Map<Integer, Integer> counts = service.sendOverdueReminders();
 
-        assertTrue(counts.isEmpty());
+        assertEquals(1, counts.get(3).intValue());
         verifyNoInteractions(emailServer);
-        verifyNoInteractions(userDAO);
     }
 
     /**
-     * Tests that overdue items with null dueDate but status=overdue are counted.
+     * Tests that a digest lists each item with its due date, days late, and fine.
      *
      * @throws Exception if DAO calls fail
      */
     @Test
-    void overdueStatusWithNullDueDateStillCounts() throws Exception {
+    void sendsDigestWithItemDetails() throws Exception {
         Connection conn = null;
 
         BorrowingDAO borrowingDAO = mock(BorrowingDAO.class);
-        UserDAO userDAO = mock(UserDAO.class);
         EmailServer emailServer = mock(EmailServer.class);
 
-        Borrowing b = new Borrowing();
-        b.setUserId(3);
-        b.setStatus("overdue");
-        b.setDueDate(null);
-
-        when(borrowingDAO.findOverdueMedia(conn)).thenReturn(Collections.singletonList(b));
-
         User u = new User();
-        u.setUserId(3);
-        u.setEmail("u3@example.com");
-        when(userDAO.findById(conn, 3)).thenReturn(u);
+        u.setUserId(4);
+        u.setUsername("sara");
+        u.setEmail("sara@example.com");
+        ReminderDigest digest = new ReminderDigest(u);
+        LocalDate due = LocalDate.now().minusDays(3);
+        digest.getItems().add(new ReminderDigest.Item("Dune", due, 30));
+        digest.getItems().add(new ReminderDigest.Item("Blue", due, 0));
+
+        doAnswer(inv -> {
+            BorrowingDAO.DigestHandler handler = inv.getArgument(3);
+            handler.handle(digest);
+            return 1;
+        }).when(borrowingDAO).streamOverdueDigests(eq(conn), eq(EmailNotifier.SUBJECT), eq(24), any());
 
         ReminderService service =
-                new ReminderService(conn, borrowingDAO, userDAO, new EmailNotifier(emailServer));
+                new ReminderService(conn, borrowingDAO, mock(UserDAO.class), new EmailNotifier(emailServer));
+
+        Map<Integer, Integer> counts = service.sendOverdueDigests();
+
+        assertEquals(2, counts.get(4).intValue());
+        verify(emailServer).send("sara@example.com", EmailNotifier.SUBJECT,
+                "Hello sara,\n\nYou have 2 overdue item(s):\n"
+                        + "- Dune, due " + due + ", 3 day(s) late, fine 30.00 NIS\n"
+                        + "- Blue, due " + due + ", 3 day(s) late, fine 0.00 NIS\n"
+                        + "\nUnpaid fines: 30.00 NIS.");
+    }
+
+    /**
+     * Tests that a pipelined run sends every message before it returns
+     * and reports metrics for each stage.
+     *
+     * @throws Exception if DAO calls fail
+     */
+    @Test
+    void pipelinedRunSendsAllAndReportsStages() throws Exception {
+        Connection conn = null;
+
+        BorrowingDAO borrowingDAO = mock(BorrowingDAO.class);
+        EmailServer emailServer = mock(EmailServer.class);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            User u = new User();
+            u.setUserId(i);
+            u.setEmail("u" + i + "@example.com");
+            users.add(u);
+        }
+        int[] overdue = new int[users.size()];
+        Arrays.fill(overdue, 1);
+        OverdueRecipients.stub(borrowingDAO, conn, users, overdue);
+
+        ReminderService service = new ReminderService(conn, borrowingDAO, mock(UserDAO.class),
+                new EmailNotifier(emailServer), true);
 
         Map<Integer, Integer> counts = service.sendOverdueReminders();
 
-        assertEquals(1, counts.get(3).intValue());
-        verify(emailServer).send("u3@example.com",
-                "Overdue Reminder",
-                "You have 1 overdue book(s).");
+        assertEquals(20, counts.size());
+        verify(emailServer, times(20)).send(anyString(), eq(EmailNotifier.SUBJECT), eq("You have 1 overdue book(s)."));
+        List<StageMetrics> stages = service.getStageMetrics();
+        assertEquals(List.of("read", "render", "send"),
+                stages.stream().map(StageMetrics::getName).collect(Collectors.toList()));
+        for (StageMetrics m : stages) {
+            assertEquals(20, m.getItems());
+        }
+    }
+
+    /**
+     * Tests that users whose message failed on the pipeline are left out of the result.
+     *
+     * @throws Exception if DAO calls fail
+     */
+    @Test
+    void pipelinedRunLeavesOutFailedUsers() throws Exception {
+        Connection conn = null;
+
+        BorrowingDAO borrowingDAO = mock(BorrowingDAO.class);
+        EmailServer emailServer = mock(EmailServer.class);
+        doThrow(new RuntimeException("Failed to send email"))
+                .when(emailServer).send(eq("u2@example.com"), anyString(), anyString());
+
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            User u = new User();
+            u.setUserId(i);
+            u.setEmail("u" + i + "@example.com");
+            users.add(u);
+        }
+        OverdueRecipients.stub(borrowingDAO, conn, users, 1, 4, 2);
+
+        ReminderService service = new ReminderService(conn, borrowingDAO, mock(UserDAO.class),
+                new EmailNotifier(emailServer), true);
+
+        Map<Integer, Integer> counts = service.sendOverdueReminders();
+
+        assertEquals(Map.of(1, 1, 3, 2), counts);
+        assertEquals(1, service.getStageMetrics().get(2).getFailed());
+        verify(borrowingDAO).recordReminders(conn, counts.keySet(), EmailNotifier.SUBJECT);
+    }
+
+    /**
+     * Tests that without the pipeline messages are sent on the reading thread.
+     *
+     * @throws Exception if DAO calls fail
+     */
+    @Test
+    void unpipelinedRunSendsOnReadingThread() throws Exception {
+        Connection conn = null;
+
+        BorrowingDAO borrowingDAO = mock(BorrowingDAO.class);
+        EmailServer emailServer = mock(EmailServer.class);
+        Thread caller = Thread.currentThread();
+        List<Thread> senders = new ArrayList<>();
+        doAnswer(inv -> senders.add(Thread.currentThread())).when(emailServer).send(anyString(), anyString(), anyString());
+
+        User u = new User();
+        u.setUserId(5);
+        u.setEmail("u5@example.com");
+        OverdueRecipients.stub(borrowingDAO, conn, Collections.singletonList(u), 2);
+
+        ReminderService service = new ReminderService(conn, borrowingDAO, mock(UserDAO.class),
+                new EmailNotifier(emailServer), false);
+
+        service.sendOverdueReminders();
+
+        assertEquals(List.of(caller), senders);
+        assertTrue(service.getStageMetrics().isEmpty());
+    }
+
+    /**
+     * Tests that templates render placeholders and reject unclosed ones.
+     */
+    @Test
+    void templateRendersPlaceholders() {
+        ReminderTemplate t = ReminderTemplate.compile("{a} and {b}{missing}!");
+
+        assertEquals("1 and two!", t.render(Map.of("a", 1, "b", "two")));
+        assertThrows(IllegalArgumentException.class, () -> ReminderTemplate.compile("Hi {name"));
     }
 }
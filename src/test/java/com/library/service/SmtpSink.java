@@ -0,0 +1,245 @@
+package com.library.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process SMTP server that accepts every message and keeps it in memory.
+ * It speaks just enough SMTP for jakarta.mail without TLS: EHLO, AUTH PLAIN
+ * (any credentials), MAIL, RCPT, DATA, RSET, NOOP, and QUIT. Tests and
+ * benchmarks point mail.smtp.host and mail.smtp.port at it, with
+ * mail.smtp.tls=none, to run the real send path on an offline machine.
+ * Connections are counted, so connection reuse can be checked.
+ */
+public final class SmtpSink implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final boolean keepMessages;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<String> received = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger messages = new AtomicInteger();
+
+    /**
+     * Opens the server socket on a free local port and starts accepting.
+     *
+     * @param keepMessages whether message text is kept; benchmarks only count
+     * @throws IOException if the socket cannot be opened
+     */
+    private SmtpSink(boolean keepMessages) throws IOException {
+        this.keepMessages = keepMessages;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "smtp-sink");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Starts a sink that keeps the received messages.
+     *
+     * @return running sink
+     * @throws IOException if the socket cannot be opened
+     */
+    public static SmtpSink start() throws IOException {
+        return new SmtpSink(true);
+    }
+
+    /**
+     * Starts a sink.
+     *
+     * @param keepMessages whether message text is kept
+     * @return running sink
+     * @throws IOException if the socket cannot be opened
+     */
+    public static SmtpSink start(boolean keepMessages) throws IOException {
+        return new SmtpSink(keepMessages);
+    }
+
+    /** @return host the sink listens on */
+    public String getHost() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    /** @return port the sink listens on */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /** @return connections accepted so far */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /** @return messages accepted so far */
+    public int getMessages() {
+        return messages.get();
+    }
+
+    /** @return text of the kept messages, headers included, in arrival order */
+    public List<String> getReceived() {
+        return new ArrayList<>(received);
+    }
+
+    /**
+     * Points EmailService at this sink through system properties.
+     * Call {@link #clearProperties()} afterwards.
+     */
+    public void setProperties() {
+        System.setProperty("mail.smtp.host", getHost());
+        System.setProperty("mail.smtp.port", String.valueOf(getPort()));
+        System.setProperty("mail.smtp.tls", "none");
+    }
+
+    /**
+     * Removes the properties set by {@link #setProperties()}.
+     */
+    public static void clearProperties() {
+        System.clearProperty("mail.smtp.host");
+        System.clearProperty("mail.smtp.port");
+        System.clearProperty("mail.smtp.tls");
+    }
+
+    /**
+     * Stops accepting and drops every open connection.
+     */
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignore) {
+            // nothing more to accept either way
+        }
+        for (Socket s : clients) {
+            closeQuietly(s);
+        }
+    }
+
+    /**
+     * Accepts connections until the server socket is closed.
+     */
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                connections.incrementAndGet();
+                clients.add(s);
+                Thread t = new Thread(() -> serve(s), "smtp-sink-" + connections.get());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                // the sink was closed
+            }
+        }
+    }
+
+    /**
+     * Runs one SMTP conversation.
+     *
+     * @param s client socket
+     */
+    private void serve(Socket s) {
+        try (s) {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream out = s.getOutputStream();
+            reply(out, "220 localhost ESMTP sink");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String verb = (line.length() >= 4 ? line.substring(0, 4) : line).toUpperCase(Locale.ROOT);
+                switch (verb) {
+                    case "EHLO":
+                        reply(out, "250-localhost\r\n250-8BITMIME\r\n250 AUTH PLAIN");
+                        break;
+                    case "HELO":
+                        reply(out, "250 localhost");
+                        break;
+                    case "AUTH":
+                        if (line.trim().indexOf(' ', 5) < 0) {
+                            reply(out, "334 ");
+                            in.readLine();
+                        }
+                        reply(out, "235 2.7.0 Accepted");
+                        break;
+                    case "MAIL":
+                    case "RCPT":
+                    case "RSET":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        readData(in);
+                        messages.incrementAndGet();
+                        reply(out, "250 OK queued");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // the client or the sink closed the connection
+        } finally {
+            clients.remove(s);
+        }
+    }
+
+    /**
+     * Reads message text up to the lone dot and keeps it if asked to.
+     *
+     * @param in client input
+     * @throws IOException if the connection drops
+     */
+    private void readData(BufferedReader in) throws IOException {
+        StringBuilder text = keepMessages ? new StringBuilder() : null;
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            if (text != null) {
+                text.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+            }
+        }
+        if (text != null) received.add(text.toString());
+    }
+
+    /**
+     * Writes one reply, which may span several lines.
+     *
+     * @param out client output
+     * @param reply reply lines separated by CRLF
+     * @throws IOException if the connection drops
+     */
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    /**
+     * Closes a socket, ignoring errors.
+     *
+     * @param s socket to close
+     */
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignore) {
+            // already closed
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.library.service;
 
 import com.library.dao.*;
 import com.library.model.Book;
+import com.library.model.BorrowedItem;
 import com.library.model.Borrowing;
+import com.library.model.FacetedSearchResult;
 import com.library.model.Fine;
 import com.library.model.Media;
 import com.library.model.User;
@@ -11,7 +13,9 @@ import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -168,6 +172,7 @@ class UserServiceTest {
 
     /**
      * Tests borrowing media when the item is not available.
+     * The cached copy is not trusted; the DAO claims the row and refuses.
      */
     @Test
     void borrowMediaFailsWhenMediaUnavailable() throws Exception {
@@ -180,10 +185,12 @@ class UserServiceTest {
         when(userDAO.getUserBalance(conn, 1)).thenReturn(0.0);
         when(borrowingDAO.hasOverdueForUser(conn, 1)).thenReturn(false);
         when(mediaDAO.findById(conn, 1)).thenReturn(b);
+        when(borrowingDAO.borrowMedia(conn, 1, 1)).thenReturn(false);
 
         boolean ok = service.borrowMedia(1);
 
         assertFalse(ok);
+        verify(borrowingDAO).borrowMedia(conn, 1, 1);
     }
 
     /**
@@ -318,6 +325,106 @@ class UserServiceTest {
         assertFalse(list.isEmpty());
     }
 
+    /**
+     * Tests that faceted search fills the page with ranked matches, best first.
+     */
+    @Test
+    void facetedSearchUsesRankedPage() throws Exception {
+        FacetedSearchResult r = new FacetedSearchResult();
+        r.addCount("book", true, 2);
+        when(mediaDAO.facetedSearch(conn, "java", "media", 0, 0)).thenReturn(r);
+
+        Media weak = book(1, "Coffee Guide", "Java Jones");
+        Media strong = book(2, "Java Programming", "Someone");
+        when(mediaDAO.listAllMedia(conn, "media")).thenReturn(Arrays.asList(weak, strong));
+        Map<Integer, Media> found = new HashMap<>();
+        found.put(1, weak);
+        found.put(2, strong);
+        when(mediaDAO.searchMediaAmong(eq(conn), eq("java"), eq("media"), anyCollection())).thenReturn(found);
+
+        FacetedSearchResult result = service.facetedSearch("java", "media", 10);
+
+        assertEquals(2, result.getTotal());
+        assertEquals(2, result.getPage().size());
+        assertEquals("Java Programming", result.getPage().get(0).getTitle());
+    }
+
+    /**
+     * Tests that ranked hits the database filter rejects are left out, and the
+     * page is filled with id-ordered matches read with the page size as limit.
+     */
+    @Test
+    void facetedSearchKeepsPageWithinCountedMatches() throws Exception {
+        FacetedSearchResult r = new FacetedSearchResult();
+        r.addCount("book", true, 3);
+        when(mediaDAO.facetedSearch(conn, "clean code", "media", 0, 0)).thenReturn(r);
+
+        Media phrase = book(4, "Clean Code", "Martin");
+        Media wordOnly = book(5, "Code Complete", "McConnell");
+        when(mediaDAO.listAllMedia(conn, "media")).thenReturn(Arrays.asList(phrase, wordOnly));
+        Map<Integer, Media> found = new HashMap<>();
+        found.put(4, phrase);
+        when(mediaDAO.searchMediaAmong(eq(conn), eq("clean code"), eq("media"), anyCollection())).thenReturn(found);
+        when(mediaDAO.searchMediaPage(conn, "clean code", "media", 0, 2))
+                .thenReturn(Arrays.asList(book(3, "Clean Code Notes", "X"), phrase));
+
+        FacetedSearchResult result = service.facetedSearch("clean code", "media", 2);
+
+        assertEquals(2, result.getPage().size());
+        assertEquals(4, result.getPage().get(0).getId());
+        assertEquals(3, result.getPage().get(1).getId());
+        verify(mediaDAO, never()).searchMedia(any(), anyString(), anyString());
+    }
+
+    /**
+     * Tests that faceted search falls back to id-ordered matches when the index has no hit.
+     */
+    @Test
+    void facetedSearchFallsBackToPlainSearch() throws Exception {
+        FacetedSearchResult r = new FacetedSearchResult();
+        r.addCount("book", true, 1);
+        when(mediaDAO.facetedSearch(conn, "978", "media", 0, 0)).thenReturn(r);
+        when(mediaDAO.listAllMedia(conn, "media")).thenReturn(Arrays.asList(book(5, "Title", "Author")));
+        when(mediaDAO.searchMediaAmong(eq(conn), eq("978"), eq("media"), anyCollection())).thenReturn(new HashMap<>());
+        when(mediaDAO.searchMediaPage(conn, "978", "media", 0, 10)).thenReturn(Arrays.asList(book(5, "Title", "Author")));
+
+        FacetedSearchResult result = service.facetedSearch("978", "media", 10);
+
+        assertEquals(1, result.getPage().size());
+        assertEquals(5, result.getPage().get(0).getId());
+    }
+
+    /**
+     * Tests that the ranking index is only rebuilt when the catalog content changes.
+     */
+    @Test
+    void rankedSearchReusesIndexUntilContentChanges() throws Exception {
+        when(mediaDAO.contentVersion(conn)).thenReturn(1L, 1L, 2L);
+        when(mediaDAO.listAllMedia(conn, "media")).thenReturn(Arrays.asList(book(1, "Java", "A")));
+
+        service.rankedSearch("java", "media", 5);
+        service.rankedSearch("java", "media", 5);
+        service.rankedSearch("java", "media", 5);
+
+        verify(mediaDAO, times(2)).listAllMedia(conn, "media");
+    }
+
+    /**
+     * Creates a book for ranking tests.
+     *
+     * @param id media id
+     * @param title title text
+     * @param author author name
+     * @return book instance
+     */
+    private Media book(int id, String title, String author) {
+        Media m = new Book();
+        m.setId(id);
+        m.setTitle(title);
+        m.setAuthor(author);
+        return m;
+    }
+
     /**
      * Tests findBorrowings when the user is not logged in.
      */
@@ -351,6 +458,32 @@ class UserServiceTest {
         assertEquals(10, list.get(0).getBorrowId());
     }
 
+    /**
+     * Tests that findBorrowedItems delegates to the joined DAO query when logged in.
+     *
+     * @throws Exception if call fails
+     */
+    @Test
+    void findBorrowedItemsReturnsListWhenLoggedIn() throws Exception {
+        service.setLoggedUser(user);
+
+        BorrowedItem item = new BorrowedItem();
+        item.setTitle("Dune");
+        when(borrowingDAO.findBorrowedItems(conn, 1)).thenReturn(Arrays.asList(item));
+
+        List<BorrowedItem> list = service.findBorrowedItems(1);
+
+        assertEquals("Dune", list.get(0).getTitle());
+    }
+
+    /**
+     * Tests findBorrowedItems when the user is not logged in.
+     */
+    @Test
+    void findBorrowedItemsThrowsWhenNotLoggedIn() {
+        assertThrows(IllegalStateException.class, () -> service.findBorrowedItems(1));
+    }
+
     /**
      * Tests findFines when the user is not logged in.
      */
@@ -1,24 +1,20 @@
 package com.library.util;
 
 import com.library.model.Book;
-import com.library.model.Borrowing;
+import com.library.model.BorrowedItem;
+import com.library.model.FacetedSearchResult;
 import com.library.model.Fine;
 import com.library.service.FineSummary;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for DisplayPrinter
@@ -90,21 +86,11 @@ class DisplayPrinterTest {
     }
 
     /**
-     * Verifies that printBorrowedMedia prints a placeholder when there are no borrowings.
+     * Verifies that printBorrowedMedia prints a placeholder when there are no borrowed items.
      */
     @Test
-    void printBorrowedMedia_printsPlaceholderWhenEmpty() throws Exception {
-        Connection conn = mock(Connection.class);
-        List<Borrowing> borrowings = Collections.emptyList();
-
-        String out = captureOutput(() ->
-        {
-            try {
-                DisplayPrinter.printBorrowedMedia(conn, borrowings);
-            } catch (Exception e) {
-                fail(e);
-            }
-        });
+    void printBorrowedMedia_printsPlaceholderWhenEmpty() {
+        String out = captureOutput(() -> DisplayPrinter.printBorrowedMedia(Collections.emptyList()));
 
         assertTrue(out.contains("(You have no borrowed books)"));
     }
@@ -114,16 +100,7 @@ class DisplayPrinterTest {
      */
     @Test
     void printBorrowedMedia_printsPlaceholderWhenNull() {
-        Connection conn = mock(Connection.class);
-
-        String out = captureOutput(() ->
-        {
-            try {
-                DisplayPrinter.printBorrowedMedia(conn, null);
-            } catch (Exception e) {
-                fail(e);
-            }
-        });
+        String out = captureOutput(() -> DisplayPrinter.printBorrowedMedia(null));
 
         assertTrue(out.contains("(You have no borrowed books)"));
     }
@@ -133,39 +110,16 @@ class DisplayPrinterTest {
      * when the due date is in the past.
      */
     @Test
-    void printBorrowedMedia_printsOverdueStatus() throws Exception {
-        Connection conn = mock(Connection.class);
-        PreparedStatement ps = mock(PreparedStatement.class);
-        ResultSet rs = mock(ResultSet.class);
+    void printBorrowedMedia_printsOverdueStatus() {
+        BorrowedItem item = new BorrowedItem();
+        item.setMediaId(10);
+        item.setTitle("Overdue Book");
+        item.setStatus("borrowed");
+        item.setDueDate(LocalDate.now().minusDays(2)); // overdue
 
-        when(conn.prepareStatement(anyString())).thenReturn(ps);
-        when(ps.executeQuery()).thenReturn(rs);
+        String out = captureOutput(() -> DisplayPrinter.printBorrowedMedia(Collections.singletonList(item)));
 
-        when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("book");
-        when(rs.getInt("media_id")).thenReturn(10);
-        when(rs.getString("title")).thenReturn("Overdue Book");
-        when(rs.getString("author")).thenReturn("Auth");
-        when(rs.getString("isbn")).thenReturn("ISBN");
-        when(rs.getBoolean("available")).thenReturn(false);
-
-        Borrowing b = new Borrowing();
-        b.setMediaId(10);
-        b.setStatus("borrowed");
-        b.setDueDate(LocalDate.now().minusDays(2)); // overdue
-
-        List<Borrowing> borrowings = Collections.singletonList(b);
-
-        String out = captureOutput(() ->
-        {
-            try {
-                DisplayPrinter.printBorrowedMedia(conn, borrowings);
-            } catch (Exception e) {
-                fail(e);
-            }
-        });
-
-        assertTrue(out.contains("Overdue Book"));
+        assertTrue(out.contains("#10  Overdue Book"));
         assertTrue(out.contains("Overdue (Can't return)"));
     }
 
@@ -173,67 +127,33 @@ class DisplayPrinterTest {
      * Verifies that printBorrowedMedia prints "On Time" when the item is not overdue.
      */
     @Test
-    void printBorrowedMedia_printsOnTimeStatus() throws Exception {
-        Connection conn = mock(Connection.class);
-        PreparedStatement ps = mock(PreparedStatement.class);
-        ResultSet rs = mock(ResultSet.class);
+    void printBorrowedMedia_printsOnTimeStatus() {
+        BorrowedItem item = new BorrowedItem();
+        item.setMediaId(20);
+        item.setTitle("On-time Book");
+        item.setStatus("borrowed");
+        item.setDueDate(LocalDate.now().plusDays(2)); // not overdue
 
-        when(conn.prepareStatement(anyString())).thenReturn(ps);
-        when(ps.executeQuery()).thenReturn(rs);
-
-        when(rs.next()).thenReturn(true, false);
-        when(rs.getString("type")).thenReturn("book");
-        when(rs.getInt("media_id")).thenReturn(20);
-        when(rs.getString("title")).thenReturn("On-time Book");
-        when(rs.getString("author")).thenReturn("Auth");
-        when(rs.getString("isbn")).thenReturn("ISBN");
-        when(rs.getBoolean("available")).thenReturn(false);
-
-        Borrowing b = new Borrowing();
-        b.setMediaId(20);
-        b.setStatus("borrowed");
-        b.setDueDate(LocalDate.now().plusDays(2)); // not overdue
-
-        List<Borrowing> borrowings = Collections.singletonList(b);
-
-        String out = captureOutput(() ->
-        {
-            try {
-                DisplayPrinter.printBorrowedMedia(conn, borrowings);
-            } catch (Exception e) {
-                fail(e);
-            }
-        });
+        String out = captureOutput(() -> DisplayPrinter.printBorrowedMedia(Collections.singletonList(item)));
 
         assertTrue(out.contains("On-time Book"));
         assertTrue(out.contains("On Time"));
     }
 
     /**
-     * Verifies that printBorrowedMedia skips items with status "returned".
+     * Verifies that an item marked overdue is shown as overdue even before its due date.
      */
     @Test
-    void printBorrowedMedia_skipsReturnedItems() {
-        Connection conn = mock(Connection.class);
-
-        Borrowing b = new Borrowing();
-        b.setMediaId(30);
-        b.setStatus("returned");
-        b.setDueDate(LocalDate.now().minusDays(1));
+    void printBorrowedMedia_usesOverdueStatus() {
+        BorrowedItem item = new BorrowedItem();
+        item.setMediaId(30);
+        item.setTitle("Flagged");
+        item.setStatus("overdue");
+        item.setDueDate(LocalDate.now().plusDays(1));
 
-        List<Borrowing> borrowings = Collections.singletonList(b);
+        String out = captureOutput(() -> DisplayPrinter.printBorrowedMedia(Collections.singletonList(item)));
 
-        String out = captureOutput(() ->
-        {
-            try {
-                DisplayPrinter.printBorrowedMedia(conn, borrowings);
-            } catch (Exception e) {
-                fail(e);
-            }
-        });
-
-        // No lines should be printed for returned items
-        assertTrue(out.isEmpty());
+        assertTrue(out.contains("Overdue (Can't return)"));
     }
 
     /**
@@ -311,4 +231,34 @@ class DisplayPrinterTest {
         assertTrue(out.contains("TOTAL"));
         assertTrue(out.contains("15.50"));
     }
+
+    /**
+     * Verifies that printFacetedResult prints the counts line and the page.
+     */
+    @Test
+    void printFacetedResult_printsCountsAndPage() {
+        Book b = new Book();
+        b.setId(3);
+        b.setTitle("Facets");
+        FacetedSearchResult r = new FacetedSearchResult();
+        r.addCount("book", true, 2);
+        r.addCount("cd", false, 1);
+        r.setPage(Collections.singletonList(b));
+
+        String out = captureOutput(() -> DisplayPrinter.printFacetedResult(r));
+
+        assertTrue(out.contains("Found 3: 2 books, 1 cds | 2 available, 1 borrowed"));
+        assertTrue(out.contains("Facets"));
+        assertTrue(out.contains("Showing the best 1 of 3"));
+    }
+
+    /**
+     * Verifies that printFacetedResult prints a placeholder when nothing matched.
+     */
+    @Test
+    void printFacetedResult_printsPlaceholderWhenEmpty() {
+        String out = captureOutput(() -> DisplayPrinter.printFacetedResult(new FacetedSearchResult()));
+
+        assertTrue(out.contains("(No matching media)"));
+    }
 }
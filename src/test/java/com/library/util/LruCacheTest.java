@@ -0,0 +1,67 @@
+package com.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the LRU cache with time limit.
+ */
+class LruCacheTest {
+
+    /**
+     * Tests that the least recently used entry is evicted when the cache is full.
+     */
+    @Test
+    void put_evictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    /**
+     * Tests that entries expire after the time to live.
+     */
+    @Test
+    void get_returnsNullAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        LruCache<String, String> cache = new LruCache<>(10, 1000, now::get);
+        cache.put("k", "v");
+
+        now.addAndGet(500_000_000L);
+        assertEquals("v", cache.get("k"));
+
+        now.addAndGet(600_000_000L);
+        assertNull(cache.get("k"));
+        assertEquals(1, cache.getStats().getExpirations());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests hit and miss counting and the hit rate.
+     */
+    @Test
+    void stats_countHitsAndMisses() {
+        LruCache<Integer, String> cache = new LruCache<>(4);
+        assertEquals(0.0, cache.getStats().getHitRate());
+
+        cache.put(1, "one");
+        cache.get(1);
+        cache.get(2);
+        cache.remove(1);
+        cache.get(1);
+
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(2, cache.getStats().getMisses());
+        assertEquals(1.0 / 3, cache.getStats().getHitRate(), 1e-9);
+    }
+}
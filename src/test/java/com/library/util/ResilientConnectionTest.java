@@ -0,0 +1,92 @@
+package com.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests reconnecting and keep-alive pings with mocked physical connections.
+ */
+class ResilientConnectionTest {
+
+    /**
+     * A lost connection is replaced on the next call, and the proxy keeps its identity.
+     */
+    @Test
+    void markBroken_reconnectsOnNextCall() throws Exception {
+        Connection first = mock(Connection.class);
+        Connection second = mock(Connection.class);
+        List<Connection> opened = new ArrayList<>(List.of(first, second));
+        List<Connection> lost = new ArrayList<>();
+        ConnectionMetrics metrics = new ConnectionMetrics();
+
+        Connection conn = ResilientConnection.open(() -> opened.remove(0), metrics, lost::add);
+        int hash = conn.hashCode();
+        conn.getAutoCommit();
+        verify(first).getAutoCommit();
+
+        ResilientConnection.markBroken(conn);
+        ResilientConnection.markBroken(conn);
+        conn.getAutoCommit();
+
+        verify(second).getAutoCommit();
+        verify(first).close();
+        assertEquals(List.of(conn), lost);
+        assertEquals(1, metrics.getReconnects());
+        assertEquals(hash, conn.hashCode());
+        assertEquals(conn, conn);
+    }
+
+    /**
+     * A connection error from the driver marks the connection lost,
+     * and the rollback that follows does not reach the dead connection.
+     */
+    @Test
+    void connectionError_skipsRollbackAndReconnects() throws Exception {
+        Connection first = mock(Connection.class);
+        Connection second = mock(Connection.class);
+        doThrow(new SQLException("gone", "08006")).when(first).commit();
+        List<Connection> opened = new ArrayList<>(List.of(first, second));
+
+        Connection conn = ResilientConnection.open(() -> opened.remove(0), new ConnectionMetrics(), c -> { });
+
+        assertThrows(SQLException.class, conn::commit);
+        conn.rollback();
+        conn.commit();
+
+        verify(first, never()).rollback();
+        verify(second).commit();
+    }
+
+    /**
+     * A failed ping marks the connection lost and is counted.
+     */
+    @Test
+    void ping_failureMarksConnectionLost() throws Exception {
+        Connection first = mock(Connection.class);
+        Connection second = mock(Connection.class);
+        when(first.isValid(anyInt())).thenReturn(false);
+        when(second.isValid(anyInt())).thenReturn(true);
+        List<Connection> opened = new ArrayList<>(List.of(first, second));
+        ConnectionMetrics metrics = new ConnectionMetrics();
+
+        Connection conn = ResilientConnection.open(() -> opened.remove(0), metrics, c -> { });
+        ConnectionWarmer warmer = new ConnectionWarmer(conn, 1, metrics);
+        try {
+            assertFalse(warmer.ping());
+            assertTrue(warmer.ping());
+        } finally {
+            warmer.close();
+        }
+
+        assertEquals(2, metrics.getPings());
+        assertEquals(1, metrics.getFailedPings());
+        assertEquals(1, metrics.getReconnects());
+    }
+}
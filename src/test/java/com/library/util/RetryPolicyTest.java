@@ -0,0 +1,121 @@
+package com.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests transient error classification and the retry policy without a database.
+ */
+class RetryPolicyTest {
+
+    /**
+     * Connection, shutdown, overload, and serialization states are transient.
+     */
+    @Test
+    void isTransient_classifiesSqlStates() {
+        assertTrue(TransientErrors.isTransient(new SQLException("gone", "08006")));
+        assertTrue(TransientErrors.isTransient(new SQLException("admin shutdown", "57P01")));
+        assertTrue(TransientErrors.isTransient(new SQLException("too many", "53300")));
+        assertTrue(TransientErrors.isTransient(new SQLException("serialization", "40001")));
+        assertTrue(TransientErrors.isTransient(new SQLTransientConnectionException("timeout")));
+        assertFalse(TransientErrors.isTransient(new SQLException("duplicate", "23505")));
+        assertFalse(TransientErrors.isTransient(new SQLException("no state")));
+
+        assertTrue(TransientErrors.isConnectionLost(new SQLException("gone", "08006")));
+        assertFalse(TransientErrors.isConnectionLost(new SQLException("serialization", "40001")));
+    }
+
+    /**
+     * A transient failure is retried until the call succeeds.
+     */
+    @Test
+    void call_retriesTransientFailure() throws Exception {
+        ConnectionMetrics metrics = new ConnectionMetrics();
+        RetryPolicy policy = new RetryPolicy(3, 0, 0, metrics);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.call(() -> {
+            if (calls.incrementAndGet() < 3) throw new SQLException("gone", "08006");
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+        assertEquals(2, metrics.getRetries());
+        assertEquals(2, metrics.getTransientFailures());
+    }
+
+    /**
+     * The last transient failure is passed on once the attempts are used up.
+     */
+    @Test
+    void call_givesUpAfterAttempts() {
+        ConnectionMetrics metrics = new ConnectionMetrics();
+        RetryPolicy policy = new RetryPolicy(2, 0, 0, metrics);
+        AtomicInteger calls = new AtomicInteger();
+
+        SQLException ex = assertThrows(SQLException.class, () -> policy.call(() -> {
+            calls.incrementAndGet();
+            throw new SQLException("too many", "53300");
+        }));
+
+        assertEquals("53300", ex.getSQLState());
+        assertEquals(2, calls.get());
+        assertEquals(1, metrics.getRetries());
+    }
+
+    /**
+     * A non-transient failure is not retried.
+     */
+    @Test
+    void call_doesNotRetryOtherFailures() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0, new ConnectionMetrics());
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(SQLException.class, () -> policy.call(() -> {
+            calls.incrementAndGet();
+            throw new SQLException("duplicate", "23505");
+        }));
+
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * Inside a transaction a read runs once, since the transaction is lost with it.
+     */
+    @Test
+    void read_runsOnceInsideTransaction() throws Exception {
+        Connection conn = mock(Connection.class);
+        when(conn.getAutoCommit()).thenReturn(false);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(SQLException.class, () -> RetryPolicy.read(conn, () -> {
+            calls.incrementAndGet();
+            throw new SQLException("gone", "08006");
+        }));
+
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * Waits stay between zero and the capped exponential bound.
+     */
+    @Test
+    void delayMillis_staysWithinCap() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, new ConnectionMetrics());
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(policy.delayMillis(1) <= 100);
+            assertTrue(policy.delayMillis(3) <= 400);
+            assertTrue(policy.delayMillis(9) <= 1000);
+            assertTrue(policy.delayMillis(9) >= 0);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the token bucket with a manual clock, so no test sleeps.
+ */
+class TokenBucketRateLimiterTest {
+
+    private long now;
+
+    /**
+     * A full bucket allows a burst, then callers wait one interval each.
+     */
+    @Test
+    void reserve_allowsBurstThenSpacesCallers() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 3, () -> now);
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(interval, limiter.reserve(), 1);
+        assertEquals(2 * interval, limiter.reserve(), 1);
+
+        assertEquals(5, limiter.getPermits());
+        assertEquals(2, limiter.getThrottled());
+        assertEquals(300, limiter.getThrottledMillis(), 1);
+    }
+
+    /**
+     * Tokens come back at the sustained rate, but never above the burst size.
+     */
+    @Test
+    void reserve_refillsUpToBurst() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 2, () -> now);
+        limiter.reserve();
+        limiter.reserve();
+
+        now += TimeUnit.SECONDS.toNanos(10);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertTrue(limiter.reserve() > 0);
+    }
+
+    /**
+     * A rate of zero is refused.
+     */
+    @Test
+    void constructor_rejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter(0, 1));
+    }
+}
@@ -0,0 +1,77 @@
+package com.library.util;
+
+import com.library.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the role and email checks and bulk user validation.
+ */
+class ValidationHelperTest {
+
+    private static User user(String username, String email, String role) {
+        User u = new User();
+        u.setUsername(username);
+        u.setEmail(email);
+        u.setRole(role);
+        return u;
+    }
+
+    /**
+     * Known roles pass; unknown, differently cased, and missing roles fail.
+     */
+    @Test
+    void isValidRole_acceptsKnownRolesOnly() {
+        assertTrue(ValidationHelper.isValidRole("admin"));
+        assertTrue(ValidationHelper.isValidRole("librarian"));
+        assertTrue(ValidationHelper.isValidRole("user"));
+        assertFalse(ValidationHelper.isValidRole("Admin"));
+        assertFalse(ValidationHelper.isValidRole("guest"));
+        assertFalse(ValidationHelper.isValidRole(null));
+    }
+
+    /**
+     * Emails need a name, a domain, and a top-level domain of two letters or more.
+     */
+    @Test
+    void isValidEmail_checksFormat() {
+        assertTrue(ValidationHelper.isValidEmail("sara.levi@mail.example.com"));
+        assertFalse(ValidationHelper.isValidEmail("sara@example.c"));
+        assertFalse(ValidationHelper.isValidEmail("sara.example.com"));
+        assertFalse(ValidationHelper.isValidEmail(null));
+    }
+
+    /**
+     * Every problem in every record is reported, in record order.
+     */
+    @Test
+    void validateUsers_reportsAllViolations() {
+        List<ValidationHelper.Violation> violations = ValidationHelper.validateUsers(Stream.of(
+                user("sara", "sara@example.com", "user"),
+                user("", "bad", "guest"),
+                user("sara", "sara2@example.com", "admin"),
+                user("omar", "omar@example.com", null)));
+
+        assertEquals(5, violations.size());
+        assertEquals("#1 () username: username is empty", violations.get(0).toString());
+        assertEquals("email", violations.get(1).getField());
+        assertEquals("role", violations.get(2).getField());
+        assertEquals(2, violations.get(3).getIndex());
+        assertEquals("username appears more than once", violations.get(3).getMessage());
+        assertEquals("omar", violations.get(4).getUsername());
+    }
+
+    /**
+     * Valid records produce no violations.
+     */
+    @Test
+    void validateUsers_emptyWhenAllValid() {
+        assertTrue(ValidationHelper.validateUsers(Stream.of(
+                user("a", "a@example.com", "user"),
+                user("b", "b@example.com", "librarian"))).isEmpty());
+    }
+}
@@ -0,0 +1,36 @@
+package com.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the worker thread factory.
+ */
+class WorkerThreadsTest {
+
+    /**
+     * Workers are numbered per factory, unstarted, and run their task once started.
+     *
+     * @throws InterruptedException if joining is interrupted
+     */
+    @Test
+    void factory_namesWorkersInOrder() throws InterruptedException {
+        ThreadFactory factory = WorkerThreads.factory("test-worker-");
+        AtomicBoolean ran = new AtomicBoolean();
+
+        Thread first = factory.newThread(() -> ran.set(true));
+        Thread second = factory.newThread(() -> { });
+
+        assertEquals("test-worker-0", first.getName());
+        assertEquals("test-worker-1", second.getName());
+        assertEquals(Thread.State.NEW, first.getState());
+
+        first.start();
+        first.join(5000);
+        assertTrue(ran.get());
+    }
+}